@@ -169,6 +169,45 @@ public class BalanceList implements MessageObject {
                 unlockTransferSum, pendingCycleTransactions, recentlyApprovedCycleTransactions);
     }
 
+    // Advances the buffer past a balance list without building it. Only the cycle transactions of version 2 and above
+    // need to be walked; the size of everything else follows from the version, height, and number of items.
+    public static void skip(ByteBuffer buffer) {
+
+        ShortLong versionAndHeight = ShortLong.fromByteBuffer(buffer);
+        int blockchainVersion = versionAndHeight.getShortValue();
+        long blockHeight = versionAndHeight.getLongValue();
+        int position = buffer.position() + FieldByteSize.rolloverTransactionFees +
+                FieldByteSize.identifier * (int) Math.min(blockHeight, 9);
+
+        int numberOfItems = buffer.getInt(position);
+        int bytesPerItem = FieldByteSize.identifier + FieldByteSize.transactionAmount + FieldByteSize.blocksUntilFee;
+        if (numberOfItems < 0 || numberOfItems > buffer.limit() / bytesPerItem) {
+            throw new IllegalArgumentException("invalid number of balance-list items: " + numberOfItems);
+        }
+        position += FieldByteSize.balanceListLength + numberOfItems * bytesPerItem;
+        if (blockchainVersion > 0) {
+            position += FieldByteSize.transactionAmount * 2;
+        }
+        buffer.position(position);
+
+        if (blockchainVersion > 1) {
+            int numberOfPendingTransactions = buffer.getInt();
+            for (int i = 0; i < numberOfPendingTransactions; i++) {
+                Transaction.skip(buffer, true);
+            }
+
+            int numberOfApprovedTransactions = buffer.getInt();
+            int approvedTransactionSize = FieldByteSize.identifier * 2 + FieldByteSize.blockHeight +
+                    FieldByteSize.transactionAmount;
+            if (numberOfApprovedTransactions < 0 ||
+                    numberOfApprovedTransactions > buffer.limit() / approvedTransactionSize) {
+                throw new IllegalArgumentException("invalid number of approved cycle transactions: " +
+                        numberOfApprovedTransactions);
+            }
+            buffer.position(buffer.position() + numberOfApprovedTransactions * approvedTransactionSize);
+        }
+    }
+
     @Override
     public int getByteSize() {
         int numberOfPreviousVerifiers = (int) Math.min(blockHeight, 9);
@@ -244,30 +283,10 @@ public class BalanceList implements MessageObject {
 
     public long balanceForIdentifier(byte[] identifier) {
 
-        // This method performs a binary search on the identifier to efficiently find the balance.
-        long balance = 0L;
-        int lowIndex = 0;
-        int highIndex = items.size() - 1;
-        BalanceListItem identifierItem = new BalanceListItem(identifier, 0L);
-        while (lowIndex < highIndex && balance == 0L) {
-            int midIndex = (lowIndex + highIndex) / 2;
-            if (ByteUtil.arraysAreEqual(identifier, items.get(lowIndex).getIdentifier())) {
-                balance = items.get(lowIndex).getBalance();
-            } else if (ByteUtil.arraysAreEqual(identifier, items.get(highIndex).getIdentifier())) {
-                balance = items.get(highIndex).getBalance();
-            } else {
-                int midComparison = balanceListItemComparator.compare(identifierItem, items.get(midIndex));
-                if (midComparison > 0) {
-                    lowIndex = midIndex + 1;
-                } else if (midComparison < 0) {
-                    highIndex = midIndex - 1;
-                } else {
-                    balance = items.get(midIndex).getBalance();
-                }
-            }
-        }
-
-        return balance;
+        // This method performs a binary search on the identifier to efficiently find the balance. The items are sorted
+        // by identifier in the constructor.
+        int index = Collections.binarySearch(items, new BalanceListItem(identifier, 0L), balanceListItemComparator);
+        return index < 0 ? 0L : items.get(index).getBalance();
     }
 
     @Override
@@ -19,6 +19,20 @@ public class BalanceManager {
 
     public static final long minimumPreferredBalance = 10L * Transaction.micronyzoMultiplierRatio;
 
+    // This is the number of transactions with the same timestamp that are compared individually when removing
+    // duplicates. Past this number, the bytes of the transactions are kept in a set.
+    private static final int maximumBytewiseComparisons = 16;
+
+    // These are the transaction types allowed in the Genesis block and in blocks of each blockchain version, indexed
+    // by the unsigned value of the type.
+    private static final boolean[] validTypesGenesis = validTypes(Transaction.typeCoinGeneration,
+            Transaction.typeSeed, Transaction.typeStandard);
+    private static final boolean[] validTypesVersion0 = validTypes(Transaction.typeSeed, Transaction.typeStandard);
+    private static final boolean[] validTypesVersion1 = validTypes(Transaction.typeSeed, Transaction.typeStandard,
+            Transaction.typeCycle);
+    private static final boolean[] validTypesVersion2 = validTypes(Transaction.typeSeed, Transaction.typeStandard,
+            Transaction.typeCycle, Transaction.typeCycleSignature);
+
     public static List<Transaction> approvedTransactionsForBlock(List<Transaction> transactions, Block previousBlock,
                                                                  boolean forBlockAssembly) {
 
@@ -26,107 +40,93 @@ public class BalanceManager {
         sortTransactions(transactions);
         List<Transaction> dedupedTransactions = transactionsWithoutDuplicates(transactions);
 
-        // Remove all transactions whose timestamps fall outside the block timestamp range. Because the array is sorted,
-        // this can be done on the ends of the array.
+        // Apply the rules that depend only on the individual transaction in a single pass. The rules are checked in
+        // the order in which they were originally applied, and each transaction is removed by the first rule it
+        // fails. Because the list is sorted, the timestamp check is equivalent to trimming the ends of the list.
         long blockHeight = previousBlock.getBlockHeight() + 1L;
         long startTimestamp = BlockManager.startTimestampForHeight(blockHeight);
         long endTimestamp = BlockManager.endTimestampForHeight(blockHeight);
-        while (dedupedTransactions.size() > 0 && dedupedTransactions.get(0).getTimestamp() < startTimestamp) {
-            dedupedTransactions.remove(0);
-            LogUtil.println("removed transaction because timestamp was before beginning of block");
-        }
-        while (dedupedTransactions.size() > 0 &&
-                dedupedTransactions.get(dedupedTransactions.size() - 1).getTimestamp() >= endTimestamp) {
-            dedupedTransactions.remove(dedupedTransactions.size() - 1);
-            LogUtil.println("removed transaction because timestamp was past end of block");
-        }
-
-        // Remove all transactions with invalid types.
-        Set<Byte> validTypes;
-        if (blockHeight == 0) {
-            validTypes = new HashSet<>(Arrays.asList(Transaction.typeCoinGeneration, Transaction.typeSeed,
-                    Transaction.typeStandard));
-        } else if (previousBlock.getBlockchainVersion() == 0) {
-            validTypes = new HashSet<>(Arrays.asList(Transaction.typeSeed, Transaction.typeStandard));
-        } else if (previousBlock.getBlockchainVersion() == 1) {
-            validTypes = new HashSet<>(Arrays.asList(Transaction.typeSeed, Transaction.typeStandard,
-                    Transaction.typeCycle));
-        } else {
-            validTypes = new HashSet<>(Arrays.asList(Transaction.typeSeed, Transaction.typeStandard,
-                    Transaction.typeCycle, Transaction.typeCycleSignature));
-        }
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            if (!validTypes.contains(dedupedTransactions.get(i).getType())) {
-                dedupedTransactions.remove(i);
-                LogUtil.println("removed transaction because type is invalid");
-            }
-        }
-
-        // Remove all transactions other than cycle-signature transactions less than 1 micronyzo.
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            if (dedupedTransactions.get(i).getType() != Transaction.typeCycleSignature &&
-                    dedupedTransactions.get(i).getAmount() < 1L) {
-                dedupedTransactions.remove(i);
-                LogUtil.println("removed transaction at index " + i + " due to amount less than 1 micronyzo");
-            }
-        }
-
-        // Check the previous-block hash here. Properly used, this provides protection against eclipse attacks.
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            if (!dedupedTransactions.get(i).previousHashIsValid()) {
-                dedupedTransactions.remove(i);
-                LogUtil.println("removed transaction because previous hash was invalid");
+        int blockchainVersion = previousBlock.getBlockchainVersion();
+        boolean[] validTypes = blockHeight == 0 ? validTypesGenesis : (blockchainVersion == 0 ? validTypesVersion0 :
+                (blockchainVersion == 1 ? validTypesVersion1 : validTypesVersion2));
+        Set<ByteBuffer> currentCycle = null;
+        List<Transaction> filteredTransactions = new ArrayList<>(dedupedTransactions.size());
+        for (Transaction transaction : dedupedTransactions) {
+            String reason = null;
+            if (transaction.getTimestamp() < startTimestamp) {
+                reason = "removed transaction because timestamp was before beginning of block";
+            } else if (transaction.getTimestamp() >= endTimestamp) {
+                reason = "removed transaction because timestamp was past end of block";
+            } else if (!validTypes[transaction.getType() & 0xff]) {
+                reason = "removed transaction because type is invalid";
+            } else if (transaction.getType() != Transaction.typeCycleSignature && transaction.getAmount() < 1L) {
+                reason = "removed transaction due to amount less than 1 micronyzo";
+            } else if (!transaction.previousHashIsValid()) {
+                // Check the previous-block hash here. Properly used, this provides protection against eclipse
+                // attacks.
+                reason = "removed transaction because previous hash was invalid";
+            } else if (!seedFundingAccountTransactionIsValid(transaction, blockHeight)) {
+                // Protect the seed-funding account from all transactions other than the transactions published on
+                // day 1. The reason is logged by the check.
+                reason = "";
+            } else if (!transaction.signatureIsValid()) {
+                // The signature state is memoized on the transaction. Transactions from the pool had their signatures
+                // checked during initial validation at admission, so they are not verified again here.
+                reason = "removed transaction because signature was invalid";
+            } else {
+                if (currentCycle == null && blockchainVersion == 1 &&
+                        transaction.getType() == Transaction.typeCycle) {
+                    currentCycle = BlockManager.verifiersInCurrentCycleSet();
+                }
+                reason = cycleTransactionRuleViolation(transaction, blockchainVersion, currentCycle);
             }
-        }
 
-        // Protect the seed-funding account from all transactions other than the transactions published on day 1.
-        protectSeedFundingAccount(dedupedTransactions, blockHeight);
-
-        // Remove any transactions with invalid signatures.
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            if (!dedupedTransactions.get(i).signatureIsValid()) {
-                dedupedTransactions.remove(i);
-                LogUtil.println("removed transaction because signature was invalid");
+            if (reason == null) {
+                filteredTransactions.add(transaction);
+            } else if (!reason.isEmpty()) {
+                LogUtil.log(LogUtil.Level.Info, "BalanceManager.removedTransaction", reason);
             }
         }
 
-        // Enforce the rules for cycle transactions.
-        enforceCycleTransactionRules(dedupedTransactions, previousBlock.getBlockchainVersion());
-
-        // Enforce the rules for accounts subject to the locking threshold.
+        // Enforce the rules for accounts subject to the locking threshold. These rules depend on the sum of all
+        // transactions from locked accounts, so they are applied after the single-transaction rules.
         BalanceList balanceList = BalanceListManager.balanceListForBlock(previousBlock);
-        enforceLockingRules(dedupedTransactions, balanceList.getBlockchainVersion(), balanceList.getUnlockThreshold(),
+        boolean removeLockedTransactions = lockedTransactionsExceedThreshold(filteredTransactions,
+                balanceList.getBlockchainVersion(), balanceList.getUnlockThreshold(),
                 balanceList.getUnlockTransferSum());
 
         // Assemble the final list of transactions with valid amounts. This has to be done in ascending order of
-        // timestamp, because older transactions take precedence over newer transactions.
+        // timestamp, because older transactions take precedence over newer transactions. Only the balances of
+        // accounts changed by this block are stored in the overlay. All other balances are read from the balance
+        // list of the previous block.
         List<Transaction> approvedTransactions = new ArrayList<>();
-        Map<ByteBuffer, Long> identifierToBalanceMap = makeBalanceMap(balanceList);
-        for (Transaction transaction : dedupedTransactions) {
+        Map<ByteBuffer, Long> balanceOverlay = new HashMap<>();
+        for (Transaction transaction : filteredTransactions) {
+            if (removeLockedTransactions && LockedAccountManager.isSubjectToLock(transaction)) {
+                continue;
+            }
+
             ByteBuffer senderIdentifier = transaction.getType() == Transaction.typeCycle ?
                     ByteBuffer.wrap(BalanceListItem.cycleAccountIdentifier) :
                     ByteBuffer.wrap(transaction.getSenderIdentifier());
-            Long senderBalance = identifierToBalanceMap.getOrDefault(senderIdentifier, 0L);
+            long senderBalance = overlayBalance(balanceOverlay, balanceList, senderIdentifier);
             if (transaction.getAmount() <= senderBalance || (transaction.getType() == Transaction.typeSeed &&
                     transaction.getFee() <= senderBalance)) {
 
                 approvedTransactions.add(transaction);
-                identifierToBalanceMap.put(senderIdentifier, senderBalance - transaction.getAmount());
+                balanceOverlay.put(senderIdentifier, senderBalance - transaction.getAmount());
 
                 // Add the amount after fee to the receiver's account.
                 long amountAfterFee = transaction.getAmount() - transaction.getFee();
                 if (amountAfterFee > 0L) {
                     ByteBuffer receiverIdentifier = ByteBuffer.wrap(transaction.getReceiverIdentifier());
-                    Long receiverBalance = identifierToBalanceMap.get(receiverIdentifier);
-                    if (receiverBalance == null) {
-                        receiverBalance = 0L;
-                    }
-                    receiverBalance += amountAfterFee;
-                    identifierToBalanceMap.put(receiverIdentifier, receiverBalance);
+                    balanceOverlay.put(receiverIdentifier, overlayBalance(balanceOverlay, balanceList,
+                            receiverIdentifier) + amountAfterFee);
                 }
             } else {
-                LogUtil.println("removed transaction because amount " + transaction.getAmount() + " was greater " +
-                        "than balance " + senderBalance);
+                LogUtil.log(LogUtil.Level.Info, "BalanceManager.removedTransaction",
+                        "removed transaction because amount %d was greater than balance %d", transaction.getAmount(),
+                        senderBalance);
             }
         }
 
@@ -134,30 +134,66 @@ public class BalanceManager {
         // allowed for the block, remove the smallest transactions until the list is an acceptable size.
         int maximumListSize = BlockchainMetricsManager.maximumTransactionsForBlockAssembly();
         if (approvedTransactions.size() > maximumListSize && forBlockAssembly) {
+            approvedTransactions = largestTransactions(approvedTransactions, maximumListSize);
+        }
 
-            // Sort the transactions on amount descending, promoting cycle-signature transactions to the top of the
-            // list.
-            approvedTransactions.sort(new Comparator<Transaction>() {
-                @Override
-                public int compare(Transaction transaction1, Transaction transaction2) {
-                    long transaction1CompareAmount = transaction1.getType() == Transaction.typeCycleSignature ?
-                            Long.MAX_VALUE : transaction1.getAmount();
-                    long transaction2CompareAmount = transaction2.getType() == Transaction.typeCycleSignature ?
-                            Long.MAX_VALUE : transaction2.getAmount();
-                    return Long.compare(transaction2CompareAmount, transaction1CompareAmount);
-                }
-            });
+        return approvedTransactions;
+    }
+
+    private static boolean[] validTypes(byte... types) {
 
-            // Remove the tail of the list until it is an appropriate size.
-            while (approvedTransactions.size() > maximumListSize) {
-                approvedTransactions.remove(approvedTransactions.size() - 1);
+        boolean[] validTypes = new boolean[256];
+        for (byte type : types) {
+            validTypes[type & 0xff] = true;
+        }
+
+        return validTypes;
+    }
+
+    private static long overlayBalance(Map<ByteBuffer, Long> balanceOverlay, BalanceList balanceList,
+                                       ByteBuffer identifier) {
+
+        Long balance = balanceOverlay.get(identifier);
+        return balance == null ? balanceList.balanceForIdentifier(identifier.array()) : balance;
+    }
+
+    private static List<Transaction> largestTransactions(List<Transaction> transactions, int maximumListSize) {
+
+        // This selects the same transactions as a stable sort on amount descending, with cycle-signature transactions
+        // promoted to the top of the list, followed by removal of the tail of the list. Only the amounts are sorted,
+        // to find the threshold amount. All transactions above the threshold are kept, and transactions at the
+        // threshold are kept in block order until the list is full. The result remains in block order.
+        long[] compareAmounts = new long[transactions.size()];
+        for (int i = 0; i < compareAmounts.length; i++) {
+            compareAmounts[i] = compareAmount(transactions.get(i));
+        }
+        long[] sortedAmounts = Arrays.copyOf(compareAmounts, compareAmounts.length);
+        Arrays.sort(sortedAmounts);
+        long thresholdAmount = sortedAmounts[sortedAmounts.length - maximumListSize];
+
+        int numberAboveThreshold = 0;
+        for (long amount : compareAmounts) {
+            if (amount > thresholdAmount) {
+                numberAboveThreshold++;
             }
+        }
 
-            // Sort the list back to block order.
-            sortTransactions(approvedTransactions);
+        int numberAtThresholdToKeep = maximumListSize - numberAboveThreshold;
+        List<Transaction> largestTransactions = new ArrayList<>(maximumListSize);
+        for (int i = 0; i < compareAmounts.length; i++) {
+            if (compareAmounts[i] > thresholdAmount) {
+                largestTransactions.add(transactions.get(i));
+            } else if (compareAmounts[i] == thresholdAmount && numberAtThresholdToKeep > 0) {
+                largestTransactions.add(transactions.get(i));
+                numberAtThresholdToKeep--;
+            }
         }
 
-        return approvedTransactions;
+        return largestTransactions;
+    }
+
+    private static long compareAmount(Transaction transaction) {
+        return transaction.getType() == Transaction.typeCycleSignature ? Long.MAX_VALUE : transaction.getAmount();
     }
 
     public static Map<ByteBuffer, Long> makeBalanceMap(BalanceList balanceList) {
@@ -172,36 +208,40 @@ public class BalanceManager {
         return balanceMap;
     }
 
-    public static void sortTransactions(List<Transaction> transactions) {
-
-        // First, sort transactions according to the acceptable ordering for blocks.
-        Collections.sort(transactions, new Comparator<Transaction>() {
-            @Override
-            public int compare(Transaction transaction1, Transaction transaction2) {
-                long timestamp1 = transaction1.getTimestamp();
-                long timestamp2 = transaction2.getTimestamp();
-                int result = 0;
-                if (timestamp1 < timestamp2) {
-                    result = -1;
-                } else if (timestamp2 < timestamp1) {
-                    result = 1;
-                } else {
-                    byte[] signature1 = transaction1.getSignature();
-                    byte[] signature2 = transaction2.getSignature();
-                    for (int i = 0; i < FieldByteSize.signature && result == 0; i++) {
-                        int byte1 = signature1[i] & 0xff;
-                        int byte2 = signature2[i] & 0xff;
-                        if (byte1 < byte2) {
-                            result = -1;
-                        } else if (byte2 < byte1) {
-                            result = 1;
-                        }
+    // This is the acceptable ordering for transactions in blocks: ascending timestamp, with ties broken by the
+    // unsigned byte order of the signatures.
+    public static final Comparator<Transaction> blockOrderComparator = new Comparator<Transaction>() {
+        @Override
+        public int compare(Transaction transaction1, Transaction transaction2) {
+            long timestamp1 = transaction1.getTimestamp();
+            long timestamp2 = transaction2.getTimestamp();
+            int result = 0;
+            if (timestamp1 < timestamp2) {
+                result = -1;
+            } else if (timestamp2 < timestamp1) {
+                result = 1;
+            } else {
+                byte[] signature1 = transaction1.getSignature();
+                byte[] signature2 = transaction2.getSignature();
+                for (int i = 0; i < FieldByteSize.signature && result == 0; i++) {
+                    int byte1 = signature1[i] & 0xff;
+                    int byte2 = signature2[i] & 0xff;
+                    if (byte1 < byte2) {
+                        result = -1;
+                    } else if (byte2 < byte1) {
+                        result = 1;
                     }
                 }
-
-                return result;
             }
-        });
+
+            return result;
+        }
+    };
+
+    public static void sortTransactions(List<Transaction> transactions) {
+
+        // Sort transactions according to the acceptable ordering for blocks.
+        Collections.sort(transactions, blockOrderComparator);
     }
 
     public static List<Transaction> transactionsWithoutDuplicates(List<Transaction> transactions) {
@@ -212,25 +252,83 @@ public class BalanceManager {
         // However, the extra byte-for-byte check of the transaction is computationally cheap, and it provides an extra
         // layer of assurance that duplicate transactions will be removed.
 
+        // Transactions with identical bytes have identical timestamps, so they are adjacent in a list sorted in block
+        // order, and only transactions that share a timestamp need to be compared. Serializing a transaction for
+        // signing includes a hash of the sender data, so the bytes are only compared for transactions that also match
+        // in type, amount, and receiver. If many transactions share a timestamp, the bytes of all of them are kept in
+        // a set instead. The list must be sorted in block order.
+
         Set<ByteBuffer> signaturesAdded = new HashSet<>();
-        Set<ByteBuffer> rawBytesAdded = new HashSet<>();
+        List<Transaction> addedForTimestamp = new ArrayList<>();
+        Set<ByteBuffer> rawBytesAddedForTimestamp = null;
 
-        List<Transaction> transactionsWithoutDuplicates = new ArrayList<>();
+        List<Transaction> transactionsWithoutDuplicates = new ArrayList<>(transactions.size());
+        long previousTimestamp = Long.MIN_VALUE;
         for (Transaction transaction : transactions) {
 
+            if (transaction.getTimestamp() != previousTimestamp) {
+                previousTimestamp = transaction.getTimestamp();
+                addedForTimestamp.clear();
+                rawBytesAddedForTimestamp = null;
+            }
+
             ByteBuffer signature = ByteBuffer.wrap(transaction.getSignature());
-            ByteBuffer rawBytes = ByteBuffer.wrap(transaction.getBytes(true));
+            if (!signaturesAdded.contains(signature)) {
+
+                boolean duplicateBytes = false;
+                ByteBuffer rawBytes = null;
+                if (rawBytesAddedForTimestamp == null && addedForTimestamp.size() >= maximumBytewiseComparisons) {
+                    rawBytesAddedForTimestamp = new HashSet<>();
+                    for (Transaction addedTransaction : addedForTimestamp) {
+                        rawBytesAddedForTimestamp.add(ByteBuffer.wrap(addedTransaction.getBytes(true)));
+                    }
+                }
+                if (rawBytesAddedForTimestamp != null) {
+                    rawBytes = ByteBuffer.wrap(transaction.getBytes(true));
+                    duplicateBytes = rawBytesAddedForTimestamp.contains(rawBytes);
+                } else {
+                    for (int i = 0; i < addedForTimestamp.size() && !duplicateBytes; i++) {
+                        Transaction addedTransaction = addedForTimestamp.get(i);
+                        if (mayHaveIdenticalBytes(transaction, addedTransaction)) {
+                            if (rawBytes == null) {
+                                rawBytes = ByteBuffer.wrap(transaction.getBytes(true));
+                            }
+                            duplicateBytes = rawBytes.equals(ByteBuffer.wrap(addedTransaction.getBytes(true)));
+                        }
+                    }
+                }
 
-            if (!signaturesAdded.contains(signature) && !rawBytesAdded.contains(rawBytes)) {
-                signaturesAdded.add(signature);
-                rawBytesAdded.add(rawBytes);
-                transactionsWithoutDuplicates.add(transaction);
+                if (!duplicateBytes) {
+                    signaturesAdded.add(signature);
+                    addedForTimestamp.add(transaction);
+                    if (rawBytesAddedForTimestamp != null) {
+                        rawBytesAddedForTimestamp.add(rawBytes);
+                    }
+                    transactionsWithoutDuplicates.add(transaction);
+                }
             }
         }
 
         return transactionsWithoutDuplicates;
     }
 
+    private static boolean mayHaveIdenticalBytes(Transaction transaction1, Transaction transaction2) {
+
+        // The type is included in the bytes of all transactions, and the amount and receiver are included in the bytes
+        // of coin-generation, seed, standard, and cycle transactions. Transactions that differ in these fields cannot
+        // have identical bytes.
+        byte type = transaction1.getType();
+        boolean mayBeIdentical = type == transaction2.getType();
+        if (mayBeIdentical && (type == Transaction.typeCoinGeneration || type == Transaction.typeSeed ||
+                type == Transaction.typeStandard || type == Transaction.typeCycle)) {
+            mayBeIdentical = transaction1.getAmount() == transaction2.getAmount() &&
+                    ByteUtil.arraysAreEqual(transaction1.getReceiverIdentifier(),
+                            transaction2.getReceiverIdentifier());
+        }
+
+        return mayBeIdentical;
+    }
+
     public static boolean transactionSpamsBalanceList(Map<ByteBuffer, Long> balanceMap, Transaction transaction,
                                                       List<Transaction> allTransactionsInBlock) {
 
@@ -305,208 +403,166 @@ public class BalanceManager {
         return numberOfTransactions;
     }
 
-    private static void protectSeedFundingAccount(List<Transaction> dedupedTransactions, long blockHeight) {
+    private static boolean seedFundingAccountTransactionIsValid(Transaction transaction, long blockHeight) {
 
         // At block 1, 20% of the coins in the system were transferred to the seed-funding account. All of the seed
         // transactions were pre-signed, and the private key for the account was never saved. However, there is no
         // way to prove that the private key was not saved, so this logic provides assurance that the funds in that
         // account will only be used for the published seed transactions.
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            Transaction transaction = dedupedTransactions.get(i);
-            if (ByteUtil.arraysAreEqual(transaction.getSenderIdentifier(), seedAccountIdentifier)) {
-
-                // These are the same parameters used to generate the transactions. In addition to transfers, funds
-                // could be stolen from this account with large seed transactions or many smaller seed transactions.
-                // We need to check all fields of the transaction, as they can all change the signature.
-                long transactionIndex = blockHeight - SeedTransactionManager.lowestSeedTransactionHeight;
-
-                long transactionAmount = finalSeedTransactionAmount + (initialSeedTransactionAmount -
-                        finalSeedTransactionAmount) *
-                        (SeedTransactionManager.totalSeedTransactions - transactionIndex - 1) /
-                        (SeedTransactionManager.totalSeedTransactions - 1);
-                long transactionTimestamp = BlockManager.getGenesisBlockStartTimestamp() + blockHeight *
-                        Block.blockDuration + 1000L;
-
-                boolean needToRemoveTransaction = false;
-                if (transaction.getType() != Transaction.typeSeed) {
-                    needToRemoveTransaction = true;
-                    LogUtil.println("removed non-seed transaction from seed-funding account");
-                }
-
-                if (transaction.getAmount() != transactionAmount) {
-                    needToRemoveTransaction = true;
-                    LogUtil.println("removed seed transaction with incorrect amount: " +
-                            PrintUtil.printAmount(transaction.getAmount()) + ", expected " +
-                            PrintUtil.printAmount(transactionAmount));
-                }
+        boolean needToRemoveTransaction = false;
+        if (ByteUtil.arraysAreEqual(transaction.getSenderIdentifier(), seedAccountIdentifier)) {
+
+            // These are the same parameters used to generate the transactions. In addition to transfers, funds
+            // could be stolen from this account with large seed transactions or many smaller seed transactions.
+            // We need to check all fields of the transaction, as they can all change the signature.
+            long transactionIndex = blockHeight - SeedTransactionManager.lowestSeedTransactionHeight;
+
+            long transactionAmount = finalSeedTransactionAmount + (initialSeedTransactionAmount -
+                    finalSeedTransactionAmount) *
+                    (SeedTransactionManager.totalSeedTransactions - transactionIndex - 1) /
+                    (SeedTransactionManager.totalSeedTransactions - 1);
+            long transactionTimestamp = BlockManager.getGenesisBlockStartTimestamp() + blockHeight *
+                    Block.blockDuration + 1000L;
+
+            if (transaction.getType() != Transaction.typeSeed) {
+                needToRemoveTransaction = true;
+                LogUtil.println("removed non-seed transaction from seed-funding account");
+            }
 
-                if (transaction.getTimestamp() != transactionTimestamp) {
-                    needToRemoveTransaction = true;
-                    LogUtil.println("removed seed transaction with incorrect timestamp: " +
-                            PrintUtil.printTimestamp(transaction.getTimestamp()) + ", expected " +
-                            PrintUtil.printTimestamp(transactionTimestamp));
-                }
+            if (transaction.getAmount() != transactionAmount) {
+                needToRemoveTransaction = true;
+                LogUtil.println("removed seed transaction with incorrect amount: " +
+                        PrintUtil.printAmount(transaction.getAmount()) + ", expected " +
+                        PrintUtil.printAmount(transactionAmount));
+            }
 
-                if (transaction.getSenderData().length > 0) {
-                    needToRemoveTransaction = true;
-                    LogUtil.println("removed seed transaction with non-empty sender data: " +
-                            ByteUtil.arrayAsStringNoDashes(transaction.getSenderData()));
-                }
+            if (transaction.getTimestamp() != transactionTimestamp) {
+                needToRemoveTransaction = true;
+                LogUtil.println("removed seed transaction with incorrect timestamp: " +
+                        PrintUtil.printTimestamp(transaction.getTimestamp()) + ", expected " +
+                        PrintUtil.printTimestamp(transactionTimestamp));
+            }
 
-                if (transaction.getPreviousHashHeight() != 0L) {
-                    needToRemoveTransaction = true;
-                    LogUtil.println("removed seed transaction with previous-hash height of " +
-                            transaction.getPreviousHashHeight());
-                }
+            if (transaction.getSenderData().length > 0) {
+                needToRemoveTransaction = true;
+                LogUtil.println("removed seed transaction with non-empty sender data: " +
+                        ByteUtil.arrayAsStringNoDashes(transaction.getSenderData()));
+            }
 
-                // Perform the actual removal, if necessary.
-                if (needToRemoveTransaction) {
-                    dedupedTransactions.remove(i);
-                }
+            if (transaction.getPreviousHashHeight() != 0L) {
+                needToRemoveTransaction = true;
+                LogUtil.println("removed seed transaction with previous-hash height of " +
+                        transaction.getPreviousHashHeight());
             }
         }
-    }
 
-    private static void enforceCycleTransactionRules(List<Transaction> dedupedTransactions, int blockchainVersion) {
+        return !needToRemoveTransaction;
+    }
 
-        // If the blockchain is earlier than version 1, remove all cycle transactions.
-        if (blockchainVersion < 1) {
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                if (dedupedTransactions.get(i).getType() == Transaction.typeCycle) {
-                    dedupedTransactions.remove(i);
-                    LogUtil.println("removed cycle transaction due to blockchain version less than 1");
-                }
+    // Returns the reason that a transaction violates the rules for cycle and cycle-signature transactions, or null if
+    // the transaction does not violate the rules. The current cycle is only needed for cycle transactions in blockchain
+    // version 1.
+    private static String cycleTransactionRuleViolation(Transaction transaction, int blockchainVersion,
+                                                        Set<ByteBuffer> currentCycle) {
+
+        String reason = null;
+        byte type = transaction.getType();
+        if (type == Transaction.typeCycle) {
+            if (blockchainVersion < 1) {
+                // If the blockchain is earlier than version 1, remove all cycle transactions.
+                reason = "removed cycle transaction due to blockchain version less than 1";
+            } else if (!BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(transaction.getSenderIdentifier()))) {
+                // For blockchain version 1 and later, only allow cycle transactions from in-cycle verifiers.
+                reason = "removed cycle transaction from out-of-cycle verifier";
+            } else if (transaction.getAmount() > Transaction.maximumCycleTransactionAmount) {
+                // Remove any cycle transactions over ∩100,000.
+                reason = "removed cycle transaction over ∩100,000: " + PrintUtil.printAmount(transaction.getAmount());
+            } else if (blockchainVersion == 1) {
+                reason = cycleSignatureViolation(transaction, currentCycle);
+            } else if (transaction.getCycleSignatures().size() > 0) {
+                // For versions other than 1, remove all cycle transactions with bundled signatures.
+                reason = "removed cycle transaction with bundled signatures due to blockchain version not equal to 1";
             }
-        } else {
-            // For blockchain version 1 and later, only allow cycle transactions from in-cycle verifiers.
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                Transaction transaction = dedupedTransactions.get(i);
-                if (transaction.getType() == Transaction.typeCycle &&
-                        !BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(transaction.getSenderIdentifier()))) {
-                    dedupedTransactions.remove(i);
-                    LogUtil.println("removed cycle transaction from out-of-cycle verifier");
-                }
+        } else if (type == Transaction.typeCycleSignature) {
+            if (blockchainVersion < 2) {
+                // If the blockchain is earlier than version 2, remove all cycle-signature transactions.
+                reason = "removed cycle-signature transaction due to blockchain version less than 2";
+            } else if (!BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(transaction.getSenderIdentifier()))) {
+                // For blockchain version 2 and later, only allow cycle-signature transactions from in-cycle
+                // verifiers.
+                reason = "removed cycle-signature transaction from out-of-cycle verifier";
             }
         }
 
-        // If the blockchain is earlier than version 2, remove all cycle-signature transactions.
-        if (blockchainVersion < 2) {
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                int type = dedupedTransactions.get(i).getType();
-                if (type == Transaction.typeCycleSignature) {
-                    dedupedTransactions.remove(i);
-                    LogUtil.println("removed cycle-signature transaction due to blockchain version less than 2");
-                }
-            }
-        } else {
-            // For blockchain version 2 and later, only allow cycle-signature transactions from in-cycle verifiers.
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                Transaction transaction = dedupedTransactions.get(i);
-                if (transaction.getType() == Transaction.typeCycleSignature &&
-                        !BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(transaction.getSenderIdentifier()))) {
-                    dedupedTransactions.remove(i);
-                    LogUtil.println("removed cycle-signature transaction from out-of-cycle verifier");
-                }
-            }
-        }
+        return reason;
+    }
 
-        // Remove any cycle transactions over ∩100,000.
-        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-            Transaction transaction = dedupedTransactions.get(i);
-            if (transaction.getType() == Transaction.typeCycle &&
-                    transaction.getAmount() > Transaction.maximumCycleTransactionAmount) {
-                dedupedTransactions.remove(i);
-                LogUtil.println("removed cycle transaction over ∩100,000: " +
-                        PrintUtil.printAmount(transaction.getAmount()));
-            }
-        }
+    private static String cycleSignatureViolation(Transaction transaction, Set<ByteBuffer> currentCycle) {
 
         // For version 1, remove any cycle transactions with insufficient signatures, duplicate signatures, out-of-cycle
-        // signatures, or invalid signatures.
-        if (blockchainVersion == 1) {
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                Transaction transaction = dedupedTransactions.get(i);
-                if (transaction.getType() == Transaction.typeCycle) {
-                    // To make this calculation invulnerable to manipulations from a single verifier attempting to
-                    // submit multiple signatures, we count the number of verifiers in the current cycle for which a
-                    // valid signature is not present.
-                    Set<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleSet();
-                    int cycleLength = currentCycle.size();
-                    int missingThreshold = cycleLength / 4;
-
-                    // Make a new set of all verifier identifiers in the current cycle. Then, remove all identifiers for
-                    // which a valid signature is found.
-                    Set<ByteBuffer> signaturesMissing = new HashSet<>(currentCycle);
-                    boolean transactionIsValid = true;
-                    if (currentCycle.contains(ByteBuffer.wrap((transaction.getSenderIdentifier())))) {
-                        signaturesMissing.remove(ByteBuffer.wrap(transaction.getSenderIdentifier()));
-                        Map<ByteBuffer, byte[]> cycleSignatures = transaction.getCycleSignatures();
-                        for (ByteBuffer identifier : cycleSignatures.keySet()) {
-                            if (signaturesMissing.contains(identifier)) {
-                                if (transaction.signatureIsValid(identifier.array(), cycleSignatures.get(identifier))) {
-                                    signaturesMissing.remove(identifier);
-                                } else {
-                                    // A signature is invalid. This makes the entire transaction invalid.
-                                    transactionIsValid = false;
-                                }
-                            } else {
-                                // A verifier was included twice in the signature list, the initiator was included in
-                                // the signature list, or an out-of-cycle verifier was included in the signature list.
-                                // This makes the entire transaction invalid.
-                                transactionIsValid = false;
-                            }
-                        }
+        // signatures, or invalid signatures. To make this calculation invulnerable to manipulations from a single
+        // verifier attempting to submit multiple signatures, we count the number of verifiers in the current cycle for
+        // which a valid signature is not present.
+        int cycleLength = currentCycle.size();
+        int missingThreshold = cycleLength / 4;
+
+        // Make a new set of all verifier identifiers in the current cycle. Then, remove all identifiers for which a
+        // valid signature is found.
+        Set<ByteBuffer> signaturesMissing = new HashSet<>(currentCycle);
+        boolean transactionIsValid = true;
+        if (currentCycle.contains(ByteBuffer.wrap((transaction.getSenderIdentifier())))) {
+            signaturesMissing.remove(ByteBuffer.wrap(transaction.getSenderIdentifier()));
+            Map<ByteBuffer, byte[]> cycleSignatures = transaction.getCycleSignatures();
+            for (ByteBuffer identifier : cycleSignatures.keySet()) {
+                if (signaturesMissing.contains(identifier)) {
+                    if (transaction.signatureIsValid(identifier.array(), cycleSignatures.get(identifier))) {
+                        signaturesMissing.remove(identifier);
                     } else {
-                        // The initiator of the transaction is not in the cycle. This makes the transaction invalid.
+                        // A signature is invalid. This makes the entire transaction invalid.
                         transactionIsValid = false;
                     }
-
-                    // If the transaction is invalid or the number of signatures missing exceeds the threshold, remove the
-                    // transaction.
-                    if (!transactionIsValid || signaturesMissing.size() > missingThreshold) {
-                        dedupedTransactions.remove(i);
-                        LogUtil.println("removed cycle transaction because " + signaturesMissing.size() +
-                                " signatures were missing with a threshold of " + missingThreshold + ", cycle length=" +
-                                cycleLength + ", or because transaction was invalid (valid=" + transactionIsValid + ")");
-                    }
+                } else {
+                    // A verifier was included twice in the signature list, the initiator was included in the
+                    // signature list, or an out-of-cycle verifier was included in the signature list. This makes the
+                    // entire transaction invalid.
+                    transactionIsValid = false;
                 }
             }
         } else {
-            // For versions other than 1, remove all cycle transactions with bundled signatures.
-            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                int type = dedupedTransactions.get(i).getType();
-                if (type == Transaction.typeCycle && dedupedTransactions.get(i).getCycleSignatures().size() > 0) {
-                    dedupedTransactions.remove(i);
-                    LogUtil.println("removed cycle transaction with bundled signatures due to blockchain version not " +
-                            "equal to 1");
-                }
-            }
+            // The initiator of the transaction is not in the cycle. This makes the transaction invalid.
+            transactionIsValid = false;
+        }
+
+        // If the transaction is invalid or the number of signatures missing exceeds the threshold, remove the
+        // transaction.
+        String reason = null;
+        if (!transactionIsValid || signaturesMissing.size() > missingThreshold) {
+            reason = "removed cycle transaction because " + signaturesMissing.size() + " signatures were missing " +
+                    "with a threshold of " + missingThreshold + ", cycle length=" + cycleLength + ", or because " +
+                    "transaction was invalid (valid=" + transactionIsValid + ")";
         }
+
+        return reason;
     }
 
-    private static void enforceLockingRules(List<Transaction> dedupedTransactions, int blockchainVersion,
-                                            long unlockThreshold, long unlockTransferSum) {
+    private static boolean lockedTransactionsExceedThreshold(List<Transaction> transactions, int blockchainVersion,
+                                                             long unlockThreshold, long unlockTransferSum) {
 
-        // Only enforce the locking rules for versions 1 and greater.
+        // Only enforce the locking rules for versions 1 and greater. If the sum of transactions from locked accounts
+        // is greater than the available threshold, all transactions subject to locking are removed.
+        boolean exceedsThreshold = false;
         if (blockchainVersion >= 1) {
-
-            // Determine the sum of transactions from locked accounts.
             long transactionSumFromLockedAccounts = 0L;
-            for (Transaction transaction : dedupedTransactions) {
+            for (Transaction transaction : transactions) {
                 if (LockedAccountManager.isSubjectToLock(transaction)) {
                     transactionSumFromLockedAccounts += transaction.getAmount();
                 }
             }
 
-            // If the sum is greater than the available threshold, remove all transactions subject to locking.
             long availableTransferAmount = unlockThreshold - unlockTransferSum;
-            if (transactionSumFromLockedAccounts > availableTransferAmount) {
-                for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
-                    if (LockedAccountManager.isSubjectToLock(dedupedTransactions.get(i))) {
-                        dedupedTransactions.remove(i);
-                    }
-                }
-            }
+            exceedsThreshold = transactionSumFromLockedAccounts > availableTransferAmount;
         }
+
+        return exceedsThreshold;
     }
 }
@@ -1,15 +1,46 @@
 package co.nyzo.verifier;
 
+import co.nyzo.verifier.util.IpUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.ThreadUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlacklistManager {
 
     private static final long blacklistDuration = 1000L * 60L * 10L;  // ten minutes
-    private static final Map<ByteBuffer, Long> blacklistedAddresses = new HashMap<>();
+    private static final long wheelTickDuration = 1000L * 5L;  // five seconds
+    private static final ExpiringAddressSet blacklistedAddresses = new ExpiringAddressSet(blacklistDuration,
+            wheelTickDuration);
+
+    // When enabled, blacklisted addresses are also dropped by the firewall. Firewall changes are queued and applied in
+    // batches by a single background thread, so the threads that add to the blacklist never wait for a process.
+    private static final boolean firewallEnabled = PreferencesUtil.getBoolean("blacklist_firewall_enabled", false);
+    private static final long firewallBatchInterval = PreferencesUtil.getLong("blacklist_firewall_batch_interval",
+            1000L);
+    private static final ConcurrentLinkedQueue<String> firewallRuleQueue = new ConcurrentLinkedQueue<>();
+    private static final Set<String> firewalledAddresses = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean firewallThreadStarted = new AtomicBoolean(false);
+
+    private static final AtomicLong numberOfAdditions = new AtomicLong(0L);
+    private static final AtomicLong numberOfExpirations = new AtomicLong(0L);
+    private static final AtomicLong numberOfCycleRemovals = new AtomicLong(0L);
+    private static final AtomicLong numberOfFirewallBatches = new AtomicLong(0L);
+    private static final AtomicLong numberOfFirewallRules = new AtomicLong(0L);
+    private static final AtomicLong totalFirewallNanoseconds = new AtomicLong(0L);
+    private static final AtomicLong maximumFirewallNanoseconds = new AtomicLong(0L);
 
     public static void addToBlacklist(byte[] ipAddress) {
 
@@ -17,15 +48,15 @@ public class BlacklistManager {
                 !BlockManager.inGenesisCycle()) {
 
             ByteBuffer addressBuffer = ByteBuffer.wrap(ipAddress);
-            if (!blacklistedAddresses.containsKey(addressBuffer)) {
-                blacklistedAddresses.put(addressBuffer, System.currentTimeMillis());
+            if (blacklistedAddresses.add(addressBuffer, System.currentTimeMillis())) {
+                numberOfAdditions.incrementAndGet();
+                enqueueFirewallRule("-I", addressBuffer);
             }
         }
     }
 
     public static boolean inBlacklist(ByteBuffer ipAddress) {
-        long timestamp = blacklistedAddresses.getOrDefault(ipAddress, 0L);
-        return System.currentTimeMillis() < timestamp + blacklistDuration;
+        return blacklistedAddresses.contains(ipAddress, System.currentTimeMillis());
     }
 
     public static boolean inBlacklist(byte[] ipAddress) {
@@ -38,23 +69,101 @@ public class BlacklistManager {
 
     public static void performMaintenance() {
 
-        // Remove addresses of any nodes in the current cycle.
-        for (Node node : NodeManager.getMesh()) {
-            if (BlockManager.verifierInOrNearCurrentCycle(ByteBuffer.wrap(node.getIdentifier()))) {
-                ByteBuffer ipAddress = ByteBuffer.wrap(node.getIpAddress());
-                blacklistedAddresses.remove(ipAddress);
+        // Remove addresses of any nodes in or near the current cycle. The blacklist is typically much smaller than the
+        // mesh, so the blacklist is scanned, not the mesh.
+        for (ByteBuffer ipAddress : blacklistedAddresses.getAddresses()) {
+            byte[] identifier = NodeManager.identifierForIpAddress(ipAddress.array());
+            if (identifier != null && BlockManager.verifierInOrNearCurrentCycle(ByteBuffer.wrap(identifier)) &&
+                    blacklistedAddresses.remove(ipAddress)) {
+                numberOfCycleRemovals.incrementAndGet();
+                enqueueFirewallRule("-D", ipAddress);
             }
         }
 
         // Remove addresses that have expired.
-        for (ByteBuffer address : new HashSet<>(blacklistedAddresses.keySet())) {
-            if (System.currentTimeMillis() - blacklistedAddresses.getOrDefault(address, 0L) > blacklistDuration) {
-                blacklistedAddresses.remove(address);
+        for (ByteBuffer ipAddress : blacklistedAddresses.expire(System.currentTimeMillis())) {
+            numberOfExpirations.incrementAndGet();
+            enqueueFirewallRule("-D", ipAddress);
+        }
+    }
+
+    public static List<String> getStatusLines() {
+
+        long batches = numberOfFirewallBatches.get();
+        List<String> lines = new ArrayList<>();
+        lines.add("blacklist additions: " + numberOfAdditions.get());
+        lines.add("blacklist expirations: " + numberOfExpirations.get());
+        lines.add("blacklist cycle removals: " + numberOfCycleRemovals.get());
+        lines.add("firewall enabled: " + firewallEnabled);
+        lines.add("firewall batches: " + batches + ", rules: " + numberOfFirewallRules.get() + ", queued: " +
+                firewallRuleQueue.size());
+        lines.add(String.format("firewall latency: average %.1f ms, maximum %.1f ms",
+                batches == 0 ? 0.0 : totalFirewallNanoseconds.get() / 1000000.0 / batches,
+                maximumFirewallNanoseconds.get() / 1000000.0));
+
+        return lines;
+    }
+
+    private static void enqueueFirewallRule(String action, ByteBuffer ipAddress) {
+
+        if (firewallEnabled) {
+            firewallRuleQueue.offer(action + " " + IpUtil.addressAsString(ipAddress.array()));
+            if (firewallThreadStarted.compareAndSet(false, true)) {
+                startFirewallThread();
+            }
+        }
+    }
+
+    private static void startFirewallThread() {
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!UpdateUtil.shouldTerminate()) {
+                    try {
+                        ThreadUtil.sleep(firewallBatchInterval);
+                        applyFirewallRules();
+                    } catch (Exception e) {
+                        System.out.println("exception in BlacklistManager firewall loop: " +
+                                PrintUtil.printException(e));
+                    }
+                }
             }
+        }).start();
+    }
+
+    private static void applyFirewallRules() {
+
+        // Build a single iptables-restore input for all queued rules. Rules are only deleted if they were inserted,
+        // because deleting a rule that does not exist causes the entire batch to fail.
+        StringBuilder input = new StringBuilder("*filter\n");
+        int numberOfRules = 0;
+        String rule;
+        while ((rule = firewallRuleQueue.poll()) != null) {
+            String[] split = rule.split(" ");
+            String action = split[0];
+            String address = split[1];
+            if ((action.equals("-I") && firewalledAddresses.add(address)) ||
+                    (action.equals("-D") && firewalledAddresses.remove(address))) {
+                input.append(action).append(" INPUT -s ").append(address).append(" -j DROP\n");
+                numberOfRules++;
+            }
+        }
+        input.append("COMMIT\n");
+
+        if (numberOfRules > 0) {
+            long startNanoseconds = System.nanoTime();
+            runProcess(input.toString(), "sudo", "iptables-restore", "--noflush");
+            long elapsedNanoseconds = System.nanoTime() - startNanoseconds;
+
+            numberOfFirewallBatches.incrementAndGet();
+            numberOfFirewallRules.addAndGet(numberOfRules);
+            totalFirewallNanoseconds.addAndGet(elapsedNanoseconds);
+            maximumFirewallNanoseconds.accumulateAndGet(elapsedNanoseconds, Math::max);
         }
     }
 
-    private static void runProcess(String... args) {
+    private static void runProcess(String input, String... args) {
 
         try {
             ProcessBuilder processBuilder = new ProcessBuilder(args);
@@ -62,10 +171,12 @@ public class BlacklistManager {
             readStream(process.getInputStream(), System.out);
             readStream(process.getErrorStream(), System.err);
 
-            while (process.isAlive()) {
-                try {
-                    Thread.sleep(50L);
-                } catch (Exception ignored) { }
+            OutputStream outputStream = process.getOutputStream();
+            outputStream.write(input.getBytes(StandardCharsets.UTF_8));
+            outputStream.close();
+
+            if (!process.waitFor(10L, TimeUnit.SECONDS)) {
+                process.destroy();
             }
         } catch (Exception ignored) { }
     }
@@ -1,6 +1,8 @@
 package co.nyzo.verifier;
 
 import co.nyzo.verifier.client.ConsoleColor;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
 import co.nyzo.verifier.util.*;
 
 import java.io.RandomAccessFile;
@@ -29,6 +31,9 @@ public class Block implements MessageObject {
     public static final long minimumVerificationInterval = 1500L;
 
     private static final long approvedCycleTransactionRetentionInterval = 10_000L;
+
+    private static final LatencyHistogram balanceListHistogram = MetricsRegistry.histogram(
+            "nyzo_balance_list_derivation_seconds", "time to derive the balance list for a block");
     private static final long maximumCycleTransactionSumPerInterval = 100_000L * Transaction.micronyzoMultiplierRatio;
 
     // This is used to test the sentinel by applying a timestamp offset to blocks produced by this verifier.
@@ -512,6 +517,24 @@ public class Block implements MessageObject {
                 transactions, balanceListHash, verifierIdentifier, verifierSignature, validateTransactions);
     }
 
+    // Returns the height of the block at the buffer's position without advancing the buffer.
+    public static long heightAtPosition(ByteBuffer buffer) {
+
+        return ShortLong.fromCombinedValue(buffer.getLong(buffer.position())).getLongValue();
+    }
+
+    // Advances the buffer past a block without building it.
+    public static void skip(ByteBuffer buffer) {
+
+        buffer.position(buffer.position() + FieldByteSize.combinedVersionAndHeight + FieldByteSize.hash +
+                FieldByteSize.timestamp * 2);
+        int numberOfTransactions = buffer.getInt();
+        for (int i = 0; i < numberOfTransactions; i++) {
+            Transaction.skip(buffer, false);
+        }
+        buffer.position(buffer.position() + FieldByteSize.hash + FieldByteSize.identifier + FieldByteSize.signature);
+    }
+
     public static Block fromFile(RandomAccessFile file) {
 
         Block block = null;
@@ -547,6 +570,7 @@ public class Block implements MessageObject {
                                                       List<Transaction> transactions, byte[] verifierIdentifier,
                                                       int blockchainVersion) {
 
+        long startNanoseconds = System.nanoTime();
         BalanceList result = null;
         try {
             // Only continue if the necessary data is available. For all blocks other than the Genesis block, the
@@ -728,6 +752,10 @@ public class Block implements MessageObject {
             System.out.println(PrintUtil.printException(e));
         }
 
+        long nanoseconds = System.nanoTime() - startNanoseconds;
+        balanceListHistogram.record(nanoseconds);
+        ConsensusTimeline.recordBalanceListDerivation(previousBlock == null ? 0L : previousBlock.getBlockHeight() + 1L,
+                nanoseconds);
         return result;
     }
 
@@ -0,0 +1,464 @@
+package co.nyzo.verifier;
+
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class BlockFileArchiver {
+
+    // An archive file is a compressed form of a consolidated file. Each block and each balance list is compressed as a
+    // separate frame, and a frame index at the start of the file allows a single block to be read and decompressed
+    // without reading the rest of the file. Converting an archive back to a consolidated file produces the original
+    // file exactly.
+    //
+    // Frames are compressed independently, so they cannot refer to one another. Instead, each archive has a
+    // dictionary that primes the compressor with the fields that repeat between frames of the file: the identifiers of
+    // verifiers, senders, and receivers that appear in more than one block, and the layout of a typical block.
+    //
+    // The archive layout is:
+    // - magic number (int) and format version (byte)
+    // - dictionary length (int) and dictionary bytes
+    // - number of blocks (int)
+    // - for each block: height (long), then offset, compressed length, and length (ints) of the block frame and of the
+    //   balance-list frame; the balance-list offset is -1 for blocks that are not followed by a balance list
+    // - frames
+
+    private static final int magicNumber = 0x4e5a4241;  // "NZBA"
+    private static final byte formatVersion = 0;
+    private static final int indexEntrySize = FieldByteSize.blockHeight + FieldByteSize.unnamedInteger * 6;
+    private static final int maximumDictionaryLength = 32768;  // the Deflate window size
+    private static final int maximumCachedIndexes = 16;
+
+    private static final Map<String, ArchiveIndex> indexCache = new LinkedHashMap<String, ArchiveIndex>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ArchiveIndex> eldest) {
+            return size() > maximumCachedIndexes;
+        }
+    };
+
+    public static File archiveFileForBlockHeight(long blockHeight) {
+
+        File consolidatedFile = BlockManager.consolidatedFileForBlockHeight(blockHeight);
+        return archiveFileForConsolidatedFile(consolidatedFile);
+    }
+
+    public static File archiveFileForConsolidatedFile(File consolidatedFile) {
+
+        return new File(consolidatedFile.getParentFile(), consolidatedFile.getName().replace(".nyzoblock",
+                ".nyzoblockz"));
+    }
+
+    // Writes the archive for a consolidated file. The consolidated file is not modified.
+    public static boolean archive(File consolidatedFile, File archiveFile) {
+
+        boolean successful;
+        try {
+            byte[] archiveBytes = archiveBytes(Files.readAllBytes(Paths.get(consolidatedFile.getAbsolutePath())));
+            successful = writeFile(archiveBytes, archiveFile);
+        } catch (Exception e) {
+            LogUtil.println("unable to archive " + consolidatedFile + ": " + PrintUtil.printException(e));
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    // Writes the consolidated file for an archive. The archive is not modified.
+    public static boolean restore(File archiveFile, File consolidatedFile) {
+
+        boolean successful;
+        try {
+            successful = writeFile(consolidatedFileBytes(archiveFile), consolidatedFile);
+        } catch (Exception e) {
+            LogUtil.println("unable to restore " + archiveFile + ": " + PrintUtil.printException(e));
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    public static byte[] archiveBytes(byte[] consolidatedFileBytes) {
+
+        // Find the frames of the consolidated file. Blocks are parsed only to find their boundaries and fields; the
+        // frames contain the original bytes.
+        ByteBuffer buffer = ByteBuffer.wrap(consolidatedFileBytes);
+        int numberOfBlocks = buffer.getShort();
+        List<Block> blocks = new ArrayList<>();
+        int[] frameBoundaries = new int[numberOfBlocks * 3];
+        Block previousBlock = null;
+        for (int i = 0; i < numberOfBlocks; i++) {
+            frameBoundaries[i * 3] = buffer.position();
+            Block block = Block.fromByteBuffer(buffer, false);
+            frameBoundaries[i * 3 + 1] = buffer.position();
+            if (previousBlock != null && previousBlock.getBlockHeight() >= block.getBlockHeight()) {
+                throw new IllegalArgumentException("blocks are not in ascending order at height " +
+                        block.getBlockHeight());
+            }
+            if (previousBlock == null || (previousBlock.getBlockHeight() != block.getBlockHeight() - 1)) {
+                BalanceList.fromByteBuffer(buffer);
+            }
+            frameBoundaries[i * 3 + 2] = buffer.position();
+
+            blocks.add(block);
+            previousBlock = block;
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("unexpected " + buffer.remaining() + " bytes after last block");
+        }
+
+        // Compress the frames.
+        byte[] dictionary = dictionary(blocks, consolidatedFileBytes, frameBoundaries);
+        List<byte[]> frames = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for (int i = 0; i < numberOfBlocks; i++) {
+                frames.add(compress(deflater, dictionary, consolidatedFileBytes, frameBoundaries[i * 3],
+                        frameBoundaries[i * 3 + 1]));
+                frames.add(frameBoundaries[i * 3 + 2] == frameBoundaries[i * 3 + 1] ? null :
+                        compress(deflater, dictionary, consolidatedFileBytes, frameBoundaries[i * 3 + 1],
+                                frameBoundaries[i * 3 + 2]));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        // Assemble the archive.
+        int headerSize = FieldByteSize.unnamedInteger + 1 + FieldByteSize.unnamedInteger + dictionary.length +
+                FieldByteSize.unnamedInteger + numberOfBlocks * indexEntrySize;
+        int archiveSize = headerSize;
+        for (byte[] frame : frames) {
+            archiveSize += frame == null ? 0 : frame.length;
+        }
+        byte[] archiveBytes = new byte[archiveSize];
+        ByteBuffer archiveBuffer = ByteBuffer.wrap(archiveBytes);
+        archiveBuffer.putInt(magicNumber);
+        archiveBuffer.put(formatVersion);
+        archiveBuffer.putInt(dictionary.length);
+        archiveBuffer.put(dictionary);
+        archiveBuffer.putInt(numberOfBlocks);
+        int frameOffset = headerSize;
+        for (int i = 0; i < numberOfBlocks; i++) {
+            archiveBuffer.putLong(blocks.get(i).getBlockHeight());
+            for (int j = 0; j < 2; j++) {
+                byte[] frame = frames.get(i * 2 + j);
+                archiveBuffer.putInt(frame == null ? -1 : frameOffset);
+                archiveBuffer.putInt(frame == null ? 0 : frame.length);
+                archiveBuffer.putInt(frameBoundaries[i * 3 + j + 1] - frameBoundaries[i * 3 + j]);
+                frameOffset += frame == null ? 0 : frame.length;
+            }
+        }
+        for (byte[] frame : frames) {
+            if (frame != null) {
+                archiveBuffer.put(frame);
+            }
+        }
+
+        return archiveBytes;
+    }
+
+    public static byte[] consolidatedFileBytes(File archiveFile) throws Exception {
+
+        byte[] archiveBytes = Files.readAllBytes(Paths.get(archiveFile.getAbsolutePath()));
+        ArchiveIndex index = ArchiveIndex.fromByteBuffer(ByteBuffer.wrap(archiveBytes));
+
+        int consolidatedSize = FieldByteSize.unnamedShort;
+        for (int i = 0; i < index.heights.length; i++) {
+            consolidatedSize += index.blockLengths[i] + index.balanceListLengths[i];
+        }
+
+        byte[] consolidatedBytes = new byte[consolidatedSize];
+        ByteBuffer buffer = ByteBuffer.wrap(consolidatedBytes);
+        buffer.putShort((short) index.heights.length);
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = 0; i < index.heights.length; i++) {
+                decompress(inflater, index.dictionary, archiveBytes, index.blockOffsets[i],
+                        index.blockCompressedLengths[i], consolidatedBytes, buffer.position(), index.blockLengths[i]);
+                buffer.position(buffer.position() + index.blockLengths[i]);
+                if (index.balanceListOffsets[i] >= 0) {
+                    decompress(inflater, index.dictionary, archiveBytes, index.balanceListOffsets[i],
+                            index.balanceListCompressedLengths[i], consolidatedBytes, buffer.position(),
+                            index.balanceListLengths[i]);
+                    buffer.position(buffer.position() + index.balanceListLengths[i]);
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return consolidatedBytes;
+    }
+
+    // Reads and decompresses only the frame of the requested block. The index of the archive is cached, so repeated
+    // reads from the same archive read only the frame.
+    public static Block blockForHeight(File archiveFile, long height) {
+
+        Block block = null;
+        byte[] blockBytes = blockBytesForHeight(archiveFile, height);
+        if (blockBytes != null) {
+            try {
+                block = Block.fromByteBuffer(ByteBuffer.wrap(blockBytes), false);
+            } catch (Exception ignored) { }
+        }
+
+        return block;
+    }
+
+    // Returns the serialized bytes of the block at the specified height, or null if the archive does not contain the
+    // block.
+    public static byte[] blockBytesForHeight(File archiveFile, long height) {
+
+        byte[] blockBytes = null;
+        if (archiveFile.exists()) {
+            try (RandomAccessFile reader = new RandomAccessFile(archiveFile, "r")) {
+                ArchiveIndex index = indexForFile(archiveFile, reader);
+                int position = Arrays.binarySearch(index.heights, height);
+                if (position >= 0) {
+                    byte[] frame = new byte[index.blockCompressedLengths[position]];
+                    reader.seek(index.blockOffsets[position]);
+                    reader.readFully(frame);
+
+                    byte[] bytes = new byte[index.blockLengths[position]];
+                    Inflater inflater = new Inflater();
+                    try {
+                        decompress(inflater, index.dictionary, frame, 0, frame.length, bytes, 0, bytes.length);
+                    } finally {
+                        inflater.end();
+                    }
+                    blockBytes = bytes;
+                }
+            } catch (Exception ignored) { }
+        }
+
+        return blockBytes;
+    }
+
+    private static ArchiveIndex indexForFile(File archiveFile, RandomAccessFile reader) throws Exception {
+
+        // The cache key includes the modification time and length, so a rewritten archive is not read with a stale
+        // index.
+        String key = archiveFile.getAbsolutePath() + ":" + archiveFile.lastModified() + ":" + archiveFile.length();
+        ArchiveIndex index;
+        synchronized (indexCache) {
+            index = indexCache.get(key);
+        }
+
+        if (index == null) {
+            reader.seek(0L);
+            byte[] fixedHeader = new byte[FieldByteSize.unnamedInteger * 2 + 1];
+            reader.readFully(fixedHeader);
+            int dictionaryLength = ByteBuffer.wrap(fixedHeader).getInt(FieldByteSize.unnamedInteger + 1);
+            if (dictionaryLength < 0 || dictionaryLength > maximumDictionaryLength) {
+                throw new IllegalArgumentException("invalid dictionary length: " + dictionaryLength);
+            }
+
+            byte[] dictionaryAndCount = new byte[dictionaryLength + FieldByteSize.unnamedInteger];
+            reader.readFully(dictionaryAndCount);
+            int numberOfBlocks = ByteBuffer.wrap(dictionaryAndCount).getInt(dictionaryLength);
+            if (numberOfBlocks < 0 || numberOfBlocks > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid number of blocks: " + numberOfBlocks);
+            }
+
+            byte[] headerBytes = new byte[fixedHeader.length + dictionaryAndCount.length +
+                    numberOfBlocks * indexEntrySize];
+            System.arraycopy(fixedHeader, 0, headerBytes, 0, fixedHeader.length);
+            System.arraycopy(dictionaryAndCount, 0, headerBytes, fixedHeader.length, dictionaryAndCount.length);
+            reader.readFully(headerBytes, fixedHeader.length + dictionaryAndCount.length,
+                    numberOfBlocks * indexEntrySize);
+            index = ArchiveIndex.fromByteBuffer(ByteBuffer.wrap(headerBytes));
+
+            synchronized (indexCache) {
+                indexCache.put(key, index);
+            }
+        }
+
+        return index;
+    }
+
+    private static byte[] dictionary(List<Block> blocks, byte[] consolidatedFileBytes, int[] frameBoundaries) {
+
+        // Count the identifiers in the blocks. Each identifier is counted once per block.
+        Map<ByteBuffer, Integer> identifierCounts = new HashMap<>();
+        for (Block block : blocks) {
+            Set<ByteBuffer> blockIdentifiers = new HashSet<>();
+            blockIdentifiers.add(ByteBuffer.wrap(block.getVerifierIdentifier()));
+            for (Transaction transaction : block.getTransactions()) {
+                blockIdentifiers.add(ByteBuffer.wrap(transaction.getSenderIdentifier()));
+                if (transaction.getReceiverIdentifier() != null) {
+                    blockIdentifiers.add(ByteBuffer.wrap(transaction.getReceiverIdentifier()));
+                }
+            }
+            for (ByteBuffer identifier : blockIdentifiers) {
+                identifierCounts.put(identifier, identifierCounts.getOrDefault(identifier, 0) + 1);
+            }
+        }
+
+        // Identifiers that appear in more than one block are included, the most frequent last. Deflate encodes nearer
+        // matches with fewer bits, and the end of the dictionary is nearest to the frame.
+        List<Map.Entry<ByteBuffer, Integer>> repeatedIdentifiers = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, Integer> entry : identifierCounts.entrySet()) {
+            if (entry.getValue() > 1) {
+                repeatedIdentifiers.add(entry);
+            }
+        }
+        repeatedIdentifiers.sort(new Comparator<Map.Entry<ByteBuffer, Integer>>() {
+            @Override
+            public int compare(Map.Entry<ByteBuffer, Integer> entry1, Map.Entry<ByteBuffer, Integer> entry2) {
+                return Integer.compare(entry1.getValue(), entry2.getValue());
+            }
+        });
+        int numberOfIdentifiers = Math.min(repeatedIdentifiers.size(), maximumDictionaryLength /
+                FieldByteSize.identifier / 2);
+        repeatedIdentifiers = repeatedIdentifiers.subList(repeatedIdentifiers.size() - numberOfIdentifiers,
+                repeatedIdentifiers.size());
+
+        // The first block frame, truncated to the remaining space, provides the layout and the common high-order bytes
+        // of the timestamps and other fields.
+        int templateLength = blocks.isEmpty() ? 0 : Math.min(frameBoundaries[1] - frameBoundaries[0],
+                maximumDictionaryLength - numberOfIdentifiers * FieldByteSize.identifier);
+        byte[] dictionary = new byte[templateLength + numberOfIdentifiers * FieldByteSize.identifier];
+        ByteBuffer dictionaryBuffer = ByteBuffer.wrap(dictionary);
+        dictionaryBuffer.put(consolidatedFileBytes, blocks.isEmpty() ? 0 : frameBoundaries[0], templateLength);
+        for (Map.Entry<ByteBuffer, Integer> entry : repeatedIdentifiers) {
+            dictionaryBuffer.put(entry.getKey().array());
+        }
+
+        return dictionary;
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] dictionary, byte[] source, int start, int end) {
+
+        deflater.reset();
+        if (dictionary.length > 0) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(source, start, end - start);
+        deflater.finish();
+
+        byte[] output = new byte[end - start + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+
+        return Arrays.copyOf(output, length);
+    }
+
+    private static void decompress(Inflater inflater, byte[] dictionary, byte[] source, int offset, int length,
+                                   byte[] destination, int destinationOffset, int destinationLength)
+            throws DataFormatException {
+
+        // The loop continues until the end of the stream, past the end of the output, so the checksum at the end of
+        // the stream is always verified.
+        inflater.reset();
+        inflater.setInput(source, offset, length);
+        int position = destinationOffset;
+        int end = destinationOffset + destinationLength;
+        byte[] excess = new byte[1];
+        while (!inflater.finished()) {
+            int count = position < end ? inflater.inflate(destination, position, end - position) :
+                    inflater.inflate(excess);
+            if (count == 0) {
+                if (inflater.needsDictionary()) {
+                    inflater.setDictionary(dictionary);
+                } else if (inflater.needsInput()) {
+                    throw new DataFormatException("truncated frame");
+                }
+            } else if (position == end) {
+                throw new DataFormatException("frame is longer than expected length " + destinationLength);
+            }
+            position += count;
+        }
+
+        if (position != end) {
+            throw new DataFormatException("frame length mismatch: expected " + destinationLength + ", got " +
+                    (position - destinationOffset));
+        }
+    }
+
+    private static boolean writeFile(byte[] bytes, File file) {
+
+        // Write to a temporary file and move it into place, so a partial file is never visible.
+        boolean successful;
+        File temporaryFile = new File(file.getAbsolutePath() + "_temp");
+        try {
+            file.getParentFile().mkdirs();
+            Files.write(Paths.get(temporaryFile.getAbsolutePath()), bytes);
+            Path path = Paths.get(file.getAbsolutePath());
+            Files.move(Paths.get(temporaryFile.getAbsolutePath()), path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            successful = true;
+        } catch (Exception e) {
+            LogUtil.println("unable to write " + file + ": " + PrintUtil.printException(e));
+            temporaryFile.delete();
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    private static class ArchiveIndex {
+
+        private final byte[] dictionary;
+        private final long[] heights;
+        private final int[] blockOffsets;
+        private final int[] blockCompressedLengths;
+        private final int[] blockLengths;
+        private final int[] balanceListOffsets;
+        private final int[] balanceListCompressedLengths;
+        private final int[] balanceListLengths;
+
+        private ArchiveIndex(byte[] dictionary, int numberOfBlocks) {
+
+            this.dictionary = dictionary;
+            this.heights = new long[numberOfBlocks];
+            this.blockOffsets = new int[numberOfBlocks];
+            this.blockCompressedLengths = new int[numberOfBlocks];
+            this.blockLengths = new int[numberOfBlocks];
+            this.balanceListOffsets = new int[numberOfBlocks];
+            this.balanceListCompressedLengths = new int[numberOfBlocks];
+            this.balanceListLengths = new int[numberOfBlocks];
+        }
+
+        private static ArchiveIndex fromByteBuffer(ByteBuffer buffer) {
+
+            if (buffer.getInt() != magicNumber) {
+                throw new IllegalArgumentException("not a block archive");
+            }
+            byte version = buffer.get();
+            if (version != formatVersion) {
+                throw new IllegalArgumentException("unsupported block archive version: " + version);
+            }
+
+            byte[] dictionary = new byte[buffer.getInt()];
+            buffer.get(dictionary);
+            ArchiveIndex index = new ArchiveIndex(dictionary, buffer.getInt());
+            for (int i = 0; i < index.heights.length; i++) {
+                index.heights[i] = buffer.getLong();
+                index.blockOffsets[i] = buffer.getInt();
+                index.blockCompressedLengths[i] = buffer.getInt();
+                index.blockLengths[i] = buffer.getInt();
+                index.balanceListOffsets[i] = buffer.getInt();
+                index.balanceListCompressedLengths[i] = buffer.getInt();
+                index.balanceListLengths[i] = buffer.getInt();
+            }
+
+            return index;
+        }
+    }
+}
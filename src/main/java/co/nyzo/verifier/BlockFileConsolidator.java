@@ -18,6 +18,11 @@ public class BlockFileConsolidator {
     private static final String runOptionValueDisable = "disable";
     private static String runOption = PreferencesUtil.get(runOptionKey).toLowerCase();
 
+    // When this preference is set, each consolidated file is replaced with a compressed archive. Blocks remain
+    // available from archives through BlockManager.loadBlocksInFile() and HistoricalBlockManager.blockForHeight().
+    private static final boolean archiveConsolidatedFiles =
+            PreferencesUtil.getBoolean("block_file_consolidator_archive", false);
+
     public static void main(String[] args) {
         // If a command-line argument is specified, it overrides the run option value from the preferences file. This
         // allows behavior such as disabling of the consolidator for the verifier in the preferences file, then running
@@ -149,6 +154,17 @@ public class BlockFileConsolidator {
         // Write the combined file.
         BlockManager.writeBlocksToFile(blocks, balanceLists, consolidatedFile);
 
+        // Replace the consolidated file with an archive, if indicated. Otherwise, delete any archive, as it no longer
+        // reflects the contents of the consolidated file.
+        File archiveFile = BlockFileArchiver.archiveFileForConsolidatedFile(consolidatedFile);
+        if (archiveConsolidatedFiles && consolidatedFile.exists()) {
+            if (BlockFileArchiver.archive(consolidatedFile, archiveFile)) {
+                consolidatedFile.delete();
+            }
+        } else if (consolidatedFile.exists()) {
+            archiveFile.delete();
+        }
+
         LogUtil.println("consolidated " + individualFiles.size() + " files to a single file for start height " +
                 startBlockHeight + " on " + Verifier.getNickname() + "; used " + balanceLists.size() +
                 " balance lists");
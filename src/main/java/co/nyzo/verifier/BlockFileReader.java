@@ -0,0 +1,215 @@
+package co.nyzo.verifier;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BlockFileReader {
+
+    // This class reads blocks from block files through read-only memory maps. Only the blocks in the requested range
+    // are built. Other blocks and balance lists are skipped by walking their lengths, and, when a consolidated file has
+    // an offset file, the reader goes directly to the requested blocks. Each read works on its own view of the map, so
+    // any number of threads may read at the same time.
+    //
+    // Block files are replaced by moving a new file into place, so a map always sees a complete file. A map remains
+    // valid after its file is replaced or deleted, and the cache key includes the modification time and length, so a
+    // replaced file is mapped again.
+
+    private static final int maximumCachedMaps = 16;
+    private static final Map<String, ByteBuffer> mapCache = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ByteBuffer> eldest) {
+            return size() > maximumCachedMaps;
+        }
+    };
+
+    public static List<Block> blocksInFile(File file, long minimumHeight, long maximumHeight) throws Exception {
+
+        return blocksInFile(file, minimumHeight, maximumHeight, null);
+    }
+
+    // If frames is not null, a read-only view of the serialized bytes of each block is added to it, in the same order
+    // as the blocks. For mapped files, these views refer to the map, so they are not copies.
+    public static List<Block> blocksInFile(File file, long minimumHeight, long maximumHeight, List<ByteBuffer> frames)
+            throws Exception {
+
+        List<Block> blocks = new ArrayList<>();
+        read(file, minimumHeight, maximumHeight, blocks, frames);
+
+        return blocks;
+    }
+
+    // Returns read-only views of the serialized bytes of the blocks in the range without building the blocks. The
+    // height of each frame is available from Block.heightAtPosition().
+    public static List<ByteBuffer> framesInFile(File file, long minimumHeight, long maximumHeight) throws Exception {
+
+        List<ByteBuffer> frames = new ArrayList<>();
+        read(file, minimumHeight, maximumHeight, null, frames);
+
+        return frames;
+    }
+
+    private static void read(File file, long minimumHeight, long maximumHeight, List<Block> blocks,
+                             List<ByteBuffer> frames) throws Exception {
+
+        ByteBuffer buffer = mappedBuffer(file);
+        boolean readWithOffsets = false;
+        ByteBuffer offsetBuffer = map(offsetFileForFile(file));
+        if (offsetBuffer != null) {
+            List<Block> offsetBlocks = blocks == null ? null : new ArrayList<Block>();
+            List<ByteBuffer> offsetFrames = frames == null ? null : new ArrayList<ByteBuffer>();
+            readWithOffsets = readUsingOffsets(buffer.duplicate(), offsetBuffer, minimumHeight, maximumHeight,
+                    offsetBlocks, offsetFrames);
+            if (readWithOffsets && blocks != null) {
+                blocks.addAll(offsetBlocks);
+            }
+            if (readWithOffsets && frames != null) {
+                frames.addAll(offsetFrames);
+            }
+        }
+
+        if (!readWithOffsets) {
+            readSequentially(buffer, minimumHeight, maximumHeight, blocks, frames);
+        }
+    }
+
+    private static void readSequentially(ByteBuffer buffer, long minimumHeight, long maximumHeight,
+                                         List<Block> blocks, List<ByteBuffer> frames) {
+
+        int numberOfBlocks = buffer.getShort();
+        long previousHeight = -1L;
+        for (int i = 0; i < numberOfBlocks && previousHeight < maximumHeight; i++) {
+            long height = Block.heightAtPosition(buffer);
+            int startOffset = buffer.position();
+            if (height >= minimumHeight && height <= maximumHeight && blocks != null) {
+                blocks.add(Block.fromByteBuffer(buffer, false));
+            } else {
+                Block.skip(buffer);
+            }
+            if (height >= minimumHeight && height <= maximumHeight && frames != null) {
+                frames.add(frame(buffer, startOffset, buffer.position()));
+            }
+
+            // Skip the balance list, if present.
+            if (i == 0 || previousHeight != height - 1) {
+                BalanceList.skip(buffer);
+            }
+
+            previousHeight = height;
+        }
+    }
+
+    // Returns a view of the file. Consolidated files that have been replaced by archives are restored into memory.
+    public static ByteBuffer mappedBuffer(File file) throws Exception {
+
+        ByteBuffer buffer = map(file);
+        if (buffer == null) {
+            buffer = ByteBuffer.wrap(BlockFileArchiver.consolidatedFileBytes(
+                    BlockFileArchiver.archiveFileForConsolidatedFile(file)));
+        }
+
+        return buffer;
+    }
+
+    // Returns a view of the file, or null if the file does not exist. The attributes are read with a single call, as
+    // this is done for every read.
+    private static ByteBuffer map(File file) throws Exception {
+
+        BasicFileAttributes attributes = null;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (Exception ignored) { }
+
+        ByteBuffer buffer = null;
+        if (attributes != null) {
+            String key = file.getAbsolutePath() + ":" + attributes.lastModifiedTime().toMillis() + ":" +
+                    attributes.size();
+            synchronized (mapCache) {
+                buffer = mapCache.get(key);
+            }
+
+            if (buffer == null) {
+                try (RandomAccessFile reader = new RandomAccessFile(file, "r");
+                     FileChannel channel = reader.getChannel()) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                }
+                synchronized (mapCache) {
+                    mapCache.put(key, buffer);
+                }
+            }
+            buffer = buffer.duplicate();
+        }
+
+        return buffer;
+    }
+
+    public static File offsetFileForFile(File file) {
+
+        return new File(file.getAbsolutePath() + "_offsets");
+    }
+
+    private static boolean readUsingOffsets(ByteBuffer buffer, ByteBuffer offsetBuffer, long minimumHeight,
+                                            long maximumHeight, List<Block> blocks, List<ByteBuffer> frames) {
+
+        // The offset file has a start offset and an end offset for each height of the file, relative to the start
+        // height of the file. If an offset is out of range or a block is not at its expected height, the offset file
+        // is not trusted, and false is returned so the file is read sequentially. Older offset files have zeros rather
+        // than -1 for some absent heights, so a zero end offset also marks an absent block. When blocks are not built,
+        // only the height at the start offset is checked.
+        boolean offsetsValid = buffer.limit() >= FieldByteSize.unnamedShort && buffer.getShort(0) > 0 &&
+                offsetBuffer.limit() == BlockManager.blocksPerFile * FieldByteSize.unnamedInteger * 2;
+        if (offsetsValid) {
+            long firstHeight = ShortLong.fromCombinedValue(buffer.getLong(FieldByteSize.unnamedShort)).getLongValue();
+            long fileStartHeight = firstHeight / BlockManager.blocksPerFile * BlockManager.blocksPerFile;
+            long startHeight = Math.max(minimumHeight, fileStartHeight);
+            long endHeight = Math.min(maximumHeight, fileStartHeight + BlockManager.blocksPerFile - 1);
+            for (long height = startHeight; height <= endHeight && offsetsValid; height++) {
+                int offsetIndex = (int) (height - fileStartHeight) * FieldByteSize.unnamedInteger * 2;
+                int startOffset = offsetBuffer.getInt(offsetIndex);
+                int endOffset = offsetBuffer.getInt(offsetIndex + FieldByteSize.unnamedInteger);
+                if (startOffset >= 0 && endOffset > 0) {
+                    if (startOffset < FieldByteSize.unnamedShort ||
+                            endOffset < startOffset + FieldByteSize.combinedVersionAndHeight ||
+                            endOffset > buffer.limit()) {
+                        offsetsValid = false;
+                    } else {
+                        ByteBuffer frame = frame(buffer, startOffset, endOffset);
+                        if (blocks == null) {
+                            offsetsValid = Block.heightAtPosition(frame) == height;
+                        } else {
+                            Block block = null;
+                            try {
+                                block = Block.fromByteBuffer(frame.duplicate(), false);
+                            } catch (Exception ignored) { }
+                            offsetsValid = block != null && block.getBlockHeight() == height;
+                            if (offsetsValid) {
+                                blocks.add(block);
+                            }
+                        }
+
+                        if (offsetsValid && frames != null) {
+                            frames.add(frame);
+                        }
+                    }
+                }
+            }
+        }
+
+        return offsetsValid;
+    }
+
+    private static ByteBuffer frame(ByteBuffer buffer, int startOffset, int endOffset) {
+
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(endOffset).position(startOffset);
+
+        return frame.slice().asReadOnlyBuffer();
+    }
+}
@@ -1,7 +1,11 @@
 package co.nyzo.verifier;
 
 import co.nyzo.verifier.client.ConsoleColor;
+import co.nyzo.verifier.metrics.Counter;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
 import co.nyzo.verifier.util.*;
+import co.nyzo.verifier.web.ResponseCache;
 
 import java.io.File;
 import java.io.RandomAccessFile;
@@ -23,6 +27,13 @@ public class BlockManager {
     private static Block frozenEdge = null;
     public static final long blocksPerFile = 1000L;
     private static final long filesPerDirectory = 1000L;
+
+    private static final LatencyHistogram fileWriteHistogram = MetricsRegistry.histogram(
+            "nyzo_block_file_write_seconds", "time to write and move a block file");
+    private static final Counter fileWriteFailures = MetricsRegistry.counter("nyzo_block_file_write_failures_total",
+            "block file writes that failed");
+    private static final LatencyHistogram freezeHistogram = MetricsRegistry.histogram("nyzo_block_freeze_seconds",
+            "time to freeze a block, including the write of its individual file");
     private static boolean inGenesisCycle = false;
     private static long currentCycleEndHeight = -2L;
     private static List<ByteBuffer> currentCycleList = new ArrayList<>();
@@ -132,30 +143,14 @@ public class BlockManager {
         return block;
     }
 
-    public static synchronized List<Block> loadBlocksInFile(File file, long minimumHeight, long maximumHeight) {
+    public static List<Block> loadBlocksInFile(File file, long minimumHeight, long maximumHeight) {
 
+        // Blocks are read through BlockFileReader, which maps the file and builds only the blocks in the range. The
+        // method is not synchronized, so historical reads proceed in parallel.
         List<Block> blocks = new ArrayList<>();
-        if (file.exists()) {
-            Path path = Paths.get(file.getAbsolutePath());
+        if (file.exists() || BlockFileArchiver.archiveFileForConsolidatedFile(file).exists()) {
             try {
-                byte[] fileBytes = Files.readAllBytes(path);
-                ByteBuffer buffer = ByteBuffer.wrap(fileBytes);
-                int numberOfBlocks = buffer.getShort();
-                Block previousBlock = null;
-                for (int i = 0; i < numberOfBlocks && (previousBlock == null ||
-                        previousBlock.getBlockHeight() < maximumHeight); i++) {
-                    Block block = Block.fromByteBuffer(buffer, false);
-                    if (previousBlock == null || (previousBlock.getBlockHeight() != block.getBlockHeight() - 1)) {
-                        // Read and discard the balance list.
-                        BalanceList.fromByteBuffer(buffer);
-                    }
-
-                    if (block.getBlockHeight() >= minimumHeight && block.getBlockHeight() <= maximumHeight) {
-                        blocks.add(block);
-                    }
-
-                    previousBlock = block;
-                }
+                blocks = BlockFileReader.blocksInFile(file, minimumHeight, maximumHeight);
             } catch (Exception ignored) { }
         }
 
@@ -164,6 +159,8 @@ public class BlockManager {
 
     public static boolean writeBlocksToFile(List<Block> blocks, List<BalanceList> balanceLists, File file) {
 
+        long startNanoseconds = System.nanoTime();
+
         // Determine the temporary file and ensure the location is available.
         File temporaryFile = new File(file.getAbsolutePath() + "_temp");
         temporaryFile.delete();
@@ -171,8 +168,9 @@ public class BlockManager {
         // Attempt to write the file.
         boolean successful = true;
         try {
-            // Open the file. The "rw" argument makes the file writable.
-            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            // Open the temporary file. The "rw" argument makes the file writable. Readers map block files, so the file
+            // is written in full before it is moved into place.
+            RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
 
             // Sort the blocks on block height ascending.
             blocks.sort(new Comparator<Block>() {
@@ -222,6 +220,11 @@ public class BlockManager {
             temporaryFile.delete();
         }
 
+        fileWriteHistogram.recordSince(startNanoseconds);
+        if (!successful) {
+            fileWriteFailures.increment();
+        }
+
         return successful;
     }
 
@@ -240,12 +243,16 @@ public class BlockManager {
         // Only continue if the block's previous hash is correct and the balance list is available.
         if (ByteUtil.arraysAreEqual(previousBlockHash, block.getPreviousBlockHash()) && balanceList != null) {
 
+            long startNanoseconds = System.nanoTime();
             try {
                 setFrozenEdge(block, cycleVerifiers);
                 BalanceListManager.updateFrozenEdge(balanceList);
+                ConsensusTimeline.record(block.getBlockHeight(), ConsensusTimeline.Event.Frozen);
 
-                writeBlocksToFile(Collections.singletonList(block), Collections.singletonList(balanceList),
-                        individualFileForBlockHeight(block.getBlockHeight()));
+                if (writeBlocksToFile(Collections.singletonList(block), Collections.singletonList(balanceList),
+                        individualFileForBlockHeight(block.getBlockHeight()))) {
+                    ConsensusTimeline.record(block.getBlockHeight(), ConsensusTimeline.Event.FileWritten);
+                }
 
                 if (block.getBlockHeight() == 0L) {
 
@@ -257,6 +264,7 @@ public class BlockManager {
                 reportOnly.printStackTrace();
                 System.err.println("exception writing block to file " + reportOnly.getMessage());
             }
+            freezeHistogram.recordSince(startNanoseconds);
         }
     }
 
@@ -366,13 +374,11 @@ public class BlockManager {
         // as they fell behind the frozen edge. This slowed down restarts, as consolidated files had to be read
         // directly.
 
-        if (file.exists()) {
+        if (file.exists() || BlockFileArchiver.archiveFileForConsolidatedFile(file).exists()) {
             System.out.println("extracting consolidated file: " + file);
 
-            Path path = Paths.get(file.getAbsolutePath());
             try {
-                byte[] fileBytes = Files.readAllBytes(path);
-                ByteBuffer buffer = ByteBuffer.wrap(fileBytes);
+                ByteBuffer buffer = BlockFileReader.mappedBuffer(file);
                 int numberOfBlocks = buffer.getShort();
                 Block previousBlock = null;
                 BalanceList previousBalanceList = null;
@@ -497,6 +503,7 @@ public class BlockManager {
             updateVerifiersInCurrentCycle(block, cycleVerifiers, isNewVerifier);
             BlockchainMetricsManager.registerBlock(block);
             MetadataManager.registerBlock(block);
+            ResponseCache.frozenEdgeChanged();
         }
 
         // Always add the block to the map. This should be done after the frozen edge is set, because the map looks at
@@ -661,12 +668,18 @@ public class BlockManager {
             // Store the edge height, cycle list, and indication of Genesis cycle.
             BlockManager.currentCycleEndHeight = edgeHeight;
             BlockManager.currentCycleList = currentCycleList;
+            boolean previousInGenesisCycle = BlockManager.inGenesisCycle;
             BlockManager.inGenesisCycle = inGenesisCycle;
 
-            // Build the cycle set.
+            // Build the cycle set. If the membership of the cycle changed, notify the node manager.
             Set<ByteBuffer> currentCycleSet = ConcurrentHashMap.newKeySet();
             currentCycleSet.addAll(currentCycleList);
+            boolean cycleChanged = !currentCycleSet.equals(BlockManager.currentCycleSet) ||
+                    inGenesisCycle != previousInGenesisCycle;
             BlockManager.currentCycleSet = currentCycleSet;
+            if (cycleChanged) {
+                NodeManager.cycleChanged();
+            }
 
             // Build the cycle-and-near set.
             Set<ByteBuffer> currentAndNearCycleSet = ConcurrentHashMap.newKeySet();
@@ -148,7 +148,7 @@ public class ChainInitializationManager {
                 for (TrustedEntryPoint entryPoint : trustedEntryPoints) {
 
                     System.out.println("sending Bootstrap request to " + entryPoint);
-                    Message.fetchTcp(entryPoint.getHost(), entryPoint.getPort(), bootstrapRequest,
+                    Message.fetchTcpCompressed(entryPoint.getHost(), entryPoint.getPort(), bootstrapRequest,
                             new MessageCallback() {
                                 @Override
                                 public void responseReceived(Message message) {
@@ -0,0 +1,116 @@
+package co.nyzo.verifier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ExpiringAddressSet {
+
+    // This is a set of IP addresses in which each address expires a fixed duration after it is added. Lookups and
+    // additions are lock-free and may happen on any thread. Expiration uses a timing wheel: each address is placed in
+    // the slot for the tick at which it expires, and expire() only visits the slots for the ticks that have passed
+    // since the previous call. The cost of expiration is proportional to the number of expiring addresses, not the
+    // size of the set.
+
+    private final long duration;
+    private final long tickDuration;
+    private final Map<ByteBuffer, Long> addressToTimestampMap = new ConcurrentHashMap<>();
+    private final List<Set<ByteBuffer>> slots = new ArrayList<>();
+    private long nextTick = -1L;
+
+    public ExpiringAddressSet(long duration, long tickDuration) {
+
+        this.duration = duration;
+        this.tickDuration = tickDuration;
+
+        // The wheel must span more than the duration so that an address is never placed in a slot that has not yet
+        // been visited for the current revolution.
+        int numberOfSlots = (int) (duration / tickDuration) + 2;
+        for (int i = 0; i < numberOfSlots; i++) {
+            slots.add(ConcurrentHashMap.<ByteBuffer>newKeySet());
+        }
+    }
+
+    // Returns true if the address was added. An address that is already present and has not expired is not changed.
+    public boolean add(ByteBuffer address, long timestamp) {
+
+        boolean added = false;
+        Long existingTimestamp = addressToTimestampMap.putIfAbsent(address, timestamp);
+        if (existingTimestamp == null) {
+            added = true;
+        } else if (existingTimestamp + duration <= timestamp) {
+            added = addressToTimestampMap.replace(address, existingTimestamp, timestamp);
+        }
+
+        if (added) {
+            slotForTick(expirationTick(timestamp)).add(address);
+        }
+
+        return added;
+    }
+
+    public boolean contains(ByteBuffer address, long currentTimestamp) {
+
+        Long timestamp = addressToTimestampMap.get(address);
+        return timestamp != null && currentTimestamp < timestamp + duration;
+    }
+
+    public boolean remove(ByteBuffer address) {
+
+        // The address is left in its slot. It is discarded when the slot is visited.
+        return addressToTimestampMap.remove(address) != null;
+    }
+
+    public int size() {
+        return addressToTimestampMap.size();
+    }
+
+    public List<ByteBuffer> getAddresses() {
+        return new ArrayList<>(addressToTimestampMap.keySet());
+    }
+
+    // Removes and returns the addresses that have expired since the previous call.
+    public synchronized List<ByteBuffer> expire(long currentTimestamp) {
+
+        List<ByteBuffer> expiredAddresses = new ArrayList<>();
+
+        // Visit each slot at most once, even if more than a full revolution has passed since the previous call.
+        long currentTick = currentTimestamp / tickDuration;
+        long firstTick = Math.max(nextTick, currentTick - slots.size() + 1);
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            Set<ByteBuffer> slot = slotForTick(tick);
+            for (ByteBuffer address : new ArrayList<>(slot)) {
+                Long timestamp = addressToTimestampMap.get(address);
+                if (timestamp == null) {
+                    // The address was removed.
+                    slot.remove(address);
+                } else if (timestamp + duration <= currentTimestamp) {
+                    slot.remove(address);
+                    if (addressToTimestampMap.remove(address, timestamp)) {
+                        expiredAddresses.add(address);
+                    }
+                } else if (slotForTick(expirationTick(timestamp)) != slot) {
+                    // The address was added again after this slot was assigned, so it is now in a different slot. An
+                    // address that maps to this slot but has not yet expired is left for the next revolution.
+                    slot.remove(address);
+                }
+            }
+        }
+        nextTick = currentTick + 1L;
+
+        return expiredAddresses;
+    }
+
+    private long expirationTick(long timestamp) {
+
+        // The tick is rounded up so that the address has always expired by the time its slot is visited.
+        return (timestamp + duration + tickDuration - 1L) / tickDuration;
+    }
+
+    private Set<ByteBuffer> slotForTick(long tick) {
+        return slots.get((int) (tick % slots.size()));
+    }
+}
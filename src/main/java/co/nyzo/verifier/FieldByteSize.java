@@ -31,6 +31,7 @@ public class FieldByteSize {
     public static final int unnamedByte = 1;
     public static final int unnamedDouble = 8;
     public static final int unnamedInteger = 4;
+    public static final int unnamedLong = 8;
     public static final int unnamedShort = 2;
     public static final int voteListLength = 1;
 
@@ -18,7 +18,7 @@ public class HistoricalBlockManager {
     public static void start() {
 
         // Start the manager if the preference indicates. Resource usage is not trivial, so the default is false.
-        if (PreferencesUtil.getBoolean(startManagerKey, false) && !alive.getAndSet(true)) {
+        if (isEnabled() && !alive.getAndSet(true)) {
 
             new Thread(new Runnable() {
                 @Override
@@ -89,7 +89,7 @@ public class HistoricalBlockManager {
         // The block heights are implicit, relative to the start height of the file. The offsets are 32-bit integers.
         int blocksPerFile = (int) BlockManager.blocksPerFile;
         int[] offsets = new int[blocksPerFile * 2];
-        for (int i = 0; i < blocksPerFile; i++) {
+        for (int i = 0; i < offsets.length; i++) {
             offsets[i] = -1;
         }
 
@@ -107,9 +107,9 @@ public class HistoricalBlockManager {
                     Block block = Block.fromByteBuffer(buffer, false);
                     int blockEndOffset = buffer.position();
 
-                    // Read and discard the balance list, if present.
+                    // Skip the balance list, if present.
                     if (previousBlock == null || (previousBlock.getBlockHeight() != block.getBlockHeight() - 1)) {
-                        BalanceList.fromByteBuffer(buffer);
+                        BalanceList.skip(buffer);
                     }
 
                     // Store the offsets in the array.
@@ -128,12 +128,18 @@ public class HistoricalBlockManager {
         return offsets;
     }
 
+    public static boolean isEnabled() {
+        return PreferencesUtil.getBoolean(startManagerKey, false);
+    }
+
     public static Block blockForHeight(long height) {
 
-        // First, look to individual files that may not have been consolidated yet.
+        // First, look to the cache, which loads the file containing the height on a miss.
+        Block block = HistoricalBlockManagerMap.blockForHeight(height);
+
+        // Next, look to individual files that may not have been consolidated yet.
         File file = BlockManager.individualFileForBlockHeight(height);
-        Block block = null;
-        if (file.exists()) {
+        if (block == null && file.exists()) {
             List<Block> blocksInFile = BlockManager.loadBlocksInFile(file, height, height);
             if (blocksInFile.size() > 0 && blocksInFile.get(0).getBlockHeight() == height) {
                 block = blocksInFile.get(0);
@@ -173,6 +179,11 @@ public class HistoricalBlockManager {
             } catch (Exception ignored) { }
         }
 
+        // Finally, look to archives. An archive has its own index, so it does not need an offset file.
+        if (block == null) {
+            block = BlockFileArchiver.blockForHeight(BlockFileArchiver.archiveFileForBlockHeight(height), height);
+        }
+
         return block;
     }
 
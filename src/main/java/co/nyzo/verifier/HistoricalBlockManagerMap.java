@@ -1,65 +1,287 @@
 package co.nyzo.verifier;
 
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+import co.nyzo.verifier.util.PrintUtil;
+
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class HistoricalBlockManagerMap {
 
-    // This is a simple class that provides older blocks in the blockchain. We want to provide a service to clients
-    // who are interested in older blocks than the BlockManagerMap provides, but we do not want to overload the
-    // verifier to provide that service.
+    // This class provides older blocks in the blockchain. We want to provide a service to clients who are interested in
+    // older blocks than the BlockManagerMap provides, but we do not want to overload the verifier to provide that
+    // service.
+    //
+    // Blocks are cached with the serialized bytes they were read from, and the cache is bounded by an estimate of the
+    // memory it uses. The least recently used blocks are evicted first. A miss loads the whole file that contains the
+    // height, as neighboring blocks are usually requested together. When several threads miss on the same file, one
+    // thread loads it and the others wait for that load. To avoid reading a whole file repeatedly, a file is not
+    // reloaded within 10 seconds of its last load. A miss within that interval (a height evicted under cache pressure,
+    // or a height the file does not contain) reads only the requested height.
+
+    private static final long maximumCacheBytes = PreferencesUtil.getLong("historical_block_cache_bytes",
+            64L * 1024L * 1024L);
+    private static final long minimumReloadInterval = 10000L;
+    private static final int estimatedOverheadPerEntry = 400;
+
+    private static final Map<Long, CacheEntry> cache = new LinkedHashMap<>(1024, 0.75f, true);
+    private static long cacheBytes = 0L;
 
-    private static long lastFileLoadedTimestamp = 0L;
+    private static final Map<Long, FutureTask<Integer>> inFlightLoads = new ConcurrentHashMap<>();
+    private static final Map<Long, Long> fileLoadTimestamps = new ConcurrentHashMap<>();
 
-    private static Map<Long, Block> map = new HashMap<>();
+    private static final AtomicLong numberOfHits = new AtomicLong(0L);
+    private static final AtomicLong numberOfMisses = new AtomicLong(0L);
+    private static final AtomicLong numberOfFileLoads = new AtomicLong(0L);
+    private static final AtomicLong numberOfCoalescedLoads = new AtomicLong(0L);
+    private static final AtomicLong numberOfEvictions = new AtomicLong(0L);
 
     public static Block blockForHeight(long height) {
 
-        Block block = map.get(height);
-        if (block == null && height > 0 && height < BlockManager.getFrozenEdgeHeight() &&
-                lastFileLoadedTimestamp < System.currentTimeMillis() - 10000L) {
+        CacheEntry entry = entryForHeight(height);
+        return entry == null ? null : entry.block;
+    }
+
+    // Returns read-only views of the serialized bytes of the blocks in the range, keyed on height. Cached frames are
+    // used when available. Other frames are read from the block files without building blocks, and they are not added
+    // to the cache. Frames of mapped files refer to the map, so they are not copies.
+    public static Map<Long, ByteBuffer> framesForHeights(long startHeight, long endHeight) {
 
-            lastFileLoadedTimestamp = System.currentTimeMillis();
-            reloadMapForBlockHeight(height);
-            block = map.get(height);
+        Map<Long, ByteBuffer> frames = new HashMap<>();
+        synchronized (cache) {
+            for (long height = startHeight; height <= endHeight; height++) {
+                CacheEntry entry = cache.get(height);
+                if (entry != null) {
+                    frames.put(height, entry.frame.duplicate());
+                }
+            }
         }
+        numberOfHits.addAndGet(frames.size());
+        numberOfMisses.addAndGet(endHeight - startHeight + 1 - frames.size());
+
+        if (frames.size() < endHeight - startHeight + 1) {
+            for (long fileIndex = startHeight / BlockManager.blocksPerFile;
+                 fileIndex <= endHeight / BlockManager.blocksPerFile; fileIndex++) {
+                long fileStartHeight = Math.max(startHeight, fileIndex * BlockManager.blocksPerFile);
+                long fileEndHeight = Math.min(endHeight, (fileIndex + 1) * BlockManager.blocksPerFile - 1);
+                File file = BlockManager.consolidatedFileForBlockHeight(fileStartHeight);
+                File archiveFile = BlockFileArchiver.archiveFileForConsolidatedFile(file);
+                if (file.exists()) {
+                    addFrames(file, fileStartHeight, fileEndHeight, frames);
+                } else if (archiveFile.exists()) {
+                    // An archive decompresses only the requested frames.
+                    for (long height = fileStartHeight; height <= fileEndHeight; height++) {
+                        byte[] blockBytes = frames.containsKey(height) ? null :
+                                BlockFileArchiver.blockBytesForHeight(archiveFile, height);
+                        if (blockBytes != null) {
+                            frames.put(height, ByteBuffer.wrap(blockBytes).asReadOnlyBuffer());
+                        }
+                    }
+                }
+            }
 
-        return block;
+            for (long height = startHeight; height <= endHeight; height++) {
+                File individualFile = BlockManager.individualFileForBlockHeight(height);
+                if (!frames.containsKey(height) && individualFile.exists()) {
+                    addFrames(individualFile, height, height, frames);
+                }
+            }
+        }
+
+        return frames;
     }
 
-    private static void reloadMapForBlockHeight(long height) {
+    private static void addFrames(File file, long startHeight, long endHeight, Map<Long, ByteBuffer> frames) {
 
-        // Get the list of blocks from the file.
-        long fileIndex = height / BlockManager.blocksPerFile;
-        long startHeight = fileIndex * BlockManager.blocksPerFile;
-        long endHeight = startHeight + BlockManager.blocksPerFile - 1;
-        File file = BlockManager.consolidatedFileForBlockHeight(startHeight);
-        List<Block> blocks = BlockManager.loadBlocksInFile(file, startHeight, endHeight);
-
-        if (blocks.isEmpty()) {
-
-            // If the list is empty, try to load the individual files and build the map.
-            Map<Long, Block> map = new HashMap<>();
-            for (long blockHeight = startHeight; blockHeight <= endHeight; blockHeight++) {
-                File individualFile = BlockManager.individualFileForBlockHeight(blockHeight);
-                List<Block> individualList = BlockManager.loadBlocksInFile(individualFile, blockHeight, blockHeight);
-                if (!individualList.isEmpty()) {
-                    Block block = individualList.get(0);
-                    map.put(block.getBlockHeight(), block);
+        try {
+            for (ByteBuffer frame : BlockFileReader.framesInFile(file, startHeight, endHeight)) {
+                long height = Block.heightAtPosition(frame);
+                if (!frames.containsKey(height)) {
+                    frames.put(height, frame);
                 }
             }
+        } catch (Exception ignored) { }
+    }
 
-            HistoricalBlockManagerMap.map = map;
+    private static CacheEntry entryForHeight(long height) {
+
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(height);
+        }
 
+        if (entry != null) {
+            numberOfHits.incrementAndGet();
         } else {
-            // If the list is non-empty, build the map.
-            Map<Long, Block> map = new HashMap<>();
+            numberOfMisses.incrementAndGet();
+            if (height >= 0 && height < BlockManager.getFrozenEdgeHeight()) {
+                long fileIndex = height / BlockManager.blocksPerFile;
+                if (fileLoadTimestamps.getOrDefault(fileIndex, 0L) < System.currentTimeMillis() -
+                        minimumReloadInterval) {
+                    loadFile(fileIndex);
+                    synchronized (cache) {
+                        entry = cache.get(height);
+                    }
+                }
+
+                if (entry == null) {
+                    entry = readHeight(height);
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    private static void loadFile(long fileIndex) {
+
+        FutureTask<Integer> task = new FutureTask<>(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return readFile(fileIndex);
+            }
+        });
+
+        FutureTask<Integer> existingTask = inFlightLoads.putIfAbsent(fileIndex, task);
+        if (existingTask == null) {
+            try {
+                task.run();
+            } finally {
+                fileLoadTimestamps.put(fileIndex, System.currentTimeMillis());
+                inFlightLoads.remove(fileIndex);
+            }
+        } else {
+            numberOfCoalescedLoads.incrementAndGet();
+            task = existingTask;
+        }
+
+        try {
+            task.get();
+        } catch (Exception e) {
+            LogUtil.println("HistoricalBlockManagerMap: exception loading file " + fileIndex + ": " +
+                    PrintUtil.printException(e));
+        }
+    }
+
+    private static int readFile(long fileIndex) {
+
+        numberOfFileLoads.incrementAndGet();
+
+        long startHeight = fileIndex * BlockManager.blocksPerFile;
+        List<Block> blocks = new ArrayList<>();
+        List<ByteBuffer> frames = new ArrayList<>();
+        readBlocks(startHeight, startHeight + BlockManager.blocksPerFile - 1, blocks, frames);
+        for (int i = 0; i < blocks.size(); i++) {
+            add(blocks.get(i), frames.get(i));
+        }
+
+        return blocks.size();
+    }
+
+    // Reads a single height and adds it to the cache. Only the requested block is built.
+    private static CacheEntry readHeight(long height) {
+
+        List<Block> blocks = new ArrayList<>();
+        List<ByteBuffer> frames = new ArrayList<>();
+        readBlocks(height, height, blocks, frames);
+
+        return blocks.isEmpty() ? null : add(blocks.get(0), frames.get(0));
+    }
+
+    private static void readBlocks(long startHeight, long endHeight, List<Block> blocks, List<ByteBuffer> frames) {
+
+        // Read the consolidated file or its archive.
+        File file = BlockManager.consolidatedFileForBlockHeight(startHeight);
+        if (file.exists() || BlockFileArchiver.archiveFileForConsolidatedFile(file).exists()) {
+            try {
+                blocks.addAll(BlockFileReader.blocksInFile(file, startHeight, endHeight, frames));
+            } catch (Exception ignored) {
+                blocks.clear();
+                frames.clear();
+            }
+        }
+
+        // Fill any heights not in the consolidated file from individual files, which may not have been consolidated.
+        if (blocks.size() < endHeight - startHeight + 1) {
+            Set<Long> heights = new HashSet<>();
             for (Block block : blocks) {
-                map.put(block.getBlockHeight(), block);
+                heights.add(block.getBlockHeight());
+            }
+
+            long frozenEdgeHeight = BlockManager.getFrozenEdgeHeight();
+            for (long height = startHeight; height <= endHeight && height <= frozenEdgeHeight; height++) {
+                if (!heights.contains(height)) {
+                    File individualFile = BlockManager.individualFileForBlockHeight(height);
+                    if (individualFile.exists()) {
+                        try {
+                            List<ByteBuffer> individualFrames = new ArrayList<>();
+                            List<Block> individualBlocks = BlockFileReader.blocksInFile(individualFile, height,
+                                    height, individualFrames);
+                            blocks.addAll(individualBlocks);
+                            frames.addAll(individualFrames);
+                        } catch (Exception ignored) { }
+                    }
+                }
             }
-            HistoricalBlockManagerMap.map = map;
+        }
+    }
+
+    private static CacheEntry add(Block block, ByteBuffer frame) {
+
+        // The decoded block holds roughly as many bytes as its frame. Frames of mapped files do not use heap memory,
+        // but they are counted, so the cache does not hold a large number of files open.
+        CacheEntry entry = new CacheEntry(block, frame);
+        synchronized (cache) {
+            CacheEntry previousEntry = cache.put(block.getBlockHeight(), entry);
+            if (previousEntry != null) {
+                cacheBytes -= previousEntry.byteSize;
+            }
+            cacheBytes += entry.byteSize;
+
+            Iterator<CacheEntry> iterator = cache.values().iterator();
+            while (cacheBytes > maximumCacheBytes && iterator.hasNext()) {
+                cacheBytes -= iterator.next().byteSize;
+                iterator.remove();
+                numberOfEvictions.incrementAndGet();
+            }
+        }
+
+        return entry;
+    }
+
+    public static String getStatusString() {
+
+        int numberOfEntries;
+        long bytes;
+        synchronized (cache) {
+            numberOfEntries = cache.size();
+            bytes = cacheBytes;
+        }
+
+        long hits = numberOfHits.get();
+        long lookups = hits + numberOfMisses.get();
+        return "blocks: " + numberOfEntries + ", bytes: " + bytes + "/" + maximumCacheBytes + ", hit rate: " +
+                String.format("%.1f", lookups == 0 ? 0.0 : hits * 100.0 / lookups) + "% of " + lookups +
+                ", file loads: " + numberOfFileLoads.get() + ", coalesced: " + numberOfCoalescedLoads.get() +
+                ", evictions: " + numberOfEvictions.get();
+    }
+
+    private static class CacheEntry {
+
+        private final Block block;
+        private final ByteBuffer frame;
+        private final int byteSize;
+
+        private CacheEntry(Block block, ByteBuffer frame) {
+            this.block = block;
+            this.frame = frame;
+            this.byteSize = frame.remaining() * 2 + estimatedOverheadPerEntry;
         }
     }
 }
@@ -34,6 +34,14 @@ public class MemoryMonitor {
         }).start();
     }
 
+    public static long getMinimumMemory() {
+        return minimumMemory == Long.MAX_VALUE ? 0L : minimumMemory;
+    }
+
+    public static long getMaximumMemory() {
+        return maximumMemory;
+    }
+
     public static String getMemoryStats() {
 
         double minimumMemory = MemoryMonitor.minimumMemory / 1024.0 / 1024.0;
@@ -2,6 +2,8 @@ package co.nyzo.verifier;
 
 import co.nyzo.verifier.messages.*;
 import co.nyzo.verifier.messages.debug.*;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
 import co.nyzo.verifier.util.*;
 
 import java.net.DatagramPacket;
@@ -20,6 +22,7 @@ public class MeshListener {
 
     private static final AtomicLong numberOfMessagesRejected = new AtomicLong(0);
     private static final AtomicLong numberOfMessagesAccepted = new AtomicLong(0);
+    private static final Map<MessageType, LatencyHistogram> messageHistograms = new ConcurrentHashMap<>();
 
     // These values, all configurable through the preferences file, define a maximum number of connections per IP
     // address and a taper to reduce that maximum when the number of connections is high. The default values activate
@@ -417,9 +420,15 @@ public class MeshListener {
     }
 
     public static Message response(Message message) {
+        return response(message, true);
+    }
+
+    private static Message response(Message message, boolean countMessage) {
 
-        // This is the single point of dispatch for responding to all received messages.
+        // This is the single point of dispatch for responding to all received messages. A request wrapped in a
+        // compressed request is dispatched again without being counted, as the wrapper was already counted.
 
+        long startNanoseconds = System.nanoTime();
         Message response = null;
         try {
             // Many actions are taken inside this block as a result of messages. Therefore, we only want to continue if
@@ -435,15 +444,23 @@ public class MeshListener {
                 response = new Message(MessageType.Error65534,
                         new ErrorMessage(String.format("invalid timestamp offset: %.2f", timestampOffset / 1000.0)));
             } else  {
-                Verifier.registerMessage();
+                if (countMessage) {
+                    Verifier.registerMessage();
+                }
 
                 MessageType messageType = message.getType();
 
                 if (messageType == MessageType.Transaction5) {
 
-                    TransactionResponse responseContent = new TransactionResponse((Transaction) message.getContent());
+                    TransactionResponse responseContent =
+                            TransactionAdmissionManager.admit((Transaction) message.getContent());
                     response = new Message(MessageType.TransactionResponse6, responseContent);
 
+                } else if (messageType == MessageType.TransactionBatch59) {
+
+                    response = new Message(MessageType.TransactionBatchResponse60,
+                            new TransactionBatchResponse((TransactionBatch) message.getContent()));
+
                 } else if (messageType == MessageType.PreviousHashRequest7) {
 
                     response = new Message(MessageType.PreviousHashResponse8, new PreviousHashResponse());
@@ -560,6 +577,17 @@ public class MeshListener {
                 } else if (messageType == MessageType.IpAddressRequest53) {
                     response = new Message(MessageType.IpAddressResponse54,
                             new IpAddressMessageObject(message.getSourceIpAddress()));
+                } else if (messageType == MessageType.MeshDeltaRequest57) {
+
+                    response = new Message(MessageType.MeshDeltaResponse58,
+                            new MeshDeltaResponse((MeshDeltaRequest) message.getContent()));
+
+                } else if (messageType == MessageType.CompressedRequest55) {
+
+                    // The wrapped request is processed normally, and the response is compressed if it is large enough.
+                    Message wrappedRequest = ((CompressedRequest) message.getContent()).getMessage();
+                    response = CompressedResponse.forResponse(response(wrappedRequest, false));
+
                 } else if (messageType == MessageType.Ping200) {
 
                     StatusResponse.incrementPingCount();
@@ -612,6 +640,9 @@ public class MeshListener {
                     response = new Message(MessageType.BlockDelayResponse423, BlockDelayResponse.forRequest(message));
                 } else if (messageType == MessageType.WhitelistRequest424) {
                     response = new Message(MessageType.WhitelistResponse425, WhitelistResponse.forRequest(message));
+                } else if (messageType == MessageType.ConsensusTimelineRequest426) {
+                    response = new Message(MessageType.ConsensusTimelineResponse427,
+                            new ConsensusTimelineResponse(message));
                 } else if (messageType == MessageType.ResetRequest500) {
 
                     boolean success = ByteUtil.arraysAreEqual(message.getSourceNodeIdentifier(),
@@ -643,9 +674,25 @@ public class MeshListener {
             response = new Message(MessageType.Error65534, new ErrorMessage(errorMessage));
         }
 
+        if (message != null) {
+            histogramForMessageType(message.getType()).recordSince(startNanoseconds);
+        }
+
         return response;
     }
 
+    private static LatencyHistogram histogramForMessageType(MessageType messageType) {
+
+        LatencyHistogram histogram = messageHistograms.get(messageType);
+        if (histogram == null) {
+            histogram = MetricsRegistry.histogram("nyzo_message_handling_seconds", "time to handle a message and " +
+                    "produce its response, by message type", "type", messageType.name());
+            messageHistograms.put(messageType, histogram);
+        }
+
+        return histogram;
+    }
+
     public static long getNumberOfMessagesRejected() {
 
         return numberOfMessagesRejected.get();
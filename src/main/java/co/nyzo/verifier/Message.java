@@ -6,6 +6,7 @@ import co.nyzo.verifier.messages.debug.*;
 import co.nyzo.verifier.sentinel.Sentinel;
 import co.nyzo.verifier.util.IpUtil;
 import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
 import co.nyzo.verifier.util.PrintUtil;
 import co.nyzo.verifier.util.SignatureUtil;
 
@@ -24,7 +25,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class Message {
 
-    private static final long maximumMessageLength = 4194304;  // 4 MB
+    public static final int maximumMessageLength = 4194304;  // 4 MB
     private static final Set<ByteBuffer> whitelist = ConcurrentHashMap.newKeySet();
     private static final Set<MessageType> disallowedNonCycleTypes = new HashSet<>(Arrays.asList(MessageType.BlockVote19,
             MessageType.NewVerifierVote21, MessageType.MissingBlockVoteRequest23, MessageType.MissingBlockRequest25));
@@ -37,6 +38,12 @@ public class Message {
 
     private static boolean allowUnsafeMessages = false;
 
+    // Compressed responses are requested from all peers unless disabled. Peers that respond to compressed requests with
+    // errors are remembered, and their requests are sent uncompressed.
+    private static final boolean requestCompressedResponses =
+            PreferencesUtil.getBoolean("request_compressed_responses", true);
+    private static final Set<String> compressionUnsupportedHosts = ConcurrentHashMap.newKeySet();
+
     private static DatagramSocket datagramSocket;
     static {
         try {
@@ -142,7 +149,8 @@ public class Message {
 
         // Send the message to all nodes in the current cycle and the top in the new-verifier queue.
         Set<Node> nodes = BlockManager.getCurrentAndNearCycleNodes();
-        System.out.println("broadcasting message: " + message.getType() + " to " + nodes.size());
+        LogUtil.log(LogUtil.Level.Info, "Message.broadcast", "broadcasting message: %s to %d", message.getType(),
+                nodes.size());
         for (Node node : nodes) {
             if (node.isActive() && !ByteUtil.arraysAreEqual(node.getIdentifier(), Verifier.getIdentifier())) {
                 fetch(node, message, null);
@@ -167,28 +175,18 @@ public class Message {
         }
 
         if (node == null) {
-            System.out.println("unable to find suitable node for random fetch");
+            LogUtil.log(LogUtil.Level.Warning, "Message.fetchFromRandomNode",
+                    "unable to find suitable node for random fetch");
         } else {
-            LogUtil.println("trying to fetch " + message.getType() + " from " +
-                    NicknameManager.get(node.getIdentifier()));
+            LogUtil.log(LogUtil.Level.Info, "Message.fetchFromRandomNode", "trying to fetch %s from %s",
+                    message.getType(), NicknameManager.get(node.getIdentifier()));
             fetch(node, message, messageCallback);
         }
     }
 
     private static Node randomNode(MessageType messageType) {
 
-        Node node = null;
-        List<Node> mesh = NodeManager.getCycle();
-        Random random = new Random();
-        while (node == null && !mesh.isEmpty()) {
-            Node meshNode = mesh.remove(random.nextInt(mesh.size()));
-            ByteBuffer nodeIdentifierBuffer = ByteBuffer.wrap(meshNode.getIdentifier());
-            if (!ByteUtil.arraysAreEqual(meshNode.getIdentifier(), Verifier.getIdentifier())) {
-                node = meshNode;
-            }
-        }
-
-        return node;
+        return NodeManager.randomCycleNode(Verifier.getIdentifier());
     }
 
     public static void fetch(Node node, Message message, MessageCallback messageCallback) {
@@ -196,11 +194,17 @@ public class Message {
         if (udpTypes.contains(message.getType()) && node.getPortUdp() > 0) {
             sendUdp(node.getIpAddress(), node.getPortUdp(), message);
         } else {
-            fetchTcp(IpUtil.addressAsString(node.getIpAddress()), node.getPortTcp(), message, messageCallback);
+            fetchTcpCompressed(IpUtil.addressAsString(node.getIpAddress()), node.getPortTcp(), message,
+                    messageCallback);
         }
     }
 
     public static void fetchTcp(String hostNameOrIp, int port, Message message, MessageCallback messageCallback) {
+        fetchTcp(hostNameOrIp, port, message, messageCallback, false);
+    }
+
+    private static void fetchTcp(String hostNameOrIp, int port, Message message, MessageCallback messageCallback,
+                                 boolean compressedRequest) {
 
         // Unless the option to allow unsafe messages is activated, do not send a message that might get this IP
         // blacklisted.
@@ -233,6 +237,9 @@ public class Message {
                             socket.setSoTimeout(1000);
                             response = readFromStream(socket.getInputStream(), socket.getInetAddress().getAddress(),
                                     message.getType());
+                            if (compressedRequest) {
+                                response = unwrapCompressedResponse(response);
+                            }
                             NodeManager.markSuccessfulConnection(hostNameOrIp);
                         } catch (Exception reportOnly) {
                             System.err.println("Exception sending message " + message.getType() + " to " +
@@ -259,6 +266,57 @@ public class Message {
         }
     }
 
+    public static void fetchTcpCompressed(String hostNameOrIp, int port, Message message,
+                                          MessageCallback messageCallback) {
+
+        if (!requestCompressedResponses || compressionUnsupportedHosts.contains(hostNameOrIp) ||
+                !CompressedRequest.isCompressibleRequestType(message.getType())) {
+            fetchTcp(hostNameOrIp, port, message, messageCallback);
+        } else {
+            // The response to the compressed request is unwrapped after it is read, so the callback receives the same
+            // message it would have received for the uncompressed request. If the peer does not understand the
+            // compressed request, send the original request.
+            Message compressedRequest = new Message(MessageType.CompressedRequest55, new CompressedRequest(message));
+            fetchTcp(hostNameOrIp, port, compressedRequest, new MessageCallback() {
+                @Override
+                public void responseReceived(Message response) {
+                    if (response != null && response.getType() == MessageType.Error65534) {
+                        if ("unknown message type".equals(String.valueOf(response.getContent()))) {
+                            compressionUnsupportedHosts.add(hostNameOrIp);
+                        }
+                        fetchTcp(hostNameOrIp, port, message, messageCallback);
+                    } else if (messageCallback != null) {
+                        messageCallback.responseReceived(response);
+                    }
+                }
+            }, true);
+        }
+    }
+
+    private static Message unwrapCompressedResponse(Message response) {
+
+        // Compressed responses are only decompressed and unwrapped for requests that this verifier sent in a
+        // compressed request, so a peer cannot make this verifier decompress content that it did not ask for. The
+        // signature was checked on the wrapper, so the unwrapped message carries the wrapper's signature and validity.
+        // A response that cannot be decompressed is discarded.
+        Message result = response;
+        if (response != null && response.isValid() && response.getContent() instanceof CompressedResponse) {
+            CompressedResponse compressedResponse = (CompressedResponse) response.getContent();
+            byte[] content = compressedResponse.decompressContent();
+            if (content == null) {
+                result = null;
+            } else {
+                MessageType type = compressedResponse.getType();
+                result = new Message(response.getTimestamp(), type, processContent(type, ByteBuffer.wrap(content),
+                        response.getSourceNodeIdentifier(), response.getSourceIpAddress()),
+                        response.getSourceNodeIdentifier(), response.getSourceNodeSignature(),
+                        response.getSourceIpAddress(), true);
+            }
+        }
+
+        return result;
+    }
+
     public static void sendUdp(byte[] ipAddress, int port, Message message) {
 
         byte[] identifier = NodeManager.identifierForIpAddress(ipAddress);
@@ -428,7 +486,7 @@ public class Message {
                 if (signatureIsValid) {
                     // Process the message content.
                     buffer.position(contentStartPosition);
-                    MessageObject content = processContent(type, buffer, sourceNodeIdentifier);
+                    MessageObject content = processContent(type, buffer, sourceNodeIdentifier, sourceIpAddress);
 
                     // Build the message.
                     message = new Message(timestamp, type, content, sourceNodeIdentifier, sourceNodeSignature,
@@ -448,7 +506,8 @@ public class Message {
         return message;
     }
 
-    private static MessageObject processContent(MessageType type, ByteBuffer buffer, byte[] sourceNodeIdentifier) {
+    private static MessageObject processContent(MessageType type, ByteBuffer buffer, byte[] sourceNodeIdentifier,
+                                                byte[] sourceIpAddress) {
 
         switch (type) {
             // Messages 1, 2, 3, and 4 are no longer used.
@@ -518,6 +577,18 @@ public class Message {
                 return MinimalBlock.fromByteBuffer(buffer);
             case IpAddressResponse54:
                 return IpAddressMessageObject.fromByteBuffer(buffer);
+            case CompressedRequest55:
+                return CompressedRequest.fromByteBuffer(buffer, sourceIpAddress);
+            case CompressedResponse56:
+                return CompressedResponse.fromByteBuffer(buffer);
+            case MeshDeltaRequest57:
+                return MeshDeltaRequest.fromByteBuffer(buffer);
+            case MeshDeltaResponse58:
+                return MeshDeltaResponse.fromByteBuffer(buffer);
+            case TransactionBatch59:
+                return TransactionBatch.fromByteBuffer(buffer);
+            case TransactionBatchResponse60:
+                return TransactionBatchResponse.fromByteBuffer(buffer);
             case PingResponse201:
                 return PingResponse.fromByteBuffer(buffer);
             case UpdateResponse301:
@@ -544,6 +615,8 @@ public class Message {
                 return IpAddressMessageObject.fromByteBuffer(buffer);
             case WhitelistResponse425:
                 return WhitelistResponse.fromByteBuffer(buffer);
+            case ConsensusTimelineResponse427:
+                return ConsensusTimelineResponse.fromByteBuffer(buffer);
             case ResetResponse501:
                 return BooleanMessageResponse.fromByteBuffer(buffer);
             case Error65534:
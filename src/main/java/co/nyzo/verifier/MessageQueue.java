@@ -53,8 +53,8 @@ public class MessageQueue {
         queue.add(new MessageQueue(callback, message));
         if (queue.size() % 100 == 0 && queue.size() > 0) {
             shouldPrintZeroOnRemoval = true;
-            System.out.println("+ message queue is now " + queue.size() + ", " + (message == null ? "null" :
-                    message.getType()));
+            LogUtil.log(LogUtil.Level.Info, "MessageQueue.add", "+ message queue is now %d, %s", queue.size(),
+                    message == null ? "null" : message.getType());
         }
     }
 
@@ -67,7 +67,7 @@ public class MessageQueue {
                 if (queue.size() == 0) {
                     shouldPrintZeroOnRemoval = false;
                 }
-                System.out.println("- message queue is now " + queue.size());
+                LogUtil.log(LogUtil.Level.Info, "MessageQueue.next", "- message queue is now %d", queue.size());
             }
         }
 
@@ -62,6 +62,12 @@ public enum MessageType {
     MinimalBlockResponse52(52),   // currently unused -- UDP-only message
     IpAddressRequest53(53),
     IpAddressResponse54(54),
+    CompressedRequest55(55),  // wraps a request for a large response; the response may be compressed
+    CompressedResponse56(56),
+    MeshDeltaRequest57(57),  // requests changes to the mesh since the last response from the same node
+    MeshDeltaResponse58(58),
+    TransactionBatch59(59),  // submits several transactions in one message; the response has one result per transaction
+    TransactionBatchResponse60(60),
 
     // test messages
     Ping200(200),
@@ -98,6 +104,8 @@ public enum MessageType {
     BlockDelayResponse423(423),
     WhitelistRequest424(424),
     WhitelistResponse425(425),
+    ConsensusTimelineRequest426(426),  // gets per-height timing of the consensus steps
+    ConsensusTimelineResponse427(427),
 
     // bootstrapping messages
     ResetRequest500(500),   // resets the blockchain
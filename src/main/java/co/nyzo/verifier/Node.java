@@ -18,6 +18,8 @@ public class Node implements MessageObject {
                                                   // updated
     private long inactiveTimestamp;               // when the verifier was marked as inactive; -1 for active verifiers
     private long communicationFailureCount;       // consecutive communication failures before marking inactive
+    private long meshVersion;                     // the node-manager mesh version of the last change to the
+                                                  // serialized fields of this node; not serialized
 
     public Node(byte[] identifier, byte[] ipAddress, int portTcp, int portUdp) {
 
@@ -82,6 +84,14 @@ public class Node implements MessageObject {
         this.communicationFailureCount = communicationFailureCount;
     }
 
+    public long getMeshVersion() {
+        return meshVersion;
+    }
+
+    public void setMeshVersion(long meshVersion) {
+        this.meshVersion = meshVersion;
+    }
+
     public boolean isActive() {
         return inactiveTimestamp < 0;
     }
@@ -1,24 +1,38 @@
 package co.nyzo.verifier;
 
 import co.nyzo.verifier.messages.*;
+import co.nyzo.verifier.util.BinaryRecordStore;
 import co.nyzo.verifier.util.IpUtil;
 import co.nyzo.verifier.util.LogUtil;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 
 public class NodeManager {
 
-    private static Set<ByteBuffer> activeCycleIdentifiers = ConcurrentHashMap.newKeySet();
-    private static Set<ByteBuffer> activeCycleIpAddresses = ConcurrentHashMap.newKeySet();
-    private static String missingInCycleVerifiers = "";
+    // These indexes are maintained as nodes are added, removed, and change state, and as the cycle changes. Changes
+    // are recorded by marking the affected identifiers, and only the marked identifiers are reevaluated in
+    // updateActiveVerifiersAndRemoveOldNodes(). This keeps the cost of each main-loop iteration proportional to the
+    // number of changes, not the size of the mesh. The cycle index is also updated immediately when a node is added
+    // and when the cycle changes, because the cycle is needed for chain initialization, before the first iteration of
+    // the main loop.
+    private static final Set<ByteBuffer> activeCycleIdentifiers = ConcurrentHashMap.newKeySet();
+    private static final Set<ByteBuffer> activeCycleIpAddresses = ConcurrentHashMap.newKeySet();
+    private static final Map<ByteBuffer, Set<ByteBuffer>> identifierToIpAddressesMap = new ConcurrentHashMap<>();
+    private static final Set<ByteBuffer> cycleIpAddresses = ConcurrentHashMap.newKeySet();
+    private static final Set<ByteBuffer> inactiveIpAddresses = ConcurrentHashMap.newKeySet();
+    private static final Set<ByteBuffer> changedIdentifiers = ConcurrentHashMap.newKeySet();
+    private static Set<ByteBuffer> indexedCycle = new HashSet<>();
+    private static boolean indexedGenesisCycle = false;
+    private static List<Node> cycleNodes = new ArrayList<>();
+    private static boolean cycleNodesChanged = true;
 
     private static final int maximumNodesPerInCycleVerifier = 6;
     private static final int maximumNewNodeMapSize = 1000;
@@ -26,6 +40,21 @@ public class NodeManager {
 
     private static final Map<ByteBuffer, Node> ipAddressToNodeMap = new ConcurrentHashMap<>();
 
+    // The mesh version increases with every change to the serialized fields of the nodes in the map. This allows peers
+    // to request only the changes since the version they last saw. The epoch distinguishes the versions of this run of
+    // the process from those of previous runs. Removals are retained for a limited time to include in deltas.
+    //
+    // Each version is assigned under the version lock along with the map update it describes, and deltas are
+    // collected under the same lock. Otherwise, a delta could report version V before a change at V is visible in the
+    // maps, and the requester would never receive that change.
+    private static final long meshEpoch = System.currentTimeMillis();
+    private static final Object meshVersionLock = new Object();
+    private static final AtomicLong meshVersion = new AtomicLong(0L);
+    private static final int maximumRemovedIpAddressesRetained = 2000;
+    private static final Map<ByteBuffer, Long> removedIpAddressToVersionMap = new ConcurrentHashMap<>();
+    private static final AtomicLong minimumDeltaVersion = new AtomicLong(0L);
+    private static final AtomicLong cycleChangeVersion = new AtomicLong(0L);
+
     private static final int minimumMeshRequestInterval = 30;
     private static AtomicInteger meshRequestWait = new AtomicInteger(minimumMeshRequestInterval);
     private static AtomicInteger meshRequestSuccessCount = new AtomicInteger(0);
@@ -37,6 +66,13 @@ public class NodeManager {
     private static boolean haveNodeHistory = PersistentData.getBoolean(haveNodeHistoryKey, false);
     public static final File nodeFile = new File(Verifier.dataRootDirectory, "nodes");
 
+    // Nodes are stored in a binary snapshot and journal, keyed on IP address. The text file of earlier versions is
+    // read only when the binary files are not present.
+    private static final BinaryRecordStore nodeStore = new BinaryRecordStore(new File(Verifier.dataRootDirectory,
+            "nodes_v2"));
+    private static final int nodeRecordLength = FieldByteSize.identifier + FieldByteSize.port * 2 +
+            FieldByteSize.timestamp * 3;
+
     static {
         loadPersistedNodes();
     }
@@ -70,7 +106,7 @@ public class NodeManager {
             if (node != null) {
                 ByteBuffer identifierBuffer = ByteBuffer.wrap(node.getIdentifier());
                 if (BlockManager.verifierInCurrentCycle(identifierBuffer)) {
-                    node.markSuccessfulConnection();
+                    markSuccessfulConnection(node);
                 } else {
                     LogUtil.println("Missing block request from out of cycle in updateNode(): " + NicknameManager.get(node.getIdentifier()));
                 }
@@ -97,17 +133,20 @@ public class NodeManager {
             if (existingNode != null && ByteUtil.arraysAreEqual(existingNode.getIdentifier(), identifier)) {
                 // This is the case when there is already a node at the IP with the same identifier. Update the ports
                 // and mark a successful connection.
-                existingNode.setPortTcp(portTcp);
+                if (existingNode.getPortTcp() != portTcp) {
+                    existingNode.setPortTcp(portTcp);
+                    markChanged(existingNode);
+                }
                 if (portUdp > 0) {
                     existingNode.setPortUdp(portUdp);
                 }
                 if (isNodeJoinResponse) {
-                    existingNode.markSuccessfulConnection();
+                    markSuccessfulConnection(existingNode);
                 }
             } else {
                 // If the existing node is not null, remove it.
                 if (existingNode != null) {
-                    ipAddressToNodeMap.remove(ipAddressBuffer);
+                    removeNode(ipAddressBuffer);
                 }
 
                 // Now, determine what to do with the new node.
@@ -116,19 +155,15 @@ public class NodeManager {
                     // All in-cycle nodes, in addition to out-of-cycle nodes due to node-join responses, are added now,
                     // subject to a limit per verifier. Set the timestamp of the node so that it is immediately eligible
                     // for the lottery if sufficient history is not present.
-                    int instanceCount = 0;
-                    for (Node mapNode : ipAddressToNodeMap.values()) {
-                        if (ByteUtil.arraysAreEqual(mapNode.getIdentifier(), identifier)) {
-                            instanceCount++;
-                        }
-                    }
+                    Set<ByteBuffer> instances = identifierToIpAddressesMap.get(identifierBuffer);
+                    int instanceCount = instances == null ? 0 : instances.size();
                     if (instanceCount < maximumNodesPerInCycleVerifier) {
                         Node node = new Node(identifier, ipAddress, portTcp, portUdp);
                         if (!haveNodeHistory) {
                             node.setQueueTimestamp(System.currentTimeMillis() -
                                     NewVerifierQueueManager.lotteryWaitTime);
                         }
-                        ipAddressToNodeMap.put(ipAddressBuffer, node);
+                        addNode(ipAddressBuffer, node);
                         if (!BlockManager.verifierInCurrentCycle(identifierBuffer)) {
                             LogUtil.println("added new out-of-cycle node to NodeManager: " +
                                     NicknameManager.get(identifier));
@@ -148,7 +183,7 @@ public class NodeManager {
                 // temporary entry.
                 if (!ByteUtil.isAllZeros(ipAddress) &&
                         ByteUtil.arraysAreEqual(identifier, Verifier.getIdentifier())) {
-                    ipAddressToNodeMap.remove(ByteBuffer.wrap(new byte[4]));
+                    removeNode(ByteBuffer.wrap(new byte[4]));
                 }
             }
         }
@@ -159,22 +194,277 @@ public class NodeManager {
         System.out.println("demoting verifier " + NicknameManager.get(identifier));
 
         // Reset the queue timestamp of matching nodes.
+        for (Node node : nodesForIdentifier(ByteBuffer.wrap(identifier))) {
+            node.setQueueTimestamp(System.currentTimeMillis());
+            markChanged(node);
+        }
+    }
+
+    private static void markChanged(Node node) {
+
+        synchronized (meshVersionLock) {
+            node.setMeshVersion(meshVersion.incrementAndGet());
+        }
+    }
+
+    private static List<Node> nodesForIdentifier(ByteBuffer identifier) {
+
+        List<Node> nodes = new ArrayList<>();
+        Set<ByteBuffer> ipAddresses = identifierToIpAddressesMap.get(identifier);
+        if (ipAddresses != null) {
+            for (ByteBuffer ipAddress : ipAddresses) {
+                Node node = ipAddressToNodeMap.get(ipAddress);
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+        }
+
+        return nodes;
+    }
+
+    private static void addNode(ByteBuffer ipAddress, Node node) {
+
+        synchronized (meshVersionLock) {
+            markChanged(node);
+            ipAddressToNodeMap.put(ipAddress, node);
+        }
+
+        // The address is added within the compute call, so a concurrent removal of the last address for the
+        // identifier cannot discard the set after the address is added.
+        ByteBuffer identifier = ByteBuffer.wrap(node.getIdentifier());
+        identifierToIpAddressesMap.compute(identifier,
+                new BiFunction<ByteBuffer, Set<ByteBuffer>, Set<ByteBuffer>>() {
+                    @Override
+                    public Set<ByteBuffer> apply(ByteBuffer key, Set<ByteBuffer> ipAddresses) {
+                        if (ipAddresses == null) {
+                            ipAddresses = ConcurrentHashMap.newKeySet();
+                        }
+                        ipAddresses.add(ipAddress);
+                        return ipAddresses;
+                    }
+                });
+        if (!node.isActive()) {
+            inactiveIpAddresses.add(ipAddress);
+        }
+        updateCycleIndex(identifier);
+        changedIdentifiers.add(identifier);
+    }
+
+    private static void removeNode(ByteBuffer ipAddress) {
+
+        Node node;
+        synchronized (meshVersionLock) {
+            node = ipAddressToNodeMap.remove(ipAddress);
+            if (node != null) {
+                recordRemoval(ipAddress);
+            }
+        }
+
+        if (node != null) {
+            // Update the indexes.
+            ByteBuffer identifier = ByteBuffer.wrap(node.getIdentifier());
+            identifierToIpAddressesMap.computeIfPresent(identifier,
+                    new BiFunction<ByteBuffer, Set<ByteBuffer>, Set<ByteBuffer>>() {
+                        @Override
+                        public Set<ByteBuffer> apply(ByteBuffer key, Set<ByteBuffer> ipAddresses) {
+                            ipAddresses.remove(ipAddress);
+                            return ipAddresses.isEmpty() ? null : ipAddresses;
+                        }
+                    });
+            inactiveIpAddresses.remove(ipAddress);
+            activeCycleIpAddresses.remove(ipAddress);
+            if (cycleIpAddresses.remove(ipAddress)) {
+                markCycleNodesChanged();
+            }
+            changedIdentifiers.add(identifier);
+        }
+    }
+
+    // Records a removal for mesh deltas. This must be called under the version lock.
+    private static void recordRemoval(ByteBuffer ipAddress) {
+
+        removedIpAddressToVersionMap.put(ipAddress, meshVersion.incrementAndGet());
+
+        // If too many removals are retained, discard the oldest half. Deltas are no longer available from versions
+        // before the newest discarded removal.
+        if (removedIpAddressToVersionMap.size() > maximumRemovedIpAddressesRetained) {
+            List<Long> versions = new ArrayList<>(removedIpAddressToVersionMap.values());
+            Collections.sort(versions);
+            long threshold = versions.get(versions.size() / 2);
+            for (ByteBuffer removedIpAddress : new HashSet<>(removedIpAddressToVersionMap.keySet())) {
+                if (removedIpAddressToVersionMap.getOrDefault(removedIpAddress, 0L) < threshold) {
+                    removedIpAddressToVersionMap.remove(removedIpAddress);
+                }
+            }
+            minimumDeltaVersion.set(threshold - 1L);
+        }
+    }
+
+    private static void markSuccessfulConnection(Node node) {
+
+        boolean wasActive = node.isActive();
+        node.markSuccessfulConnection();
+        if (!wasActive) {
+            ByteBuffer ipAddress = ByteBuffer.wrap(node.getIpAddress());
+            inactiveIpAddresses.remove(ipAddress);
+            changedIdentifiers.add(ByteBuffer.wrap(node.getIdentifier()));
+        }
+    }
+
+    private static void markFailedConnection(Node node) {
+
+        boolean wasActive = node.isActive();
+        node.markFailedConnection();
+        if (wasActive && !node.isActive()) {
+            ByteBuffer ipAddress = ByteBuffer.wrap(node.getIpAddress());
+            inactiveIpAddresses.add(ipAddress);
+            changedIdentifiers.add(ByteBuffer.wrap(node.getIdentifier()));
+        }
+    }
+
+    public static void cycleChanged() {
+
+        // Nodes may join or leave the cycle without any change to the nodes themselves, so deltas of in-cycle nodes
+        // are not available from versions before a cycle change.
+        synchronized (meshVersionLock) {
+            cycleChangeVersion.set(meshVersion.incrementAndGet());
+        }
+
+        // All identifiers that joined or left the cycle need to be reevaluated.
+        // In the Genesis cycle, all verifiers are considered to be in the cycle, so all identifiers need to be
+        // reevaluated when entering or leaving the Genesis cycle.
+        Set<ByteBuffer> cycle = BlockManager.verifiersInCurrentCycleSet();
+        boolean inGenesisCycle = BlockManager.inGenesisCycle();
+        Set<ByteBuffer> identifiers = new HashSet<>();
+        synchronized (changedIdentifiers) {
+            identifiers.addAll(indexedCycle);
+            identifiers.addAll(cycle);
+            if (inGenesisCycle != indexedGenesisCycle) {
+                identifiers.addAll(identifierToIpAddressesMap.keySet());
+            }
+            changedIdentifiers.addAll(identifiers);
+            indexedCycle = new HashSet<>(cycle);
+            indexedGenesisCycle = inGenesisCycle;
+        }
+
+        // Update the cycle index now. The activity indexes are updated in the next main-loop iteration.
+        for (ByteBuffer identifier : identifiers) {
+            updateCycleIndex(identifier);
+        }
+    }
+
+    private static void updateCycleIndex(ByteBuffer identifier) {
+
+        boolean inCycle = BlockManager.verifierInCurrentCycle(identifier);
+        for (Node node : nodesForIdentifier(identifier)) {
+            ByteBuffer ipAddress = ByteBuffer.wrap(node.getIpAddress());
+            if (inCycle ? cycleIpAddresses.add(ipAddress) : cycleIpAddresses.remove(ipAddress)) {
+                markCycleNodesChanged();
+            }
+        }
+    }
+
+    public static long getMeshEpoch() {
+        return meshEpoch;
+    }
+
+    public static long getMeshVersion() {
+        return meshVersion.get();
+    }
+
+    // The mesh version, the delta availability, and the delta contents must be read while holding this lock to be
+    // consistent with each other.
+    public static Object getMeshVersionLock() {
+        return meshVersionLock;
+    }
+
+    public static boolean meshDeltaAvailable(long epoch, long version, boolean inCycleOnly) {
+
+        return epoch == meshEpoch && version >= minimumDeltaVersion.get() && version <= meshVersion.get() &&
+                (!inCycleOnly || version >= cycleChangeVersion.get());
+    }
+
+    public static List<Node> getNodesChangedSince(long version, boolean inCycleOnly) {
+
+        List<Node> nodes = new ArrayList<>();
         for (Node node : ipAddressToNodeMap.values()) {
-            if (ByteUtil.arraysAreEqual(node.getIdentifier(), identifier)) {
-                node.setQueueTimestamp(System.currentTimeMillis());
+            if (node.getMeshVersion() > version &&
+                    (!inCycleOnly || BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(node.getIdentifier())))) {
+                nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+    public static List<ByteBuffer> getIpAddressesRemovedSince(long version) {
+
+        List<ByteBuffer> ipAddresses = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, Long> entry : removedIpAddressToVersionMap.entrySet()) {
+            if (entry.getValue() > version) {
+                ipAddresses.add(entry.getKey());
             }
         }
+
+        return ipAddresses;
     }
 
     public static List<Node> getCycle() {
+        return new ArrayList<>(cycleNodes());
+    }
 
-        List<Node> cycleNodes = new ArrayList<>();
-        for (Node node : ipAddressToNodeMap.values()) {
-            if (BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(node.getIdentifier()))) {
-                cycleNodes.add(node);
+    public static Node randomCycleNode(byte[] excludedIdentifier) {
+
+        // Try a few random picks before falling back to a full pass. The fallback is only needed for very small cycles
+        // or when most of the cycle is excluded.
+        Node node = null;
+        List<Node> cycleNodes = cycleNodes();
+        Random random = new Random();
+        for (int i = 0; i < 10 && node == null && !cycleNodes.isEmpty(); i++) {
+            Node cycleNode = cycleNodes.get(random.nextInt(cycleNodes.size()));
+            if (!ByteUtil.arraysAreEqual(cycleNode.getIdentifier(), excludedIdentifier)) {
+                node = cycleNode;
             }
         }
 
+        if (node == null) {
+            List<Node> candidates = new ArrayList<>();
+            for (Node cycleNode : cycleNodes) {
+                if (!ByteUtil.arraysAreEqual(cycleNode.getIdentifier(), excludedIdentifier)) {
+                    candidates.add(cycleNode);
+                }
+            }
+            if (!candidates.isEmpty()) {
+                node = candidates.get(random.nextInt(candidates.size()));
+            }
+        }
+
+        return node;
+    }
+
+    // The flag is written and read under the same monitor as the list, so a change marked while the list is being
+    // rebuilt causes another rebuild.
+    private static synchronized void markCycleNodesChanged() {
+        cycleNodesChanged = true;
+    }
+
+    private static synchronized List<Node> cycleNodes() {
+
+        // The list is rebuilt from the index only when the in-cycle nodes have changed. The list itself is never
+        // modified after it is built, so it can be shared with callers that do not modify it.
+        if (cycleNodesChanged) {
+            cycleNodesChanged = false;
+            List<Node> cycleNodes = new ArrayList<>();
+            for (ByteBuffer ipAddress : cycleIpAddresses) {
+                Node node = ipAddressToNodeMap.get(ipAddress);
+                if (node != null) {
+                    cycleNodes.add(node);
+                }
+            }
+            NodeManager.cycleNodes = cycleNodes;
+        }
+
         return cycleNodes;
     }
 
@@ -183,23 +473,40 @@ public class NodeManager {
     }
 
     public static int getMeshSizeForGenesisCycleVoting() {
-        Set<ByteBuffer> identifiers = new HashSet<>();
-        for (Node node : ipAddressToNodeMap.values()) {
-            identifiers.add(ByteBuffer.wrap(node.getIdentifier()));
-        }
-        return identifiers.size();
+        return identifierToIpAddressesMap.size();
     }
 
     public static int getNumberOfNodesInMap() {
         return ipAddressToNodeMap.size();
     }
 
+    public static String getNodeStoreStatusString() {
+        return nodeStore.getStatusString();
+    }
+
     public static int getNumberOfActiveCycleIdentifiers() {
         return activeCycleIdentifiers.size();
     }
 
     public static String getMissingInCycleVerifiers() {
-        return missingInCycleVerifiers;
+
+        // This is only used for status reporting, so it is built when requested.
+        StringBuilder missingInCycleVerifiers;
+        Set<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleSet();
+        if (activeCycleIdentifiers.size() == currentCycle.size()) {
+            missingInCycleVerifiers = new StringBuilder("*** no verifiers missing ***");
+        } else {
+            missingInCycleVerifiers = new StringBuilder();
+            String separator = "";
+            for (ByteBuffer identifier : currentCycle) {
+                if (!activeCycleIdentifiers.contains(identifier)) {
+                    missingInCycleVerifiers.append(separator).append(NicknameManager.get(identifier.array()));
+                    separator = ",";
+                }
+            }
+        }
+
+        return missingInCycleVerifiers.toString();
     }
 
     public static boolean ipAddressInCycle(ByteBuffer ipAddress) {
@@ -243,7 +550,7 @@ public class NodeManager {
             ByteBuffer addressBuffer = ByteBuffer.wrap(address);
             Node node = ipAddressToNodeMap.get(addressBuffer);
             if (node != null) {
-                node.markFailedConnection();
+                markFailedConnection(node);
             }
         }
     }
@@ -255,51 +562,57 @@ public class NodeManager {
             ByteBuffer addressBuffer = ByteBuffer.wrap(address);
             Node node = ipAddressToNodeMap.get(addressBuffer);
             if (node != null) {
-                node.markSuccessfulConnection();
+                markSuccessfulConnection(node);
             }
         }
     }
 
     public static void updateActiveVerifiersAndRemoveOldNodes() {
 
-        Set<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleSet();
-
-        Set<ByteBuffer> activeCycleIdentifiers = ConcurrentHashMap.newKeySet();
-        Set<ByteBuffer> activeCycleIpAddresses = ConcurrentHashMap.newKeySet();
+        // Remove nodes that have been inactive for too long. Only inactive nodes need to be checked.
         long thresholdTimestamp = System.currentTimeMillis() - Block.blockDuration *
                 BlockManager.currentCycleLength() * 2;
-        for (ByteBuffer ipAddress : new HashSet<>(ipAddressToNodeMap.keySet())) {
+        for (ByteBuffer ipAddress : new ArrayList<>(inactiveIpAddresses)) {
             Node node = ipAddressToNodeMap.get(ipAddress);
-            if (node.isActive()) {
-                ByteBuffer identifierBuffer = ByteBuffer.wrap(node.getIdentifier());
-                if (currentCycle.contains(identifierBuffer)) {
-                    activeCycleIdentifiers.add(identifierBuffer);
-                    activeCycleIpAddresses.add(ByteBuffer.wrap(node.getIpAddress()));
-                }
-            } else if (node.getInactiveTimestamp() < thresholdTimestamp) {
-                ipAddressToNodeMap.remove(ipAddress);
+            if (node == null) {
+                inactiveIpAddresses.remove(ipAddress);
+            } else if (!node.isActive() && node.getInactiveTimestamp() < thresholdTimestamp) {
+                removeNode(ipAddress);
                 LogUtil.println("removed node " + NicknameManager.get(node.getIdentifier()) + " from mesh on " +
                         Verifier.getNickname());
             }
         }
 
-        StringBuilder missingInCycleVerifiers;
-        if (activeCycleIdentifiers.size() == currentCycle.size()) {
-            missingInCycleVerifiers = new StringBuilder("*** no verifiers missing ***");
-        } else {
-            missingInCycleVerifiers = new StringBuilder();
-            String separator = "";
-            for (ByteBuffer identifier : currentCycle) {
-                if (!activeCycleIdentifiers.contains(identifier)) {
-                    missingInCycleVerifiers.append(separator).append(NicknameManager.get(identifier.array()));
-                    separator = ",";
+        // Reevaluate the identifiers that have changed since the last iteration. Each identifier is removed as it is
+        // taken, so an identifier added concurrently is either taken now or left for the next iteration.
+        List<ByteBuffer> identifiers = new ArrayList<>();
+        Iterator<ByteBuffer> iterator = changedIdentifiers.iterator();
+        while (iterator.hasNext()) {
+            identifiers.add(iterator.next());
+            iterator.remove();
+        }
+
+        Set<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleSet();
+        for (ByteBuffer identifier : identifiers) {
+            boolean inCycleSet = currentCycle.contains(identifier);
+            boolean active = false;
+            for (Node node : nodesForIdentifier(identifier)) {
+                ByteBuffer ipAddress = ByteBuffer.wrap(node.getIpAddress());
+                if (inCycleSet && node.isActive()) {
+                    active = true;
+                    activeCycleIpAddresses.add(ipAddress);
+                } else {
+                    activeCycleIpAddresses.remove(ipAddress);
                 }
             }
-        }
+            updateCycleIndex(identifier);
 
-        NodeManager.activeCycleIdentifiers = activeCycleIdentifiers;
-        NodeManager.activeCycleIpAddresses = activeCycleIpAddresses;
-        NodeManager.missingInCycleVerifiers = missingInCycleVerifiers.toString();
+            if (active) {
+                activeCycleIdentifiers.add(identifier);
+            } else {
+                activeCycleIdentifiers.remove(identifier);
+            }
+        }
     }
 
     public static void enqueueNodeJoinMessage(byte[] ipAddress, int port) {
@@ -410,53 +723,60 @@ public class NodeManager {
 
     public static void demoteInCycleNodes() {
 
-        for (Node node : ipAddressToNodeMap.values()) {
-
-            if (BlockManager.verifierInCurrentCycle(ByteBuffer.wrap(node.getIdentifier()))) {
-                node.setQueueTimestamp(System.currentTimeMillis());
-            }
+        for (Node node : cycleNodes()) {
+            node.setQueueTimestamp(System.currentTimeMillis());
+            markChanged(node);
         }
     }
 
     public static void persistNodes() {
 
-        // Write the file to a temporary location.
-        File temporaryFile = new File(nodeFile.getAbsolutePath() + "_temp");
-        temporaryFile.delete();
-        BufferedWriter writer = null;
-        try {
-            writer = new BufferedWriter(new FileWriter(temporaryFile));
-            String separator = "";
-            for (Node node : getMesh()) {
-                writer.write(separator + ByteUtil.arrayAsStringWithDashes(node.getIdentifier()) + ":" +
-                        IpUtil.addressAsString(node.getIpAddress()) + ":" +
-                        node.getPortTcp() + ":" +
-                        node.getPortUdp() + ":" +
-                        node.getQueueTimestamp() + ":" +
-                        //"0:" +  // identifier-change timestamp; no longer used
-                        node.getCommunicationFailureCount() + ":" + // slot is now used for communicationFailureCount instead.
-                        node.getInactiveTimestamp());
-                separator = "\n";
-            }
-        } catch (Exception ignored) { }
-
-        // Close the temporary file.
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (Exception ignored) { }
+        // Only the nodes that changed are queued, and the store writes them on its own thread.
+        Map<ByteBuffer, byte[]> records = new HashMap<>();
+        for (Node node : getMesh()) {
+            ByteBuffer record = ByteBuffer.allocate(nodeRecordLength);
+            record.put(node.getIdentifier());
+            record.putInt(node.getPortTcp());
+            record.putInt(node.getPortUdp());
+            record.putLong(node.getQueueTimestamp());
+            record.putLong(node.getCommunicationFailureCount());
+            record.putLong(node.getInactiveTimestamp());
+            records.put(ByteBuffer.wrap(node.getIpAddress()), record.array());
         }
-
-        // Move the temporary file to the new location.
-        try {
-            Files.move(Paths.get(temporaryFile.getAbsolutePath()), Paths.get(nodeFile.getAbsolutePath()),
-                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
-        } catch (Exception ignored) { }
+        nodeStore.update(records);
     }
 
     private static void loadPersistedNodes() {
 
         // This method is called in the class's static block. We load the persisted nodes into the mesh map.
+        if (nodeStore.isLoaded()) {
+            for (Map.Entry<ByteBuffer, byte[]> entry : nodeStore.getRecords().entrySet()) {
+                if (entry.getKey().capacity() == FieldByteSize.ipAddress &&
+                        entry.getValue().length == nodeRecordLength) {
+                    ByteBuffer record = ByteBuffer.wrap(entry.getValue());
+                    byte[] identifier = new byte[FieldByteSize.identifier];
+                    record.get(identifier);
+                    int portTcp = record.getInt();
+                    int portUdp = record.getInt();
+
+                    Node node = new Node(identifier, entry.getKey().array(), portTcp, portUdp);
+                    node.setQueueTimestamp(record.getLong());
+                    node.setCommunicationFailureCount(record.getLong());
+                    node.setInactiveTimestamp(record.getLong());
+
+                    addNode(entry.getKey(), node);
+                }
+            }
+        } else {
+            loadTextNodes();
+            persistNodes();
+        }
+
+        LogUtil.println("NodeManager initialization: loaded " + ipAddressToNodeMap.size() + " nodes into map");
+    }
+
+    private static void loadTextNodes() {
+
         Path path = Paths.get(nodeFile.getAbsolutePath());
         try {
             BufferedReader reader = new BufferedReader(new FileReader(nodeFile));
@@ -484,12 +804,10 @@ public class NodeManager {
                     node.setInactiveTimestamp(inactiveTimestamp);
                     node.setCommunicationFailureCount(communicationFailureCount);
 
-                    ipAddressToNodeMap.put(ByteBuffer.wrap(ipAddress), node);
+                    addNode(ByteBuffer.wrap(ipAddress), node);
                 } catch (Exception ignored) { }
             }
             reader.close();
         } catch (Exception ignored) { }
-
-        LogUtil.println("NodeManager initialization: loaded " + ipAddressToNodeMap.size() + " nodes into map");
     }
 }
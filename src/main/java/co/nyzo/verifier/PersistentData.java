@@ -1,74 +1,32 @@
 package co.nyzo.verifier;
 
-import co.nyzo.verifier.util.FileUtil;
-import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.KeyValueLog;
+import co.nyzo.verifier.util.PreferencesUtil;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class PersistentData {
 
-    private static final Map<String, String> dataMap = new ConcurrentHashMap<>();
-    private static final File file = new File(Verifier.dataRootDirectory, "persistent_data");
-
-    static {
-        loadFile();
-    }
-
-    private static void loadFile() {
-
-        Path path = Paths.get(file.getAbsolutePath());
-        if (path.toFile().exists()) {
-            try {
-                List<String> contentsOfFile = Files.readAllLines(path);
-                for (String line : contentsOfFile) {
-                    try {
-                        line = line.trim();
-                        int indexOfHash = line.indexOf("#");
-                        if (indexOfHash >= 0) {
-                            line = line.substring(0, indexOfHash).trim();
-                        }
-                        int splitIndex = line.indexOf("=");
-                        if (splitIndex > 0) {
-                            String key = line.substring(0, splitIndex).trim().toLowerCase();
-                            String value = line.substring(splitIndex + 1).trim();
-                            dataMap.put(key, value);
-                        }
-                    } catch (Exception e) {
-                        System.out.println("issue loading line from persistent data file: " + line);
-                    }
-                }
-            } catch (Exception e) {
-                System.out.println("issue getting persistent data file: " + PrintUtil.printException(e));
-            }
-        } else {
-            System.out.println("skipping persistent data loading; file not present");
-        }
-    }
+    // The data is stored in a key/value log: the persistent_data file remains a snapshot in the original text format,
+    // and changes are appended to persistent_data_log. Puts are written in groups, at most once per flush interval,
+    // instead of each put rewriting the entire file.
+    private static final KeyValueLog log = new KeyValueLog(new File(Verifier.dataRootDirectory, "persistent_data"),
+            PreferencesUtil.getLong("persistent_data_flush_interval", 50L),
+            PreferencesUtil.getLong("persistent_data_compaction_bytes", 64L * 1024L));
+    private static final Map<String, String> dataMap = log.getMap();
 
     public static void reset() {
-        dataMap.clear();
-        writeFile();
+        log.clear();
     }
 
-    private static void writeFile() {
-
-        // Despite the simplicity of structure, the process of putting the data in the map and writing the file is
-        // thread-safe. Each put operation triggers a writing of the file, and the file writes are effectively atomic.
-        // Of course, as a file write is involved, and as each file write rewrites the entire file, care should be
-        // taken to only use this for small amounts of data that change infrequently.
-        List<String> lines = new ArrayList<>();
-        for (String key : dataMap.keySet()) {
-            lines.add(key + "=" + dataMap.get(key));
-        }
+    // Writes any queued puts to disk.
+    public static void flush() {
+        log.flush();
+    }
 
-        FileUtil.writeFile(Paths.get(file.getAbsolutePath()), lines);
+    public static String getStatusString() {
+        return log.getStatusString();
     }
 
     public static String get(String key) {
@@ -132,31 +90,26 @@ public class PersistentData {
 
     public static void put(String key, String value) {
 
-        dataMap.put(key, value);
-        writeFile();
+        log.put(key, value);
     }
 
     public static void put(String key, boolean value) {
 
-        dataMap.put(key, value ? "1" : "0");
-        writeFile();
+        log.put(key, value ? "1" : "0");
     }
 
     public static void put(String key, int value) {
 
-        dataMap.put(key, value + "");
-        writeFile();
+        log.put(key, value + "");
     }
 
     public static void put(String key, long value) {
 
-        dataMap.put(key, value + "");
-        writeFile();
+        log.put(key, value + "");
     }
 
     public static void put(String key, byte[] value) {
 
-        dataMap.put(key, ByteUtil.arrayAsStringWithDashes(value));
-        writeFile();
+        log.put(key, ByteUtil.arrayAsStringWithDashes(value));
     }
 }
@@ -0,0 +1,93 @@
+package co.nyzo.verifier;
+
+import co.nyzo.verifier.messages.MeshDeltaRequest;
+import co.nyzo.verifier.messages.MeshDeltaResponse;
+import co.nyzo.verifier.messages.MeshResponse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RemoteMesh {
+
+    // This is a local copy of the mesh of a single remote node, kept current with delta requests. Versions are
+    // assigned independently by each node, so a separate instance must be used for each node that is queried. If the
+    // remote node does not support delta requests, standard mesh requests are used instead.
+
+    private final boolean inCycleOnly;
+    private final Map<ByteBuffer, Node> ipAddressToNodeMap = new ConcurrentHashMap<>();
+    private long epoch = 0L;
+    private long version = -1L;
+    private boolean deltaUnsupported = false;
+
+    public RemoteMesh(boolean inCycleOnly) {
+        this.inCycleOnly = inCycleOnly;
+    }
+
+    public synchronized Message request(byte[] privateSeed) {
+
+        MessageType type;
+        MessageObject content;
+        if (deltaUnsupported) {
+            type = inCycleOnly ? MessageType.MeshRequest15 : MessageType.FullMeshRequest41;
+            content = null;
+        } else {
+            type = MessageType.MeshDeltaRequest57;
+            content = new MeshDeltaRequest(epoch, version, inCycleOnly);
+        }
+
+        return privateSeed == null ? new Message(type, content) : new Message(type, content, privateSeed);
+    }
+
+    // Returns true if the response was applied.
+    public synchronized boolean process(Message message) {
+
+        boolean applied = false;
+        if (message != null) {
+            if (message.getContent() instanceof MeshDeltaResponse) {
+                MeshDeltaResponse response = (MeshDeltaResponse) message.getContent();
+                if (response.isFullSnapshot()) {
+                    ipAddressToNodeMap.clear();
+                }
+                for (ByteBuffer ipAddress : response.getRemovedIpAddresses()) {
+                    ipAddressToNodeMap.remove(ipAddress);
+                }
+                for (Node node : response.getNodes()) {
+                    ipAddressToNodeMap.put(ByteBuffer.wrap(node.getIpAddress()), node);
+                }
+                epoch = response.getEpoch();
+                version = response.getVersion();
+                applied = true;
+            } else if (message.getContent() instanceof MeshResponse) {
+                ipAddressToNodeMap.clear();
+                for (Node node : ((MeshResponse) message.getContent()).getMesh()) {
+                    ipAddressToNodeMap.put(ByteBuffer.wrap(node.getIpAddress()), node);
+                }
+                applied = true;
+            } else if (message.getType() == MessageType.Error65534) {
+                // The node does not recognize the delta request. Standard requests will be sent from now on.
+                deltaUnsupported = true;
+            }
+        }
+
+        return applied;
+    }
+
+    public synchronized void reset() {
+
+        ipAddressToNodeMap.clear();
+        epoch = 0L;
+        version = -1L;
+        deltaUnsupported = false;
+    }
+
+    public List<Node> getNodes() {
+        return new ArrayList<>(ipAddressToNodeMap.values());
+    }
+
+    public int size() {
+        return ipAddressToNodeMap.size();
+    }
+}
@@ -559,6 +559,42 @@ public class Transaction implements MessageObject {
         return transaction;
     }
 
+    // Advances the buffer past a transaction without building it. The layout is the same as in fromByteBuffer(), but
+    // previous-hash blocks are not looked up, and nothing is allocated.
+    public static void skip(ByteBuffer buffer, boolean balanceListCycleTransaction) {
+
+        byte type = buffer.get();
+        int position = buffer.position() + FieldByteSize.timestamp;
+        if (type == typeCoinGeneration) {
+            position += FieldByteSize.transactionAmount + FieldByteSize.identifier;
+        } else if (type == typeSeed || type == typeStandard || type == typeCycle) {
+            position += FieldByteSize.transactionAmount + FieldByteSize.identifier + FieldByteSize.blockHeight +
+                    FieldByteSize.identifier;
+            int senderDataLength = Math.min(buffer.get(position), FieldByteSize.maximumSenderDataLength);
+            if (senderDataLength < 0) {
+                throw new IllegalArgumentException("invalid sender-data length: " + senderDataLength);
+            }
+            position += 1 + senderDataLength + FieldByteSize.signature;
+            if (type == typeCycle) {
+                int numberOfCycleSignatures = buffer.getInt(position);
+                int cycleSignatureSize = balanceListCycleTransaction ?
+                        FieldByteSize.timestamp + FieldByteSize.identifier + 1 + FieldByteSize.signature :
+                        FieldByteSize.identifier + FieldByteSize.signature;
+                if (numberOfCycleSignatures < 0 || numberOfCycleSignatures > buffer.limit() / cycleSignatureSize) {
+                    throw new IllegalArgumentException("invalid number of cycle signatures: " +
+                            numberOfCycleSignatures);
+                }
+                position += FieldByteSize.unnamedInteger + numberOfCycleSignatures * cycleSignatureSize;
+            }
+        } else if (type == typeCycleSignature) {
+            position += FieldByteSize.identifier + 1 + FieldByteSize.signature * 2;
+        } else {
+            throw new IllegalArgumentException("unknown transaction type: " + type);
+        }
+
+        buffer.position(position);
+    }
+
     public static Transaction fromFile(RandomAccessFile file, long transactionHeight, byte[] previousHashInChain,
                                        boolean balanceListCycleTransaction) {
 
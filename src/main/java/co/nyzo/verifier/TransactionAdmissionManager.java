@@ -0,0 +1,135 @@
+package co.nyzo.verifier;
+
+import co.nyzo.verifier.messages.TransactionResponse;
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionAdmissionManager {
+
+    // Initial validation, which includes signature verification, is the expensive part of admitting a transaction.
+    // Lists of transactions are validated on a pool of worker threads, so transactions that arrive together are
+    // validated in parallel. A single transaction is validated on the calling thread, as a handoff to a worker would
+    // add latency without any parallelism. The signature state is memoized on the transaction, so block assembly does
+    // not verify the signatures of pool transactions again, but it still applies all of its other rules.
+    //
+    // When the queue is full, the submitting thread performs the work itself, which slows the producers instead of
+    // dropping transactions.
+
+    private static final int numberOfThreads = PreferencesUtil.getInt("transaction_validation_threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final int maximumQueueSize = 10000;
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60L,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(maximumQueueSize), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "TransactionAdmissionManager-" + threadNumber.incrementAndGet());
+        }
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final AtomicLong numberOfAcceptedTransactions = new AtomicLong(0L);
+    private static final AtomicLong numberOfRejectedTransactions = new AtomicLong(0L);
+    private static final AtomicLong totalValidationNanoseconds = new AtomicLong(0L);
+
+    public static TransactionResponse admit(Transaction transaction) {
+
+        long startNanoseconds = System.nanoTime();
+        TransactionResponse response = new TransactionResponse(transaction);
+        totalValidationNanoseconds.addAndGet(System.nanoTime() - startNanoseconds);
+        if (response.isAccepted()) {
+            numberOfAcceptedTransactions.incrementAndGet();
+        } else {
+            numberOfRejectedTransactions.incrementAndGet();
+        }
+
+        return response;
+    }
+
+    // Validates the transactions in parallel and adds the valid transactions to the pool. The responses are returned
+    // in the order of the transactions.
+    public static List<TransactionResponse> admit(List<Transaction> transactions) {
+
+        List<Future<TransactionResponse>> futures = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            futures.add(executor.submit(new Callable<TransactionResponse>() {
+                @Override
+                public TransactionResponse call() {
+                    return admit(transaction);
+                }
+            }));
+        }
+
+        List<TransactionResponse> responses = new ArrayList<>();
+        for (Future<TransactionResponse> future : futures) {
+            TransactionResponse response;
+            try {
+                response = future.get();
+            } catch (Exception e) {
+                LogUtil.println("exception in transaction admission: " + PrintUtil.printException(e));
+                response = new TransactionResponse(null);
+            }
+            responses.add(response);
+        }
+
+        return responses;
+    }
+
+    // Performs initial validation on the calling thread without adding the transaction to the pool.
+    public static boolean validate(Transaction transaction, StringBuilder validationError,
+                                   StringBuilder validationWarning) {
+
+        return transaction.performInitialValidation(validationError, validationWarning);
+    }
+
+    // Performs initial validation on the transactions in parallel without adding them to the pool. The error for each
+    // invalid transaction is stored at its index in validationErrors.
+    public static boolean[] validate(List<Transaction> transactions, String[] validationErrors) {
+
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            int index = i;
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    StringBuilder validationError = new StringBuilder();
+                    boolean valid = transaction.performInitialValidation(validationError, new StringBuilder());
+                    validationErrors[index] = validationError.toString().trim();
+                    return valid;
+                }
+            }));
+        }
+
+        boolean[] valid = new boolean[transactions.size()];
+        for (int i = 0; i < valid.length; i++) {
+            try {
+                valid[i] = futures.get(i).get();
+            } catch (Exception e) {
+                validationErrors[i] = "An unspecified validation error occurred.";
+            }
+        }
+
+        return valid;
+    }
+
+    public static String getStatusString() {
+
+        long numberOfTransactions = numberOfAcceptedTransactions.get() + numberOfRejectedTransactions.get();
+        return "accepted: " + numberOfAcceptedTransactions.get() + ", rejected: " +
+                numberOfRejectedTransactions.get() + ", queued: " + executor.getQueue().size() + ", average: " +
+                String.format("%.1f", numberOfTransactions == 0 ? 0.0 :
+                        totalValidationNanoseconds.get() / 1000.0 / numberOfTransactions) + " us";
+    }
+}
@@ -1,22 +1,90 @@
 package co.nyzo.verifier;
 
-import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
 
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class TransactionPool {
 
+    // Transactions are admitted concurrently. The per-sender limit is enforced under a lock selected by the sender
+    // identifier, so only transactions from senders that share a stripe contend with one another. Admissions share a
+    // read lock that the frozen-edge update takes exclusively while it removes old heights, so the counters always
+    // match the contents of the pool.
+    //
+    // Each height has a map of transactions by signature for duplicate detection and an index in block order for
+    // block assembly. Reads do not lock, and they see a weakly consistent view of the pool.
+    //
+    // The pool has a global budget for the number of transactions and their approximate memory. When an admission
+    // would exceed the budget, transactions are evicted from the furthest height first and, within a height, lowest
+    // fee first. A transaction that would not displace anything is rejected with a retry hint, so a flood of valid
+    // transactions for future heights displaces only other future transactions and cannot grow the pool without limit.
+    // Admissions check the budget before they take a sender lock, so concurrent admissions may exceed the budget by at
+    // most one transaction each.
+
+    private static final int numberOfSenderLocks = 64;
+    private static final Object[] senderLocks = new Object[numberOfSenderLocks];
+    static {
+        for (int i = 0; i < numberOfSenderLocks; i++) {
+            senderLocks[i] = new Object();
+        }
+    }
+
+    private static final ReentrantReadWriteLock edgeLock = new ReentrantReadWriteLock();
     private static long frozenEdgeHeight = 1L;
-    private static final Map<Long, Map<ByteBuffer, Transaction>> transactions = new ConcurrentHashMap<>();
-    private static Map<ByteBuffer, Integer> senderCountMap = new ConcurrentHashMap<>();
+
+    private static final ConcurrentNavigableMap<Long, HeightBucket> transactions = new ConcurrentSkipListMap<>();
+    private static final Map<ByteBuffer, Integer> senderCountMap = new ConcurrentHashMap<>();
+    private static final AtomicInteger numberOfTransactions = new AtomicInteger(0);
+    private static final AtomicLong numberOfBytes = new AtomicLong(0L);
+    private static final AtomicLong numberOfEvictedTransactions = new AtomicLong(0L);
+    private static final AtomicLong numberOfTryLaterRejections = new AtomicLong(0L);
+    private static final Object evictionLock = new Object();
+
+    // Within a height, transactions are evicted in order of increasing fee.
+    private static final Comparator<Transaction> feeComparator = new Comparator<Transaction>() {
+        @Override
+        public int compare(Transaction transaction1, Transaction transaction2) {
+            int result = Long.compare(transaction1.getFee(), transaction2.getFee());
+            if (result == 0) {
+                result = ByteBuffer.wrap(transaction1.getSignature()).compareTo(
+                        ByteBuffer.wrap(transaction2.getSignature()));
+            }
+
+            return result;
+        }
+    };
 
     private static final int maximumTransactionsInPoolPerSender = 100;
     private static final long maximumBlocksInFutureAccepted = 12343L;  // one day
+    private static final int maximumTransactionsInPool = PreferencesUtil.getInt("transaction_pool_maximum_transactions",
+            100000);
+    private static final long maximumBytesInPool = PreferencesUtil.getLong("transaction_pool_maximum_bytes",
+            64L * 1024L * 1024L);
+
+    // This is added to the serialized size of each transaction to approximate the memory of the transaction object and
+    // its entries in the maps and indexes of the pool.
+    private static final int estimatedOverheadPerTransaction = 400;
+
+    // These are the upper bounds, in blocks past the frozen edge, of the windows reported by occupancyByHeightWindow().
+    private static final long[] occupancyWindows = { 10L, 100L, 1000L, maximumBlocksInFutureAccepted };
 
-    public static synchronized boolean addTransaction(Transaction transaction, StringBuilder error,
-                                                      StringBuilder warning) {
+    public static boolean addTransaction(Transaction transaction, StringBuilder error, StringBuilder warning) {
+
+        return addTransaction(transaction, error, warning, null);
+    }
+
+    // When the transaction is rejected because the pool is full, the suggested wait before resubmitting is stored in
+    // retryAfterMilliseconds, if provided. Otherwise, it is set to zero.
+    public static boolean addTransaction(Transaction transaction, StringBuilder error, StringBuilder warning,
+                                         AtomicLong retryAfterMilliseconds) {
 
         // Ensure the error and warning string builders are not null to simplify later logic.
         if (error == null) {
@@ -25,114 +93,293 @@ public class TransactionPool {
         if (warning == null) {
             warning = new StringBuilder();
         }
+        if (retryAfterMilliseconds != null) {
+            retryAfterMilliseconds.set(0L);
+        }
 
         boolean addedToPool;
         long transactionBlockHeight = BlockManager.heightForTimestamp(transaction.getTimestamp());
         long maximumAcceptedHeight = BlockManager.openEdgeHeight(true) + maximumBlocksInFutureAccepted;
-        if (transactionBlockHeight <= frozenEdgeHeight) {
-            addedToPool = false;
-            error.append("The block height of the transaction, ").append(transactionBlockHeight)
-                    .append(", is at or behind the frozen edge, ").append(frozenEdgeHeight).append(". ");
-        } else if (transactionBlockHeight > maximumAcceptedHeight) {
-            addedToPool = false;
-            error.append("The block height for the transaction, ").append(transactionBlockHeight)
-                    .append(", is past the height for which transactions are currently being accepted, ")
-                    .append(maximumAcceptedHeight).append(". ");
-        } else {
-
-            // Only add the transaction if the sender is known to the system.
-            if (BalanceListManager.accountIsInSystem(transaction.getSenderIdentifier())) {
-
-                // Get the map of transactions for the height. Make the map, if necessary.
-                Map<ByteBuffer, Transaction> transactionsForHeight = transactions.get(transactionBlockHeight);
-                if (transactionsForHeight == null) {
-                    transactionsForHeight = new HashMap<>();
-                    transactions.put(transactionBlockHeight, transactionsForHeight);
-                }
+        edgeLock.readLock().lock();
+        try {
+            if (transactionBlockHeight <= frozenEdgeHeight) {
+                addedToPool = false;
+                error.append("The block height of the transaction, ").append(transactionBlockHeight)
+                        .append(", is at or behind the frozen edge, ").append(frozenEdgeHeight).append(". ");
+            } else if (transactionBlockHeight > maximumAcceptedHeight) {
+                addedToPool = false;
+                error.append("The block height for the transaction, ").append(transactionBlockHeight)
+                        .append(", is past the height for which transactions are currently being accepted, ")
+                        .append(maximumAcceptedHeight).append(". ");
+            } else if (!BalanceListManager.accountIsInSystem(transaction.getSenderIdentifier())) {
 
-                // If this is a new transaction and the sender has not exceeded their limit, add this transaction.
+                // Only add the transaction if the sender is known to the system.
+                addedToPool = false;
+                error.append("This sender was not found in the system. ");
+            } else {
+
+                // If this is a new transaction and the pool is over budget, try to make room for it. Duplicates and
+                // transactions from senders at their limit do not evict other transactions; they are handled below.
                 ByteBuffer senderIdentifier = ByteBuffer.wrap(transaction.getSenderIdentifier());
                 ByteBuffer signature = ByteBuffer.wrap(transaction.getSignature());
-                if (transactionsForHeight.keySet().contains(signature)) {
-                    addedToPool = true;
-                    warning.append("This transaction was already in the system. ");
-                } else if (senderCountMap.getOrDefault(senderIdentifier, 0) >= maximumTransactionsInPoolPerSender) {
-                    addedToPool = false;
-                    error.append("This sender has too many transactions currently waiting to be processed. ");
-                } else {
-
-                    addedToPool = true;
+                int size = transaction.getByteSize() + estimatedOverheadPerTransaction;
+                HeightBucket bucket = transactions.get(transactionBlockHeight);
+                boolean roomAvailable = (bucket != null && bucket.transactionMap.containsKey(signature)) ||
+                        senderCountMap.getOrDefault(senderIdentifier, 0) >= maximumTransactionsInPoolPerSender ||
+                        makeRoom(transactionBlockHeight, transaction.getFee(), size);
 
-                    // Increment the count for the sender.
-                    senderCountMap.put(senderIdentifier, senderCountMap.getOrDefault(senderIdentifier, 0) + 1);
+                // Get the bucket of transactions for the height. Make the bucket, if necessary. Buckets are only made
+                // for transactions that fit in the budget, so rejected transactions do not leave empty buckets.
+                if (bucket == null && roomAvailable) {
+                    HeightBucket newBucket = new HeightBucket();
+                    bucket = transactions.putIfAbsent(transactionBlockHeight, newBucket);
+                    if (bucket == null) {
+                        bucket = newBucket;
+                    }
+                }
 
-                    // Put the transaction in the map for the height.
-                    transactionsForHeight.put(signature, transaction);
+                // If there is room, this is a new transaction, and the sender has not exceeded their limit, add this
+                // transaction.
+                synchronized (senderLock(senderIdentifier)) {
+                    int senderCount = senderCountMap.getOrDefault(senderIdentifier, 0);
+                    if (bucket != null && bucket.transactionMap.containsKey(signature)) {
+                        addedToPool = true;
+                        warning.append("This transaction was already in the system. ");
+                    } else if (!roomAvailable) {
+                        addedToPool = false;
+                        long retryAfter = retryHintMilliseconds();
+                        error.append("The transaction pool is full. Please try again in ")
+                                .append((retryAfter + 999L) / 1000L).append(" seconds. ");
+                        if (retryAfterMilliseconds != null) {
+                            retryAfterMilliseconds.set(retryAfter);
+                        }
+                        numberOfTryLaterRejections.incrementAndGet();
+                    } else if (senderCount >= maximumTransactionsInPoolPerSender) {
+                        addedToPool = false;
+                        error.append("This sender has too many transactions currently waiting to be processed. ");
+                    } else if (bucket.transactionMap.putIfAbsent(signature, transaction) != null) {
+                        addedToPool = true;
+                        warning.append("This transaction was already in the system. ");
+                    } else {
+                        addedToPool = true;
+                        bucket.assemblyIndex.add(transaction);
+                        bucket.feeIndex.add(transaction);
+                        senderCountMap.put(senderIdentifier, senderCount + 1);
+                        numberOfTransactions.incrementAndGet();
+                        numberOfBytes.addAndGet(size);
+                    }
                 }
-            } else {
-                addedToPool = false;
-                error.append("This sender was not found in the system. ");
             }
+        } finally {
+            edgeLock.readLock().unlock();
         }
 
         return addedToPool;
     }
 
-    public static synchronized List<Transaction> transactionsForHeight(long blockHeight) {
+    // The transactions are returned in block order, as required by BalanceManager.approvedTransactionsForBlock().
+    public static List<Transaction> transactionsForHeight(long blockHeight) {
 
         List<Transaction> transactionsForHeight = new ArrayList<>();
-        Map<ByteBuffer, Transaction> transactionMapForHeight = transactions.get(blockHeight);
-        if (transactionMapForHeight != null) {
-            transactionsForHeight.addAll(transactionMapForHeight.values());
+        HeightBucket bucket = transactions.get(blockHeight);
+        if (bucket != null) {
+            transactionsForHeight.addAll(bucket.assemblyIndex);
         }
 
         return transactionsForHeight;
     }
 
-    public static synchronized List<Transaction> allTransactions() {
+    public static List<Transaction> allTransactions() {
 
         List<Transaction> allTransactions = new ArrayList<>();
-        for (Map<ByteBuffer, Transaction> transactionsForHeight : transactions.values()) {
-            allTransactions.addAll(transactionsForHeight.values());
+        for (HeightBucket bucket : transactions.values()) {
+            allTransactions.addAll(bucket.assemblyIndex);
         }
 
         return allTransactions;
     }
 
-    public static synchronized int transactionPoolSize() {
+    public static int transactionPoolSize() {
+
+        return numberOfTransactions.get();
+    }
+
+    public static int numberOfTransactionsForHeight(long blockHeight) {
 
-        int numberOfTransactions = 0;
-        for (Map<ByteBuffer, Transaction> transactionsForHeight : transactions.values()) {
-            numberOfTransactions += transactionsForHeight.size();
+        HeightBucket bucket = transactions.get(blockHeight);
+        return bucket == null ? 0 : bucket.transactionMap.size();
+    }
+
+    public static int numberOfTransactionsForSender(byte[] senderIdentifier) {
+
+        return senderCountMap.getOrDefault(ByteBuffer.wrap(senderIdentifier), 0);
+    }
+
+    public static int numberOfSenders() {
+
+        return senderCountMap.size();
+    }
+
+    public static long numberOfBytes() {
+
+        return numberOfBytes.get();
+    }
+
+    // Returns the number of transactions and their approximate memory in windows of heights past the frozen edge. The
+    // windows are 1-10, 11-100, 101-1000, and 1001-12343 blocks past the frozen edge.
+    public static List<String> occupancyByHeightWindow() {
+
+        long[] windowCounts = new long[occupancyWindows.length];
+        long[] windowBytes = new long[occupancyWindows.length];
+        long edgeHeight = frozenEdgeHeight;
+        for (Map.Entry<Long, HeightBucket> entry : transactions.entrySet()) {
+            long blocksPastEdge = entry.getKey() - edgeHeight;
+            int window = 0;
+            while (window < occupancyWindows.length - 1 && blocksPastEdge > occupancyWindows[window]) {
+                window++;
+            }
+            for (Transaction transaction : entry.getValue().transactionMap.values()) {
+                windowCounts[window]++;
+                windowBytes[window] += transaction.getByteSize() + estimatedOverheadPerTransaction;
+            }
+        }
+
+        List<String> occupancy = new ArrayList<>();
+        for (int i = 0; i < occupancyWindows.length; i++) {
+            occupancy.add("+" + (i == 0 ? 1L : occupancyWindows[i - 1] + 1L) + "-" + occupancyWindows[i] + ": " +
+                    windowCounts[i] + " (" + windowBytes[i] / 1024L + " kB)");
         }
 
-        return numberOfTransactions;
+        return occupancy;
     }
 
-    public static synchronized void updateFrozenEdge() {
+    public static String getStatusString() {
 
-        long newFrozenEdgeHeight = BlockManager.getFrozenEdgeHeight();
-        if (newFrozenEdgeHeight > frozenEdgeHeight) {
-            frozenEdgeHeight = newFrozenEdgeHeight;
-            for (Long height : new HashSet<>(transactions.keySet())) {
-                if (height <= frozenEdgeHeight) {
-                    transactions.remove(height);
+        return numberOfTransactions.get() + "/" + maximumTransactionsInPool + ", " + numberOfBytes.get() / 1024L +
+                "/" + maximumBytesInPool / 1024L + " kB, evicted: " + numberOfEvictedTransactions.get() +
+                ", try later: " + numberOfTryLaterRejections.get();
+    }
+
+    private static boolean overBudget(int additionalSize) {
+
+        return numberOfTransactions.get() >= maximumTransactionsInPool ||
+                numberOfBytes.get() + additionalSize > maximumBytesInPool;
+    }
+
+    // Evicts transactions until a transaction with the provided height, fee, and size fits in the budget. Only
+    // transactions at greater heights, or at the same height with lower fees, are evicted. This is called with the
+    // read lock of the edge lock held and without any sender locks held.
+    private static boolean makeRoom(long height, long fee, int size) {
+
+        boolean roomAvailable = !overBudget(size);
+        if (!roomAvailable) {
+            synchronized (evictionLock) {
+                boolean evictionPossible = true;
+                while (!(roomAvailable = !overBudget(size)) && evictionPossible) {
+
+                    // Find the lowest-fee transaction at the furthest height. Empty buckets are only removed when the
+                    // frozen edge passes them, as an admission may be adding to them.
+                    Map.Entry<Long, HeightBucket> victimEntry = null;
+                    Transaction victim = null;
+                    for (Map.Entry<Long, HeightBucket> entry : transactions.tailMap(height, true)
+                            .descendingMap().entrySet()) {
+                        if (!entry.getValue().feeIndex.isEmpty()) {
+                            try {
+                                victim = entry.getValue().feeIndex.first();
+                                victimEntry = entry;
+                                break;
+                            } catch (NoSuchElementException ignored) { }
+                        }
+                    }
+
+                    evictionPossible = victim != null && (victimEntry.getKey() > height || victim.getFee() < fee);
+                    if (evictionPossible) {
+                        evict(victimEntry.getValue(), victim);
+                    }
                 }
             }
         }
 
-        // Instead of decrementing the counters for each sender as transactions are removed, the count map is rebuilt
-        // here. This is a more robust solution that leaves the transaction map as the sole long-term authority on
-        // transactions.
-        Map<ByteBuffer, Integer> senderCountMap = new ConcurrentHashMap<>();
-        for (Long height : transactions.keySet()) {
-            for (Transaction transaction : transactions.get(height).values()) {
-                ByteBuffer senderIdentifier = ByteBuffer.wrap(transaction.getSenderIdentifier());
-                senderCountMap.put(senderIdentifier, senderCountMap.getOrDefault(senderIdentifier, 0) + 1);
+        return roomAvailable;
+    }
+
+    private static void evict(HeightBucket bucket, Transaction transaction) {
+
+        ByteBuffer senderIdentifier = ByteBuffer.wrap(transaction.getSenderIdentifier());
+        synchronized (senderLock(senderIdentifier)) {
+            bucket.feeIndex.remove(transaction);
+            if (bucket.transactionMap.remove(ByteBuffer.wrap(transaction.getSignature()), transaction)) {
+                bucket.assemblyIndex.remove(transaction);
+                int senderCount = senderCountMap.getOrDefault(senderIdentifier, 0) - 1;
+                if (senderCount > 0) {
+                    senderCountMap.put(senderIdentifier, senderCount);
+                } else {
+                    senderCountMap.remove(senderIdentifier);
+                }
+                numberOfTransactions.decrementAndGet();
+                numberOfBytes.addAndGet(-(transaction.getByteSize() + estimatedOverheadPerTransaction));
+                numberOfEvictedTransactions.incrementAndGet();
+            }
+        }
+    }
+
+    // Space is released when the frozen edge passes the lowest height in the pool, so the hint is the time until that
+    // height is frozen, at least one block duration.
+    private static long retryHintMilliseconds() {
+
+        long lowestHeight = frozenEdgeHeight + 1L;
+        for (Map.Entry<Long, HeightBucket> entry : transactions.entrySet()) {
+            if (!entry.getValue().transactionMap.isEmpty()) {
+                lowestHeight = entry.getKey();
+                break;
+            }
+        }
+
+        return Math.max(1L, lowestHeight - frozenEdgeHeight) * Block.blockDuration;
+    }
+
+    public static void updateFrozenEdge() {
+
+        long newFrozenEdgeHeight = BlockManager.getFrozenEdgeHeight();
+        edgeLock.writeLock().lock();
+        try {
+            if (newFrozenEdgeHeight > frozenEdgeHeight) {
+                frozenEdgeHeight = newFrozenEdgeHeight;
+
+                // No admissions are in progress while the write lock is held, so the counters can be decremented for
+                // the removed transactions without taking the sender locks.
+                Map<Long, HeightBucket> removedHeights = transactions.headMap(frozenEdgeHeight, true);
+                for (HeightBucket bucket : removedHeights.values()) {
+                    for (Transaction transaction : bucket.transactionMap.values()) {
+                        ByteBuffer senderIdentifier = ByteBuffer.wrap(transaction.getSenderIdentifier());
+                        int senderCount = senderCountMap.getOrDefault(senderIdentifier, 0) - 1;
+                        if (senderCount > 0) {
+                            senderCountMap.put(senderIdentifier, senderCount);
+                        } else {
+                            senderCountMap.remove(senderIdentifier);
+                        }
+                        numberOfBytes.addAndGet(-(transaction.getByteSize() + estimatedOverheadPerTransaction));
+                    }
+                    numberOfTransactions.addAndGet(-bucket.transactionMap.size());
+                }
+                removedHeights.clear();
             }
+        } finally {
+            edgeLock.writeLock().unlock();
         }
+    }
+
+    private static Object senderLock(ByteBuffer senderIdentifier) {
+
+        int hash = senderIdentifier.hashCode();
+        return senderLocks[(hash ^ (hash >>> 16)) & (numberOfSenderLocks - 1)];
+    }
+
+    private static class HeightBucket {
 
-        // Assign the new map to the class variable.
-        TransactionPool.senderCountMap = senderCountMap;
+        private final Map<ByteBuffer, Transaction> transactionMap = new ConcurrentHashMap<>();
+        private final Set<Transaction> assemblyIndex =
+                new ConcurrentSkipListSet<>(BalanceManager.blockOrderComparator);
+        private final NavigableSet<Transaction> feeIndex = new ConcurrentSkipListSet<>(feeComparator);
     }
 }
@@ -86,8 +86,13 @@ public class UnfrozenBlockManager {
         if (block != null && block.getBlockHeight() > frozenEdgeHeight && block.signatureIsValid() &&
                 block.getBlockHeight() <= BlockManager.openEdgeHeight(true)) {
 
-            // Get the map of blocks at this height.
+            // Record the first block from another verifier in the consensus timeline.
             long blockHeight = block.getBlockHeight();
+            if (!ByteUtil.arraysAreEqual(block.getVerifierIdentifier(), Verifier.getIdentifier())) {
+                ConsensusTimeline.record(blockHeight, ConsensusTimeline.Event.CandidateReceived);
+            }
+
+            // Get the map of blocks at this height.
             Map<ByteBuffer, Block> blocksAtHeight = unfrozenBlocks.get(blockHeight);
             if (blocksAtHeight == null) {
                 blocksAtHeight = new ConcurrentHashMap<>();
@@ -240,6 +245,7 @@ public class UnfrozenBlockManager {
                 int votingPoolSize = BlockManager.currentCycleLength();
                 int numberOfVotesAtHeight = BlockVoteManager.numberOfVotesAtHeight(height);
                 if (numberOfVotesAtHeight > votingPoolSize * 3 / 4) {
+                    ConsensusTimeline.record(height, ConsensusTimeline.Event.ThresholdReached);
                     AtomicInteger voteCountWrapper = new AtomicInteger(0);
                     byte[] leadingHash = BlockVoteManager.leadingHashForHeight(height, voteCountWrapper);
                     Block leadingHashBlock = unfrozenBlockAtHeight(height, leadingHash);
@@ -329,6 +335,9 @@ public class UnfrozenBlockManager {
 
                 // If the current vote is null, or if the hash has changed, store the new vote.
                 if (currentVote == null || !ByteUtil.arraysAreEqual(currentVote.getHash(), newVoteHash)) {
+                    if (currentVote != null) {
+                        ConsensusTimeline.record(height, ConsensusTimeline.Event.VoteChanged);
+                    }
                     currentVote = new BlockVote(height, newVoteHash, 0L);
                     System.out.println("storing new vote, height=" + currentVote.getHeight() + ", hash=" +
                             PrintUtil.compactPrintByteArray(currentVote.getHash()));
@@ -342,6 +351,7 @@ public class UnfrozenBlockManager {
 
         System.out.println("^^^^^^^^^^^^^^^^^^^^^ casting vote for height " + height);
         lastBlockVoteTimestamp = System.currentTimeMillis();
+        ConsensusTimeline.record(height, ConsensusTimeline.Event.VoteCast);
 
         // Create the vote and register it locally.
         BlockVote vote = new BlockVote(height, hash, System.currentTimeMillis());
@@ -377,6 +387,7 @@ public class UnfrozenBlockManager {
             Block block = unfrozenBlockAtHeight(heightToFreeze, leadingHash);
             if (block != null) {
                 System.out.println("freezing block " + block + " with standard mechanism");
+                ConsensusTimeline.record(heightToFreeze, ConsensusTimeline.Event.FreezeDecided);
                 BlockManager.freezeBlock(block);
                 frozeBlock = true;
             }
@@ -512,8 +523,8 @@ public class UnfrozenBlockManager {
 
     public static void fetchMissingBlock(long height, byte[] hash) {
 
-        LogUtil.println("fetching block " + height + " (" + PrintUtil.compactPrintByteArray(hash) + ") from mesh on " +
-                Verifier.getNickname());
+        LogUtil.log(LogUtil.Level.Info, "UnfrozenBlockManager.fetchMissingBlock", "fetching block %d (%s) from mesh " +
+                "on %s", height, PrintUtil.compactPrintByteArray(hash), Verifier.getNickname());
         Message blockRequest = new Message(MessageType.MissingBlockRequest25,
                 new MissingBlockRequest(height, hash));
         Message.fetchFromRandomNode(blockRequest, new MessageCallback() {
@@ -267,7 +267,7 @@ public class Verifier {
     private static void fetchMesh(TrustedEntryPoint entryPoint, AtomicInteger numberOfMeshResponsesPending) {
 
         Message meshRequest = new Message(MessageType.MeshRequest15, null);
-        Message.fetchTcp(entryPoint.getHost(), entryPoint.getPort(), meshRequest, new MessageCallback() {
+        Message.fetchTcpCompressed(entryPoint.getHost(), entryPoint.getPort(), meshRequest, new MessageCallback() {
             @Override
             public void responseReceived(Message message) {
 
@@ -413,6 +413,8 @@ public class Verifier {
 
                         LogUtil.println("transmitting block " + nextBlock);
                         Message.broadcast(new Message(MessageType.NewBlock9, new NewBlockMessage(nextBlock)));
+                        ConsensusTimeline.record(nextBlock.getBlockHeight(),
+                                ConsensusTimeline.Event.BlockTransmitted);
                         numberOfBlocksTransmitted++;
                         transmittedBlock = true;
                     }
@@ -656,6 +658,9 @@ public class Verifier {
             // Create the block. If the block is not discontinuous, register it with UnfrozenBlockManager.
             Block nextBlock = createNextBlock(block, upgradeBlockchainVersion);
             numberOfBlocksCreated++;
+            if (nextBlock != null && !upgradeBlockchainVersion) {
+                ConsensusTimeline.record(nextBlock.getBlockHeight(), ConsensusTimeline.Event.BlockCreated);
+            }
             if (nextBlock != null && nextBlock.getContinuityState() != ContinuityState.Discontinuous) {
                 UnfrozenBlockManager.registerBlock(nextBlock);
             }
@@ -30,7 +30,11 @@ public class VerifierPerformanceManager {
     
     private static final Map<ByteBuffer, Long> voteMessageIpToTimestampMap = new ConcurrentHashMap<>();
 
+    // Scores are stored in a binary snapshot and journal. The text file of earlier versions is read only when the
+    // binary files are not present.
     public static final File scoreFile = new File(Verifier.dataRootDirectory, "performance_scores_v3");
+    private static final BinaryRecordStore scoreStore = new BinaryRecordStore(new File(Verifier.dataRootDirectory,
+            "performance_scores_v4"));
 
     private static final BiFunction<Integer, Integer, Integer> mergeFunction =
             new BiFunction<Integer, Integer, Integer>() {
@@ -90,15 +94,36 @@ public class VerifierPerformanceManager {
 
     private static void persistScores() {
 
-        List<String> lines = printScores();
-        Path path = Paths.get(scoreFile.getAbsolutePath());
-        FileUtil.writeFile(path, lines);
+        // Only the scores that changed are queued, and the store writes them on its own thread.
+        Map<ByteBuffer, byte[]> records = new HashMap<>();
+        for (Map.Entry<ByteBuffer, Integer> entry : verifierScoreMap.entrySet()) {
+            records.put(entry.getKey(), ByteBuffer.allocate(FieldByteSize.unnamedInteger).putInt(entry.getValue())
+                    .array());
+        }
+        scoreStore.update(records);
     }
 
     private static void loadPersistedScores() {
 
         // This method is called in the class's static block. We load any scores that were previously saved to disk so
         // that scores do not reset each time the verifier is reloaded.
+        if (scoreStore.isLoaded()) {
+            for (Map.Entry<ByteBuffer, byte[]> entry : scoreStore.getRecords().entrySet()) {
+                if (entry.getKey().capacity() == FieldByteSize.identifier &&
+                        entry.getValue().length == FieldByteSize.unnamedInteger) {
+                    verifierScoreMap.put(entry.getKey(), ByteBuffer.wrap(entry.getValue()).getInt());
+                }
+            }
+
+            System.out.println("loaded " + verifierScoreMap.size() + " scores from binary file");
+        } else {
+            loadTextScores();
+            persistScores();
+        }
+    }
+
+    private static void loadTextScores() {
+
         Path path = Paths.get(scoreFile.getAbsolutePath());
         try {
             List<String> lines = Files.readAllLines(path);
@@ -122,6 +147,10 @@ public class VerifierPerformanceManager {
         } catch (Exception ignored) { }
     }
 
+    public static String getScoreStoreStatusString() {
+        return scoreStore.getStatusString();
+    }
+
     public static List<String> printScores() {
 
         // Scores are written one per line: verifier, followed by identifier. For ease of reading, they are sorted
@@ -57,6 +57,8 @@ public class ClientController {
             for (Command command : CommandManager.getCommands()) {
                 if (!(command instanceof ExitCommand) && !command.isLongRunning()) {
                     map.put(new Endpoint("/api/" + command.getLongCommand()), new CommandEndpointApi(command));
+                    map.put(new Endpoint("/api/" + command.getLongCommand(), HttpMethod.Post),
+                            new CommandEndpointApi(command));
                 }
             }
         }
@@ -112,7 +114,7 @@ public class ClientController {
         body.add(new P("frozen edge: " + frozenEdgeHeight + " (" + distanceBehindOpen + " behind open)")
                 .attr("style", "font-style: italic;"));
 
-        return new EndpointResponse(html.renderByteArray());
+        return new EndpointResponse(html);
     }
 
     public static EndpointResponse commandOutput(EndpointRequest request) {
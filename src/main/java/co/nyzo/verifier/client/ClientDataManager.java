@@ -164,28 +164,27 @@ public class ClientDataManager {
         for (TrustedEntryPoint trustedEntryPoint : trustedEntryPoints) {
 
             Message message = new Message(MessageType.MeshRequest15, null);
-            Message.fetchTcp(trustedEntryPoint.getHost(), trustedEntryPoint.getPort(), message, new MessageCallback() {
-                @Override
-                public void responseReceived(Message message) {
-                    if (message.getContent() instanceof MeshResponse) {
-                        ClientNodeManager.processMeshResponse((MeshResponse) message.getContent());
-                    }
-                }
-            });
+            Message.fetchTcpCompressed(trustedEntryPoint.getHost(), trustedEntryPoint.getPort(), message,
+                    new MessageCallback() {
+                        @Override
+                        public void responseReceived(Message message) {
+                            if (message.getContent() instanceof MeshResponse) {
+                                ClientNodeManager.processMeshResponse((MeshResponse) message.getContent());
+                            }
+                        }
+                    });
         }
     }
 
     private static void updateMesh() {
 
-        Message message = new Message(MessageType.MeshRequest15, null);
-        Node node = ClientNodeManager.randomNode();
+        Node node = ClientNodeManager.meshSourceNode();
         if (node != null) {
+            Message message = ClientNodeManager.meshRequest();
             Message.fetch(node, message, new MessageCallback() {
                 @Override
                 public void responseReceived(Message message) {
-                    if (message.getContent() instanceof MeshResponse) {
-                        ClientNodeManager.processMeshResponse((MeshResponse) message.getContent());
-                    }
+                    ClientNodeManager.processMeshSourceResponse(message);
                 }
             });
         }
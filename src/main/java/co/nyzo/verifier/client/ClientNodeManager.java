@@ -1,6 +1,9 @@
 package co.nyzo.verifier.client;
 
+import co.nyzo.verifier.ByteUtil;
+import co.nyzo.verifier.Message;
 import co.nyzo.verifier.Node;
+import co.nyzo.verifier.RemoteMesh;
 import co.nyzo.verifier.messages.MeshResponse;
 
 import java.nio.ByteBuffer;
@@ -16,6 +19,11 @@ public class ClientNodeManager {
     // list with invalid entries. For simplicity in the initial release, nodes are accepted without vetting.
     private static Map<ByteBuffer, Node> nodes = new ConcurrentHashMap<>();
 
+    // After the initial load, the mesh is refreshed from a single source node with delta requests. The source only
+    // changes when it is no longer in the mesh.
+    private static final RemoteMesh remoteMesh = new RemoteMesh(true);
+    private static byte[] meshSourceIdentifier = null;
+
     public static void processMeshResponse(MeshResponse meshResponse) {
 
         if (meshResponse != null && meshResponse.getMesh() != null) {
@@ -25,6 +33,46 @@ public class ClientNodeManager {
         }
     }
 
+    public static Node meshSourceNode() {
+
+        // Use the current source if it is still available. Otherwise, choose a new source and discard the state of the
+        // previous source.
+        Node node = null;
+        if (meshSourceIdentifier != null) {
+            for (Node meshNode : nodes.values()) {
+                if (ByteUtil.arraysAreEqual(meshNode.getIdentifier(), meshSourceIdentifier)) {
+                    node = meshNode;
+                }
+            }
+        }
+
+        if (node == null) {
+            node = randomNode();
+            remoteMesh.reset();
+            meshSourceIdentifier = node == null ? null : node.getIdentifier();
+        }
+
+        return node;
+    }
+
+    public static Message meshRequest() {
+        return remoteMesh.request(null);
+    }
+
+    public static void processMeshSourceResponse(Message message) {
+
+        // The response is only used if it is from the expected source. If the source returns an empty mesh, the
+        // existing mesh is retained.
+        if (message != null && ByteUtil.arraysAreEqual(message.getSourceNodeIdentifier(), meshSourceIdentifier) &&
+                remoteMesh.process(message) && remoteMesh.size() > 0) {
+            Map<ByteBuffer, Node> nodes = new ConcurrentHashMap<>();
+            for (Node node : remoteMesh.getNodes()) {
+                nodes.put(ByteBuffer.wrap(node.getIpAddress()), node);
+            }
+            ClientNodeManager.nodes = nodes;
+        }
+    }
+
     public static Node randomNode() {
         return randomElement(nodes.values());
     }
@@ -1,6 +1,8 @@
 package co.nyzo.verifier.client;
 
 import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.TransactionBatch;
+import co.nyzo.verifier.messages.TransactionBatchResponse;
 import co.nyzo.verifier.messages.TransactionResponse;
 import co.nyzo.verifier.nyzoString.*;
 import co.nyzo.verifier.util.IpUtil;
@@ -11,7 +13,11 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
 
 public class ClientTransactionUtil {
 
@@ -106,29 +112,15 @@ public class ClientTransactionUtil {
     public static ByteBuffer[] sendTransactionToLikelyBlockVerifiers(Transaction transaction, boolean waitForBlock,
                                                                      CommandOutput output) {
 
-        // This is an array of size 3. The first position is the verifier one ahead of the expected verifier (block
-        // height = n - 1). The second position is the expected verifier (block height = n). The third position is one
-        // behind the expected verifier (block height = n + 1).
-        ByteBuffer[] verifiers = new ByteBuffer[3];
-
         // Determine the height at which the transaction will be included.
         long transactionHeight = BlockManager.heightForTimestamp(transaction.getTimestamp());
 
-        // Get the current frozen edge and the current cycle. Using the frozen edge as a reference, the verifier that
-        // should be expected to verify this block can be determined based on its position in the cycle.
-        Block frozenEdge = BlockManager.getFrozenEdge();
-        List<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleList();
-        int frozenEdgeVerifierIndex = currentCycle.indexOf(ByteBuffer.wrap(frozenEdge.getVerifierIdentifier()));
-
         // Send the transaction to the expected verifier, the previous verifier, and the next verifier.
+        ByteBuffer[] verifiers = likelyBlockVerifiers(transaction);
         Set<ByteBuffer> likelyVerifiers = new HashSet<>();
-        for (int i = -1; i < 2; i++) {
-            int indexOfVerifier = (int) ((transactionHeight - frozenEdge.getBlockHeight() +
-                    frozenEdgeVerifierIndex + i) % currentCycle.size());
-            if (indexOfVerifier >= 0 && indexOfVerifier < currentCycle.size()) {
-                ByteBuffer identifier = currentCycle.get(indexOfVerifier);
+        for (ByteBuffer identifier : verifiers) {
+            if (identifier != null) {
                 likelyVerifiers.add(identifier);
-                verifiers[i + 1] = identifier;
             }
         }
 
@@ -207,6 +199,161 @@ public class ClientTransactionUtil {
         return verifiers;
     }
 
+    // This returns an array of size 3. The first position is the verifier one ahead of the expected verifier (block
+    // height = n - 1). The second position is the expected verifier (block height = n). The third position is one
+    // behind the expected verifier (block height = n + 1).
+    public static ByteBuffer[] likelyBlockVerifiers(Transaction transaction) {
+
+        ByteBuffer[] verifiers = new ByteBuffer[3];
+
+        // Determine the height at which the transaction will be included.
+        long transactionHeight = BlockManager.heightForTimestamp(transaction.getTimestamp());
+
+        // Get the current frozen edge and the current cycle. Using the frozen edge as a reference, the verifier that
+        // should be expected to verify this block can be determined based on its position in the cycle.
+        Block frozenEdge = BlockManager.getFrozenEdge();
+        List<ByteBuffer> currentCycle = BlockManager.verifiersInCurrentCycleList();
+        int frozenEdgeVerifierIndex = currentCycle.indexOf(ByteBuffer.wrap(frozenEdge.getVerifierIdentifier()));
+        for (int i = -1; i < 2 && !currentCycle.isEmpty(); i++) {
+            int indexOfVerifier = (int) ((transactionHeight - frozenEdge.getBlockHeight() +
+                    frozenEdgeVerifierIndex + i) % currentCycle.size());
+            if (indexOfVerifier >= 0 && indexOfVerifier < currentCycle.size()) {
+                verifiers[i + 1] = currentCycle.get(indexOfVerifier);
+            }
+        }
+
+        return verifiers;
+    }
+
+    // Validates the transactions locally and sends the valid transactions to their likely block verifiers. The
+    // transactions are grouped by verifier, so each verifier receives one TransactionBatch59 message for each
+    // TransactionBatch.maximumNumberOfTransactions transactions instead of one message per transaction. The result
+    // for each transaction is a TransactionBatchResponse result: a transaction is accepted if any verifier accepted
+    // it, it should be tried later if no verifier accepted it and any verifier's pool was full, and it is not
+    // processed if no verifier responded for it. The errors of transactions that failed local validation are stored
+    // at their indices in validationErrors, and the longest retry hint of the verifiers is stored in
+    // retryAfterMilliseconds.
+    public static byte[] sendTransactionBatchToLikelyBlockVerifiers(List<Transaction> transactions,
+                                                                    String[] validationErrors,
+                                                                    AtomicLong retryAfterMilliseconds,
+                                                                    CommandOutput output) {
+
+        byte[] results = new byte[transactions.size()];
+        Arrays.fill(results, TransactionBatchResponse.resultNotProcessed);
+
+        // Group the indices of the valid transactions by verifier. The indices are added in increasing order, so a
+        // verifier that appears more than once for a transaction is detected by checking the last index.
+        boolean[] valid = TransactionAdmissionManager.validate(transactions, validationErrors);
+        Map<ByteBuffer, List<Integer>> indicesForVerifier = new HashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (!valid[i]) {
+                results[i] = TransactionBatchResponse.resultNotAccepted;
+            } else {
+                for (ByteBuffer verifier : likelyBlockVerifiers(transactions.get(i))) {
+                    if (verifier != null) {
+                        List<Integer> indices = indicesForVerifier.get(verifier);
+                        if (indices == null) {
+                            indices = new ArrayList<>();
+                            indicesForVerifier.put(verifier, indices);
+                        }
+                        if (indices.isEmpty() || indices.get(indices.size() - 1) != i) {
+                            indices.add(i);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Build the batches for the verifiers that are in the mesh.
+        List<Node> batchNodes = new ArrayList<>();
+        List<List<Integer>> batchIndices = new ArrayList<>();
+        for (Node node : ClientNodeManager.getMesh()) {
+            List<Integer> indices = indicesForVerifier.remove(ByteBuffer.wrap(node.getIdentifier()));
+            if (indices != null) {
+                for (int start = 0; start < indices.size(); start += TransactionBatch.maximumNumberOfTransactions) {
+                    batchNodes.add(node);
+                    batchIndices.add(indices.subList(start, Math.min(indices.size(),
+                            start + TransactionBatch.maximumNumberOfTransactions)));
+                }
+            }
+        }
+
+        // Send the batches and wait for the responses.
+        CountDownLatch latch = new CountDownLatch(batchNodes.size());
+        for (int i = 0; i < batchNodes.size(); i++) {
+            Node node = batchNodes.get(i);
+            List<Integer> indices = batchIndices.get(i);
+            List<Transaction> batchTransactions = new ArrayList<>();
+            for (int index : indices) {
+                batchTransactions.add(transactions.get(index));
+            }
+            Message message = new Message(MessageType.TransactionBatch59, new TransactionBatch(batchTransactions));
+            Message.fetch(node, message, new MessageCallback() {
+                @Override
+                public void responseReceived(Message message) {
+
+                    if (message != null && message.getContent() instanceof TransactionBatchResponse) {
+                        TransactionBatchResponse response = (TransactionBatchResponse) message.getContent();
+                        byte[] batchResults = response.getResults();
+                        synchronized (results) {
+                            for (int j = 0; j < indices.size() && j < batchResults.length; j++) {
+                                int index = indices.get(j);
+                                if (resultPriority(batchResults[j]) > resultPriority(results[index])) {
+                                    results[index] = batchResults[j];
+                                }
+                            }
+                        }
+                        if (response.numberOfResults(TransactionBatchResponse.resultTryLater) > 0) {
+                            retryAfterMilliseconds.accumulateAndGet(response.getRetryAfterMilliseconds(),
+                                    new LongBinaryOperator() {
+                                        @Override
+                                        public long applyAsLong(long value1, long value2) {
+                                            return Math.max(value1, value2);
+                                        }
+                                    });
+                        }
+                        output.println("batch of " + indices.size() + " transactions sent to " +
+                                NicknameManager.get(node.getIdentifier()) + ": " +
+                                response.numberOfResults(TransactionBatchResponse.resultAccepted) + " accepted");
+                    } else {
+                        output.println(ConsoleColor.Red + "transaction batch response invalid from " +
+                                NicknameManager.get(node.getIdentifier()) + ", " +
+                                IpUtil.addressAsString(node.getIpAddress()) + ConsoleColor.reset);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+
+        try {
+            latch.await(10L, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) { }
+
+        synchronized (results) {
+            return Arrays.copyOf(results, results.length);
+        }
+    }
+
+    // When the verifiers disagree, the most useful result is reported for a transaction. Results that are not known
+    // have the lowest priority, so they are never reported.
+    private static int resultPriority(byte result) {
+
+        int priority;
+        if (result == TransactionBatchResponse.resultAccepted) {
+            priority = 4;
+        } else if (result == TransactionBatchResponse.resultTryLater) {
+            priority = 3;
+        } else if (result == TransactionBatchResponse.resultNotAccepted) {
+            priority = 2;
+        } else if (result == TransactionBatchResponse.resultNotProcessed) {
+            priority = 1;
+        } else {
+            priority = 0;
+        }
+
+        return priority;
+    }
+
     public static String senderDataForDisplay(byte[] senderData) {
 
         // Sender data is stored and handled as a raw array of bytes. Often, this byte array represents a character
@@ -18,10 +18,12 @@ public class CommandEndpointApi implements EndpointResponseProvider {
     @Override
     public EndpointResponse getResponse(EndpointRequest request) {
 
-        // Get an ordered list of argument values.
+        // Get an ordered list of argument values. Values may also be provided in the body of a POST request, which
+        // allows arguments too large for a query string, such as batches of transactions.
         List<String> argumentValues = new ArrayList<>();
         for (String identifier : command.getArgumentIdentifiers()) {
-            argumentValues.add(request.getQueryParameters().getOrDefault(identifier, ""));
+            argumentValues.add(request.getQueryParameters().getOrDefault(identifier,
+                    request.getPostParameters().getOrDefault(identifier, "")));
         }
 
         EndpointResponse response;
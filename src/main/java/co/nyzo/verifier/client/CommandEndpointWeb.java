@@ -85,7 +85,7 @@ public class CommandEndpointWeb implements EndpointResponseProvider {
         // Add the form.
         container.add(formElement(validationResult, isConfirmation));
 
-        return new EndpointResponse(html.renderByteArray());
+        return new EndpointResponse(html);
     }
 
     private Form formElement(ValidationResult validationResult, boolean isConfirmation) {
@@ -239,7 +239,7 @@ public class CommandEndpointWeb implements EndpointResponseProvider {
             body.add(result.toHtml());
         }
 
-        return new EndpointResponse(html.renderByteArray());
+        return new EndpointResponse(html);
     }
 
     private static Script progressUpdateScript(String elementIdentifier, String outputIdentifier) {
@@ -21,6 +21,8 @@ public class CommandManager {
             new CoinsInCirculationCommand(),
             new FrozenEdgeCommand(),
             new TransactionForwardCommand(),
+            new TransactionBatchForwardCommand(),
+            new TransactionFileForwardCommand(),
             new ExitCommand()
     };
 
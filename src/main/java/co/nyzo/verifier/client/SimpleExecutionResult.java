@@ -1,12 +1,13 @@
 package co.nyzo.verifier.client;
 
+import co.nyzo.verifier.json.JsonWriter;
 import co.nyzo.verifier.web.EndpointResponse;
 import co.nyzo.verifier.web.WebUtil;
 import co.nyzo.verifier.web.elements.*;
 
-import java.lang.reflect.Array;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -39,7 +40,17 @@ public class SimpleExecutionResult implements ExecutionResult {
 
     @Override
     public EndpointResponse toEndpointResponse() {
-        return new EndpointResponse(toJson(this).getBytes(StandardCharsets.UTF_8), EndpointResponse.contentTypeJson);
+        // The result is written directly to the output buffer, without building intermediate strings.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            JsonWriter writer = new JsonWriter(outputStream);
+            writeJson(writer, this);
+            writer.flush();
+        } catch (IOException ignored) {
+            // A ByteArrayOutputStream does not throw.
+        }
+
+        return new EndpointResponse(outputStream.toByteArray(), EndpointResponse.contentTypeJson);
     }
 
     @Override
@@ -137,126 +148,51 @@ public class SimpleExecutionResult implements ExecutionResult {
         ConsoleUtil.printTable(getResult(), output);
     }
 
-    private static String toJson(Object object) {
-
-        String result;
-        if (object == null) {
-            result = "null";
-        } else if (object instanceof String) {
-            result = "\"" + escapeStringForJson((String) object) + "\"";
-        } else if (object instanceof Integer || object instanceof Long || object instanceof Float ||
-                object instanceof Double || object instanceof Boolean) {
-            result = object.toString();
+    private static void writeJson(JsonWriter writer, Object object) throws IOException {
+
+        // Command tables are written as arrays of objects, keyed by the header identifiers. Objects that the writer
+        // does not handle directly are written as objects of their getter values.
+        if (object instanceof CommandTable) {
+            CommandTable table = (CommandTable) object;
+            CommandTableHeader[] headers = table.getHeaders();
+            writer.beginArray();
+            for (Object[] row : table.getRows()) {
+                writer.beginObject();
+                int length = Math.min(row.length, headers.length);
+                for (int i = 0; i < length; i++) {
+                    writer.name(headers[i].getIdentifier());
+                    writeJson(writer, row[i]);
+                }
+                writer.endObject();
+            }
+            writer.endArray();
         } else if (object instanceof Collection) {
-            result = jsonForCollection((Collection) object);
-        } else if (object instanceof Array) {
-            result = jsonForArray((Array) object);
-        } else if (object instanceof CommandTable) {
-            result = jsonForCommandTable((CommandTable) object);
+            writer.beginArray();
+            for (Object item : (Collection) object) {
+                writeJson(writer, item);
+            }
+            writer.endArray();
+        } else if (object == null || object instanceof String || object instanceof Integer || object instanceof Long ||
+                object instanceof Float || object instanceof Double || object instanceof Boolean ||
+                object.getClass().isArray()) {
+            writer.value(object);
         } else {
-            StringBuilder objectResult = new StringBuilder("{");
-            String separator = "";
+            writer.beginObject();
             for (Method method : object.getClass().getMethods()) {
                 String methodName = method.getName();
                 if (method.getParameterCount() == 0 && methodName.startsWith("get") && !methodName.equals("getClass") &&
                         methodName.length() >= 4) {
+                    Object value = null;
                     try {
-                        Object value = method.invoke(object);
-                        if (value != null) {
-                            String fieldName = (methodName.charAt(3) + "").toLowerCase() + methodName.substring(4);
-                            objectResult.append(separator).append("\"").append(fieldName).append("\":")
-                                    .append(toJson(value));
-                            separator = ",";
-                        }
+                        value = method.invoke(object);
                     } catch (Exception ignored) { }
+                    if (value != null) {
+                        writer.name((methodName.charAt(3) + "").toLowerCase() + methodName.substring(4));
+                        writeJson(writer, value);
+                    }
                 }
             }
-            objectResult.append("}");
-            result = objectResult.toString();
-        }
-
-        return result;
-    }
-
-    private static String jsonForCollection(Collection collection) {
-
-        StringBuilder result = new StringBuilder("[");
-        String separator = "";
-        for (Object item : collection) {
-            result.append(separator).append(toJson(item));
-            separator = ",";
-        }
-        result.append("]");
-
-        return result.toString();
-    }
-
-    private static String jsonForArray(Array array) {
-
-        StringBuilder result = new StringBuilder("[");
-        String separator = "";
-        int length = Array.getLength(array);
-        for (int i = 0; i < length; i++) {
-            result.append(separator).append(toJson(Array.get(array, i)));
-            separator = ",";
-        }
-        result.append("]");
-
-        return result.toString();
-    }
-
-    private static String jsonForCommandTable(CommandTable table) {
-
-        StringBuilder result = new StringBuilder("[");
-        String rowSeparator = "";
-        CommandTableHeader[] headers = table.getHeaders();
-        for (Object[] row : table.getRows()) {
-            result.append(rowSeparator).append("{");
-            rowSeparator = ",";
-            int length = Math.min(row.length, headers.length);
-            for (int i = 0; i < length; i++) {
-                result.append(i == 0 ? "" : ",").append("\"").append(headers[i].getIdentifier()).append("\":")
-                        .append(toJson(row[i]));
-            }
-            result.append("}");
-        }
-        result.append("]");
-
-        return result.toString();
-    }
-
-    private static String escapeStringForJson(String value) {
-
-        // According the the JSON spec (https://www.json.org/json-en.html), few characters need to be escaped in JSON
-        // strings. They are handled below.
-        StringBuilder result = new StringBuilder();
-        for (char character : value.toCharArray()) {
-            switch (character) {
-                case '"':
-                case '\\':
-                case '/':
-                    result.append('\\').append(character);
-                    break;
-                case '\b':
-                    result.append("\\b");
-                    break;
-                case '\f':
-                    result.append("\\f");
-                    break;
-                case '\n':
-                    result.append("\\n");
-                    break;
-                case '\r':
-                    result.append("\\r");
-                    break;
-                case '\t':
-                    result.append("\\t");
-                    break;
-                default:
-                    result.append(character);
-            }
+            writer.endObject();
         }
-
-        return result.toString();
     }
 }
@@ -0,0 +1,196 @@
+package co.nyzo.verifier.client.commands;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.client.*;
+import co.nyzo.verifier.messages.TransactionBatch;
+import co.nyzo.verifier.messages.TransactionBatchResponse;
+import co.nyzo.verifier.nyzoString.*;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionBatchForwardCommand implements Command {
+
+    @Override
+    public String getShortCommand() {
+        return "TBF";
+    }
+
+    @Override
+    public String getLongCommand() {
+        return "forwardTransactionBatch";
+    }
+
+    @Override
+    public String getDescription() {
+        return "forward a batch of transactions";
+    }
+
+    @Override
+    public String[] getArgumentNames() {
+        return new String[] { "transactions (Nyzo strings, separated by spaces or commas)" };
+    }
+
+    @Override
+    public String[] getArgumentIdentifiers() {
+        return new String[] { "transactions" };
+    }
+
+    @Override
+    public boolean requiresValidation() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresConfirmation() {
+        return false;
+    }
+
+    @Override
+    public boolean isLongRunning() {
+        return false;
+    }
+
+    @Override
+    public ValidationResult validate(List<String> argumentValues, CommandOutput output) {
+
+        ValidationResult result = null;
+        try {
+            // Make a list for the argument result items.
+            List<ArgumentResult> argumentResults = new ArrayList<>();
+
+            // Check the transactions. Individual strings that are not valid are reported in the result of the command,
+            // so only an empty or oversized batch fails validation.
+            List<String> transactionStrings = transactionStrings(argumentValues.get(0));
+            if (transactionStrings.isEmpty()) {
+                argumentResults.add(new ArgumentResult(false, argumentValues.get(0),
+                        "missing Nyzo string transactions"));
+            } else if (transactionStrings.size() > TransactionBatch.maximumNumberOfTransactions) {
+                argumentResults.add(new ArgumentResult(false, argumentValues.get(0), "at most " +
+                        TransactionBatch.maximumNumberOfTransactions + " transactions are accepted"));
+            } else {
+                argumentResults.add(new ArgumentResult(true, String.join(" ", transactionStrings)));
+            }
+
+            // Produce the result.
+            result = new ValidationResult(argumentResults);
+
+        } catch (Exception ignored) { }
+
+        // If the confirmation result is null, create an exception result. This will only happen if an exception is not
+        // handled properly by the validation code.
+        if (result == null) {
+            result = ValidationResult.exceptionResult(getArgumentNames().length);
+        }
+
+        return result;
+    }
+
+    @Override
+    public ExecutionResult run(List<String> argumentValues, CommandOutput output) {
+
+        // Make the lists for the notices and errors. Make the result table.
+        List<String> notices = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        CommandTable table = new CommandTable(new CommandTableHeader("index", "index"),
+                new CommandTableHeader("block height", "blockHeight"),
+                new CommandTableHeader("sender ID (Nyzo string)", "senderIdNyzoString", true),
+                new CommandTableHeader("amount", "amount"),
+                new CommandTableHeader("result code", "resultCode"),
+                new CommandTableHeader("result", "result"),
+                new CommandTableHeader("error", "error"));
+
+        try {
+            // Decode the transactions. Strings that are not valid transactions are not sent.
+            List<String> transactionStrings = transactionStrings(argumentValues.get(0));
+            if (transactionStrings.size() > TransactionBatch.maximumNumberOfTransactions) {
+                errors.add("At most " + TransactionBatch.maximumNumberOfTransactions + " transactions are accepted.");
+            } else if (transactionStrings.isEmpty()) {
+                errors.add("Please provide transactions.");
+            } else {
+                List<Transaction> transactions = new ArrayList<>();
+                int[] transactionIndices = new int[transactionStrings.size()];
+                for (int i = 0; i < transactionStrings.size(); i++) {
+                    NyzoString transactionObject = NyzoStringEncoder.decode(transactionStrings.get(i));
+                    if (transactionObject instanceof NyzoStringTransaction) {
+                        transactionIndices[i] = transactions.size();
+                        transactions.add(((NyzoStringTransaction) transactionObject).getTransaction());
+                    } else {
+                        transactionIndices[i] = -1;
+                    }
+                }
+
+                // Send the transactions and build the result, one row for each string in the argument.
+                String[] validationErrors = new String[transactions.size()];
+                AtomicLong retryAfterMilliseconds = new AtomicLong(0L);
+                byte[] results = ClientTransactionUtil.sendTransactionBatchToLikelyBlockVerifiers(transactions,
+                        validationErrors, retryAfterMilliseconds, output);
+                int[] counts = new int[4];
+                for (int i = 0; i < transactionStrings.size(); i++) {
+                    int transactionIndex = transactionIndices[i];
+                    if (transactionIndex < 0) {
+                        counts[TransactionBatchResponse.resultNotAccepted]++;
+                        table.addRow(i, null, null, null, TransactionBatchResponse.resultNotAccepted,
+                                resultString(TransactionBatchResponse.resultNotAccepted),
+                                "not a valid Nyzo string transaction");
+                    } else {
+                        Transaction transaction = transactions.get(transactionIndex);
+                        byte result = results[transactionIndex];
+                        counts[result]++;
+                        String error = validationErrors[transactionIndex];
+                        table.addRow(i, BlockManager.heightForTimestamp(transaction.getTimestamp()),
+                                NyzoStringEncoder.encode(new NyzoStringPublicIdentifier(
+                                        transaction.getSenderIdentifier())),
+                                PrintUtil.printAmount(transaction.getAmount()), result, resultString(result),
+                                error == null || error.isEmpty() ? null : error);
+                    }
+                }
+
+                notices.add(counts[TransactionBatchResponse.resultAccepted] + " accepted, " +
+                        counts[TransactionBatchResponse.resultNotAccepted] + " not accepted, " +
+                        counts[TransactionBatchResponse.resultNotProcessed] + " not processed, " +
+                        counts[TransactionBatchResponse.resultTryLater] + " try later");
+                if (counts[TransactionBatchResponse.resultTryLater] > 0) {
+                    notices.add("The transaction pools of the verifiers are full. Transactions marked \"try later\" " +
+                            "may be forwarded again in " + (retryAfterMilliseconds.get() + 999L) / 1000L + " seconds.");
+                }
+            }
+        } catch (Exception e) {
+            errors.add("Unexpected issue forwarding transactions: " + PrintUtil.printException(e));
+        }
+
+        return new SimpleExecutionResult(table, notices, errors);
+    }
+
+    // Transaction strings may be separated by any combination of whitespace and commas, so a list can be pasted from a
+    // file or passed as a single query parameter.
+    public static List<String> transactionStrings(String argumentValue) {
+
+        List<String> transactionStrings = new ArrayList<>();
+        for (String value : argumentValue.split("[\\s,]+")) {
+            if (!value.isEmpty()) {
+                transactionStrings.add(value);
+            }
+        }
+
+        return transactionStrings;
+    }
+
+    public static String resultString(byte result) {
+
+        String resultString;
+        if (result == TransactionBatchResponse.resultAccepted) {
+            resultString = "accepted";
+        } else if (result == TransactionBatchResponse.resultNotAccepted) {
+            resultString = "not accepted";
+        } else if (result == TransactionBatchResponse.resultTryLater) {
+            resultString = "try later";
+        } else {
+            resultString = "not processed";
+        }
+
+        return resultString;
+    }
+}
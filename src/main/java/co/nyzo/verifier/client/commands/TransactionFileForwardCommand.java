@@ -0,0 +1,229 @@
+package co.nyzo.verifier.client.commands;
+
+import co.nyzo.verifier.Transaction;
+import co.nyzo.verifier.client.*;
+import co.nyzo.verifier.messages.TransactionBatch;
+import co.nyzo.verifier.messages.TransactionBatchResponse;
+import co.nyzo.verifier.nyzoString.NyzoString;
+import co.nyzo.verifier.nyzoString.NyzoStringEncoder;
+import co.nyzo.verifier.nyzoString.NyzoStringTransaction;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.ThreadUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionFileForwardCommand implements Command {
+
+    // The file is read as a stream, and only one batch of transactions is held in memory at a time, so files of any
+    // size can be forwarded. Lines that are empty or start with # are skipped. When the verifiers report that their
+    // transaction pools are full, the affected transactions are sent again after the suggested wait.
+
+    private static final int maximumTryLaterAttempts = 3;
+    private static final long maximumRetryWaitMilliseconds = 60000L;
+
+    @Override
+    public String getShortCommand() {
+        return "TFF";
+    }
+
+    @Override
+    public String getLongCommand() {
+        return "forwardTransactionFile";
+    }
+
+    @Override
+    public String getDescription() {
+        return "forward transactions from a file";
+    }
+
+    @Override
+    public String[] getArgumentNames() {
+        return new String[] { "file of transactions (Nyzo strings)" };
+    }
+
+    @Override
+    public String[] getArgumentIdentifiers() {
+        return new String[] { "file" };
+    }
+
+    @Override
+    public boolean requiresValidation() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresConfirmation() {
+        return true;
+    }
+
+    @Override
+    public boolean isLongRunning() {
+        return true;
+    }
+
+    @Override
+    public ValidationResult validate(List<String> argumentValues, CommandOutput output) {
+
+        ValidationResult result = null;
+        try {
+            // Make a list for the argument result items.
+            List<ArgumentResult> argumentResults = new ArrayList<>();
+
+            // Check the file.
+            File file = new File(argumentValues.get(0).trim());
+            if (file.isFile() && file.canRead()) {
+                argumentResults.add(new ArgumentResult(true, file.getAbsolutePath()));
+            } else {
+                String message = argumentValues.get(0).trim().isEmpty() ? "missing file" : "file not readable";
+                argumentResults.add(new ArgumentResult(false, argumentValues.get(0), message));
+            }
+
+            // Produce the result.
+            result = new ValidationResult(argumentResults);
+
+        } catch (Exception ignored) { }
+
+        // If the confirmation result is null, create an exception result. This will only happen if an exception is not
+        // handled properly by the validation code.
+        if (result == null) {
+            result = ValidationResult.exceptionResult(getArgumentNames().length);
+        }
+
+        return result;
+    }
+
+    @Override
+    public ExecutionResult run(List<String> argumentValues, CommandOutput output) {
+
+        // Make the lists for the notices and errors. Make the result table.
+        List<String> notices = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        CommandTable table = new CommandTable(new CommandTableHeader("lines", "lines"),
+                new CommandTableHeader("batches", "batches"),
+                new CommandTableHeader("accepted", "accepted"),
+                new CommandTableHeader("not accepted", "notAccepted"),
+                new CommandTableHeader("not processed", "notProcessed"),
+                new CommandTableHeader("try later", "tryLater"),
+                new CommandTableHeader("invalid strings", "invalidStrings"),
+                new CommandTableHeader("time (s)", "time"));
+
+        long startTimestamp = System.currentTimeMillis();
+        try (BufferedReader reader = new BufferedReader(new FileReader(argumentValues.get(0).trim()))) {
+
+            int numberOfLines = 0;
+            int numberOfBatches = 0;
+            int numberOfInvalidStrings = 0;
+            int[] counts = new int[4];
+            List<Transaction> transactions = new ArrayList<>();
+            List<Integer> lineNumbers = new ArrayList<>();
+            String line;
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                line = reader.readLine();
+                endOfFile = line == null;
+                if (!endOfFile) {
+                    numberOfLines++;
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        for (String transactionString : TransactionBatchForwardCommand.transactionStrings(line)) {
+                            NyzoString transactionObject = NyzoStringEncoder.decode(transactionString);
+                            if (transactionObject instanceof NyzoStringTransaction) {
+                                transactions.add(((NyzoStringTransaction) transactionObject).getTransaction());
+                                lineNumbers.add(numberOfLines);
+                            } else {
+                                numberOfInvalidStrings++;
+                                output.println(ConsoleColor.Red + "line " + numberOfLines + ": not a valid Nyzo " +
+                                        "string transaction" + ConsoleColor.reset);
+                            }
+                        }
+                    }
+                }
+
+                // Send the batch when it is full or the file is complete.
+                if (transactions.size() >= TransactionBatch.maximumNumberOfTransactions ||
+                        (endOfFile && !transactions.isEmpty())) {
+                    numberOfBatches++;
+                    int[] batchCounts = sendBatch(transactions, lineNumbers, output);
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] += batchCounts[i];
+                    }
+                    output.println("batch " + numberOfBatches + " (lines " + lineNumbers.get(0) + "-" +
+                            lineNumbers.get(lineNumbers.size() - 1) + "): " +
+                            batchCounts[TransactionBatchResponse.resultAccepted] + " accepted, " +
+                            batchCounts[TransactionBatchResponse.resultNotAccepted] + " not accepted, " +
+                            batchCounts[TransactionBatchResponse.resultNotProcessed] + " not processed, " +
+                            batchCounts[TransactionBatchResponse.resultTryLater] + " try later");
+
+                    transactions.clear();
+                    lineNumbers.clear();
+                }
+            }
+
+            table.addRow(numberOfLines, numberOfBatches, counts[TransactionBatchResponse.resultAccepted],
+                    counts[TransactionBatchResponse.resultNotAccepted],
+                    counts[TransactionBatchResponse.resultNotProcessed],
+                    counts[TransactionBatchResponse.resultTryLater], numberOfInvalidStrings,
+                    String.format("%.1f", (System.currentTimeMillis() - startTimestamp) / 1000.0));
+            if (counts[TransactionBatchResponse.resultNotProcessed] > 0) {
+                notices.add("Transactions that were not processed did not receive a response from any likely " +
+                        "verifier. They may be forwarded again.");
+            }
+            if (counts[TransactionBatchResponse.resultTryLater] > 0) {
+                notices.add("Some transactions were still rejected by full transaction pools after " +
+                        maximumTryLaterAttempts + " attempts. They may be forwarded again later.");
+            }
+        } catch (Exception e) {
+            errors.add("Unexpected issue forwarding transactions: " + PrintUtil.printException(e));
+        }
+
+        return new SimpleExecutionResult(table, notices, errors);
+    }
+
+    // Sends a batch and returns the number of transactions with each result. Transactions marked "try later" are sent
+    // again, up to the maximum number of attempts, after the longest wait suggested by the verifiers.
+    private static int[] sendBatch(List<Transaction> transactions, List<Integer> lineNumbers, CommandOutput output) {
+
+        int[] counts = new int[4];
+        List<Transaction> batch = new ArrayList<>(transactions);
+        List<Integer> batchLineNumbers = new ArrayList<>(lineNumbers);
+        for (int attempt = 1; attempt <= maximumTryLaterAttempts && !batch.isEmpty(); attempt++) {
+            String[] validationErrors = new String[batch.size()];
+            AtomicLong retryAfterMilliseconds = new AtomicLong(0L);
+            byte[] results = ClientTransactionUtil.sendTransactionBatchToLikelyBlockVerifiers(batch, validationErrors,
+                    retryAfterMilliseconds, output);
+
+            List<Transaction> retryBatch = new ArrayList<>();
+            List<Integer> retryLineNumbers = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                if (validationErrors[i] != null && !validationErrors[i].isEmpty()) {
+                    output.println(ConsoleColor.Yellow + "line " + batchLineNumbers.get(i) + ": " +
+                            validationErrors[i] + ConsoleColor.reset);
+                }
+                if (results[i] == TransactionBatchResponse.resultTryLater && attempt < maximumTryLaterAttempts) {
+                    retryBatch.add(batch.get(i));
+                    retryLineNumbers.add(batchLineNumbers.get(i));
+                } else {
+                    counts[results[i]]++;
+                }
+            }
+
+            if (!retryBatch.isEmpty()) {
+                long waitMilliseconds = Math.max(1000L, Math.min(maximumRetryWaitMilliseconds,
+                        retryAfterMilliseconds.get()));
+                output.println(ConsoleColor.Yellow + "full transaction pools rejected " + retryBatch.size() +
+                        " transactions; trying again in " + (waitMilliseconds + 999L) / 1000L + " seconds" +
+                        ConsoleColor.reset);
+                ThreadUtil.sleep(waitMilliseconds);
+            }
+            batch = retryBatch;
+            batchLineNumbers = retryLineNumbers;
+        }
+
+        return counts;
+    }
+}
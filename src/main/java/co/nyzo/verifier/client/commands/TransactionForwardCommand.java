@@ -162,7 +162,7 @@ public class TransactionForwardCommand implements Command {
                 if (!previouslyForwarded && !inBlockchain) {
                     StringBuilder validationError = new StringBuilder();
                     StringBuilder validationWarning = new StringBuilder();
-                    valid = transaction.performInitialValidation(validationError, validationWarning);
+                    valid = TransactionAdmissionManager.validate(transaction, validationError, validationWarning);
                     if (validationError.length() > 0) {
                         errors.add(validationError.toString().trim());
                     }
@@ -0,0 +1,442 @@
+package co.nyzo.verifier.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonReader {
+
+    // This is a single-pass, pull-style JSON reader. It works on a fixed-size character buffer, so a large document
+    // can be read from a stream one value at a time without holding the whole document in memory. Each character is
+    // examined once, and no substrings of the input are taken, so reading is linear in the length of the input.
+    //
+    // Scalar values are returned as their text: strings are unescaped, and numbers, booleans, and null are returned as
+    // they appear in the input. This matches the values produced by the original Json parser.
+
+    public static final int maximumDepth = 256;
+    private static final int bufferSize = 8192;
+
+    private static final int scopeEmptyDocument = 0;
+    private static final int scopeNonEmptyDocument = 1;
+    private static final int scopeEmptyArray = 2;
+    private static final int scopeNonEmptyArray = 3;
+    private static final int scopeEmptyObject = 4;
+    private static final int scopeDanglingName = 5;
+    private static final int scopeNonEmptyObject = 6;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit;
+    private long bufferOffset = 0L;
+
+    private int[] scopes = new int[16];
+    private int depth = 0;
+    private JsonToken peeked = null;
+    private final StringBuilder builder = new StringBuilder();
+
+    public JsonReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.limit = 0;
+        push(scopeEmptyDocument);
+    }
+
+    public JsonReader(String string) {
+        this.reader = null;
+        this.buffer = string.toCharArray();
+        this.limit = buffer.length;
+        push(scopeEmptyDocument);
+    }
+
+    // Parses a complete document to JsonObject, JsonArray, and scalar text values. Null is returned if the input is
+    // not a single valid JSON value.
+    public static Object parse(String string) {
+
+        Object result;
+        try {
+            JsonReader reader = new JsonReader(string);
+            result = reader.readValue();
+            if (reader.peek() != JsonToken.EndDocument) {
+                result = null;
+            }
+        } catch (Exception ignored) {
+            result = null;
+        }
+
+        return result;
+    }
+
+    public JsonToken peek() throws IOException {
+
+        if (peeked == null) {
+            int scope = scopes[depth - 1];
+            if (scope == scopeEmptyArray || scope == scopeNonEmptyArray) {
+                scopes[depth - 1] = scopeNonEmptyArray;
+                int character = nextNonWhitespace();
+                if (character == ']') {
+                    peeked = JsonToken.EndArray;
+                } else if (scope == scopeNonEmptyArray) {
+                    if (character != ',') {
+                        throw syntaxError("expected ',' or ']'");
+                    }
+                    peeked = valueToken(nextNonWhitespace());
+                } else {
+                    peeked = valueToken(character);
+                }
+            } else if (scope == scopeEmptyObject || scope == scopeNonEmptyObject) {
+                int character = nextNonWhitespace();
+                if (character == '}') {
+                    peeked = JsonToken.EndObject;
+                } else {
+                    if (scope == scopeNonEmptyObject) {
+                        if (character != ',') {
+                            throw syntaxError("expected ',' or '}'");
+                        }
+                        character = nextNonWhitespace();
+                    }
+                    if (character != '"') {
+                        throw syntaxError("expected name");
+                    }
+                    peeked = JsonToken.Name;
+                }
+            } else if (scope == scopeDanglingName) {
+                scopes[depth - 1] = scopeNonEmptyObject;
+                peeked = valueToken(nextNonWhitespace());
+            } else if (scope == scopeEmptyDocument) {
+                scopes[depth - 1] = scopeNonEmptyDocument;
+                peeked = valueToken(nextNonWhitespace());
+            } else {
+                if (nextNonWhitespace() >= 0) {
+                    throw syntaxError("unexpected content after document");
+                }
+                peeked = JsonToken.EndDocument;
+            }
+        }
+
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+
+        JsonToken token = peek();
+        return token != JsonToken.EndObject && token != JsonToken.EndArray && token != JsonToken.EndDocument;
+    }
+
+    public void beginObject() throws IOException {
+        expect(JsonToken.BeginObject);
+        push(scopeEmptyObject);
+    }
+
+    public void endObject() throws IOException {
+        expect(JsonToken.EndObject);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(JsonToken.BeginArray);
+        push(scopeEmptyArray);
+    }
+
+    public void endArray() throws IOException {
+        expect(JsonToken.EndArray);
+        depth--;
+    }
+
+    public String nextName() throws IOException {
+
+        expect(JsonToken.Name);
+        String name = readString();
+        if (nextNonWhitespace() != ':') {
+            throw syntaxError("expected ':'");
+        }
+        scopes[depth - 1] = scopeDanglingName;
+
+        return name;
+    }
+
+    // Returns the text of any scalar value.
+    public String nextString() throws IOException {
+
+        JsonToken token = peek();
+        String value;
+        if (token == JsonToken.String) {
+            value = readString();
+        } else if (token == JsonToken.Number) {
+            value = readNumber();
+        } else if (token == JsonToken.Boolean || token == JsonToken.Null) {
+            value = readLiteral();
+        } else {
+            throw syntaxError("expected a scalar value but found " + token);
+        }
+        peeked = null;
+
+        return value;
+    }
+
+    public long nextLong() throws IOException {
+
+        String value = nextString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("expected an integer but found " + value);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+
+        if (peek() != JsonToken.Boolean) {
+            throw syntaxError("expected a boolean but found " + peek());
+        }
+
+        return nextString().equals("true");
+    }
+
+    public void skipValue() throws IOException {
+
+        int count = 0;
+        do {
+            JsonToken token = peek();
+            if (token == JsonToken.BeginObject) {
+                beginObject();
+                count++;
+            } else if (token == JsonToken.BeginArray) {
+                beginArray();
+                count++;
+            } else if (token == JsonToken.EndObject) {
+                endObject();
+                count--;
+            } else if (token == JsonToken.EndArray) {
+                endArray();
+                count--;
+            } else if (token == JsonToken.Name) {
+                nextName();
+            } else if (token == JsonToken.EndDocument) {
+                throw syntaxError("unexpected end of document");
+            } else {
+                nextString();
+            }
+        } while (count > 0);
+    }
+
+    // Reads the next value as a tree of JsonObject, JsonArray, and scalar text values.
+    public Object readValue() throws IOException {
+
+        Object value;
+        JsonToken token = peek();
+        if (token == JsonToken.BeginObject) {
+            Map<String, Object> map = new HashMap<>();
+            beginObject();
+            while (hasNext()) {
+                String name = nextName();
+                map.put(name, readValue());
+            }
+            endObject();
+            value = new JsonObject(map);
+        } else if (token == JsonToken.BeginArray) {
+            List<Object> list = new ArrayList<>();
+            beginArray();
+            while (hasNext()) {
+                list.add(readValue());
+            }
+            endArray();
+            value = new JsonArray(list);
+        } else {
+            value = nextString();
+        }
+
+        return value;
+    }
+
+    private void expect(JsonToken token) throws IOException {
+
+        if (peek() != token) {
+            throw syntaxError("expected " + token + " but found " + peeked);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+
+        // The document scope is not counted in the depth.
+        if (depth > maximumDepth) {
+            throw new IllegalStateException("maximum JSON depth of " + maximumDepth + " exceeded");
+        }
+        if (depth == scopes.length) {
+            int[] newScopes = new int[scopes.length * 2];
+            System.arraycopy(scopes, 0, newScopes, 0, depth);
+            scopes = newScopes;
+        }
+        scopes[depth++] = scope;
+    }
+
+    private JsonToken valueToken(int character) throws IOException {
+
+        // The opening character of objects, arrays, and strings is consumed. Literals and numbers are read from their
+        // first character, so it is returned to the buffer.
+        JsonToken token;
+        if (character == '{') {
+            token = JsonToken.BeginObject;
+        } else if (character == '[') {
+            token = JsonToken.BeginArray;
+        } else if (character == '"') {
+            token = JsonToken.String;
+        } else if (character == 't' || character == 'f') {
+            token = JsonToken.Boolean;
+            position--;
+        } else if (character == 'n') {
+            token = JsonToken.Null;
+            position--;
+        } else if (character == '-' || (character >= '0' && character <= '9')) {
+            token = JsonToken.Number;
+            position--;
+        } else {
+            throw syntaxError(character < 0 ? "unexpected end of document" : "unexpected character");
+        }
+
+        return token;
+    }
+
+    private String readString() throws IOException {
+
+        // Unescaped runs of characters are appended in a single call.
+        builder.setLength(0);
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char character = buffer[position];
+                if (character == '"') {
+                    builder.append(buffer, start, position - start);
+                    position++;
+                    return builder.toString();
+                } else if (character == '\\') {
+                    builder.append(buffer, start, position - start);
+                    position++;
+                    builder.append(readEscape());
+                    start = position;
+                } else {
+                    position++;
+                }
+            }
+            builder.append(buffer, start, position - start);
+            if (!fill()) {
+                throw syntaxError("unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+
+        int character = nextCharacter();
+        char result;
+        switch (character) {
+            case '"':
+            case '\\':
+            case '/':
+                result = (char) character;
+                break;
+            case 'b':
+                result = '\b';
+                break;
+            case 'f':
+                result = '\f';
+                break;
+            case 'n':
+                result = '\n';
+                break;
+            case 'r':
+                result = '\r';
+                break;
+            case 't':
+                result = '\t';
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextCharacter(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                result = (char) value;
+                break;
+            default:
+                throw syntaxError("invalid escape");
+        }
+
+        return result;
+    }
+
+    private String readNumber() throws IOException {
+
+        builder.setLength(0);
+        int character;
+        while ((character = peekCharacter()) >= 0 && ((character >= '0' && character <= '9') || character == '-' ||
+                character == '+' || character == '.' || character == 'e' || character == 'E')) {
+            builder.append((char) character);
+            position++;
+        }
+
+        return builder.toString();
+    }
+
+    private String readLiteral() throws IOException {
+
+        builder.setLength(0);
+        int character;
+        while ((character = peekCharacter()) >= 'a' && character <= 'z') {
+            builder.append((char) character);
+            position++;
+        }
+
+        String literal = builder.toString();
+        if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")) {
+            throw syntaxError("invalid literal " + literal);
+        }
+
+        return literal;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+
+        while (position < limit || fill()) {
+            char character = buffer[position++];
+            if (character != ' ' && character != '\n' && character != '\r' && character != '\t') {
+                return character;
+            }
+        }
+
+        return -1;
+    }
+
+    private int nextCharacter() throws IOException {
+        return position < limit || fill() ? buffer[position++] : -1;
+    }
+
+    private int peekCharacter() throws IOException {
+        return position < limit || fill() ? buffer[position] : -1;
+    }
+
+    private boolean fill() throws IOException {
+
+        // The buffer is only refilled when it has been fully consumed, so no characters are moved.
+        boolean filled = false;
+        if (reader != null) {
+            bufferOffset += limit;
+            position = 0;
+            limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+            filled = limit > 0;
+        }
+
+        return filled;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("malformed JSON at position " + (bufferOffset + position) + ": " + message);
+    }
+}
@@ -0,0 +1,15 @@
+package co.nyzo.verifier.json;
+
+public enum JsonToken {
+
+    BeginObject,
+    EndObject,
+    BeginArray,
+    EndArray,
+    Name,
+    String,
+    Number,
+    Boolean,
+    Null,
+    EndDocument
+}
@@ -0,0 +1,304 @@
+package co.nyzo.verifier.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+public class JsonWriter {
+
+    // This writer escapes and encodes values as UTF-8 in a single pass into a fixed-size byte buffer, which is passed
+    // to the output stream when it is full. No intermediate strings are built for objects or arrays, so the memory
+    // used does not depend on the size of the output.
+
+    private static final int bufferSize = 8192;
+    private static final byte[] hexDigits = "0123456789abcdef".getBytes();
+
+    private static final int scopeEmptyDocument = 0;
+    private static final int scopeNonEmptyDocument = 1;
+    private static final int scopeEmptyArray = 2;
+    private static final int scopeNonEmptyArray = 3;
+    private static final int scopeEmptyObject = 4;
+    private static final int scopeDanglingName = 5;
+    private static final int scopeNonEmptyObject = 6;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[bufferSize];
+    private int position = 0;
+
+    private int[] scopes = new int[16];
+    private int depth = 0;
+
+    public JsonWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        push(scopeEmptyDocument);
+    }
+
+    public static byte[] toByteArray(Object value) {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            JsonWriter writer = new JsonWriter(outputStream);
+            writer.value(value);
+            writer.flush();
+        } catch (IOException ignored) {
+            // A ByteArrayOutputStream does not throw.
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        push(scopeEmptyObject);
+        writeByte('{');
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        pop(scopeEmptyObject, scopeNonEmptyObject);
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        push(scopeEmptyArray);
+        writeByte('[');
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        pop(scopeEmptyArray, scopeNonEmptyArray);
+        writeByte(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+
+        int scope = scopes[depth - 1];
+        if (scope == scopeNonEmptyObject) {
+            writeByte(',');
+        } else if (scope != scopeEmptyObject) {
+            throw new IllegalStateException("name written outside of an object");
+        }
+        scopes[depth - 1] = scopeDanglingName;
+        writeString(name);
+        writeByte(':');
+
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+
+        if (value == null) {
+            nullValue();
+        } else {
+            beforeValue();
+            writeString(value);
+        }
+
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    // Writes strings, numbers, booleans, JsonObject, JsonArray, maps, collections, and arrays. Other objects are
+    // written as the strings returned by their toString() methods.
+    public JsonWriter value(Object value) throws IOException {
+
+        if (value == null) {
+            nullValue();
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof Number) {
+            beforeValue();
+            writeAscii(value.toString());
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject) value;
+            beginObject();
+            for (String key : object.getKeys()) {
+                name(key).value(object.get(key));
+            }
+            endObject();
+        } else if (value instanceof JsonArray) {
+            JsonArray array = (JsonArray) value;
+            beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                value(array.get(i));
+            }
+            endArray();
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey())).value(entry.getValue());
+            }
+            endObject();
+        } else if (value instanceof Collection) {
+            beginArray();
+            for (Object item : (Collection<?>) value) {
+                value(item);
+            }
+            endArray();
+        } else if (value.getClass().isArray()) {
+            beginArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                value(Array.get(value, i));
+            }
+            endArray();
+        } else {
+            value(value.toString());
+        }
+
+        return this;
+    }
+
+    public void flush() throws IOException {
+
+        if (position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+        outputStream.flush();
+    }
+
+    private void beforeValue() throws IOException {
+
+        int scope = scopes[depth - 1];
+        if (scope == scopeEmptyDocument) {
+            scopes[depth - 1] = scopeNonEmptyDocument;
+        } else if (scope == scopeEmptyArray) {
+            scopes[depth - 1] = scopeNonEmptyArray;
+        } else if (scope == scopeNonEmptyArray) {
+            writeByte(',');
+        } else if (scope == scopeDanglingName) {
+            scopes[depth - 1] = scopeNonEmptyObject;
+        } else {
+            throw new IllegalStateException(scope == scopeNonEmptyDocument ? "document already has a value" :
+                    "value written in an object without a name");
+        }
+    }
+
+    private void push(int scope) {
+
+        if (depth == scopes.length) {
+            int[] newScopes = new int[scopes.length * 2];
+            System.arraycopy(scopes, 0, newScopes, 0, depth);
+            scopes = newScopes;
+        }
+        scopes[depth++] = scope;
+    }
+
+    private void pop(int emptyScope, int nonEmptyScope) {
+
+        int scope = scopes[depth - 1];
+        if (scope != emptyScope && scope != nonEmptyScope) {
+            throw new IllegalStateException("mismatched end of object or array");
+        }
+        depth--;
+    }
+
+    private void writeString(String value) throws IOException {
+
+        // According to the JSON spec (https://www.json.org/json-en.html), quotes, backslashes, and control characters
+        // must be escaped. The solidus is also escaped, as it was by the original result serializer.
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (bufferSize - position < 6) {
+                flushBuffer();
+            }
+
+            char character = value.charAt(i);
+            if (character == '"' || character == '\\' || character == '/') {
+                buffer[position++] = '\\';
+                buffer[position++] = (byte) character;
+            } else if (character < 0x20) {
+                buffer[position++] = '\\';
+                switch (character) {
+                    case '\b':
+                        buffer[position++] = 'b';
+                        break;
+                    case '\f':
+                        buffer[position++] = 'f';
+                        break;
+                    case '\n':
+                        buffer[position++] = 'n';
+                        break;
+                    case '\r':
+                        buffer[position++] = 'r';
+                        break;
+                    case '\t':
+                        buffer[position++] = 't';
+                        break;
+                    default:
+                        buffer[position++] = 'u';
+                        buffer[position++] = '0';
+                        buffer[position++] = '0';
+                        buffer[position++] = hexDigits[character >> 4];
+                        buffer[position++] = hexDigits[character & 0xf];
+                }
+            } else if (character < 0x80) {
+                buffer[position++] = (byte) character;
+            } else if (character < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (character >> 6));
+                buffer[position++] = (byte) (0x80 | (character & 0x3f));
+            } else if (Character.isHighSurrogate(character) && i + 1 < length &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(character, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(character)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (character >> 12));
+                buffer[position++] = (byte) (0x80 | ((character >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (character & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeAscii(String value) throws IOException {
+
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(char character) throws IOException {
+
+        if (position == bufferSize) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) character;
+    }
+
+    private void flushBuffer() throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+}
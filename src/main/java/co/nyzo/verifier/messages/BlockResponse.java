@@ -18,12 +18,13 @@ public class BlockResponse implements MessageObject {
 
     private BalanceList initialBalanceList;
     private List<Block> blocks;
+    private List<ByteBuffer> blockFrames;
 
     public BlockResponse(long startBlockHeight, long endBlockHeight, boolean includeInitialBalanceList,
                          byte[] requestSourceIpAddress) {
 
         BalanceList initialBalanceList = null;
-        List<Block> blocks = new ArrayList<>();
+        List<ByteBuffer> blockFrames = new ArrayList<>();
 
         // If the request asks for an initial balance list, the IP is not whitelisted, and the same source IP has
         // recently requested a balance list, provide an empty response.
@@ -53,20 +54,32 @@ public class BlockResponse implements MessageObject {
             }
         }
 
-        // To conserve resources, only respond to block requests for 10 or fewer blocks.
+        // To conserve resources, only respond to block requests for 10 or fewer blocks. The response holds the
+        // serialized bytes of the blocks. Blocks behind the retention edge are provided when the historical block
+        // manager is enabled, and their bytes are copied from the block files as they were stored, without building
+        // the blocks.
         if (requestIsValid && endBlockHeight - startBlockHeight < 10) {
             int totalByteSize = 0;
             boolean foundNullBlock = false;
             long blockHeight = endBlockHeight;
+            Map<Long, ByteBuffer> historicalFrames = null;
             while (totalByteSize < 1000000 && !foundNullBlock && blockHeight >= startBlockHeight) {
                 Block block = BlockManager.frozenBlockForHeight(blockHeight);
-                if (block == null) {
+                ByteBuffer frame = block == null ? null : ByteBuffer.wrap(block.getBytes());
+                if (frame == null && HistoricalBlockManager.isEnabled()) {
+                    if (historicalFrames == null) {
+                        historicalFrames = HistoricalBlockManagerMap.framesForHeights(startBlockHeight, blockHeight);
+                    }
+                    frame = historicalFrames.get(blockHeight);
+                }
+
+                if (frame == null) {
                     foundNullBlock = true;
                 } else {
-                    blocks.add(0, block);
-                    totalByteSize += block.getByteSize();
+                    blockFrames.add(0, frame);
+                    totalByteSize += frame.remaining();
                     if (blockHeight == startBlockHeight && includeInitialBalanceList) {
-                        initialBalanceList = BalanceListManager.recentBalanceListForHeight(block.getBlockHeight());
+                        initialBalanceList = BalanceListManager.recentBalanceListForHeight(blockHeight);
                     }
                 }
 
@@ -75,7 +88,7 @@ public class BlockResponse implements MessageObject {
         }
 
         this.initialBalanceList = initialBalanceList;
-        this.blocks = blocks;
+        this.blockFrames = blockFrames;
     }
 
     public BlockResponse(BalanceList initialBalanceList, List<Block> blocks) {
@@ -89,6 +102,16 @@ public class BlockResponse implements MessageObject {
     }
 
     public List<Block> getBlocks() {
+
+        // Responses built from stored bytes only build their blocks when asked.
+        if (blocks == null) {
+            List<Block> blocks = new ArrayList<>();
+            for (ByteBuffer frame : blockFrames) {
+                blocks.add(Block.fromByteBuffer(frame.duplicate(), false));
+            }
+            this.blocks = blocks;
+        }
+
         return blocks;
     }
 
@@ -101,8 +124,14 @@ public class BlockResponse implements MessageObject {
         }
 
         byteSize += FieldByteSize.frozenBlockListLength;
-        for (Block block : blocks) {
-            byteSize += block.getByteSize();
+        if (blockFrames != null) {
+            for (ByteBuffer frame : blockFrames) {
+                byteSize += frame.remaining();
+            }
+        } else {
+            for (Block block : blocks) {
+                byteSize += block.getByteSize();
+            }
         }
 
         return byteSize;
@@ -118,9 +147,16 @@ public class BlockResponse implements MessageObject {
             buffer.put(initialBalanceList.getBytes());
         }
 
-        buffer.putShort((short) blocks.size());
-        for (Block block : blocks) {
-            buffer.put(block.getBytes());
+        if (blockFrames != null) {
+            buffer.putShort((short) blockFrames.size());
+            for (ByteBuffer frame : blockFrames) {
+                buffer.put(frame.duplicate());
+            }
+        } else {
+            buffer.putShort((short) blocks.size());
+            for (Block block : blocks) {
+                buffer.put(block.getBytes());
+            }
         }
 
         return array;
@@ -152,6 +188,6 @@ public class BlockResponse implements MessageObject {
 
     @Override
     public String toString() {
-        return "[BlockResponse(blocks=" + blocks.size() + ")]";
+        return "[BlockResponse(blocks=" + (blockFrames != null ? blockFrames.size() : blocks.size()) + ")]";
     }
 }
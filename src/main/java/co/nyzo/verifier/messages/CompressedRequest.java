@@ -0,0 +1,96 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.Message;
+import co.nyzo.verifier.MessageObject;
+import co.nyzo.verifier.MessageType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// This message wraps a complete, signed request. A verifier that understands this message unwraps the request, produces
+// the normal response, and compresses that response if it is large enough to benefit. A verifier that does not
+// understand this message responds with an error, and the requester falls back to sending the wrapped request directly.
+public class CompressedRequest implements MessageObject {
+
+    // Only requests that produce large responses may be wrapped. This also ensures that a wrapped message can never be
+    // one of the types that results in blacklisting.
+    private static final Set<MessageType> compressibleRequestTypes = new HashSet<>(Arrays.asList(
+            MessageType.TransactionPoolRequest13, MessageType.MeshRequest15, MessageType.BootstrapRequestV2_35,
+            MessageType.BlockWithVotesRequest37, MessageType.FullMeshRequest41,
+            MessageType.FrozenEdgeBalanceListRequest45, MessageType.MeshDeltaRequest57));
+
+    private byte[] messageBytes;  // the message as transmitted, without the length field
+    private Message message;      // not serialized
+
+    public CompressedRequest(Message message) {
+
+        byte[] transmissionBytes = message.getBytesForTransmission();
+        this.messageBytes = Arrays.copyOfRange(transmissionBytes, FieldByteSize.messageLength,
+                transmissionBytes.length);
+        this.message = message;
+    }
+
+    private CompressedRequest(byte[] messageBytes, Message message) {
+
+        this.messageBytes = messageBytes;
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public static boolean isCompressibleRequestType(MessageType type) {
+        return compressibleRequestTypes.contains(type);
+    }
+
+    @Override
+    public int getByteSize() {
+        return FieldByteSize.unnamedInteger + messageBytes.length;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] array = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putInt(messageBytes.length);
+        buffer.put(messageBytes);
+
+        return array;
+    }
+
+    public static CompressedRequest fromByteBuffer(ByteBuffer buffer, byte[] sourceIpAddress) {
+
+        CompressedRequest result = null;
+
+        try {
+            int messageLength = buffer.getInt();
+            if (messageLength <= buffer.remaining()) {
+                byte[] messageBytes = Message.getByteArray(buffer, messageLength);
+
+                // Check the type before full processing. Messages of unexpected types are not processed.
+                Message message = null;
+                int typeOffset = FieldByteSize.timestamp;
+                if (messageBytes.length > typeOffset + FieldByteSize.messageType) {
+                    int typeValue = ((messageBytes[typeOffset] & 0xff) << 8) | (messageBytes[typeOffset + 1] & 0xff);
+                    if (compressibleRequestTypes.contains(MessageType.forValue(typeValue))) {
+                        message = Message.fromBytes(messageBytes, sourceIpAddress, false);
+                    }
+                }
+
+                result = new CompressedRequest(messageBytes, message);
+            }
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[CompressedRequest: " + (message == null ? "null" : message.getType()) + "]";
+    }
+}
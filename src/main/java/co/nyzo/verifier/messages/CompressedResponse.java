@@ -0,0 +1,116 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.Message;
+import co.nyzo.verifier.MessageObject;
+import co.nyzo.verifier.MessageType;
+import co.nyzo.verifier.util.CompressionUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class CompressedResponse implements MessageObject {
+
+    private static final Set<MessageType> compressibleResponseTypes = new HashSet<>(Arrays.asList(
+            MessageType.TransactionPoolResponse14, MessageType.MeshResponse16, MessageType.BootstrapResponseV2_36,
+            MessageType.BlockWithVotesResponse38, MessageType.FullMeshResponse42,
+            MessageType.FrozenEdgeBalanceListResponse46, MessageType.MeshDeltaResponse58));
+
+    // Responses smaller than this are sent uncompressed. For small responses, the savings are not worth the time.
+    private static final int compressionThreshold = PreferencesUtil.getInt("compressed_response_threshold", 2048);
+
+    private MessageType type;
+    private int uncompressedLength;
+    private byte[] compressedContent;
+
+    private CompressedResponse(MessageType type, int uncompressedLength, byte[] compressedContent) {
+
+        this.type = type;
+        this.uncompressedLength = uncompressedLength;
+        this.compressedContent = compressedContent;
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    public int getUncompressedLength() {
+        return uncompressedLength;
+    }
+
+    // Returns the uncompressed content, or null if it cannot be decompressed. Decompression is left to the requester,
+    // which only unwraps responses to its own compressed requests.
+    public byte[] decompressContent() {
+        return CompressionUtil.decompress(compressedContent, uncompressedLength);
+    }
+
+    public static boolean isCompressibleResponseType(MessageType type) {
+        return compressibleResponseTypes.contains(type);
+    }
+
+    // Wraps the response in a compressed response if the type is compressible and the content is large enough.
+    // Otherwise, the original response is returned. The requester can process either.
+    public static Message forResponse(Message response) {
+
+        Message result = response;
+        if (response != null && compressibleResponseTypes.contains(response.getType()) &&
+                response.getContent() != null && response.getContent().getByteSize() >= compressionThreshold) {
+
+            byte[] content = response.getContent().getBytes();
+            byte[] compressedContent = CompressionUtil.compress(content);
+            if (compressedContent.length < content.length) {
+                result = new Message(MessageType.CompressedResponse56, new CompressedResponse(response.getType(),
+                        content.length, compressedContent));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int getByteSize() {
+        return FieldByteSize.messageType + FieldByteSize.unnamedInteger * 2 + compressedContent.length;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] array = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putShort((short) type.getValue());
+        buffer.putInt(uncompressedLength);
+        buffer.putInt(compressedContent.length);
+        buffer.put(compressedContent);
+
+        return array;
+    }
+
+    public static CompressedResponse fromByteBuffer(ByteBuffer buffer) {
+
+        CompressedResponse result = null;
+
+        try {
+            MessageType type = MessageType.forValue(buffer.getShort() & 0xffff);
+            int uncompressedLength = buffer.getInt();
+            int compressedLength = buffer.getInt();
+
+            // The declared length is capped at the maximum message length. Decompression will not produce more bytes
+            // than the declared length, so this protects against decompression bombs.
+            if (compressibleResponseTypes.contains(type) && uncompressedLength <= Message.maximumMessageLength &&
+                    compressedLength <= buffer.remaining()) {
+                byte[] compressedContent = Message.getByteArray(buffer, compressedLength);
+                result = new CompressedResponse(type, uncompressedLength, compressedContent);
+            }
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[CompressedResponse: " + type + ", " + compressedContent.length + "/" + uncompressedLength + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.MessageObject;
+
+import java.nio.ByteBuffer;
+
+public class MeshDeltaRequest implements MessageObject {
+
+    // The epoch and version are those from the last response received from the same node. An epoch of 0 and a version
+    // of -1 indicate that no response has been received, and a full snapshot is always returned for these values.
+    private long epoch;
+    private long version;
+    private boolean inCycleOnly;
+
+    public MeshDeltaRequest(long epoch, long version, boolean inCycleOnly) {
+
+        this.epoch = epoch;
+        this.version = version;
+        this.inCycleOnly = inCycleOnly;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isInCycleOnly() {
+        return inCycleOnly;
+    }
+
+    @Override
+    public int getByteSize() {
+        return FieldByteSize.unnamedLong * 2 + FieldByteSize.booleanField;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] array = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putLong(epoch);
+        buffer.putLong(version);
+        buffer.put(inCycleOnly ? (byte) 1 : (byte) 0);
+
+        return array;
+    }
+
+    public static MeshDeltaRequest fromByteBuffer(ByteBuffer buffer) {
+
+        MeshDeltaRequest result = null;
+
+        try {
+            long epoch = buffer.getLong();
+            long version = buffer.getLong();
+            boolean inCycleOnly = buffer.get() == 1;
+
+            result = new MeshDeltaRequest(epoch, version, inCycleOnly);
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[MeshDeltaRequest: epoch=" + epoch + ", version=" + version + ", inCycleOnly=" + inCycleOnly + "]";
+    }
+}
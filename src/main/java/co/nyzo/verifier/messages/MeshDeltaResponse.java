@@ -0,0 +1,151 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.MessageObject;
+import co.nyzo.verifier.Node;
+import co.nyzo.verifier.NodeManager;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MeshDeltaResponse implements MessageObject {
+
+    private static final int maximumNumberOfNodes = 10000;
+    private static final int maximumNumberOfRemovedIpAddresses = 10000;
+
+    private long epoch;
+    private long version;
+    private boolean fullSnapshot;
+    private List<Node> nodes;                   // nodes added or changed, or all nodes for a full snapshot
+    private List<ByteBuffer> removedIpAddresses;  // always empty for a full snapshot
+
+    public MeshDeltaResponse(MeshDeltaRequest request) {
+
+        // The version is read and the changes are collected under the mesh-version lock. Versions are assigned under
+        // the same lock along with the map updates they describe, so the delta contains every change up to the version
+        // it reports.
+        this.epoch = NodeManager.getMeshEpoch();
+
+        boolean inCycleOnly = request.isInCycleOnly();
+        List<Node> nodes = null;
+        List<ByteBuffer> removedIpAddresses = new ArrayList<>();
+        synchronized (NodeManager.getMeshVersionLock()) {
+            this.version = NodeManager.getMeshVersion();
+            if (NodeManager.meshDeltaAvailable(request.getEpoch(), request.getVersion(), inCycleOnly)) {
+                nodes = NodeManager.getNodesChangedSince(request.getVersion(), inCycleOnly);
+                removedIpAddresses = NodeManager.getIpAddressesRemovedSince(request.getVersion());
+                if (nodes.size() > maximumNumberOfNodes ||
+                        removedIpAddresses.size() > maximumNumberOfRemovedIpAddresses) {
+                    nodes = null;
+                    removedIpAddresses = new ArrayList<>();
+                }
+            }
+        }
+
+        // If a delta could not be produced, send a full snapshot. The snapshot is taken after the version was read, so
+        // it contains every change up to that version. Later changes have greater versions and are included again in
+        // the next delta, and reapplying a change is harmless. The node list is trimmed in the same manner as the mesh
+        // response.
+        this.fullSnapshot = nodes == null;
+        if (fullSnapshot) {
+            nodes = new MeshResponse(inCycleOnly ? NodeManager.getCycle() : NodeManager.getMesh()).getMesh();
+        }
+
+        this.nodes = nodes;
+        this.removedIpAddresses = removedIpAddresses;
+    }
+
+    private MeshDeltaResponse(long epoch, long version, boolean fullSnapshot, List<Node> nodes,
+                              List<ByteBuffer> removedIpAddresses) {
+
+        this.epoch = epoch;
+        this.version = version;
+        this.fullSnapshot = fullSnapshot;
+        this.nodes = nodes;
+        this.removedIpAddresses = removedIpAddresses;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFullSnapshot() {
+        return fullSnapshot;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public List<ByteBuffer> getRemovedIpAddresses() {
+        return removedIpAddresses;
+    }
+
+    @Override
+    public int getByteSize() {
+
+        return FieldByteSize.unnamedLong * 2 + FieldByteSize.booleanField + FieldByteSize.nodeListLength +
+                nodes.size() * Node.getByteSizeStatic() + FieldByteSize.nodeListLength +
+                removedIpAddresses.size() * FieldByteSize.ipAddress;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] result = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        buffer.putLong(epoch);
+        buffer.putLong(version);
+        buffer.put(fullSnapshot ? (byte) 1 : (byte) 0);
+        buffer.putInt(nodes.size());
+        for (Node node : nodes) {
+            buffer.put(node.getBytes());
+        }
+        buffer.putInt(removedIpAddresses.size());
+        for (ByteBuffer ipAddress : removedIpAddresses) {
+            buffer.put(ipAddress.array());
+        }
+
+        return result;
+    }
+
+    public static MeshDeltaResponse fromByteBuffer(ByteBuffer buffer) {
+
+        MeshDeltaResponse result = null;
+
+        try {
+            long epoch = buffer.getLong();
+            long version = buffer.getLong();
+            boolean fullSnapshot = buffer.get() == 1;
+
+            List<Node> nodes = new ArrayList<>();
+            int numberOfNodes = Math.min(buffer.getInt(), maximumNumberOfNodes);
+            for (int i = 0; i < numberOfNodes; i++) {
+                nodes.add(Node.fromByteBuffer(buffer));
+            }
+
+            List<ByteBuffer> removedIpAddresses = new ArrayList<>();
+            int numberOfRemovedIpAddresses = Math.min(buffer.getInt(), maximumNumberOfRemovedIpAddresses);
+            for (int i = 0; i < numberOfRemovedIpAddresses; i++) {
+                byte[] ipAddress = new byte[FieldByteSize.ipAddress];
+                buffer.get(ipAddress);
+                removedIpAddresses.add(ByteBuffer.wrap(ipAddress));
+            }
+
+            result = new MeshDeltaResponse(epoch, version, fullSnapshot, nodes, removedIpAddresses);
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[MeshDeltaResponse: epoch=" + epoch + ", version=" + version + ", fullSnapshot=" + fullSnapshot +
+                ", nodes=" + nodes.size() + ", removed=" + removedIpAddresses.size() + "]";
+    }
+}
@@ -1,6 +1,8 @@
 package co.nyzo.verifier.messages;
 
 import co.nyzo.verifier.*;
+import co.nyzo.verifier.util.ConsensusTracker;
+import co.nyzo.verifier.util.LogUtil;
 import co.nyzo.verifier.util.PrintUtil;
 import co.nyzo.verifier.util.TestnetUtil;
 import co.nyzo.verifier.MemoryMonitor;
@@ -33,6 +35,14 @@ public class StatusResponse implements MessageObject {
                 NodeManager.getNumberOfActiveCycleIdentifiers() + " in cycle");
         lines.add("cycle length: " + BlockManager.currentCycleLength() + (BlockManager.inGenesisCycle() ? "(G)" : ""));
         lines.add("transactions: " + TransactionPool.transactionPoolSize());
+        lines.add("transaction pool: " + TransactionPool.getStatusString());
+        for (String window : TransactionPool.occupancyByHeightWindow()) {
+            lines.add("- pool " + window);
+        }
+        lines.add("transaction admission: " + TransactionAdmissionManager.getStatusString());
+        if (HistoricalBlockManager.isEnabled()) {
+            lines.add("historical blocks: " + HistoricalBlockManagerMap.getStatusString());
+        }
         lines.add("retention edge: " + BlockManager.getRetentionEdgeHeight());
         lines.add("trailing edge: " + BlockManager.getTrailingEdgeHeight());
         lines.add("frozen edge: " + frozenEdgeHeight + " (" + (frozenEdge == null ? "null" :
@@ -95,6 +105,21 @@ public class StatusResponse implements MessageObject {
 
             // This shows which in-cycle verifiers currently have no active mesh nodes.
             lines.add("missing in-cycle verifiers: " + NodeManager.getMissingInCycleVerifiers());
+
+            // This shows the state of the binary stores for nodes and performance scores and the persistent data log.
+            lines.add("node store: " + NodeManager.getNodeStoreStatusString());
+            lines.add("score store: " + VerifierPerformanceManager.getScoreStoreStatusString());
+            lines.add("persistent data: " + PersistentData.getStatusString());
+
+            // This shows the state of the consensus tracker, including events dropped because its ring was full.
+            lines.add("consensus tracker: " + ConsensusTracker.getStatusString());
+
+            // This shows the state of the logger and the most recent lines it wrote.
+            lines.add("log: " + LogUtil.getStatusString());
+            List<String> logTail = LogUtil.tail();
+            for (String line : logTail.subList(Math.max(0, logTail.size() - 10), logTail.size())) {
+                lines.add("- " + line);
+            }
         }
 
         this.lines = lines;
@@ -0,0 +1,75 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.MessageObject;
+import co.nyzo.verifier.Transaction;
+import co.nyzo.verifier.util.PreferencesUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionBatch implements MessageObject {
+
+    // A verifier processes at most this many transactions from a batch. Transactions past the limit are reported as
+    // not processed in the response, so a client can send them again in another batch.
+    public static final int maximumNumberOfTransactions = Math.min(PreferencesUtil.getInt("transaction_batch_size",
+            1000), 10000);
+
+    private List<Transaction> transactions;
+
+    public TransactionBatch(List<Transaction> transactions) {
+
+        this.transactions = transactions;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public int getByteSize() {
+
+        int size = FieldByteSize.unnamedShort;
+        for (Transaction transaction : transactions) {
+            size += transaction.getByteSize();
+        }
+
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] array = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putShort((short) transactions.size());
+        for (Transaction transaction : transactions) {
+            buffer.put(transaction.getBytes());
+        }
+
+        return array;
+    }
+
+    public static TransactionBatch fromByteBuffer(ByteBuffer buffer) {
+
+        TransactionBatch result = null;
+
+        try {
+            int numberOfTransactions = buffer.getShort() & 0xffff;
+            List<Transaction> transactions = new ArrayList<>(numberOfTransactions);
+            for (int i = 0; i < numberOfTransactions; i++) {
+                transactions.add(Transaction.fromByteBuffer(buffer));
+            }
+
+            result = new TransactionBatch(transactions);
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[TransactionBatch(" + transactions.size() + ")]";
+    }
+}
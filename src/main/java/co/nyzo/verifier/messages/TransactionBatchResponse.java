@@ -0,0 +1,115 @@
+package co.nyzo.verifier.messages;
+
+import co.nyzo.verifier.FieldByteSize;
+import co.nyzo.verifier.MessageObject;
+import co.nyzo.verifier.Transaction;
+import co.nyzo.verifier.TransactionAdmissionManager;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+public class TransactionBatchResponse implements MessageObject {
+
+    // The response contains one result byte for each transaction in the batch, in the order of the batch. The reasons
+    // for rejection are not included; a client that needs them can submit a single transaction with a Transaction5
+    // message. Transactions rejected only because the transaction pool is full are marked "try later", and the
+    // response includes the longest suggested wait for those transactions.
+    public static final byte resultNotAccepted = 0;
+    public static final byte resultAccepted = 1;
+    public static final byte resultNotProcessed = 2;
+    public static final byte resultTryLater = 3;
+
+    private byte[] results;
+    private int retryAfterMilliseconds;
+
+    public TransactionBatchResponse(TransactionBatch batch) {
+
+        List<Transaction> transactions = batch == null ? Collections.<Transaction>emptyList() :
+                batch.getTransactions();
+        int numberToProcess = Math.min(transactions.size(), TransactionBatch.maximumNumberOfTransactions);
+        List<TransactionResponse> responses =
+                TransactionAdmissionManager.admit(transactions.subList(0, numberToProcess));
+
+        this.results = new byte[transactions.size()];
+        for (int i = 0; i < results.length; i++) {
+            if (i >= numberToProcess) {
+                results[i] = resultNotProcessed;
+            } else if (responses.get(i).isAccepted()) {
+                results[i] = resultAccepted;
+            } else if (responses.get(i).isTryLater()) {
+                results[i] = resultTryLater;
+                retryAfterMilliseconds = (int) Math.max(retryAfterMilliseconds,
+                        Math.min(Integer.MAX_VALUE, responses.get(i).getRetryAfterMilliseconds()));
+            } else {
+                results[i] = resultNotAccepted;
+            }
+        }
+    }
+
+    public TransactionBatchResponse(byte[] results, int retryAfterMilliseconds) {
+
+        this.results = results;
+        this.retryAfterMilliseconds = retryAfterMilliseconds;
+    }
+
+    public byte[] getResults() {
+        return results;
+    }
+
+    public int getRetryAfterMilliseconds() {
+        return retryAfterMilliseconds;
+    }
+
+    public int numberOfResults(byte result) {
+
+        int count = 0;
+        for (byte value : results) {
+            if (value == result) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getByteSize() {
+        return FieldByteSize.unnamedShort + results.length + FieldByteSize.unnamedInteger;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] array = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        buffer.putShort((short) results.length);
+        buffer.put(results);
+        buffer.putInt(retryAfterMilliseconds);
+
+        return array;
+    }
+
+    public static TransactionBatchResponse fromByteBuffer(ByteBuffer buffer) {
+
+        TransactionBatchResponse result = null;
+
+        try {
+            byte[] results = new byte[buffer.getShort() & 0xffff];
+            buffer.get(results);
+            int retryAfterMilliseconds = buffer.getInt();
+
+            result = new TransactionBatchResponse(results, retryAfterMilliseconds);
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[TransactionBatchResponse(accepted=" + numberOfResults(resultAccepted) + ", notAccepted=" +
+                numberOfResults(resultNotAccepted) + ", notProcessed=" + numberOfResults(resultNotProcessed) +
+                ", tryLater=" + numberOfResults(resultTryLater) + ", retryAfterMilliseconds=" + retryAfterMilliseconds +
+                ")]";
+    }
+}
@@ -5,12 +5,17 @@ import co.nyzo.verifier.util.PrintUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TransactionResponse implements MessageObject {
 
     private boolean accepted;
     private String message;
 
+    // This is set when the transaction was rejected only because the transaction pool is full. It is not transmitted
+    // in Transaction5 responses, which carry the hint in the message; TransactionBatch59 responses carry it in a field.
+    private long retryAfterMilliseconds;
+
     public TransactionResponse(Transaction transaction) {
 
         StringBuilder error = new StringBuilder();
@@ -20,7 +25,9 @@ public class TransactionResponse implements MessageObject {
 
         accepted = false;
         if (transactionValid) {
-            boolean addedToPool = TransactionPool.addTransaction(transaction, error, warning);
+            AtomicLong retryAfter = new AtomicLong(0L);
+            boolean addedToPool = TransactionPool.addTransaction(transaction, error, warning, retryAfter);
+            retryAfterMilliseconds = retryAfter.get();
             if (addedToPool) {
                 String warningString = "";
                 if (warning.length() > 0) {
@@ -65,6 +72,14 @@ public class TransactionResponse implements MessageObject {
         return message;
     }
 
+    public boolean isTryLater() {
+        return retryAfterMilliseconds > 0L;
+    }
+
+    public long getRetryAfterMilliseconds() {
+        return retryAfterMilliseconds;
+    }
+
     @Override
     public int getByteSize() {
         return FieldByteSize.booleanField +   // transactionAccepted
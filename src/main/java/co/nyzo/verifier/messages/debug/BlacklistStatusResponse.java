@@ -23,6 +23,7 @@ public class BlacklistStatusResponse implements MessageObject, MultilineTextResp
             lines.add("messages rejected: " + MeshListener.getNumberOfMessagesRejected());
             lines.add("messages accepted: " + MeshListener.getNumberOfMessagesAccepted());
             lines.add("blacklist size: " + BlacklistManager.getBlacklistSize());
+            lines.addAll(BlacklistManager.getStatusLines());
 
             this.lines = lines;
         } else {
@@ -0,0 +1,90 @@
+package co.nyzo.verifier.messages.debug;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.MultilineTextResponse;
+import co.nyzo.verifier.util.ConsensusTimeline;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConsensusTimelineResponse implements MessageObject, MultilineTextResponse {
+
+    private static final int numberOfHeights = 100;
+    private static final int numberOfRecentHeights = 20;
+
+    private List<String> lines;
+
+    public ConsensusTimelineResponse(Message request) {
+
+        // This is a debug request, so it must be signed by the local verifier.
+        if (ByteUtil.arraysAreEqual(request.getSourceNodeIdentifier(), Verifier.getIdentifier())) {
+            this.lines = ConsensusTimeline.statusLines(numberOfHeights, numberOfRecentHeights);
+        } else {
+            this.lines = new ArrayList<>();
+        }
+    }
+
+    public ConsensusTimelineResponse(List<String> lines) {
+
+        this.lines = lines;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    @Override
+    public int getByteSize() {
+
+        int byteSize = 1;  // list length
+        for (String line : lines) {
+            byteSize += FieldByteSize.string(line);
+        }
+
+        return byteSize;
+    }
+
+    @Override
+    public byte[] getBytes() {
+
+        byte[] result = new byte[getByteSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+
+        buffer.put((byte) lines.size());
+        for (String line : lines) {
+            byte[] lineBytes = line.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) lineBytes.length);
+            buffer.put(lineBytes);
+        }
+
+        return result;
+    }
+
+    public static ConsensusTimelineResponse fromByteBuffer(ByteBuffer buffer) {
+
+        ConsensusTimelineResponse result = null;
+
+        try {
+            int numberOfLines = buffer.get() & 0xff;
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < numberOfLines; i++) {
+                short lineByteLength = buffer.getShort();
+                byte[] lineBytes = new byte[lineByteLength];
+                buffer.get(lineBytes);
+                lines.add(new String(lineBytes, StandardCharsets.UTF_8));
+            }
+
+            result = new ConsensusTimelineResponse(lines);
+
+        } catch (Exception ignored) { }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "[ConsensusTimelineResponse(lines=" + lines.size() + ")]";
+    }
+}
@@ -0,0 +1,25 @@
+package co.nyzo.verifier.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter {
+
+    // A counter only increases. Updates from many threads are spread across cells, so they do not contend.
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,8 @@
+package co.nyzo.verifier.metrics;
+
+public interface Gauge {
+
+    // A gauge is read when the metrics are rendered, so it reports the current value of an existing field without any
+    // work on the path that changes the field.
+    double getValue();
+}
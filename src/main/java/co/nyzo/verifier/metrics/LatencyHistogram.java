@@ -0,0 +1,109 @@
+package co.nyzo.verifier.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+    // This histogram records durations in nanoseconds with a bounded relative error, in the manner of an HDR
+    // histogram. Values below 16 have their own buckets. Above that, each power of two is divided into 16 buckets of
+    // equal width, so a bucket is never wider than 1/16 of its lower bound. 960 buckets cover all positive long
+    // values. Recording is a few arithmetic operations and an atomic increment, with no locks or allocation.
+
+    private static final int subBucketBits = 4;
+    private static final int subBucketCount = 1 << subBucketBits;
+    private static final int numberOfBuckets = subBucketCount + (63 - subBucketBits) * subBucketCount;
+
+    private final AtomicLongArray counts = new AtomicLongArray(numberOfBuckets);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong maximum = new AtomicLong(0L);
+
+    LatencyHistogram() {
+    }
+
+    public void record(long nanoseconds) {
+
+        long value = Math.max(0L, nanoseconds);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+
+        long currentMaximum = maximum.get();
+        while (value > currentMaximum && !maximum.compareAndSet(currentMaximum, value)) {
+            currentMaximum = maximum.get();
+        }
+    }
+
+    // Records the time elapsed since a value of System.nanoTime().
+    public void recordSince(long startNanoseconds) {
+        record(System.nanoTime() - startNanoseconds);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMaximum() {
+        return maximum.get();
+    }
+
+    // Returns the upper bound of the bucket that contains the value at the specified quantile, or 0 if no values have
+    // been recorded. Concurrent recording may make the result slightly inconsistent with the count.
+    public long valueAtQuantile(double quantile) {
+
+        long[] snapshot = new long[numberOfBuckets];
+        long total = 0L;
+        for (int i = 0; i < numberOfBuckets; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        long result = 0L;
+        if (total > 0L) {
+            long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+            long cumulative = 0L;
+            int index = 0;
+            while (cumulative < rank && index < numberOfBuckets) {
+                cumulative += snapshot[index++];
+            }
+            result = Math.min(bucketUpperBound(index - 1), maximum.get());
+        }
+
+        return result;
+    }
+
+    static int bucketIndex(long value) {
+
+        int index;
+        if (value < subBucketCount) {
+            index = (int) value;
+        } else {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - subBucketBits)) - subBucketCount;
+            index = subBucketCount + (exponent - subBucketBits) * subBucketCount + subBucket;
+        }
+
+        return index;
+    }
+
+    static long bucketUpperBound(int index) {
+
+        long bound;
+        if (index < subBucketCount) {
+            bound = index;
+        } else {
+            int exponent = (index - subBucketCount) / subBucketCount + subBucketBits;
+            int subBucket = (index - subBucketCount) % subBucketCount;
+            long width = 1L << (exponent - subBucketBits);
+            bound = (subBucketCount + subBucket) * width + width - 1L;
+        }
+
+        return bound;
+    }
+}
@@ -0,0 +1,141 @@
+package co.nyzo.verifier.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MetricsRegistry {
+
+    // This class holds all counters, gauges, and latency histograms of the process, and it renders them in the
+    // Prometheus text format. A metric is identified by its name and an optional label. Registering a metric that
+    // already exists returns the existing metric, so classes may keep the returned metric in a static field or look it
+    // up when needed. Histograms are rendered as summaries with quantiles in seconds.
+    //
+    // Following the Prometheus naming convention, the names of counters end with "_total". This includes counter
+    // functions, which read a cumulative count kept elsewhere when the metrics are rendered.
+
+    private static final double[] quantiles = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    public static Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    public static Counter counter(String name, String help, String labelName, String labelValue) {
+        return (Counter) family(name, help, "counter").metric(labelName, labelValue, new Counter());
+    }
+
+    public static LatencyHistogram histogram(String name, String help) {
+        return histogram(name, help, null, null);
+    }
+
+    public static LatencyHistogram histogram(String name, String help, String labelName, String labelValue) {
+        return (LatencyHistogram) family(name, help, "summary").metric(labelName, labelValue, new LatencyHistogram());
+    }
+
+    public static void counterFunction(String name, String help, Gauge gauge) {
+        counterFunction(name, help, null, null, gauge);
+    }
+
+    public static void counterFunction(String name, String help, String labelName, String labelValue, Gauge gauge) {
+        family(name, help, "counter").metric(labelName, labelValue, gauge);
+    }
+
+    public static void gauge(String name, String help, Gauge gauge) {
+        gauge(name, help, null, null, gauge);
+    }
+
+    public static void gauge(String name, String help, String labelName, String labelValue, Gauge gauge) {
+        family(name, help, "gauge").metric(labelName, labelValue, gauge);
+    }
+
+    public static String render() {
+
+        StringBuilder result = new StringBuilder();
+        List<String> names = new ArrayList<>(families.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            Family family = families.get(name);
+            result.append("# HELP ").append(name).append(" ").append(family.help).append("\n");
+            result.append("# TYPE ").append(name).append(" ").append(family.type).append("\n");
+
+            List<String> labels = new ArrayList<>(family.metrics.keySet());
+            Collections.sort(labels);
+            for (String label : labels) {
+                Object metric = family.metrics.get(label);
+                if (metric instanceof Counter) {
+                    appendLine(result, name, label, null, ((Counter) metric).get());
+                } else if (metric instanceof Gauge) {
+                    double value;
+                    try {
+                        value = ((Gauge) metric).getValue();
+                    } catch (Exception ignored) {
+                        value = Double.NaN;
+                    }
+                    appendLine(result, name, label, null, value);
+                } else if (metric instanceof LatencyHistogram) {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    for (double quantile : quantiles) {
+                        appendLine(result, name, label, "quantile=\"" + quantile + "\"",
+                                histogram.valueAtQuantile(quantile) / 1.0e9);
+                    }
+                    appendLine(result, name + "_sum", label, null, histogram.getSum() / 1.0e9);
+                    appendLine(result, name + "_count", label, null, histogram.getCount());
+                }
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static void appendLine(StringBuilder result, String name, String label, String extraLabel,
+                                   double value) {
+
+        result.append(name);
+        if (!label.isEmpty() || extraLabel != null) {
+            result.append("{").append(label);
+            if (extraLabel != null) {
+                result.append(label.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            result.append("}");
+        }
+        result.append(" ");
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1.0e15) {
+            result.append((long) value);
+        } else {
+            result.append(value);
+        }
+        result.append("\n");
+    }
+
+    private static Family family(String name, String help, String type) {
+
+        Family family = families.get(name);
+        if (family == null) {
+            families.putIfAbsent(name, new Family(help, type));
+            family = families.get(name);
+        }
+
+        return family;
+    }
+
+    private static class Family {
+
+        private final String help;
+        private final String type;
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+
+        private Object metric(String labelName, String labelValue, Object newMetric) {
+
+            String label = labelName == null ? "" : labelName + "=\"" + labelValue.replace("\\", "\\\\")
+                    .replace("\"", "\\\"") + "\"";
+            Object metric = metrics.putIfAbsent(label, newMetric);
+            return metric == null ? newMetric : metric;
+        }
+    }
+}
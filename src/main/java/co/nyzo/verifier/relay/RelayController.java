@@ -4,9 +4,12 @@ import co.nyzo.verifier.Verifier;
 import co.nyzo.verifier.client.ConsoleColor;
 import co.nyzo.verifier.util.LogUtil;
 import co.nyzo.verifier.web.Endpoint;
+import co.nyzo.verifier.web.EndpointRequest;
+import co.nyzo.verifier.web.EndpointResponse;
 import co.nyzo.verifier.web.EndpointResponseProvider;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
@@ -17,9 +20,13 @@ public class RelayController {
 
     private static final File endpointFile = new File(Verifier.dataRootDirectory, "relay_endpoints");
 
+    public static final Endpoint statusEndpoint = new Endpoint("/relayStatus");
+
     public static Map<Endpoint, EndpointResponseProvider> buildEndpointMap() {
 
+        // The status endpoint is added first, so an endpoint in the file with the same path replaces it.
         Map<Endpoint, EndpointResponseProvider> map = new ConcurrentHashMap<>();
+        map.put(statusEndpoint, RelayController::status);
         try {
             List<String> fileContents = Files.readAllLines(Paths.get(endpointFile.getAbsolutePath()));
             for (String line : fileContents) {
@@ -59,4 +66,17 @@ public class RelayController {
 
         return map;
     }
+
+    // This shows the refresh state and staleness of each refreshed endpoint, followed by the state of the file cache.
+    public static EndpointResponse status(EndpointRequest request) {
+
+        StringBuilder result = new StringBuilder();
+        for (String line : RelayEndpointManager.getStatusLines()) {
+            result.append(line).append("\n");
+        }
+        result.append("file cache: ").append(RelayFileCache.getStatusString()).append("\n");
+
+        return new EndpointResponse(result.toString().getBytes(StandardCharsets.UTF_8),
+                EndpointResponse.contentTypeText);
+    }
 }
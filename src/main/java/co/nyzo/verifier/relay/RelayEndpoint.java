@@ -1,30 +1,46 @@
 package co.nyzo.verifier.relay;
 
 import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
 import co.nyzo.verifier.util.PrintUtil;
 import co.nyzo.verifier.web.*;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RelayEndpoint implements EndpointResponseProvider {
 
     private static final long maximumSize = 1024L * 1024L * 10L;
+    private static final int connectTimeout = PreferencesUtil.getInt("relay_refresh_connect_timeout", 2000);
+    private static final int readTimeout = PreferencesUtil.getInt("relay_refresh_read_timeout", 10000);
 
     private boolean isFileEndpoint;
     private String sourceEndpoint;
     private long interval;
     private EndpointResponse cachedWebResponse;
     private long lastRefreshTimestamp;
-    private long lastResponseTimestamp;
+    private long lastAttemptTimestamp;
+    private long lastRefreshDuration;
+    private String lastFailure = "";
+
+    // These are the validators from the last upstream response. They are sent with the next refresh, so an unchanged
+    // upstream only needs to send a 304 response.
+    private String upstreamEntityTag = null;
+    private String upstreamLastModified = null;
+
+    private final AtomicLong numberOfRefreshes = new AtomicLong(0L);
+    private final AtomicLong numberOfNotModifiedRefreshes = new AtomicLong(0L);
+    private final AtomicLong numberOfFailedRefreshes = new AtomicLong(0L);
+    private int consecutiveFailures = 0;
 
     public RelayEndpoint(String sourceEndpoint) {
         this.isFileEndpoint = sourceEndpoint.startsWith("file:/");
@@ -38,6 +54,55 @@ public class RelayEndpoint implements EndpointResponseProvider {
         this.interval = interval;
     }
 
+    public boolean isFileEndpoint() {
+        return isFileEndpoint;
+    }
+
+    public String getSourceEndpoint() {
+        return sourceEndpoint;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getLastRefreshTimestamp() {
+        return lastRefreshTimestamp;
+    }
+
+    public long getLastAttemptTimestamp() {
+        return lastAttemptTimestamp;
+    }
+
+    // Returns the time since the content was last confirmed current, or -1 if the content has never been fetched.
+    public long getStaleness(long timestamp) {
+        return lastRefreshTimestamp <= 0 ? -1L : Math.max(0L, timestamp - lastRefreshTimestamp);
+    }
+
+    public long getNumberOfRefreshes() {
+        return numberOfRefreshes.get();
+    }
+
+    public long getNumberOfNotModifiedRefreshes() {
+        return numberOfNotModifiedRefreshes.get();
+    }
+
+    public long getNumberOfFailedRefreshes() {
+        return numberOfFailedRefreshes.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public String getStatusString(long timestamp) {
+        return sourceEndpoint + ": staleness=" + getStaleness(timestamp) + "ms, interval=" + interval +
+                "ms, refreshes=" + numberOfRefreshes.get() + ", notModified=" + numberOfNotModifiedRefreshes.get() +
+                ", failures=" + numberOfFailedRefreshes.get() + ", consecutiveFailures=" + consecutiveFailures +
+                ", lastDuration=" + lastRefreshDuration + "ms" +
+                (consecutiveFailures > 0 ? ", lastFailure=" + lastFailure : "");
+    }
+
     @Override
     public EndpointResponse getResponse(EndpointRequest request) {
         EndpointResponse response;
@@ -53,17 +118,16 @@ public class RelayEndpoint implements EndpointResponseProvider {
                 }
             }
 
-            byte[] result;
-            String contentType;
             try {
-                result = Files.readAllBytes(filePath);
-                contentType = EndpointResponse.contentTypeForFile(filePath.toString());
+                response = RelayFileCache.getResponse(filePath, request);
+            } catch (NoSuchFileException e) {
+                response = new EndpointResponse(("file not found: " + request.getEndpoint().getPath())
+                        .getBytes(StandardCharsets.UTF_8), EndpointResponse.contentTypeText,
+                        HttpStatusCode.NotFound404);
             } catch (Exception e) {
-                result = ("error reading file: " + PrintUtil.printException(e)).getBytes(StandardCharsets.UTF_8);
-                contentType = EndpointResponse.contentTypeText;
+                byte[] result = ("error reading file: " + PrintUtil.printException(e)).getBytes(StandardCharsets.UTF_8);
+                response = new EndpointResponse(result, EndpointResponse.contentTypeText);
             }
-            response = new EndpointResponse(result, contentType);
-            response.setHeader("Last-Modified", WebUtil.imfFixdateString(System.currentTimeMillis()));
             response.setHeader("Access-Control-Allow-Origin", "*");
         } else {
             response = cachedWebResponse;
@@ -72,35 +136,102 @@ public class RelayEndpoint implements EndpointResponseProvider {
         return response;
     }
 
+    // Refreshes a web endpoint. The RelayEndpointManager schedules refreshes and ensures that only one refresh of an
+    // endpoint is in progress at a time.
     public void refresh() {
-        // Only refresh web endpoints that are out of date.
-        if (!isFileEndpoint && lastRefreshTimestamp < System.currentTimeMillis() - interval) {
-            LogUtil.println("refreshing endpoint: " + sourceEndpoint);
+
+        if (isFileEndpoint) {
+            return;
+        }
+
+        long startTimestamp = System.currentTimeMillis();
+        lastAttemptTimestamp = startTimestamp;
+        HttpURLConnection connection = null;
+        InputStream inputStream = null;
+        try {
+            connection = (HttpURLConnection) new URL(sourceEndpoint).openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            if (cachedWebResponse != null && upstreamEntityTag != null) {
+                connection.setRequestProperty("If-None-Match", upstreamEntityTag);
+            }
+            if (cachedWebResponse != null && upstreamLastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", upstreamLastModified);
+            }
+
+            int statusCode = connection.getResponseCode();
+            if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedWebResponse != null) {
+                numberOfNotModifiedRefreshes.incrementAndGet();
+            } else if (statusCode == HttpURLConnection.HTTP_OK) {
+                // The content is read in bounded steps, so a response without a content length (such as a chunked
+                // response) is handled, and a response that is too large is abandoned without being buffered.
+                inputStream = connection.getInputStream();
+                byte[] result = readContent(inputStream, connection.getContentLengthLong());
+
+                // Build the response and set the last-modified header. The header marks when the content changed,
+                // so the previous response, with its header, is kept when a refresh returns the same content. This
+                // allows conditional requests downstream to match.
+                EndpointResponse previousResponse = cachedWebResponse;
+                if (previousResponse == null || !Arrays.equals(previousResponse.getContent(), result)) {
+                    String contentType = connection.getContentType();
+                    EndpointResponse response = new EndpointResponse(result, contentType == null ?
+                            EndpointResponse.contentTypeOctetStream : contentType);
+                    response.setHeader("Last-Modified", HttpDate.format(System.currentTimeMillis()));
+                    response.setHeader("Access-Control-Allow-Origin", "*");
+                    cachedWebResponse = response;
+                }
+                upstreamEntityTag = connection.getHeaderField("ETag");
+                upstreamLastModified = connection.getHeaderField("Last-Modified");
+            } else {
+                throw new IOException("unexpected status code " + statusCode);
+            }
+
+            numberOfRefreshes.incrementAndGet();
+            consecutiveFailures = 0;
+            lastRefreshTimestamp = System.currentTimeMillis();
+        } catch (Exception e) {
+            numberOfFailedRefreshes.incrementAndGet();
+            consecutiveFailures++;
+            lastFailure = PrintUtil.printException(e);
+            if (consecutiveFailures == 1) {
+                LogUtil.println("unable to refresh endpoint " + sourceEndpoint + ": " + lastFailure);
+            }
+        } finally {
+            // Closing the streams, rather than disconnecting, allows the connection to be reused.
             try {
-                URLConnection connection = new URL(sourceEndpoint).openConnection();
-                connection.setConnectTimeout(2000);  // 2 seconds
-                connection.setReadTimeout(10000);    // 10 seconds
-                if (connection.getContentLength() <= maximumSize) {
-                    byte[] result = new byte[connection.getContentLength()];
-                    ByteBuffer buffer = ByteBuffer.wrap(result);
-                    ReadableByteChannel channel = Channels.newChannel(connection.getInputStream());
-                    int bytesRead;
-                    int totalBytesRead = 0;
-                    while ((bytesRead = channel.read(buffer)) > 0) {
-                        totalBytesRead += bytesRead;
-                    }
-                    channel.close();
-
-                    // Build the response and set the last-modified header.
-                    long refreshTimestamp = System.currentTimeMillis();
-                    cachedWebResponse = new EndpointResponse(result, connection.getContentType());
-                    cachedWebResponse.setHeader("Last-Modified", WebUtil.imfFixdateString(refreshTimestamp));
-                    cachedWebResponse.setHeader("Access-Control-Allow-Origin", "*");
-
-                    // Set the refresh timestamp.
-                    lastRefreshTimestamp = refreshTimestamp;
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+                InputStream errorStream = connection == null ? null : connection.getErrorStream();
+                if (errorStream != null) {
+                    errorStream.close();
                 }
             } catch (Exception ignored) { }
+            lastRefreshDuration = System.currentTimeMillis() - startTimestamp;
+        }
+    }
+
+    private static byte[] readContent(InputStream inputStream, long contentLength) throws IOException {
+
+        if (contentLength > maximumSize) {
+            throw new IOException("content length " + contentLength + " exceeds maximum of " + maximumSize);
+        }
+
+        byte[] buffer = BufferPool.acquire();
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength :
+                    buffer.length);
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) >= 0) {
+                if (content.size() + bytesRead > maximumSize) {
+                    throw new IOException("content exceeds maximum of " + maximumSize);
+                }
+                content.write(buffer, 0, bytesRead);
+            }
+
+            return content.toByteArray();
+        } finally {
+            BufferPool.release(buffer);
         }
     }
 }
@@ -1,57 +1,155 @@
 package co.nyzo.verifier.relay;
 
 import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
 import co.nyzo.verifier.util.PrintUtil;
 import co.nyzo.verifier.util.ThreadUtil;
 import co.nyzo.verifier.util.UpdateUtil;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RelayEndpointManager {
 
-    private static final Set<RelayEndpoint> endpoints = ConcurrentHashMap.newKeySet();
+    // Endpoints are refreshed in parallel by a pool of threads, so a slow upstream only delays its own endpoint. Each
+    // endpoint is scheduled by its own interval, with a random jitter added so that endpoints with the same interval
+    // do not all refresh at the same moment. An endpoint is never refreshed by more than one thread at a time.
+
+    private static final long schedulerInterval = 100L;
+    private static final int numberOfRefreshThreads = PreferencesUtil.getInt("relay_refresh_threads", 8);
+    private static final double jitterFraction = PreferencesUtil.getDouble("relay_refresh_jitter_fraction", 0.1);
+
+    private static final Map<RelayEndpoint, Long> endpointToNextRefreshTimestampMap = new ConcurrentHashMap<>();
+    private static final Map<RelayEndpoint, Long> endpointToRegistrationTimestampMap = new ConcurrentHashMap<>();
+    private static final Set<RelayEndpoint> refreshesInProgress = ConcurrentHashMap.newKeySet();
     private static final AtomicBoolean alive = new AtomicBoolean(false);
+    private static final Random random = new Random();
+
+    private static ThreadPoolExecutor refreshPool = null;
 
     public static void register(RelayEndpoint endpoint) {
         start();
-        endpoints.add(endpoint);
+        long timestamp = System.currentTimeMillis();
+        endpointToRegistrationTimestampMap.put(endpoint, timestamp);
+        endpointToNextRefreshTimestampMap.put(endpoint, timestamp + jitter(endpoint));
     }
 
     public static void unregister(RelayEndpoint endpoint) {
-        endpoints.remove(endpoint);
+        endpointToNextRefreshTimestampMap.remove(endpoint);
+        endpointToRegistrationTimestampMap.remove(endpoint);
+    }
+
+    public static List<RelayEndpoint> getEndpoints() {
+        return new ArrayList<>(endpointToNextRefreshTimestampMap.keySet());
     }
 
     public static void start() {
         if (!alive.getAndSet(true)) {
             LogUtil.println("starting RelayEndpointManager");
 
+            refreshPool = new ThreadPoolExecutor(numberOfRefreshThreads, numberOfRefreshThreads, 60L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            refreshPool.allowCoreThreadTimeOut(true);
+
             new Thread(new Runnable() {
                 @Override
                 public void run() {
                     while (!UpdateUtil.shouldTerminate()) {
-                        long loopStartTimestamp = System.currentTimeMillis();
-
-                        // Refresh all registered endpoints.
-                        for (RelayEndpoint endpoint : endpoints) {
-                            try {
-                                endpoint.refresh();
-                            } catch (Exception e) {
-                                LogUtil.println("exception in endpoint refresh: " + PrintUtil.printException(e));
-                            }
-                        }
-
-                        // Ensure that the loop is no tighter than 1 second per iteration.
-                        long sleepTime = Math.max(0L, loopStartTimestamp + 1000L - System.currentTimeMillis());
-                        if (sleepTime > 0) {
-                            ThreadUtil.sleep(sleepTime);
+                        try {
+                            refreshDueEndpoints(System.currentTimeMillis());
+                        } catch (Exception e) {
+                            LogUtil.println("exception in RelayEndpointManager: " + PrintUtil.printException(e));
                         }
+                        ThreadUtil.sleep(schedulerInterval);
                     }
 
+                    refreshPool.shutdown();
                     alive.set(false);
                 }
-            }).start();
+            }, "RelayEndpointManager-scheduler").start();
+        }
+    }
+
+    public static List<String> getStatusLines() {
+
+        long timestamp = System.currentTimeMillis();
+        List<String> lines = new ArrayList<>();
+        lines.add("endpoints: " + endpointToNextRefreshTimestampMap.size() + ", refreshes in progress: " +
+                refreshesInProgress.size() + ", queued refreshes: " +
+                (refreshPool == null ? 0 : refreshPool.getQueue().size()));
+        for (RelayEndpoint endpoint : endpointToNextRefreshTimestampMap.keySet()) {
+            lines.add(endpoint.getStatusString(timestamp));
         }
+
+        return lines;
+    }
+
+    // Returns the greatest staleness of all registered endpoints.
+    public static long getMaximumStaleness() {
+
+        long timestamp = System.currentTimeMillis();
+        long maximumStaleness = 0L;
+        for (RelayEndpoint endpoint : endpointToNextRefreshTimestampMap.keySet()) {
+            maximumStaleness = Math.max(maximumStaleness, getStaleness(endpoint, timestamp));
+        }
+
+        return maximumStaleness;
+    }
+
+    // Returns the staleness of the endpoint, counting an endpoint that has never been fetched as stale since its
+    // registration.
+    public static long getStaleness(RelayEndpoint endpoint, long timestamp) {
+
+        long staleness = endpoint.getStaleness(timestamp);
+        if (staleness < 0) {
+            staleness = Math.max(0L, timestamp - endpointToRegistrationTimestampMap.getOrDefault(endpoint, timestamp));
+        }
+
+        return staleness;
+    }
+
+    private static void refreshDueEndpoints(long timestamp) {
+
+        for (Map.Entry<RelayEndpoint, Long> entry : endpointToNextRefreshTimestampMap.entrySet()) {
+            RelayEndpoint endpoint = entry.getKey();
+            if (entry.getValue() <= timestamp && refreshesInProgress.add(endpoint)) {
+                refreshPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            endpoint.refresh();
+                        } catch (Exception e) {
+                            LogUtil.println("exception in endpoint refresh: " + PrintUtil.printException(e));
+                        }
+
+                        // The next refresh is scheduled from the end of this one, so a slow upstream is not
+                        // refreshed continuously. The endpoint may have been unregistered during the refresh.
+                        long nextRefreshTimestamp = System.currentTimeMillis() + endpoint.getInterval() +
+                                jitter(endpoint);
+                        endpointToNextRefreshTimestampMap.replace(endpoint, nextRefreshTimestamp);
+                        refreshesInProgress.remove(endpoint);
+                    }
+                });
+            }
+        }
+    }
+
+    private static long jitter(RelayEndpoint endpoint) {
+
+        long maximumJitter = (long) (Math.min(endpoint.getInterval(), 60000L) * jitterFraction);
+        long jitter;
+        synchronized (random) {
+            jitter = maximumJitter <= 0 ? 0L : (long) (random.nextDouble() * maximumJitter);
+        }
+
+        return jitter;
     }
 }
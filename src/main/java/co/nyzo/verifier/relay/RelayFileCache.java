@@ -0,0 +1,332 @@
+package co.nyzo.verifier.relay;
+
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+import co.nyzo.verifier.web.EndpointRequest;
+import co.nyzo.verifier.web.EndpointResponse;
+import co.nyzo.verifier.web.HttpDate;
+import co.nyzo.verifier.web.HttpStatusCode;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RelayFileCache {
+
+    // This cache holds the metadata, and for small files the content, of files served by relay endpoints. Each file is
+    // read once and then served from memory until a WatchService event for its directory invalidates it. Large files
+    // are not loaded; they are sent from the file with FileChannel.transferTo(), so the operating system's page cache
+    // serves them without copying through the heap. The cached metadata provides stable Last-Modified and ETag
+    // headers, so clients can use conditional and range requests.
+
+    private static final long maximumLoadedFileSize = PreferencesUtil.getLong("relay_file_cache_maximum_file_size",
+            256L * 1024L);
+    private static final long maximumLoadedBytes = PreferencesUtil.getLong("relay_file_cache_maximum_bytes",
+            64L * 1024L * 1024L);
+
+    private static final Map<Path, CachedFile> pathToFileMap = new ConcurrentHashMap<>();
+    private static final AtomicLong loadedBytes = new AtomicLong(0L);
+
+    // This is incremented on every invalidation. A file is only stored if no invalidation occurred while it was being
+    // read, so a change that is reported during a read is not lost.
+    private static final AtomicLong invalidationGeneration = new AtomicLong(0L);
+
+    private static WatchService watchService = null;
+    private static final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean watcherAlive = new AtomicBoolean(false);
+
+    private static final AtomicLong numberOfHits = new AtomicLong(0L);
+    private static final AtomicLong numberOfLoads = new AtomicLong(0L);
+    private static final AtomicLong numberOfInvalidations = new AtomicLong(0L);
+    private static final AtomicLong numberOfNotModifiedResponses = new AtomicLong(0L);
+    private static final AtomicLong numberOfPartialResponses = new AtomicLong(0L);
+
+    public static EndpointResponse getResponse(Path path, EndpointRequest request) throws IOException {
+
+        CachedFile file = cachedFile(path.toAbsolutePath().normalize());
+
+        EndpointResponse response;
+        if (isNotModified(file, request)) {
+            numberOfNotModifiedResponses.incrementAndGet();
+            response = new EndpointResponse(new byte[0], file.contentType, HttpStatusCode.NotModified304);
+        } else {
+            // A range is only honored if the If-Range validator, when present, matches the current file.
+            long[] range = null;
+            String rangeHeader = request.getHeader("range");
+            String ifRange = request.getHeader("if-range");
+            if (!rangeHeader.isEmpty() && (ifRange.isEmpty() || ifRange.equals(file.entityTag) ||
+                    ifRange.equals(file.lastModifiedString))) {
+                range = parseRange(rangeHeader, file.length);
+            }
+
+            if (range == null) {
+                response = fileResponse(file, 0L, file.length, HttpStatusCode.Ok200);
+            } else if (range.length == 0) {
+                response = new EndpointResponse(new byte[0], file.contentType, HttpStatusCode.RangeNotSatisfiable416);
+                response.setHeader("Content-Range", "bytes */" + file.length);
+            } else {
+                numberOfPartialResponses.incrementAndGet();
+                response = fileResponse(file, range[0], range[1] - range[0] + 1, HttpStatusCode.PartialContent206);
+                response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + file.length);
+            }
+        }
+
+        response.setHeader("Last-Modified", file.lastModifiedString);
+        response.setHeader("ETag", file.entityTag);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        return response;
+    }
+
+    public static void invalidate(Path path) {
+
+        invalidationGeneration.incrementAndGet();
+        CachedFile file = pathToFileMap.remove(path);
+        if (file != null) {
+            numberOfInvalidations.incrementAndGet();
+            if (file.content != null) {
+                loadedBytes.addAndGet(-file.length);
+            }
+        }
+    }
+
+    public static String getStatusString() {
+        return "files: " + pathToFileMap.size() + ", loaded bytes: " + loadedBytes.get() + ", watched directories: " +
+                watchedDirectories.size() + ", hits: " + numberOfHits.get() + ", loads: " + numberOfLoads.get() +
+                ", invalidations: " + numberOfInvalidations.get() + ", 304s: " + numberOfNotModifiedResponses.get() +
+                ", 206s: " + numberOfPartialResponses.get();
+    }
+
+    private static CachedFile cachedFile(Path path) throws IOException {
+
+        // Files in directories that are not watched are checked against their attributes on every request.
+        CachedFile file = pathToFileMap.get(path);
+        if (file != null && !watchedDirectories.contains(path.getParent())) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.size() != file.length ||
+                    attributes.lastModifiedTime().toMillis() != file.lastModifiedTimestamp) {
+                invalidate(path);
+                file = null;
+            }
+        }
+
+        if (file == null) {
+            // The directory is watched before the file is read, so any later change produces an event.
+            watch(path.getParent());
+            long generation = invalidationGeneration.get();
+            file = loadFile(path);
+            numberOfLoads.incrementAndGet();
+
+            CachedFile previousFile = pathToFileMap.put(path, file);
+            if (previousFile != null && previousFile.content != null) {
+                loadedBytes.addAndGet(-previousFile.length);
+            }
+            if (invalidationGeneration.get() != generation) {
+                invalidate(path);
+            }
+        } else {
+            numberOfHits.incrementAndGet();
+        }
+
+        return file;
+    }
+
+    private static CachedFile loadFile(Path path) throws IOException {
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(path.toString());
+        }
+
+        // Small files are loaded if they fit in the budget. The content must match the attributes, so the file is
+        // not loaded if its size changed while it was being read.
+        long length = attributes.size();
+        byte[] content = null;
+        if (length <= maximumLoadedFileSize) {
+            try {
+                if (loadedBytes.addAndGet(length) <= maximumLoadedBytes) {
+                    content = Files.readAllBytes(path);
+                    if (content.length != length) {
+                        content = null;
+                    }
+                }
+            } finally {
+                if (content == null) {
+                    loadedBytes.addAndGet(-length);
+                }
+            }
+        }
+
+        return new CachedFile(path, length, attributes.lastModifiedTime().toMillis(), content);
+    }
+
+    private static EndpointResponse fileResponse(CachedFile file, long offset, long length,
+                                                 HttpStatusCode statusCode) {
+
+        EndpointResponse response;
+        if (file.content == null) {
+            response = new EndpointResponse(file.path, offset, length, file.contentType, statusCode);
+        } else if (offset == 0L && length == file.length) {
+            response = new EndpointResponse(file.content, file.contentType, statusCode);
+        } else {
+            response = new EndpointResponse(Arrays.copyOfRange(file.content, (int) offset, (int) (offset + length)),
+                    file.contentType, statusCode);
+        }
+
+        return response;
+    }
+
+    private static boolean isNotModified(CachedFile file, EndpointRequest request) {
+
+        // If-None-Match takes precedence over If-Modified-Since. The modification date has a resolution of one
+        // second, so it is compared at that resolution.
+        boolean notModified;
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (!ifNoneMatch.isEmpty()) {
+            notModified = ifNoneMatch.contains(file.entityTag) || ifNoneMatch.trim().equals("*");
+        } else {
+            long ifModifiedSince = HttpDate.parse(request.getHeader("if-modified-since"));
+            notModified = ifModifiedSince >= 0 && file.lastModifiedTimestamp / 1000L <= ifModifiedSince / 1000L;
+        }
+
+        return notModified;
+    }
+
+    // Returns the first and last byte positions for a satisfiable single range, an empty array for an unsatisfiable
+    // range, or null if the header should be ignored. Multiple ranges are not supported, so they are ignored, and the
+    // full content is sent.
+    private static long[] parseRange(String header, long length) {
+
+        long[] range = null;
+        header = header.trim();
+        if (header.startsWith("bytes=") && !header.contains(",")) {
+            String[] split = header.substring("bytes=".length()).trim().split("-", -1);
+            try {
+                if (split.length == 2) {
+                    String first = split[0].trim();
+                    String last = split[1].trim();
+                    if (first.isEmpty()) {
+                        // This is a suffix range: the last N bytes of the file.
+                        long suffixLength = Long.parseLong(last);
+                        range = suffixLength <= 0 || length == 0 ? new long[0] :
+                                new long[] { Math.max(0L, length - suffixLength), length - 1 };
+                    } else {
+                        long firstPosition = Long.parseLong(first);
+                        long lastPosition = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                        if (firstPosition >= length) {
+                            range = new long[0];
+                        } else if (lastPosition >= firstPosition) {
+                            range = new long[] { firstPosition, lastPosition };
+                        }
+                    }
+                }
+            } catch (Exception ignored) { }
+        }
+
+        return range;
+    }
+
+    private static synchronized void watch(Path directory) {
+
+        if (directory == null || watchedDirectories.contains(directory)) {
+            return;
+        }
+
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+            }
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.add(directory);
+            startWatcher();
+        } catch (Exception e) {
+            // Files in this directory will be checked on each request instead.
+            LogUtil.println("unable to watch directory " + directory + ": " + PrintUtil.printException(e));
+        }
+    }
+
+    private static void startWatcher() {
+
+        if (!watcherAlive.getAndSet(true)) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!UpdateUtil.shouldTerminate()) {
+                        try {
+                            WatchKey key = watchService.poll(1L, TimeUnit.SECONDS);
+                            if (key != null) {
+                                processWatchKey(key);
+                            }
+                        } catch (Exception e) {
+                            LogUtil.println("exception in RelayFileCache watcher: " + PrintUtil.printException(e));
+                        }
+                    }
+
+                    watcherAlive.set(false);
+                }
+            }, "RelayFileCache-watcher").start();
+        }
+    }
+
+    private static void processWatchKey(WatchKey key) {
+
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || !(event.context() instanceof Path)) {
+                invalidateDirectory(directory);
+            } else {
+                invalidate(directory.resolve((Path) event.context()));
+            }
+        }
+
+        // If the key is no longer valid, the directory was removed or became inaccessible. It will be watched again
+        // if a file in it is requested.
+        if (!key.reset()) {
+            watchedDirectories.remove(directory);
+            invalidateDirectory(directory);
+        }
+    }
+
+    private static void invalidateDirectory(Path directory) {
+
+        Iterator<Path> iterator = pathToFileMap.keySet().iterator();
+        while (iterator.hasNext()) {
+            Path path = iterator.next();
+            if (directory.equals(path.getParent())) {
+                invalidate(path);
+            }
+        }
+    }
+
+    private static class CachedFile {
+
+        private final Path path;
+        private final long length;
+        private final long lastModifiedTimestamp;
+        private final String lastModifiedString;
+        private final String entityTag;
+        private final String contentType;
+        private final byte[] content;
+
+        private CachedFile(Path path, long length, long lastModifiedTimestamp, byte[] content) {
+            this.path = path;
+            this.length = length;
+            this.lastModifiedTimestamp = lastModifiedTimestamp;
+            this.lastModifiedString = HttpDate.format(lastModifiedTimestamp);
+            this.entityTag = "\"" + Long.toHexString(lastModifiedTimestamp) + "-" + Long.toHexString(length) + "\"";
+            this.contentType = EndpointResponse.contentTypeForFile(path.toString());
+            this.content = content;
+        }
+    }
+}
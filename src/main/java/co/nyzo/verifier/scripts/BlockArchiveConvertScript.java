@@ -0,0 +1,133 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.Block;
+import co.nyzo.verifier.BlockFileArchiver;
+import co.nyzo.verifier.BlockManager;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BlockArchiveConvertScript {
+
+    // This script converts consolidated files to archives or archives to consolidated files for a range of file
+    // indexes. It reports the compression ratio of each file and of the whole range. After archiving, it reads
+    // random blocks from the archives and from the consolidated files and reports the latency of each.
+
+    private static final int numberOfRandomReads = 1000;
+
+    public static void main(String[] args) {
+
+        if (args.length < 3 || !(args[0].equals("archive") || args[0].equals("restore"))) {
+            System.out.println("\n\n\n*****************************************************************");
+            System.out.println("arguments:");
+            System.out.println("- archive or restore");
+            System.out.println("- first file index (block height / " + BlockManager.blocksPerFile + ")");
+            System.out.println("- last file index");
+            System.out.println("- delete (optional; deletes each source file after it is converted)");
+            System.out.println("*****************************************************************\n\n\n");
+            return;
+        }
+
+        boolean archive = args[0].equals("archive");
+        long firstFileIndex = Long.parseLong(args[1]);
+        long lastFileIndex = Long.parseLong(args[2]);
+        boolean deleteSource = args.length > 3 && args[3].equals("delete");
+
+        long totalConsolidatedBytes = 0L;
+        long totalArchiveBytes = 0L;
+        long conversionNanoseconds = 0L;
+        List<Long> convertedFileIndexes = new ArrayList<>();
+        for (long fileIndex = firstFileIndex; fileIndex <= lastFileIndex; fileIndex++) {
+            long startHeight = fileIndex * BlockManager.blocksPerFile;
+            File consolidatedFile = BlockManager.consolidatedFileForBlockHeight(startHeight);
+            File archiveFile = BlockFileArchiver.archiveFileForConsolidatedFile(consolidatedFile);
+            File sourceFile = archive ? consolidatedFile : archiveFile;
+            if (sourceFile.exists()) {
+                long startNanoseconds = System.nanoTime();
+                boolean successful = archive ? BlockFileArchiver.archive(consolidatedFile, archiveFile) :
+                        BlockFileArchiver.restore(archiveFile, consolidatedFile);
+                conversionNanoseconds += System.nanoTime() - startNanoseconds;
+
+                if (successful) {
+                    totalConsolidatedBytes += consolidatedFile.length();
+                    totalArchiveBytes += archiveFile.length();
+                    convertedFileIndexes.add(fileIndex);
+                    System.out.println(String.format("%s: %,d -> %,d bytes (%.2fx)", sourceFile.getName(),
+                            sourceFile.length(), (archive ? archiveFile : consolidatedFile).length(),
+                            consolidatedFile.length() / (double) Math.max(1L, archiveFile.length())));
+                } else {
+                    System.out.println("unable to convert " + sourceFile);
+                }
+            }
+        }
+
+        System.out.println(String.format("converted %d files in %.1f s: consolidated %,d bytes, archived %,d bytes, " +
+                "ratio %.2fx", convertedFileIndexes.size(), conversionNanoseconds / 1.0e9, totalConsolidatedBytes,
+                totalArchiveBytes, totalConsolidatedBytes / (double) Math.max(1L, totalArchiveBytes)));
+
+        // Both files exist until the source files are deleted, so this is the time to compare random reads.
+        if (!convertedFileIndexes.isEmpty()) {
+            measureRandomReads(convertedFileIndexes);
+        }
+
+        if (deleteSource) {
+            for (long fileIndex : convertedFileIndexes) {
+                File consolidatedFile = BlockManager.consolidatedFileForBlockHeight(fileIndex *
+                        BlockManager.blocksPerFile);
+                (archive ? consolidatedFile : BlockFileArchiver.archiveFileForConsolidatedFile(consolidatedFile))
+                        .delete();
+            }
+            System.out.println("deleted " + convertedFileIndexes.size() + " source files");
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static void measureRandomReads(List<Long> fileIndexes) {
+
+        // The archive reads decompress one frame. The consolidated-file reads use BlockManager.loadBlocksInFile(),
+        // which is how HistoricalBlockManagerMap reads consolidated files without offset files.
+        Random random = new Random(1L);
+        long[] archiveLatencies = new long[numberOfRandomReads];
+        long[] consolidatedLatencies = new long[numberOfRandomReads];
+        int numberOfMismatches = 0;
+        for (int i = 0; i < numberOfRandomReads; i++) {
+            long fileIndex = fileIndexes.get(random.nextInt(fileIndexes.size()));
+            long height = fileIndex * BlockManager.blocksPerFile + random.nextInt((int) BlockManager.blocksPerFile);
+            File consolidatedFile = BlockManager.consolidatedFileForBlockHeight(height);
+
+            long startNanoseconds = System.nanoTime();
+            Block archiveBlock = BlockFileArchiver.blockForHeight(
+                    BlockFileArchiver.archiveFileForConsolidatedFile(consolidatedFile), height);
+            archiveLatencies[i] = System.nanoTime() - startNanoseconds;
+
+            startNanoseconds = System.nanoTime();
+            List<Block> blocks = BlockManager.loadBlocksInFile(consolidatedFile, height, height);
+            consolidatedLatencies[i] = System.nanoTime() - startNanoseconds;
+
+            Block consolidatedBlock = blocks.isEmpty() ? null : blocks.get(0);
+            if ((archiveBlock == null) != (consolidatedBlock == null) || (archiveBlock != null &&
+                    !Arrays.equals(archiveBlock.getBytes(), consolidatedBlock.getBytes()))) {
+                numberOfMismatches++;
+            }
+        }
+
+        System.out.println("random reads of " + numberOfRandomReads + " blocks, " + numberOfMismatches +
+                " mismatches");
+        System.out.println("  archive:      " + percentiles(archiveLatencies));
+        System.out.println("  consolidated: " + percentiles(consolidatedLatencies));
+    }
+
+    private static String percentiles(long[] values) {
+
+        long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+
+        return String.format("p50 %.1f us, p99 %.1f us, max %.1f us", sorted[sorted.length / 2] / 1000.0,
+                sorted[(int) (sorted.length * 0.99)] / 1000.0, sorted[sorted.length - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,119 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.BlockResponse;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class BlockServingBenchmarkScript {
+
+    // This script compares two ways of producing the content of a BlockResponse for historical blocks: building the
+    // blocks from a consolidated file and serializing them, and copying the stored bytes of the blocks from the file
+    // into the response. Both are measured over the same random ranges of the local block files. The cache is not
+    // used by either path, so the file read is included in both.
+
+    private static final int defaultNumberOfRequests = 5000;
+    private static final int blocksPerRequest = 10;
+
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            System.out.println("\n\n\n*****************************************************************");
+            System.out.println("arguments:");
+            System.out.println("- first file index (block height / " + BlockManager.blocksPerFile + ")");
+            System.out.println("- last file index");
+            System.out.println("- number of requests (optional; default " + defaultNumberOfRequests + ")");
+            System.out.println("*****************************************************************\n\n\n");
+            return;
+        }
+
+        long firstFileIndex = Long.parseLong(args[0]);
+        long lastFileIndex = Long.parseLong(args[1]);
+        int numberOfRequests = defaultNumberOfRequests;
+        if (args.length > 2) {
+            try {
+                numberOfRequests = Math.max(1, Integer.parseInt(args[2]));
+            } catch (Exception ignored) { }
+        }
+
+        List<Long> fileIndexes = new ArrayList<>();
+        for (long fileIndex = firstFileIndex; fileIndex <= lastFileIndex; fileIndex++) {
+            File file = BlockManager.consolidatedFileForBlockHeight(fileIndex * BlockManager.blocksPerFile);
+            if (file.exists()) {
+                fileIndexes.add(fileIndex);
+            }
+        }
+
+        if (fileIndexes.isEmpty()) {
+            System.out.println("no consolidated files in range");
+        } else {
+            // Run each path twice, and report the second run, so both are measured after warm-up.
+            for (int run = 0; run < 2; run++) {
+                long[] decodedResult = serve(fileIndexes, numberOfRequests, false);
+                long[] rawResult = serve(fileIndexes, numberOfRequests, true);
+                if (run == 1) {
+                    print("decode and serialize", decodedResult);
+                    print("stored bytes", rawResult);
+                    System.out.println("response bytes " + (decodedResult[2] == rawResult[2] ? "match" :
+                            "DO NOT MATCH"));
+                }
+            }
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    // Returns the number of blocks served, the elapsed nanoseconds, and a checksum of the responses.
+    private static long[] serve(List<Long> fileIndexes, int numberOfRequests, boolean useStoredBytes) {
+
+        Random random = new Random(1L);
+        long numberOfBlocks = 0L;
+        long checksum = 0L;
+        long startNanoseconds = System.nanoTime();
+        for (int i = 0; i < numberOfRequests; i++) {
+            long fileIndex = fileIndexes.get(random.nextInt(fileIndexes.size()));
+            long startHeight = fileIndex * BlockManager.blocksPerFile +
+                    random.nextInt((int) BlockManager.blocksPerFile - blocksPerRequest + 1);
+            long endHeight = startHeight + blocksPerRequest - 1;
+
+            byte[] response;
+            if (useStoredBytes) {
+                List<ByteBuffer> frames = new ArrayList<>();
+                try {
+                    frames = BlockFileReader.framesInFile(BlockManager.consolidatedFileForBlockHeight(startHeight),
+                            startHeight, endHeight);
+                } catch (Exception ignored) { }
+
+                int size = FieldByteSize.booleanField + FieldByteSize.frozenBlockListLength;
+                for (ByteBuffer frame : frames) {
+                    size += frame.remaining();
+                }
+                response = new byte[size];
+                ByteBuffer buffer = ByteBuffer.wrap(response);
+                buffer.put((byte) 0);
+                buffer.putShort((short) frames.size());
+                for (ByteBuffer frame : frames) {
+                    buffer.put(frame.duplicate());
+                }
+                numberOfBlocks += frames.size();
+            } else {
+                List<Block> blocks = BlockManager.loadBlocksInFile(
+                        BlockManager.consolidatedFileForBlockHeight(startHeight), startHeight, endHeight);
+                response = new BlockResponse(null, blocks).getBytes();
+                numberOfBlocks += blocks.size();
+            }
+            checksum = checksum * 31L + Arrays.hashCode(response);
+        }
+
+        return new long[] { numberOfBlocks, System.nanoTime() - startNanoseconds, checksum };
+    }
+
+    private static void print(String label, long[] result) {
+
+        System.out.println(String.format("%-22s %,d blocks in %.1f ms: %,.0f blocks/second", label, result[0],
+                result[1] / 1000000.0, result[0] * 1.0e9 / Math.max(1L, result[1])));
+    }
+}
@@ -0,0 +1,127 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.BlockWithVotesRequest;
+import co.nyzo.verifier.messages.BootstrapRequest;
+import co.nyzo.verifier.messages.BootstrapResponseV2;
+import co.nyzo.verifier.util.CompressionUtil;
+import co.nyzo.verifier.util.ThreadUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CompressedResponseBenchmarkScript {
+
+    private static final int defaultNumberOfIterations = 20;
+
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.out.println("\n\n\n*****************************************************************");
+            System.out.println("arguments:");
+            System.out.println("- host name or IP address of a verifier");
+            System.out.println("- number of iterations (optional; default " + defaultNumberOfIterations + ")");
+            System.out.println("*****************************************************************\n\n\n");
+            return;
+        }
+
+        String hostNameOrIp = args[0];
+        int numberOfIterations = defaultNumberOfIterations;
+        if (args.length > 1) {
+            try {
+                numberOfIterations = Math.max(1, Integer.parseInt(args[1]));
+            } catch (Exception ignored) { }
+        }
+
+        // The bootstrap response provides the frozen edge, which is used for the block-with-votes request.
+        Message bootstrapResponse = fetch(hostNameOrIp, new Message(MessageType.BootstrapRequestV2_35,
+                new BootstrapRequest()), false);
+        long height = bootstrapResponse != null && bootstrapResponse.getContent() instanceof BootstrapResponseV2 ?
+                ((BootstrapResponseV2) bootstrapResponse.getContent()).getFrozenEdgeHeight() : 0L;
+
+        // Balance-list requests are rate-limited for IP addresses that are not whitelisted, so an empty response may
+        // be returned for the second request.
+        MessageType[] requestTypes = { MessageType.BootstrapRequestV2_35, MessageType.BlockWithVotesRequest37,
+                MessageType.MeshRequest15, MessageType.FullMeshRequest41, MessageType.TransactionPoolRequest13,
+                MessageType.FrozenEdgeBalanceListRequest45 };
+
+        System.out.println(String.format("%-34s %10s %10s %7s %10s %10s %10s %10s", "type", "raw bytes",
+                "compressed", "ratio", "deflate ms", "inflate ms", "plain ms", "wrapped ms"));
+        for (MessageType requestType : requestTypes) {
+
+            long plainStart = System.nanoTime();
+            Message plainResponse = fetch(hostNameOrIp, request(requestType, height), false);
+            double plainMilliseconds = (System.nanoTime() - plainStart) / 1000000.0;
+
+            long wrappedStart = System.nanoTime();
+            fetch(hostNameOrIp, request(requestType, height), true);
+            double wrappedMilliseconds = (System.nanoTime() - wrappedStart) / 1000000.0;
+
+            if (plainResponse == null || plainResponse.getContent() == null) {
+                System.out.println(String.format("%-34s no response", requestType));
+            } else {
+                byte[] content = plainResponse.getContent().getBytes();
+                byte[] compressed = CompressionUtil.compress(content);
+
+                long deflateStart = System.nanoTime();
+                for (int i = 0; i < numberOfIterations; i++) {
+                    CompressionUtil.compress(content);
+                }
+                double deflateMilliseconds = (System.nanoTime() - deflateStart) / 1000000.0 / numberOfIterations;
+
+                long inflateStart = System.nanoTime();
+                for (int i = 0; i < numberOfIterations; i++) {
+                    CompressionUtil.decompress(compressed, content.length);
+                }
+                double inflateMilliseconds = (System.nanoTime() - inflateStart) / 1000000.0 / numberOfIterations;
+
+                System.out.println(String.format("%-34s %10d %10d %7.2f %10.3f %10.3f %10.1f %10.1f",
+                        plainResponse.getType(), content.length, compressed.length,
+                        CompressionUtil.compressionRatio(content, compressed), deflateMilliseconds,
+                        inflateMilliseconds, plainMilliseconds, wrappedMilliseconds));
+            }
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static Message request(MessageType type, long height) {
+
+        // A new message is created for each request so that the timestamp is always within the replay-protection
+        // interval.
+        MessageObject content = null;
+        if (type == MessageType.BootstrapRequestV2_35) {
+            content = new BootstrapRequest();
+        } else if (type == MessageType.BlockWithVotesRequest37) {
+            content = new BlockWithVotesRequest(height);
+        }
+
+        return new Message(type, content);
+    }
+
+    private static Message fetch(String hostNameOrIp, Message message, boolean compressed) {
+
+        AtomicBoolean complete = new AtomicBoolean(false);
+        AtomicReference<Message> response = new AtomicReference<>();
+        MessageCallback callback = new MessageCallback() {
+            @Override
+            public void responseReceived(Message message) {
+                response.set(message);
+                complete.set(true);
+            }
+        };
+
+        if (compressed) {
+            Message.fetchTcpCompressed(hostNameOrIp, MeshListener.standardPortTcp, message, callback);
+        } else {
+            Message.fetchTcp(hostNameOrIp, MeshListener.standardPortTcp, message, callback);
+        }
+
+        while (!complete.get()) {
+            ThreadUtil.sleep(10L);
+        }
+
+        return response.get();
+    }
+}
@@ -0,0 +1,11 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.*;
+
+public class ConsensusTimelineRequestScript {
+
+    public static void main(String[] args) {
+
+        ScriptUtil.fetchMultilineStatus(MessageType.ConsensusTimelineRequest426, args);
+    }
+}
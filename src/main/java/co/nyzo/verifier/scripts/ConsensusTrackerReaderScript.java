@@ -0,0 +1,110 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.NicknameManager;
+import co.nyzo.verifier.client.ClientTransactionUtil;
+import co.nyzo.verifier.util.ConsensusTracker;
+import co.nyzo.verifier.util.ConsensusTracker.TrackedRecord;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class ConsensusTrackerReaderScript {
+
+    // This script rebuilds the timeline of each height from the consensus-tracker segments. Each event is printed with
+    // its offset from the first event of the height. As in the text files of earlier versions, individual votes are
+    // only printed when more than one hash received votes, and the vote count of each hash is printed at the end of
+    // the height.
+
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            System.out.println("\n\n\n*****************************************************************");
+            System.out.println("arguments:");
+            System.out.println("- first height");
+            System.out.println("- last height");
+            System.out.println("- all (optional; print individual votes for all heights)");
+            System.out.println("*****************************************************************\n\n\n");
+            return;
+        }
+
+        long firstHeight = Long.parseLong(args[0]);
+        long lastHeight = Long.parseLong(args[1]);
+        boolean printAllVotes = args.length > 2 && args[2].equals("all");
+
+        // Collect the records in the height range from all segments.
+        Map<Long, List<TrackedRecord>> heightToRecordsMap = new TreeMap<>();
+        List<File> files = ConsensusTracker.segmentFiles();
+        for (File file : files) {
+            for (TrackedRecord record : ConsensusTracker.readSegment(file)) {
+                if (record.getHeight() >= firstHeight && record.getHeight() <= lastHeight) {
+                    List<TrackedRecord> records = heightToRecordsMap.get(record.getHeight());
+                    if (records == null) {
+                        records = new ArrayList<>();
+                        heightToRecordsMap.put(record.getHeight(), records);
+                    }
+                    records.add(record);
+                }
+            }
+        }
+        System.out.println("read " + files.size() + " segments; " + heightToRecordsMap.size() + " heights in range");
+
+        for (long height : heightToRecordsMap.keySet()) {
+            printTimeline(height, heightToRecordsMap.get(height), printAllVotes);
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static void printTimeline(long height, List<TrackedRecord> records, boolean printAllVotes) {
+
+        records.sort(new Comparator<TrackedRecord>() {
+            @Override
+            public int compare(TrackedRecord record1, TrackedRecord record2) {
+                return Long.compare(record1.getTimestamp(), record2.getTimestamp());
+            }
+        });
+
+        // Count the votes for each hash. Only the latest vote of each sender is counted.
+        Map<ByteBuffer, ByteBuffer> senderToHashMap = new HashMap<>();
+        for (TrackedRecord record : records) {
+            if (record.getType() == ConsensusTracker.recordTypeVote) {
+                senderToHashMap.put(ByteBuffer.wrap(record.getIdentifier()), ByteBuffer.wrap(record.getHash()));
+            }
+        }
+        Map<ByteBuffer, Integer> hashToVoteCountMap = new HashMap<>();
+        for (ByteBuffer hash : senderToHashMap.values()) {
+            hashToVoteCountMap.put(hash, hashToVoteCountMap.getOrDefault(hash, 0) + 1);
+        }
+        boolean printVotes = printAllVotes || hashToVoteCountMap.size() > 1;
+
+        long startTimestamp = records.get(0).getTimestamp();
+        System.out.println("height " + height + ", first event " + PrintUtil.compactPrintTimestamp(startTimestamp));
+        for (TrackedRecord record : records) {
+            String offset = String.format("  %+7d ms  ", record.getTimestamp() - startTimestamp);
+            if (record.getType() == ConsensusTracker.recordTypeBlock) {
+                String line = offset + "block hash=" + PrintUtil.compactPrintByteArray(record.getHash()) +
+                        ", verifier=" + NicknameManager.get(record.getIdentifier());
+                if (record.getSenderData().length > 0) {
+                    line += ", transaction data=" +
+                            ClientTransactionUtil.senderDataForDisplay(record.getSenderData());
+                }
+                System.out.println(line);
+            } else if (record.getType() == ConsensusTracker.recordTypeVote) {
+                if (printVotes) {
+                    System.out.println(offset + "vote hash=" + PrintUtil.compactPrintByteArray(record.getHash()) +
+                            ", sender=" + NicknameManager.get(record.getIdentifier()));
+                }
+            } else {
+                System.out.println(offset + record.getText());
+            }
+        }
+
+        for (ByteBuffer hash : hashToVoteCountMap.keySet()) {
+            System.out.println("  hash=" + PrintUtil.compactPrintByteArray(hash.array()) + ", votes=" +
+                    hashToVoteCountMap.get(hash));
+        }
+    }
+}
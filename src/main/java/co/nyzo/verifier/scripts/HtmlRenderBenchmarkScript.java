@@ -0,0 +1,121 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+import co.nyzo.verifier.web.BufferPool;
+import co.nyzo.verifier.web.elements.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class HtmlRenderBenchmarkScript {
+
+    // This script compares the memory allocated to render a cycle-style page of verifier tiles. The string path is
+    // the previous rendering behavior. The array path renders to pooled buffers and copies them to a single array,
+    // which is what happens when a response is cached. The stream path is what happens when a response is sent with
+    // chunked transfer encoding: each pooled buffer is passed to the sink and released after it is written.
+
+    private static final int[] cycleSizes = { 1000, 3000 };
+    private static final int warmupIterations = 20;
+    private static final int measuredIterations = 50;
+
+    public static void main(String[] args) {
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            LogUtil.println("per-thread allocation measurement is not available in this JVM");
+            UpdateUtil.terminate();
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        for (int cycleSize : cycleSizes) {
+            Html html = cyclePage(cycleSize);
+            long pageLength = html.renderByteArray().length;
+            LogUtil.println("cycle size: " + cycleSize + ", page length: " + pageLength + " bytes");
+
+            for (String path : new String[] { "string", "array", "stream" }) {
+                for (int i = 0; i < warmupIterations; i++) {
+                    render(html, path);
+                }
+
+                long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+                long startNanoseconds = System.nanoTime();
+                long checksum = 0L;
+                for (int i = 0; i < measuredIterations; i++) {
+                    checksum += render(html, path);
+                }
+                long elapsedNanoseconds = System.nanoTime() - startNanoseconds;
+                long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+                LogUtil.println(String.format("  %-6s: %,12d bytes allocated per page (%.2fx page length), " +
+                                "%.2f ms per page, checksum %d", path, allocatedBytes / measuredIterations,
+                        allocatedBytes / (double) measuredIterations / pageLength,
+                        elapsedNanoseconds / 1000000.0 / measuredIterations, checksum / measuredIterations));
+            }
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static long render(Html html, String path) {
+
+        long length = 0L;
+        if (path.equals("string")) {
+            length = html.render().getBytes(StandardCharsets.UTF_8).length;
+        } else if (path.equals("array")) {
+            length = html.renderByteArray().length;
+        } else {
+            HtmlWriter writer = new HtmlWriter(new OutputSink() {
+                @Override
+                public void write(byte[] array, int offset, int length, boolean pooled) {
+                    if (pooled) {
+                        BufferPool.release(array);
+                    }
+                }
+            });
+            try {
+                html.render(writer);
+                writer.close();
+            } catch (Exception ignored) { }
+            length = writer.getLength();
+        }
+
+        return length;
+    }
+
+    private static Html cyclePage(int cycleSize) {
+
+        // The page has a tile for each verifier, similar to the sentinel and cycle pages. Fixed seeds make the page
+        // identical across runs.
+        Random random = new Random(cycleSize);
+        Html html = new Html();
+        Head head = (Head) html.add(new Head());
+        head.add(new Title("Nyzo cycle"));
+        head.add(new Meta().attr("charset", "UTF-8"));
+
+        Body body = (Body) html.add(new Body());
+        body.add(new H3("Frozen edge: " + (10000000 + random.nextInt(1000000))));
+        Div container = (Div) body.add(new Div().attr("class", "container"));
+        for (int i = 0; i < cycleSize; i++) {
+            StringBuilder identifier = new StringBuilder();
+            for (int j = 0; j < 32; j++) {
+                identifier.append(String.format("%02x", random.nextInt(256)));
+                if (j % 8 == 7 && j < 31) {
+                    identifier.append('-');
+                }
+            }
+
+            Div tile = (Div) container.add(new Div().attr("class", "verifier"));
+            tile.add(new P("verifier\u00e9 \u2192 " + i).attr("class", "nickname"));
+            tile.add(new P(identifier.toString()).attr("class", "identifier"));
+            tile.add(new P("v" + (500 + random.nextInt(100)) + ", score " + random.nextInt(100000)));
+        }
+
+        return html;
+    }
+}
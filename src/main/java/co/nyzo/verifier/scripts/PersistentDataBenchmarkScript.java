@@ -0,0 +1,133 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.util.FileUtil;
+import co.nyzo.verifier.util.KeyValueLog;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class PersistentDataBenchmarkScript {
+
+    // This script measures the latency of puts from concurrent writers for three ways of storing persistent data:
+    // rewriting the whole file on each put, which was the original behavior of PersistentData; a key/value log that
+    // forces each put to disk before returning; and a key/value log with a group-commit flush interval. Files are
+    // written to a temporary directory. After each key/value log run, the files are loaded again and compared to the
+    // map.
+
+    private static final int defaultNumberOfThreads = 8;
+    private static final int defaultPutsPerThread = 500;
+    private static final int numberOfKeys = 40;
+
+    public static void main(String[] args) {
+
+        int numberOfThreads = defaultNumberOfThreads;
+        int putsPerThread = defaultPutsPerThread;
+        try {
+            if (args.length > 0) {
+                numberOfThreads = Math.max(1, Integer.parseInt(args[0]));
+            }
+            if (args.length > 1) {
+                putsPerThread = Math.max(1, Integer.parseInt(args[1]));
+            }
+        } catch (Exception e) {
+            System.out.println("\n\n\n*****************************************************************");
+            System.out.println("arguments:");
+            System.out.println("- number of threads (optional; default " + defaultNumberOfThreads + ")");
+            System.out.println("- puts per thread (optional; default " + defaultPutsPerThread + ")");
+            System.out.println("*****************************************************************\n\n\n");
+            return;
+        }
+
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("PersistentDataBenchmark").toFile();
+
+            Map<String, String> rewriteMap = new ConcurrentHashMap<>();
+            File rewriteFile = new File(directory, "rewrite");
+            print("whole-file rewrite", run(numberOfThreads, putsPerThread, new Store() {
+                @Override
+                public void put(String key, String value) {
+                    rewriteMap.put(key, value);
+                    List<String> lines = new ArrayList<>();
+                    for (String mapKey : rewriteMap.keySet()) {
+                        lines.add(mapKey + "=" + rewriteMap.get(mapKey));
+                    }
+                    FileUtil.writeFile(Paths.get(rewriteFile.getAbsolutePath()), lines);
+                }
+            }));
+
+            for (long flushInterval : new long[] { 0L, 50L }) {
+                File file = new File(directory, "log_" + flushInterval);
+                KeyValueLog log = new KeyValueLog(file, flushInterval, 64L * 1024L);
+                print("log, flush interval " + flushInterval + " ms", run(numberOfThreads, putsPerThread,
+                        new Store() {
+                    @Override
+                    public void put(String key, String value) {
+                        log.put(key, value);
+                    }
+                }));
+
+                log.flush();
+                Map<String, String> reloadedMap = new KeyValueLog(file, flushInterval, 64L * 1024L).getMap();
+                System.out.println("  reloaded map " + (reloadedMap.equals(log.getMap()) ? "matches" :
+                        "DOES NOT MATCH") + "; " + log.getStatusString());
+            }
+        } catch (Exception e) {
+            System.out.println("exception: " + e);
+        }
+
+        if (directory != null) {
+            FileUtil.delete(directory);
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static long[] run(int numberOfThreads, int putsPerThread, Store store) throws Exception {
+
+        long[] latencies = new long[numberOfThreads * putsPerThread];
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        long startNanoseconds = System.nanoTime();
+        for (int i = 0; i < numberOfThreads; i++) {
+            int threadIndex = i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(threadIndex);
+                    for (int j = 0; j < putsPerThread; j++) {
+                        String key = "benchmark_key_" + random.nextInt(numberOfKeys);
+                        String value = threadIndex + "_" + j + "_" + random.nextLong();
+                        long putStart = System.nanoTime();
+                        store.put(key, value);
+                        latencies[threadIndex * putsPerThread + j] = System.nanoTime() - putStart;
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanoseconds = System.nanoTime() - startNanoseconds;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        return new long[] { latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.99)],
+                latencies[latencies.length - 1], latencies.length, elapsedNanoseconds };
+    }
+
+    private static void print(String label, long[] result) {
+
+        System.out.println(String.format("%-26s p50 %9.1f us, p99 %9.1f us, max %9.1f us, %,10.0f puts/second",
+                label, result[0] / 1000.0, result[1] / 1000.0, result[2] / 1000.0,
+                result[3] * 1.0e9 / Math.max(1L, result[4])));
+    }
+
+    private interface Store {
+        void put(String key, String value);
+    }
+}
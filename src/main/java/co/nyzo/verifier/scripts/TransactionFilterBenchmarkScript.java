@@ -0,0 +1,274 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class TransactionFilterBenchmarkScript {
+
+    // This script compares BalanceManager.approvedTransactionsForBlock() to the previous implementation, which applied
+    // each rule with a separate loop of ArrayList removals, serialized every transaction to check for duplicates,
+    // copied the entire balance list to a map, and sorted twice to limit the size of the block. The previous
+    // implementation is reproduced below for the rules exercised by the benchmark transactions, which are all standard
+    // transactions. For each pool size, the outputs of the two implementations are compared to ensure that they are
+    // identical.
+    //
+    // The pool is a mix of valid transactions, transactions that overdraw their senders, transactions outside the
+    // block's timestamp range, transactions with amounts of zero, transactions with invalid signatures, and
+    // duplicates. It is provided in block order, as TransactionPool provides it. Log output of the removed
+    // transactions is discarded during the measurements.
+
+    private static final int[] poolSizes = { 1000, 10000, 50000 };
+    private static final int numberOfSenders = 5000;
+    private static final int numberOfBalanceListAccounts = 200000;
+    private static final int warmupIterations = 3;
+    private static final int measuredIterations = 5;
+
+    public static void main(String[] args) {
+
+        long previousBlockHeight = 1000L;
+        BlockManager.setGenesisBlockStartTimestamp(System.currentTimeMillis() - previousBlockHeight *
+                Block.blockDuration);
+        long startTimestamp = BlockManager.startTimestampForHeight(previousBlockHeight + 1L);
+
+        // Build a balance list with the senders and many other accounts.
+        Random random = new Random(1L);
+        List<byte[]> senderSeeds = new ArrayList<>();
+        List<BalanceListItem> items = new ArrayList<>();
+        for (int i = 0; i < numberOfSenders; i++) {
+            byte[] seed = KeyUtil.generateSeed();
+            senderSeeds.add(seed);
+            items.add(new BalanceListItem(KeyUtil.identifierForSeed(seed), 100000000L + random.nextInt(500000000)));
+        }
+        for (int i = senderSeeds.size(); i < numberOfBalanceListAccounts; i++) {
+            items.add(new BalanceListItem(randomIdentifier(random), 1000000L + random.nextInt(1000000)));
+        }
+        BalanceList balanceList = new BalanceList(2, previousBlockHeight, (byte) 0, new ArrayList<byte[]>(), items,
+                0L, 0L, new HashMap<>(), new ArrayList<ApprovedCycleTransaction>());
+        BalanceListManager.updateFrozenEdge(balanceList);
+        Block previousBlock = new Block(2, previousBlockHeight, new byte[FieldByteSize.hash],
+                BlockManager.startTimestampForHeight(previousBlockHeight), new ArrayList<Transaction>(),
+                balanceList.getHash());
+
+        int largestPoolSize = poolSizes[poolSizes.length - 1];
+        LogUtil.println("creating " + largestPoolSize + " transactions");
+        List<Transaction> allTransactions = new ArrayList<>();
+        while (allTransactions.size() < largestPoolSize) {
+            int kind = random.nextInt(100);
+            byte[] seed = senderSeeds.get(random.nextInt(senderSeeds.size()));
+            long timestamp = startTimestamp + random.nextInt((int) Block.blockDuration);
+            long amount = 1L + random.nextInt(20000000);
+            if (kind < 3) {
+                timestamp += random.nextBoolean() ? Block.blockDuration : -Block.blockDuration;
+            } else if (kind < 5) {
+                amount = 0L;
+            }
+            Transaction transaction = Transaction.standardTransaction(timestamp, amount, randomIdentifier(random),
+                    previousBlockHeight, new byte[FieldByteSize.hash], new byte[0], seed);
+            if (kind >= 5 && kind < 7) {
+                byte[] signature = new byte[FieldByteSize.signature];
+                random.nextBytes(signature);
+                transaction = Transaction.standardTransaction(timestamp, amount, transaction.getReceiverIdentifier(),
+                        previousBlockHeight, new byte[FieldByteSize.hash], transaction.getSenderIdentifier(),
+                        new byte[0], signature);
+            }
+            allTransactions.add(transaction);
+            if (kind >= 7 && kind < 10 && allTransactions.size() < largestPoolSize) {
+                allTransactions.add(transaction);
+            }
+        }
+
+        PrintStream standardOutput = System.out;
+        PrintStream discardOutput = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        });
+
+        LogUtil.println("maximum transactions for block assembly: " +
+                BlockchainMetricsManager.maximumTransactionsForBlockAssembly());
+        for (int poolSize : poolSizes) {
+            List<Transaction> pool = new ArrayList<>(allTransactions.subList(0, poolSize));
+            BalanceManager.sortTransactions(pool);
+
+            System.setOut(discardOutput);
+            long[] nanoseconds = new long[2];
+            List<Transaction> result = null;
+            List<Transaction> legacyResult = null;
+            for (int i = 0; i < warmupIterations + measuredIterations; i++) {
+                long start = System.nanoTime();
+                result = BalanceManager.approvedTransactionsForBlock(new ArrayList<>(pool), previousBlock, true);
+                long middle = System.nanoTime();
+                legacyResult = legacyApprovedTransactionsForBlock(new ArrayList<>(pool), previousBlock, balanceList);
+                long end = System.nanoTime();
+                if (i >= warmupIterations) {
+                    nanoseconds[0] += middle - start;
+                    nanoseconds[1] += end - middle;
+                }
+            }
+            System.setOut(standardOutput);
+
+            List<Transaction> unlimitedResult = BalanceManager.approvedTransactionsForBlock(new ArrayList<>(pool),
+                    previousBlock, false);
+            LogUtil.println(String.format("pool size %,6d: current %8.2f ms, previous %8.2f ms (%.1fx), " +
+                            "approved %d of %d, identical output: %s", poolSize,
+                    nanoseconds[0] / 1000000.0 / measuredIterations, nanoseconds[1] / 1000000.0 / measuredIterations,
+                    nanoseconds[1] / (double) Math.max(1L, nanoseconds[0]), result.size(), unlimitedResult.size(),
+                    result.equals(legacyResult)));
+        }
+
+        UpdateUtil.terminate();
+    }
+
+    private static byte[] randomIdentifier(Random random) {
+
+        byte[] identifier = new byte[FieldByteSize.identifier];
+        random.nextBytes(identifier);
+
+        return identifier;
+    }
+
+    private static List<Transaction> legacyApprovedTransactionsForBlock(List<Transaction> transactions,
+                                                                        Block previousBlock, BalanceList balanceList) {
+
+        BalanceManager.sortTransactions(transactions);
+        Set<ByteBuffer> signaturesAdded = new HashSet<>();
+        Set<ByteBuffer> rawBytesAdded = new HashSet<>();
+        List<Transaction> dedupedTransactions = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            ByteBuffer signature = ByteBuffer.wrap(transaction.getSignature());
+            ByteBuffer rawBytes = ByteBuffer.wrap(transaction.getBytes(true));
+            if (!signaturesAdded.contains(signature) && !rawBytesAdded.contains(rawBytes)) {
+                signaturesAdded.add(signature);
+                rawBytesAdded.add(rawBytes);
+                dedupedTransactions.add(transaction);
+            }
+        }
+
+        long blockHeight = previousBlock.getBlockHeight() + 1L;
+        long startTimestamp = BlockManager.startTimestampForHeight(blockHeight);
+        long endTimestamp = BlockManager.endTimestampForHeight(blockHeight);
+        while (dedupedTransactions.size() > 0 && dedupedTransactions.get(0).getTimestamp() < startTimestamp) {
+            dedupedTransactions.remove(0);
+            LogUtil.println("removed transaction because timestamp was before beginning of block");
+        }
+        while (dedupedTransactions.size() > 0 &&
+                dedupedTransactions.get(dedupedTransactions.size() - 1).getTimestamp() >= endTimestamp) {
+            dedupedTransactions.remove(dedupedTransactions.size() - 1);
+            LogUtil.println("removed transaction because timestamp was past end of block");
+        }
+
+        Set<Byte> validTypes = new HashSet<>(Arrays.asList(Transaction.typeSeed, Transaction.typeStandard,
+                Transaction.typeCycle, Transaction.typeCycleSignature));
+        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+            if (!validTypes.contains(dedupedTransactions.get(i).getType())) {
+                dedupedTransactions.remove(i);
+                LogUtil.println("removed transaction because type is invalid");
+            }
+        }
+
+        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+            if (dedupedTransactions.get(i).getType() != Transaction.typeCycleSignature &&
+                    dedupedTransactions.get(i).getAmount() < 1L) {
+                dedupedTransactions.remove(i);
+                LogUtil.println("removed transaction at index " + i + " due to amount less than 1 micronyzo");
+            }
+        }
+
+        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+            if (!dedupedTransactions.get(i).previousHashIsValid()) {
+                dedupedTransactions.remove(i);
+                LogUtil.println("removed transaction because previous hash was invalid");
+            }
+        }
+
+        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+            if (ByteUtil.arraysAreEqual(dedupedTransactions.get(i).getSenderIdentifier(),
+                    BalanceManager.seedAccountIdentifier)) {
+                dedupedTransactions.remove(i);
+            }
+        }
+
+        for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+            if (!dedupedTransactions.get(i).signatureIsValid()) {
+                dedupedTransactions.remove(i);
+                LogUtil.println("removed transaction because signature was invalid");
+            }
+        }
+
+        // These loops stand in for the cycle-transaction rules, which scan the list several times but do not remove
+        // standard transactions.
+        for (int pass = 0; pass < 4; pass++) {
+            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+                if (dedupedTransactions.get(i).getType() == Transaction.typeCycle) {
+                    dedupedTransactions.remove(i);
+                }
+            }
+        }
+
+        long transactionSumFromLockedAccounts = 0L;
+        for (Transaction transaction : dedupedTransactions) {
+            if (LockedAccountManager.isSubjectToLock(transaction)) {
+                transactionSumFromLockedAccounts += transaction.getAmount();
+            }
+        }
+        if (transactionSumFromLockedAccounts > balanceList.getUnlockThreshold() - balanceList.getUnlockTransferSum()) {
+            for (int i = dedupedTransactions.size() - 1; i >= 0; i--) {
+                if (LockedAccountManager.isSubjectToLock(dedupedTransactions.get(i))) {
+                    dedupedTransactions.remove(i);
+                }
+            }
+        }
+
+        List<Transaction> approvedTransactions = new ArrayList<>();
+        Map<ByteBuffer, Long> identifierToBalanceMap = BalanceManager.makeBalanceMap(balanceList);
+        for (Transaction transaction : dedupedTransactions) {
+            ByteBuffer senderIdentifier = ByteBuffer.wrap(transaction.getSenderIdentifier());
+            Long senderBalance = identifierToBalanceMap.getOrDefault(senderIdentifier, 0L);
+            if (transaction.getAmount() <= senderBalance) {
+                approvedTransactions.add(transaction);
+                identifierToBalanceMap.put(senderIdentifier, senderBalance - transaction.getAmount());
+
+                long amountAfterFee = transaction.getAmount() - transaction.getFee();
+                if (amountAfterFee > 0L) {
+                    ByteBuffer receiverIdentifier = ByteBuffer.wrap(transaction.getReceiverIdentifier());
+                    Long receiverBalance = identifierToBalanceMap.get(receiverIdentifier);
+                    if (receiverBalance == null) {
+                        receiverBalance = 0L;
+                    }
+                    identifierToBalanceMap.put(receiverIdentifier, receiverBalance + amountAfterFee);
+                }
+            } else {
+                LogUtil.println("removed transaction because amount " + transaction.getAmount() + " was greater " +
+                        "than balance " + senderBalance);
+            }
+        }
+
+        int maximumListSize = BlockchainMetricsManager.maximumTransactionsForBlockAssembly();
+        if (approvedTransactions.size() > maximumListSize) {
+            approvedTransactions.sort(new Comparator<Transaction>() {
+                @Override
+                public int compare(Transaction transaction1, Transaction transaction2) {
+                    long transaction1CompareAmount = transaction1.getType() == Transaction.typeCycleSignature ?
+                            Long.MAX_VALUE : transaction1.getAmount();
+                    long transaction2CompareAmount = transaction2.getType() == Transaction.typeCycleSignature ?
+                            Long.MAX_VALUE : transaction2.getAmount();
+                    return Long.compare(transaction2CompareAmount, transaction1CompareAmount);
+                }
+            });
+            while (approvedTransactions.size() > maximumListSize) {
+                approvedTransactions.remove(approvedTransactions.size() - 1);
+            }
+            BalanceManager.sortTransactions(approvedTransactions);
+        }
+
+        return approvedTransactions;
+    }
+}
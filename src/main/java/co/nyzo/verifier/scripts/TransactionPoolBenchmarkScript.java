@@ -0,0 +1,161 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionPoolBenchmarkScript {
+
+    // This script admits signed transactions to the pool from several threads at a combined rate of 10,000
+    // transactions per second while another thread repeatedly reads the pool as block assembly and status queries do.
+    // It then submits all of the transactions again without pacing to measure the throughput of the duplicate path.
+    // The chain state that the pool consults is simulated: the Genesis timestamp is set so that the open edge is at
+    // height 1,000, and a balance list containing all of the senders is registered as the frozen-edge list.
+
+    private static final int numberOfSenders = 1000;
+    private static final int transactionsPerSender = 50;
+    private static final int numberOfAdmissionThreads = 8;
+    private static final int transactionsPerSecond = 10000;
+    private static final int numberOfHeights = 20;
+
+    public static void main(String[] args) {
+
+        long openEdgeHeight = 1000L;
+        BlockManager.setGenesisBlockStartTimestamp(System.currentTimeMillis() - (openEdgeHeight + 2L) *
+                Block.blockDuration);
+
+        LogUtil.println("creating " + (numberOfSenders * transactionsPerSender) + " transactions from " +
+                numberOfSenders + " senders");
+        List<BalanceListItem> items = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        Random random = new Random(1L);
+        for (int i = 0; i < numberOfSenders; i++) {
+            byte[] seed = KeyUtil.generateSeed();
+            items.add(new BalanceListItem(KeyUtil.identifierForSeed(seed), 1000000L));
+            for (int j = 0; j < transactionsPerSender; j++) {
+                long height = openEdgeHeight + 1L + random.nextInt(numberOfHeights);
+                long timestamp = BlockManager.startTimestampForHeight(height) +
+                        random.nextInt((int) Block.blockDuration);
+                byte[] receiverIdentifier = new byte[FieldByteSize.identifier];
+                random.nextBytes(receiverIdentifier);
+                transactions.add(Transaction.standardTransaction(timestamp, 1L + j, receiverIdentifier, 0L,
+                        new byte[FieldByteSize.hash], new byte[0], seed));
+            }
+        }
+        Collections.shuffle(transactions, random);
+        BalanceListManager.updateFrozenEdge(new BalanceList(1, openEdgeHeight - 1L, (byte) 0,
+                new ArrayList<byte[]>(), items, 0L, 0L, new HashMap<>(), new ArrayList<ApprovedCycleTransaction>()));
+
+        // Paced admission with concurrent reads.
+        AtomicBoolean admissionComplete = new AtomicBoolean(false);
+        long[] readLatencies = new long[1000000];
+        AtomicInteger numberOfReads = new AtomicInteger(0);
+        AtomicLong totalTransactionsRead = new AtomicLong(0L);
+        Thread readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long height = openEdgeHeight + 1L;
+                while (!admissionComplete.get() && numberOfReads.get() < readLatencies.length) {
+                    long startNanoseconds = System.nanoTime();
+                    int size = TransactionPool.transactionsForHeight(height).size();
+                    TransactionPool.transactionPoolSize();
+                    readLatencies[numberOfReads.getAndIncrement()] = System.nanoTime() - startNanoseconds;
+                    totalTransactionsRead.addAndGet(size);
+                    height = openEdgeHeight + 1L + (height - openEdgeHeight) % numberOfHeights;
+                }
+            }
+        }, "TransactionPoolBenchmarkScript-reader");
+        readerThread.start();
+
+        long[] admissionLatencies = new long[transactions.size()];
+        AtomicInteger numberAdded = new AtomicInteger(0);
+        long elapsedNanoseconds = admit(transactions, admissionLatencies, numberAdded, true);
+        admissionComplete.set(true);
+        try {
+            readerThread.join();
+        } catch (InterruptedException ignored) { }
+
+        LogUtil.println(String.format("paced admission: %,d transactions in %.2f s (%.0f per second), %,d added",
+                transactions.size(), elapsedNanoseconds / 1.0e9, transactions.size() * 1.0e9 / elapsedNanoseconds,
+                numberAdded.get()));
+        LogUtil.println("  admission latency: " + percentiles(admissionLatencies, admissionLatencies.length));
+        LogUtil.println("  concurrent reads (" + numberOfReads.get() + ", average height size " +
+                totalTransactionsRead.get() / Math.max(1, numberOfReads.get()) + "): " +
+                percentiles(readLatencies, numberOfReads.get()));
+
+        // Unpaced resubmission of the same transactions, which are all duplicates.
+        numberAdded.set(0);
+        elapsedNanoseconds = admit(transactions, admissionLatencies, numberAdded, false);
+        LogUtil.println(String.format("unpaced duplicate admission: %.0f per second",
+                transactions.size() * 1.0e9 / elapsedNanoseconds));
+        LogUtil.println("  admission latency: " + percentiles(admissionLatencies, admissionLatencies.length));
+
+        // Check the counters against the contents of the pool.
+        int countedTransactions = 0;
+        for (long height = openEdgeHeight + 1L; height <= openEdgeHeight + numberOfHeights; height++) {
+            countedTransactions += TransactionPool.numberOfTransactionsForHeight(height);
+        }
+        LogUtil.println("pool size: " + TransactionPool.transactionPoolSize() + ", sum of heights: " +
+                countedTransactions + ", all transactions: " + TransactionPool.allTransactions().size() +
+                ", senders: " + TransactionPool.numberOfSenders());
+
+        UpdateUtil.terminate();
+    }
+
+    private static long admit(List<Transaction> transactions, long[] latencies, AtomicInteger numberAdded,
+                              boolean paced) {
+
+        CountDownLatch latch = new CountDownLatch(numberOfAdmissionThreads);
+        long intervalNanoseconds = 1000000000L * numberOfAdmissionThreads / transactionsPerSecond;
+        long startNanoseconds = System.nanoTime();
+        for (int i = 0; i < numberOfAdmissionThreads; i++) {
+            int threadIndex = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long nextNanoseconds = startNanoseconds;
+                    for (int j = threadIndex; j < transactions.size(); j += numberOfAdmissionThreads) {
+                        if (paced) {
+                            while (System.nanoTime() < nextNanoseconds) {
+                                Thread.yield();
+                            }
+                            nextNanoseconds += intervalNanoseconds;
+                        }
+
+                        long transactionStartNanoseconds = System.nanoTime();
+                        StringBuilder error = new StringBuilder();
+                        StringBuilder warning = new StringBuilder();
+                        if (TransactionPool.addTransaction(transactions.get(j), error, warning) &&
+                                warning.length() == 0) {
+                            numberAdded.incrementAndGet();
+                        }
+                        latencies[j] = System.nanoTime() - transactionStartNanoseconds;
+                    }
+                    latch.countDown();
+                }
+            }, "TransactionPoolBenchmarkScript-" + i).start();
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) { }
+
+        return System.nanoTime() - startNanoseconds;
+    }
+
+    private static String percentiles(long[] values, int count) {
+
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+
+        return count == 0 ? "no samples" : String.format("p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                sorted[count / 2] / 1000.0, sorted[(int) (count * 0.99)] / 1000.0,
+                sorted[(int) (count * 0.999)] / 1000.0, sorted[count - 1] / 1000.0);
+    }
+}
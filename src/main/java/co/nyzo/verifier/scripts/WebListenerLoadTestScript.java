@@ -0,0 +1,194 @@
+package co.nyzo.verifier.scripts;
+
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.ThreadUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WebListenerLoadTestScript {
+
+    // The web listener limits concurrent connections from a single IP address to 40 by default, so the default number
+    // of connections is below that limit.
+    private static final int defaultNumberOfConnections = 32;
+    private static final int defaultRequestsPerConnection = 200;
+    private static final int defaultPipelineDepth = 1;
+
+    public static void main(String[] args) {
+
+        if (args.length < 3) {
+            LogUtil.println("\n\n\n");
+            LogUtil.println("***********************************************************************");
+            LogUtil.println("This script sends HTTP requests over persistent connections to a local web listener. To");
+            LogUtil.println("test the client run mode, start the client with start_web_listener=1 and use its web");
+            LogUtil.println("port (web_port_client). To test the relay run mode, start the relay server and use its");
+            LogUtil.println("web port (web_port_relay_server).");
+            LogUtil.println("arguments:");
+            LogUtil.println("- host name or IP address");
+            LogUtil.println("- port");
+            LogUtil.println("- path (for example, / or /api/frozenEdge)");
+            LogUtil.println("- number of connections (optional; default " + defaultNumberOfConnections + ")");
+            LogUtil.println("- requests per connection (optional; default " + defaultRequestsPerConnection + ")");
+            LogUtil.println("- pipeline depth (optional; default " + defaultPipelineDepth + ")");
+            LogUtil.println("***********************************************************************\n\n\n");
+            return;
+        }
+
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        String path = args[2];
+        int numberOfConnections = argumentValue(args, 3, defaultNumberOfConnections);
+        int requestsPerConnection = argumentValue(args, 4, defaultRequestsPerConnection);
+        int pipelineDepth = argumentValue(args, 5, defaultPipelineDepth);
+
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        AtomicInteger activeThreads = new AtomicInteger(numberOfConnections);
+        AtomicLong numberOfResponses = new AtomicLong(0L);
+        AtomicLong numberOfBytes = new AtomicLong(0L);
+        AtomicInteger numberOfErrors = new AtomicInteger(0);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+
+        long startTimestamp = System.currentTimeMillis();
+        for (int i = 0; i < numberOfConnections; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket socket = new Socket(host, port)) {
+                        socket.setSoTimeout(10000);
+                        socket.setTcpNoDelay(true);
+                        OutputStream outputStream = socket.getOutputStream();
+                        InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+                        // Send the requests in groups of the pipeline depth, and read all responses for a group
+                        // before sending the next group.
+                        int requestsSent = 0;
+                        while (requestsSent < requestsPerConnection) {
+                            int groupSize = Math.min(pipelineDepth, requestsPerConnection - requestsSent);
+                            ByteArrayOutputStream group = new ByteArrayOutputStream();
+                            for (int j = 0; j < groupSize; j++) {
+                                group.write(request);
+                            }
+
+                            long groupStartNanoseconds = System.nanoTime();
+                            outputStream.write(group.toByteArray());
+                            outputStream.flush();
+                            for (int j = 0; j < groupSize; j++) {
+                                int length = readResponse(inputStream);
+                                if (length < 0) {
+                                    throw new Exception("invalid response");
+                                }
+                                numberOfResponses.incrementAndGet();
+                                numberOfBytes.addAndGet(length);
+                            }
+                            latencies.add((System.nanoTime() - groupStartNanoseconds) / 1000L);
+                            requestsSent += groupSize;
+                        }
+                    } catch (Exception e) {
+                        numberOfErrors.incrementAndGet();
+                    }
+
+                    activeThreads.decrementAndGet();
+                }
+            }).start();
+        }
+
+        while (activeThreads.get() > 0) {
+            ThreadUtil.sleep(300L);
+        }
+        long elapsed = Math.max(1L, System.currentTimeMillis() - startTimestamp);
+
+        List<Long> sortedLatencies = new ArrayList<>(latencies);
+        Collections.sort(sortedLatencies);
+        LogUtil.println("connections: " + numberOfConnections + ", requests per connection: " + requestsPerConnection +
+                ", pipeline depth: " + pipelineDepth);
+        LogUtil.println("responses: " + numberOfResponses.get() + ", failed connections: " + numberOfErrors.get() +
+                ", content bytes: " + numberOfBytes.get());
+        LogUtil.println(String.format("elapsed: %d ms, throughput: %.1f requests/s", elapsed,
+                numberOfResponses.get() * 1000.0 / elapsed));
+        LogUtil.println("group latency (microseconds): p50=" + percentile(sortedLatencies, 0.5) + ", p90=" +
+                percentile(sortedLatencies, 0.9) + ", p99=" + percentile(sortedLatencies, 0.99) + ", max=" +
+                percentile(sortedLatencies, 1.0));
+
+        UpdateUtil.terminate();
+    }
+
+    private static int argumentValue(String[] args, int index, int defaultValue) {
+
+        int value = defaultValue;
+        if (args.length > index) {
+            try {
+                value = Integer.parseInt(args[index]);
+            } catch (Exception ignored) { }
+        }
+
+        return value < 1 ? defaultValue : value;
+    }
+
+    private static int readResponse(InputStream inputStream) throws Exception {
+
+        // Read the header lines to find the content length, and then skip the content. The content length is
+        // returned, or -1 if the response is not valid.
+        int contentLength = -1;
+        String line;
+        while (!(line = readLine(inputStream)).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+
+        if (contentLength >= 0) {
+            int remaining = contentLength;
+            while (remaining > 0) {
+                long skipped = inputStream.skip(remaining);
+                if (skipped <= 0) {
+                    if (inputStream.read() < 0) {
+                        return -1;
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        return contentLength;
+    }
+
+    private static String readLine(InputStream inputStream) throws Exception {
+
+        StringBuilder line = new StringBuilder();
+        int value;
+        while ((value = inputStream.read()) != '\n') {
+            if (value < 0) {
+                throw new Exception("connection closed");
+            }
+            if (value != '\r') {
+                line.append((char) value);
+            }
+        }
+
+        return line.toString();
+    }
+
+    private static long percentile(List<Long> sortedValues, double percentile) {
+
+        long value = 0L;
+        if (!sortedValues.isEmpty()) {
+            int index = (int) Math.min(sortedValues.size() - 1, Math.ceil(percentile * sortedValues.size()) - 1);
+            value = sortedValues.get(Math.max(0, index));
+        }
+
+        return value;
+    }
+}
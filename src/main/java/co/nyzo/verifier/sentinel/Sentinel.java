@@ -59,6 +59,7 @@ public class Sentinel {
     private static String lastBlockTransmissionResults = PersistentData.get(lastBlockTransmissionResultsKey);
 
     private static final Map<ByteBuffer, List<Node>> verifierIdentifierToMeshMap = new ConcurrentHashMap<>();
+    private static final Map<ByteBuffer, RemoteMesh> verifierIdentifierToRemoteMeshMap = new ConcurrentHashMap<>();
 
     private static Block frozenEdge = null;
 
@@ -442,18 +443,22 @@ public class Sentinel {
 
     private static void updateMesh(ManagedVerifier verifier) {
 
-        // Get the mesh.
-        Message message = new Message(MessageType.MeshRequest15, null, verifier.getSeed());
-        Message.fetchTcp(verifier.getHost(), verifier.getPort(), message, new MessageCallback() {
+        // Get the mesh. After the first response, only changes are requested from the verifier.
+        ByteBuffer identifier = ByteBuffer.wrap(verifier.getIdentifier());
+        RemoteMesh remoteMesh = verifierIdentifierToRemoteMeshMap.get(identifier);
+        if (remoteMesh == null) {
+            remoteMesh = new RemoteMesh(true);
+            verifierIdentifierToRemoteMeshMap.put(identifier, remoteMesh);
+        }
+        Message message = remoteMesh.request(verifier.getSeed());
+        Message.fetchTcpCompressed(verifier.getHost(), verifier.getPort(), message, new MessageCallback() {
             @Override
             public void responseReceived(Message message) {
                 // If the response identifier is correct and the content type is correct, process the response.
-                if (checkResponseIdentifier(message, verifier) && (message.getContent() instanceof MeshResponse)) {
-                    MeshResponse response = (MeshResponse) message.getContent();
-                    if (!response.getMesh().isEmpty()) {
-                        verifierIdentifierToMeshMap.put(ByteBuffer.wrap(message.getSourceNodeIdentifier()),
-                                response.getMesh());
-                    }
+                RemoteMesh remoteMesh = verifierIdentifierToRemoteMeshMap.get(identifier);
+                if (checkResponseIdentifier(message, verifier) && remoteMesh.process(message) &&
+                        remoteMesh.size() > 0) {
+                    verifierIdentifierToMeshMap.put(identifier, remoteMesh.getNodes());
                 }
             }
         });
@@ -48,17 +48,18 @@ public class SentinelUtil {
             for (ManagedVerifier verifier : verifiers) {
 
                 Message bootstrapRequest = new Message(MessageType.BootstrapRequestV2_35, new BootstrapRequest());
-                Message.fetchTcp(verifier.getHost(), verifier.getPort(), bootstrapRequest, new MessageCallback() {
-                    @Override
-                    public void responseReceived(Message message) {
-
-                        System.out.println("response from " + verifier.getHost() + " is " + message);
-                        if (message != null && (message.getContent() instanceof BootstrapResponseV2)) {
-                            bootstrapResponses.add((BootstrapResponseV2) message.getContent());
-                        }
-                        numberOfResponsesPending.decrementAndGet();
-                    }
-                });
+                Message.fetchTcpCompressed(verifier.getHost(), verifier.getPort(), bootstrapRequest,
+                        new MessageCallback() {
+                            @Override
+                            public void responseReceived(Message message) {
+
+                                System.out.println("response from " + verifier.getHost() + " is " + message);
+                                if (message != null && (message.getContent() instanceof BootstrapResponseV2)) {
+                                    bootstrapResponses.add((BootstrapResponseV2) message.getContent());
+                                }
+                                numberOfResponsesPending.decrementAndGet();
+                            }
+                        });
             }
 
             // Wait for all responses to return.
@@ -0,0 +1,167 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.util.BinaryRecordStore;
+import co.nyzo.verifier.util.FileUtil;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+public class BinaryRecordStoreTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        BinaryRecordStoreTest test = new BinaryRecordStoreTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("BinaryRecordStoreTest").toFile();
+            successful = testRecovery(directory) && testFailedFlush(directory);
+        } catch (Exception e) {
+            failureCause = "exception in BinaryRecordStoreTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        if (directory != null) {
+            FileUtil.delete(directory);
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testRecovery(File directory) throws Exception {
+
+        // A store without files is not loaded.
+        File file = new File(directory, "records");
+        BinaryRecordStore store = new BinaryRecordStore(file);
+        boolean successful = !store.isLoaded();
+        if (!successful) {
+            failureCause = "empty store reported as loaded";
+        }
+
+        // Changes are written to the journal and replayed on load.
+        Random random = new Random(5L);
+        Map<ByteBuffer, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            expected.put(randomKey(random), randomValue(random));
+        }
+        store.update(expected);
+        store.flush();
+        successful = successful && recordsMatch(new BinaryRecordStore(file), expected, "initial");
+
+        // Removals and changes are replayed over the compacted snapshot.
+        store = new BinaryRecordStore(file);
+        Iterator<ByteBuffer> iterator = expected.keySet().iterator();
+        for (int i = 0; i < 20; i++) {
+            iterator.next();
+            iterator.remove();
+        }
+        for (ByteBuffer key : new ArrayList<>(expected.keySet()).subList(0, 30)) {
+            expected.put(key, randomValue(random));
+        }
+        store.update(expected);
+        store.flush();
+        File journalFile = new File(file.getAbsolutePath() + "_journal");
+        long journalLength = journalFile.length();
+        successful = successful && journalLength > 0L && recordsMatch(new BinaryRecordStore(file), expected,
+                "journal");
+
+        // An incomplete entry at the end of the journal is ignored.
+        store = new BinaryRecordStore(file);
+        Map<ByteBuffer, byte[]> changed = new HashMap<>(expected);
+        changed.put(randomKey(random), randomValue(random));
+        store.update(changed);
+        store.flush();
+        try (RandomAccessFile journal = new RandomAccessFile(journalFile, "rw")) {
+            journal.setLength(journal.length() - 1L);
+        }
+        successful = successful && recordsMatch(new BinaryRecordStore(file), expected, "torn journal");
+
+        // A damaged snapshot is discarded.
+        try (RandomAccessFile snapshot = new RandomAccessFile(file, "rw")) {
+            snapshot.seek(20L);
+            int value = snapshot.read();
+            snapshot.seek(20L);
+            snapshot.write(value ^ 0xff);
+        }
+        store = new BinaryRecordStore(file);
+        successful = successful && !store.isLoaded() && recordsMatch(store, new HashMap<ByteBuffer, byte[]>(),
+                "damaged snapshot");
+
+        return successful;
+    }
+
+    private boolean testFailedFlush(File directory) throws Exception {
+
+        // A directory in place of the journal makes the flush fail. The changes must remain queued, and a change made
+        // before the retry must take precedence over the change that failed.
+        File file = new File(directory, "retry");
+        File journalFile = new File(file.getAbsolutePath() + "_journal");
+        BinaryRecordStore store = new BinaryRecordStore(file);
+        Random random = new Random(7L);
+        Map<ByteBuffer, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            expected.put(randomKey(random), randomValue(random));
+        }
+        journalFile.mkdirs();
+        store.update(expected);
+        store.flush();
+
+        ByteBuffer changedKey = expected.keySet().iterator().next();
+        expected.put(changedKey, randomValue(random));
+        store.update(expected);
+        FileUtil.delete(journalFile);
+        store.flush();
+
+        return recordsMatch(new BinaryRecordStore(file), expected, "failed flush");
+    }
+
+    private static ByteBuffer randomKey(Random random) {
+
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        return ByteBuffer.wrap(key);
+    }
+
+    private static byte[] randomValue(Random random) {
+
+        byte[] value = new byte[random.nextInt(60) + 1];
+        random.nextBytes(value);
+        return value;
+    }
+
+    private boolean recordsMatch(BinaryRecordStore store, Map<ByteBuffer, byte[]> expected, String stage) {
+
+        Map<ByteBuffer, byte[]> records = store.getRecords();
+        boolean successful = records.size() == expected.size();
+        for (ByteBuffer key : expected.keySet()) {
+            successful = successful && Arrays.equals(records.get(key), expected.get(key));
+        }
+        if (!successful) {
+            failureCause = "records after " + stage + " stage do not match; " + records.size() + " records, " +
+                    expected.size() + " expected";
+        }
+
+        return successful;
+    }
+}
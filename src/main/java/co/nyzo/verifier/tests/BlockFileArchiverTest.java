@@ -0,0 +1,187 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+public class BlockFileArchiverTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        BlockFileArchiverTest test = new BlockFileArchiverTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("BlockFileArchiverTest").toFile();
+            successful = testRoundTrip(directory);
+        } catch (Exception e) {
+            failureCause = "exception in BlockFileArchiverTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testRoundTrip(File directory) throws Exception {
+
+        // The file has a gap, so it contains two balance lists.
+        long startHeight = 5000L;
+        long gapHeight = 5050L;
+        byte[] consolidatedBytes = consolidatedFileBytes(startHeight, 100, gapHeight, new Random(1L));
+        File consolidatedFile = new File(directory, "000005.nyzoblock");
+        Files.write(consolidatedFile.toPath(), consolidatedBytes);
+        File archiveFile = BlockFileArchiver.archiveFileForConsolidatedFile(consolidatedFile);
+        File restoredFile = new File(directory, "restored.nyzoblock");
+
+        boolean successful = BlockFileArchiver.archive(consolidatedFile, archiveFile) &&
+                archiveFile.length() < consolidatedFile.length() &&
+                BlockFileArchiver.restore(archiveFile, restoredFile) &&
+                Arrays.equals(consolidatedBytes, Files.readAllBytes(restoredFile.toPath()));
+        if (!successful) {
+            failureCause = "archive did not restore to the original file";
+        }
+
+        // Each block read from the archive matches the block read from the consolidated file.
+        List<Block> blocks = BlockManager.loadBlocksInFile(consolidatedFile, 0L, Long.MAX_VALUE);
+        for (int i = 0; successful && i < blocks.size(); i++) {
+            Block block = BlockFileArchiver.blockForHeight(archiveFile, blocks.get(i).getBlockHeight());
+            if (block == null || !Arrays.equals(block.getBytes(), blocks.get(i).getBytes())) {
+                failureCause = "block " + blocks.get(i).getBlockHeight() + " did not match";
+                successful = false;
+            }
+        }
+        if (successful && (blocks.size() != 99 || BlockFileArchiver.blockForHeight(archiveFile, gapHeight) != null)) {
+            failureCause = "unexpected block count or block in gap";
+            successful = false;
+        }
+
+        // When the consolidated file is removed, blocks are loaded from the archive.
+        consolidatedFile.delete();
+        List<Block> archiveBlocks = BlockManager.loadBlocksInFile(consolidatedFile, 0L, Long.MAX_VALUE);
+        if (successful && archiveBlocks.size() != blocks.size()) {
+            failureCause = "blocks were not loaded from the archive";
+            successful = false;
+        }
+
+        // A damaged archive does not produce blocks.
+        byte[] archiveBytes = Files.readAllBytes(archiveFile.toPath());
+        archiveBytes[archiveBytes.length - 10] ^= 0x55;
+        Files.write(archiveFile.toPath(), archiveBytes);
+        if (successful && BlockFileArchiver.blockForHeight(archiveFile, startHeight + 99L) != null) {
+            failureCause = "block was read from a damaged archive";
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    // Produces the bytes of a consolidated file with the specified number of heights. The block at the gap height is
+    // omitted. The blocks are signed by a small set of verifiers, and their transactions are between a small set of
+    // accounts, so identifiers repeat between blocks as they do in the blockchain.
+    public static byte[] consolidatedFileBytes(long startHeight, int numberOfHeights, long gapHeight, Random random) {
+
+        List<byte[]> verifierSeeds = seeds(10, random);
+        List<byte[]> accountSeeds = seeds(40, random);
+        List<BalanceListItem> items = new ArrayList<>();
+        for (byte[] seed : accountSeeds) {
+            items.add(new BalanceListItem(KeyUtil.identifierForSeed(seed), 1000000000L));
+        }
+        items.sort(new Comparator<BalanceListItem>() {
+            @Override
+            public int compare(BalanceListItem item1, BalanceListItem item2) {
+                return ByteBuffer.wrap(item1.getIdentifier()).compareTo(ByteBuffer.wrap(item2.getIdentifier()));
+            }
+        });
+
+        List<byte[]> frames = new ArrayList<>();
+        byte[] previousHash = new byte[FieldByteSize.hash];
+        long previousBlockHeight = -1L;
+        int numberOfBlocks = 0;
+        for (long height = startHeight; height < startHeight + numberOfHeights; height++) {
+            if (height != gapHeight) {
+                long startTimestamp = 1600000000000L + height * Block.blockDuration;
+                List<Transaction> transactions = new ArrayList<>();
+                int numberOfTransactions = random.nextInt(6);
+                for (int i = 0; i < numberOfTransactions; i++) {
+                    byte[] senderSeed = accountSeeds.get(random.nextInt(accountSeeds.size()));
+                    byte[] receiverIdentifier = KeyUtil.identifierForSeed(accountSeeds.get(random.nextInt(
+                            accountSeeds.size())));
+                    transactions.add(Transaction.standardTransaction(startTimestamp + i, 1000L + random.nextInt(
+                            1000000), receiverIdentifier, height - 1L, previousHash, new byte[0], senderSeed));
+                }
+                List<byte[]> previousVerifiers = new ArrayList<>();
+                for (long previousHeight = height - 9L; previousHeight < height; previousHeight++) {
+                    previousVerifiers.add(KeyUtil.identifierForSeed(verifierSeeds.get((int) (previousHeight %
+                            verifierSeeds.size()))));
+                }
+                BalanceList balanceList = new BalanceList(1, height, (byte) 0, previousVerifiers, items, 0L, 0L,
+                        new HashMap<>(), new ArrayList<ApprovedCycleTransaction>());
+                Block block = new Block(1, height, previousHash, startTimestamp, transactions,
+                        balanceList.getHash(), verifierSeeds.get((int) (height % verifierSeeds.size())));
+                frames.add(block.getBytes());
+                if (height != previousBlockHeight + 1L) {
+                    frames.add(balanceList.getBytes());
+                }
+
+                previousHash = block.getHash();
+                previousBlockHeight = height;
+                numberOfBlocks++;
+            }
+        }
+
+        int size = FieldByteSize.unnamedShort;
+        for (byte[] frame : frames) {
+            size += frame.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort((short) numberOfBlocks);
+        for (byte[] frame : frames) {
+            buffer.put(frame);
+        }
+
+        return buffer.array();
+    }
+
+    private static List<byte[]> seeds(int count, Random random) {
+
+        List<byte[]> seeds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] seed = new byte[FieldByteSize.seed];
+            random.nextBytes(seed);
+            seeds.add(seed);
+        }
+
+        return seeds;
+    }
+}
@@ -0,0 +1,128 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+public class BlockFileReaderTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        BlockFileReaderTest test = new BlockFileReaderTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("BlockFileReaderTest").toFile();
+            successful = testRanges(directory);
+        } catch (Exception e) {
+            failureCause = "exception in BlockFileReaderTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testRanges(File directory) throws Exception {
+
+        // Decode the whole file with the original, sequential method for comparison.
+        byte[] fileBytes = BlockFileArchiverTest.consolidatedFileBytes(7000L, 200, 7120L, new Random(3L));
+        File file = new File(directory, "000007.nyzoblock");
+        Files.write(file.toPath(), fileBytes);
+        int[] offsets = new int[(int) BlockManager.blocksPerFile * 2];
+        Arrays.fill(offsets, -1);
+        Map<Long, Block> expectedBlocks = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(fileBytes);
+        int numberOfBlocks = buffer.getShort();
+        Block previousBlock = null;
+        for (int i = 0; i < numberOfBlocks; i++) {
+            int startOffset = buffer.position();
+            Block block = Block.fromByteBuffer(buffer, false);
+            offsets[(int) (block.getBlockHeight() % BlockManager.blocksPerFile) * 2] = startOffset;
+            offsets[(int) (block.getBlockHeight() % BlockManager.blocksPerFile) * 2 + 1] = buffer.position();
+            if (previousBlock == null || previousBlock.getBlockHeight() != block.getBlockHeight() - 1) {
+                BalanceList.fromByteBuffer(buffer);
+            }
+            expectedBlocks.put(block.getBlockHeight(), block);
+            previousBlock = block;
+        }
+
+        // Read ranges sequentially, then with an offset file, then with a stale offset file.
+        long[][] ranges = { { 0L, Long.MAX_VALUE }, { 7000L, 7000L }, { 7119L, 7121L }, { 7150L, 7160L },
+                { 7199L, 7300L }, { 7120L, 7120L }, { 8000L, 9000L } };
+        boolean successful = rangesMatch(file, ranges, expectedBlocks, "sequential");
+
+        ByteBuffer offsetBuffer = ByteBuffer.allocate(offsets.length * FieldByteSize.unnamedInteger);
+        for (int offset : offsets) {
+            offsetBuffer.putInt(offset);
+        }
+        File offsetFile = BlockFileReader.offsetFileForFile(file);
+        Files.write(offsetFile.toPath(), offsetBuffer.array());
+        successful = successful && rangesMatch(file, ranges, expectedBlocks, "offset");
+
+        offsetBuffer.putInt(8 * 10, offsets[8 * 10] + 1);
+        Files.write(offsetFile.toPath(), offsetBuffer.array());
+        offsetFile.setLastModified(offsetFile.lastModified() + 2000L);
+        successful = successful && rangesMatch(file, ranges, expectedBlocks, "stale-offset");
+
+        return successful;
+    }
+
+    private boolean rangesMatch(File file, long[][] ranges, Map<Long, Block> expectedBlocks, String mode) {
+
+        boolean successful = true;
+        for (int i = 0; i < ranges.length && successful; i++) {
+            List<Block> blocks = BlockManager.loadBlocksInFile(file, ranges[i][0], ranges[i][1]);
+            List<Long> expectedHeights = new ArrayList<>();
+            for (long height : expectedBlocks.keySet()) {
+                if (height >= ranges[i][0] && height <= ranges[i][1]) {
+                    expectedHeights.add(height);
+                }
+            }
+            Collections.sort(expectedHeights);
+
+            successful = blocks.size() == expectedHeights.size();
+            for (int j = 0; j < blocks.size() && successful; j++) {
+                successful = Arrays.equals(blocks.get(j).getBytes(),
+                        expectedBlocks.get(expectedHeights.get(j)).getBytes());
+            }
+
+            if (!successful) {
+                failureCause = mode + " read of heights " + ranges[i][0] + "-" + ranges[i][1] + " returned " +
+                        blocks.size() + " blocks; expected " + expectedHeights.size();
+            }
+        }
+
+        return successful;
+    }
+}
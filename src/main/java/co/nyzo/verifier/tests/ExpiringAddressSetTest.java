@@ -0,0 +1,208 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.ExpiringAddressSet;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExpiringAddressSetTest implements NyzoTest {
+
+    private static final long duration = 600000L;
+    private static final long tickDuration = 5000L;
+    private static final int numberOfThreads = 8;
+    private static final int additionsPerThread = 20000;
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        ExpiringAddressSetTest test = new ExpiringAddressSetTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = runConcurrentTest() && runExpirationTest();
+        } catch (Exception e) {
+            failureCause = "exception in ExpiringAddressSetTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    private boolean runConcurrentTest() throws Exception {
+
+        // Several threads add overlapping ranges of addresses while other threads look up addresses and a maintenance
+        // thread expires them. The clock is simulated, and it advances slowly enough that nothing expires while the
+        // threads are running.
+        ExpiringAddressSet set = new ExpiringAddressSet(duration, tickDuration);
+        AtomicLong clock = new AtomicLong(1000000L);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger numberAdded = new AtomicInteger(0);
+        AtomicInteger numberOfLookupErrors = new AtomicInteger(0);
+        AtomicInteger numberExpired = new AtomicInteger(0);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            int threadIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Each thread covers its own range and half of the next thread's range.
+                    int start = threadIndex * additionsPerThread;
+                    for (int j = 0; j < additionsPerThread * 3 / 2; j++) {
+                        ByteBuffer address = address((start + j) % (numberOfThreads * additionsPerThread));
+                        if (set.add(address, clock.addAndGet(1L))) {
+                            numberAdded.incrementAndGet();
+                        }
+                        if (!set.contains(address, clock.get())) {
+                            numberOfLookupErrors.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int i = 0; i < numberOfThreads / 2; i++) {
+            readerThreads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    while (running.get()) {
+                        set.contains(address(random.nextInt(numberOfThreads * additionsPerThread)), clock.get());
+                    }
+                }
+            }));
+        }
+        readerThreads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    numberExpired.addAndGet(set.expire(clock.get()).size());
+                }
+            }
+        }));
+
+        for (Thread thread : readerThreads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        for (Thread thread : readerThreads) {
+            thread.join();
+        }
+
+        boolean successful = true;
+        int expectedSize = numberOfThreads * additionsPerThread;
+        if (numberAdded.get() != expectedSize) {
+            successful = false;
+            failureCause = "number of successful additions, " + numberAdded.get() + ", does not match number of " +
+                    "distinct addresses, " + expectedSize;
+        } else if (set.size() != expectedSize) {
+            successful = false;
+            failureCause = "set size, " + set.size() + ", does not match expected size, " + expectedSize;
+        } else if (numberOfLookupErrors.get() > 0) {
+            successful = false;
+            failureCause = numberOfLookupErrors.get() + " addresses were not found immediately after addition";
+        } else if (numberExpired.get() > 0) {
+            successful = false;
+            failureCause = numberExpired.get() + " addresses expired early";
+        }
+
+        // After the duration has passed, all addresses must expire exactly once.
+        if (successful) {
+            List<ByteBuffer> expired = set.expire(clock.get() + duration);
+            Set<ByteBuffer> distinctExpired = new HashSet<>(expired);
+            if (expired.size() != expectedSize || distinctExpired.size() != expectedSize) {
+                successful = false;
+                failureCause = "expected " + expectedSize + " distinct expirations, got " + expired.size() + " (" +
+                        distinctExpired.size() + " distinct)";
+            } else if (set.size() != 0) {
+                successful = false;
+                failureCause = "set size after expiration is " + set.size();
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean runExpirationTest() {
+
+        // Step through time one second at a time, checking that each address is removed no earlier than its
+        // expiration and no later than one tick after it. Even-numbered addresses are added again when they first
+        // expire, which must start a new duration.
+        ExpiringAddressSet set = new ExpiringAddressSet(duration, tickDuration);
+        Map<Integer, Long> expectedExpirations = new HashMap<>();
+        long startTimestamp = 3000000L;
+        for (int i = 0; i < 1000; i++) {
+            long timestamp = startTimestamp + i * 777L;
+            set.add(address(i), timestamp);
+            expectedExpirations.put(i, timestamp + duration);
+        }
+
+        boolean successful = true;
+        Set<Integer> readded = new HashSet<>();
+        for (long timestamp = startTimestamp; timestamp < startTimestamp + duration * 4 && successful;
+             timestamp += 1000L) {
+            for (ByteBuffer address : set.expire(timestamp)) {
+                int index = address.getInt(0);
+                long expiration = expectedExpirations.remove(index);
+                if (timestamp < expiration || timestamp >= expiration + tickDuration + 1000L) {
+                    successful = false;
+                    failureCause = "address " + index + " expired at " + timestamp + ", expected at " + expiration;
+                }
+
+                if (index % 2 == 0 && readded.add(index)) {
+                    set.add(address, timestamp);
+                    expectedExpirations.put(index, timestamp + duration);
+                }
+            }
+        }
+
+        if (successful && (set.size() != 0 || !expectedExpirations.isEmpty())) {
+            successful = false;
+            failureCause = "set size after stepped expiration is " + set.size() + ", " +
+                    expectedExpirations.size() + " expected expirations did not occur";
+        }
+
+        return successful;
+    }
+
+    private static ByteBuffer address(int index) {
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(index);
+        buffer.rewind();
+
+        return buffer;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+}
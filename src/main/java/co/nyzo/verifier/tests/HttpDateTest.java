@@ -0,0 +1,69 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.web.HttpDate;
+
+import java.nio.charset.StandardCharsets;
+
+public class HttpDateTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        HttpDateTest test = new HttpDateTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testHeaderBytes();
+        } catch (Exception e) {
+            failureCause = "exception in HttpDateTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testHeaderBytes() {
+
+        // Both dates have a single-digit day of the month, which IMF-fixdate pads with a zero. The second date is
+        // 2026-10-05 13:04:09 UTC.
+        long[] seconds = { 0L, 1791205449L };
+        String[] expectedLines = { "Date: Thu, 01 Jan 1970 00:00:00 GMT\r\n",
+                "Date: Mon, 05 Oct 2026 13:04:09 GMT\r\n" };
+
+        boolean successful = true;
+        for (int i = 0; i < seconds.length && successful; i++) {
+            String line = new String(HttpDate.headerBytes(seconds[i]), StandardCharsets.US_ASCII);
+            successful = line.equals(expectedLines[i]);
+            if (!successful) {
+                failureCause = "header line for second " + seconds[i] + " is \"" + line.trim() + "\"; expected \"" +
+                        expectedLines[i].trim() + "\"";
+            }
+
+            if (successful) {
+                long timestamp = HttpDate.parse(line.substring("Date: ".length()));
+                successful = timestamp == seconds[i] * 1000L;
+                if (!successful) {
+                    failureCause = "parsed timestamp for second " + seconds[i] + " is " + timestamp;
+                }
+            }
+        }
+
+        return successful;
+    }
+}
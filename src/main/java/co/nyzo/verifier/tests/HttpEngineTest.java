@@ -0,0 +1,178 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.web.*;
+import co.nyzo.verifier.web.elements.HtmlElement;
+import co.nyzo.verifier.web.elements.HtmlWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class HttpEngineTest implements NyzoTest {
+
+    private static final int partLength = BufferPool.bufferSize * 3;
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        HttpEngineTest test = new HttpEngineTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testStreamedResponse();
+        } catch (Exception e) {
+            failureCause = "exception in HttpEngineTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testStreamedResponse() throws Exception {
+
+        // The page is several buffers long. The element renders the first part and then waits until the client has
+        // received the first chunk before rendering the second part. If the engine rendered the whole page before
+        // writing, the wait would time out.
+        CountDownLatch firstChunkReceived = new CountDownLatch(1);
+        AtomicBoolean receivedBeforeRenderingCompleted = new AtomicBoolean(false);
+        HtmlElement element = new HtmlElement() {
+            @Override
+            public String render() {
+                return repeat('a', partLength) + repeat('b', partLength);
+            }
+
+            @Override
+            public void render(HtmlWriter writer) throws IOException {
+                writer.append(repeat('a', partLength));
+                try {
+                    receivedBeforeRenderingCompleted.set(firstChunkReceived.await(5L, TimeUnit.SECONDS));
+                } catch (InterruptedException ignored) { }
+                writer.append(repeat('b', partLength));
+            }
+        };
+        Endpoint endpoint = new Endpoint("/streamedResponseTest");
+        WebListener.addEndpoint(endpoint, new EndpointResponseProvider() {
+            @Override
+            public EndpointResponse getResponse(EndpointRequest request) {
+                return new EndpointResponse(element);
+            }
+        });
+
+        HttpEngine engine = new HttpEngine(0, 5000L);
+        int port = engine.start();
+        int numberOfChunks = 0;
+        int maximumChunkLength = 0;
+        String header;
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10000);
+            socket.getOutputStream().write(("GET " + endpoint.getPath() + " HTTP/1.1\r\nHost: localhost\r\n" +
+                    "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            InputStream inputStream = socket.getInputStream();
+
+            header = readUntil(inputStream, "\r\n\r\n");
+            int chunkLength;
+            do {
+                chunkLength = Integer.parseInt(readUntil(inputStream, "\r\n").trim(), 16);
+                content.write(readFully(inputStream, chunkLength));
+                readFully(inputStream, 2);
+                if (chunkLength > 0) {
+                    numberOfChunks++;
+                    maximumChunkLength = Math.max(maximumChunkLength, chunkLength);
+                    firstChunkReceived.countDown();
+                }
+            } while (chunkLength > 0);
+        } finally {
+            engine.stop();
+        }
+
+        boolean successful = header.contains("Transfer-Encoding: chunked");
+        if (!successful) {
+            failureCause = "response is not chunked: " + header;
+        }
+
+        if (successful) {
+            String expectedContent = repeat('a', partLength) + repeat('b', partLength);
+            successful = new String(content.toByteArray(), StandardCharsets.US_ASCII).equals(expectedContent);
+            if (!successful) {
+                failureCause = "content length is " + content.size() + "; expected " + expectedContent.length();
+            }
+        }
+
+        if (successful) {
+            successful = numberOfChunks > 1 && maximumChunkLength <= BufferPool.bufferSize;
+            if (!successful) {
+                failureCause = "received " + numberOfChunks + " chunks with a maximum length of " +
+                        maximumChunkLength;
+            }
+        }
+
+        if (successful) {
+            successful = receivedBeforeRenderingCompleted.get();
+            if (!successful) {
+                failureCause = "first chunk was not received before rendering completed";
+            }
+        }
+
+        return successful;
+    }
+
+    private static String repeat(char character, int length) {
+
+        char[] characters = new char[length];
+        Arrays.fill(characters, character);
+
+        return new String(characters);
+    }
+
+    private static String readUntil(InputStream inputStream, String terminator) throws IOException {
+
+        StringBuilder result = new StringBuilder();
+        while (!result.toString().endsWith(terminator)) {
+            int value = inputStream.read();
+            if (value < 0) {
+                throw new IOException("stream ended before terminator");
+            }
+            result.append((char) value);
+        }
+
+        return result.toString();
+    }
+
+    private static byte[] readFully(InputStream inputStream, int length) throws IOException {
+
+        byte[] result = new byte[length];
+        int position = 0;
+        while (position < length) {
+            int bytesRead = inputStream.read(result, position, length - position);
+            if (bytesRead < 0) {
+                throw new IOException("stream ended after " + position + " of " + length + " bytes");
+            }
+            position += bytesRead;
+        }
+
+        return result;
+    }
+}
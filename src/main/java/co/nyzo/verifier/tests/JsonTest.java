@@ -0,0 +1,209 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.client.CommandTable;
+import co.nyzo.verifier.client.CommandTableHeader;
+import co.nyzo.verifier.client.SimpleExecutionResult;
+import co.nyzo.verifier.json.*;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        JsonTest test = new JsonTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testParse() && testMalformedInput() && testRoundTrip() && testLargeStream() &&
+                    testExecutionResult();
+        } catch (Exception e) {
+            failureCause = "exception in JsonTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testParse() {
+
+        String json = "{ \"name\": \"a \\\"quoted\\\" \\u00e9\\n value\", \"count\" : -12.5e3, \"flag\":true," +
+                "\"nothing\":null, \"list\":[1, \"two\", {\"three\":[3]}, []], \"empty\":{} }";
+        Object result = Json.parse(json);
+
+        boolean successful = false;
+        if (result instanceof JsonObject) {
+            JsonObject object = (JsonObject) result;
+            Object list = object.get("list");
+            successful = object.getString("name", "").equals("a \"quoted\" \u00e9\n value") &&
+                    object.getDouble("count", 0.0) == -12500.0 && object.getBoolean("flag", false) &&
+                    object.getString("nothing", "").equals("null") && list instanceof JsonArray &&
+                    ((JsonArray) list).length() == 4 && ((JsonArray) list).getString(1, "").equals("two") &&
+                    ((JsonArray) list).get(2) instanceof JsonObject && object.get("empty") instanceof JsonObject &&
+                    ((JsonObject) object.get("empty")).getKeys().isEmpty();
+        }
+
+        // The facade returns scalar text for input that is not an object or array.
+        successful = successful && "text".equals(Json.parse(" text ")) && "a\"b".equals(Json.parse("\"a\\\"b\""));
+
+        if (!successful) {
+            failureCause = "parse result did not match the input";
+        }
+
+        return successful;
+    }
+
+    private boolean testMalformedInput() {
+
+        String[] malformedInputs = { "{", "[1, 2", "{\"a\" 1}", "{\"a\":1,}", "[1 2]", "{\"a\":tru}", "[\"open]",
+                "{} {}", "[\"\\x\"]" };
+        boolean successful = true;
+        for (String input : malformedInputs) {
+            if (Json.parse(input) != null) {
+                failureCause = "malformed input was parsed: " + input;
+                successful = false;
+            }
+        }
+
+        // Deeply nested input is rejected instead of exhausting the stack.
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            nested.append('[');
+        }
+        if (successful && Json.parse(nested.toString()) != null) {
+            failureCause = "deeply nested input was parsed";
+            successful = false;
+        }
+
+        return successful;
+    }
+
+    private boolean testRoundTrip() throws IOException {
+
+        Map<String, Object> innerMap = new HashMap<>();
+        innerMap.put("path", "/a/b");
+        innerMap.put("control", "tab\tbell\u0007");
+        innerMap.put("emoji", "\ud83d\ude00");
+        List<Object> list = new ArrayList<>();
+        list.add("x");
+        list.add(new JsonObject(innerMap));
+        Map<String, Object> map = new HashMap<>();
+        map.put("list", new JsonArray(list));
+        map.put("number", "42");
+
+        byte[] bytes = JsonWriter.toByteArray(new JsonObject(map));
+        Object result = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        boolean successful = Arrays.equals(bytes, JsonWriter.toByteArray(result)) && result instanceof JsonObject;
+        if (successful) {
+            JsonObject inner = (JsonObject) ((JsonArray) ((JsonObject) result).get("list")).get(1);
+            successful = inner.getString("path", "").equals("/a/b") &&
+                    inner.getString("control", "").equals("tab\tbell\u0007") &&
+                    inner.getString("emoji", "").equals("\ud83d\ude00");
+        }
+
+        if (!successful) {
+            failureCause = "round trip did not preserve values: " + new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return successful;
+    }
+
+    private boolean testLargeStream() throws IOException {
+
+        // Write a large array with the writer, and then read it element by element from a stream. This is much
+        // larger than the 10,000-character limit of the original parser.
+        int numberOfElements = 100000;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(outputStream);
+        writer.beginArray();
+        for (int i = 0; i < numberOfElements; i++) {
+            writer.beginObject().name("index").value(i).name("text").value("element " + i).name("skip")
+                    .beginArray().value(true).nullValue().endArray().endObject();
+        }
+        writer.endArray();
+        writer.flush();
+
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(outputStream.toByteArray()),
+                StandardCharsets.UTF_8));
+        int count = 0;
+        boolean successful = true;
+        reader.beginArray();
+        while (reader.hasNext() && successful) {
+            reader.beginObject();
+            long index = -1;
+            String text = "";
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("index")) {
+                    index = reader.nextLong();
+                } else if (name.equals("text")) {
+                    text = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            successful = index == count && text.equals("element " + count);
+            count++;
+        }
+        reader.endArray();
+        successful = successful && count == numberOfElements && reader.peek() == JsonToken.EndDocument;
+
+        if (!successful) {
+            failureCause = "large stream was not read correctly at element " + count;
+        }
+
+        return successful;
+    }
+
+    private boolean testExecutionResult() {
+
+        CommandTable table = new CommandTable(new CommandTableHeader("Height", "height"),
+                new CommandTableHeader("Note", "note"));
+        table.addRow(10L, "first \"row\"");
+        table.addRow(11L, null);
+        List<String> notices = new ArrayList<>();
+        notices.add("a notice");
+        SimpleExecutionResult result = new SimpleExecutionResult(table, notices, null);
+
+        Object json = Json.parse(new String(result.toEndpointResponse().getContent(), StandardCharsets.UTF_8));
+        boolean successful = false;
+        if (json instanceof JsonObject && ((JsonObject) json).get("result") instanceof JsonArray) {
+            JsonArray rows = (JsonArray) ((JsonObject) json).get("result");
+            JsonObject firstRow = (JsonObject) rows.get(0);
+            successful = rows.length() == 2 && firstRow.getString("height", "").equals("10") &&
+                    firstRow.getString("note", "").equals("first \"row\"") &&
+                    ((JsonObject) json).get("notices") instanceof JsonArray &&
+                    ((JsonArray) ((JsonObject) json).get("errors")).length() == 0;
+        }
+
+        if (!successful) {
+            failureCause = "execution result JSON was not correct: " + json;
+        }
+
+        return successful;
+    }
+}
@@ -0,0 +1,98 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.util.FileUtil;
+import co.nyzo.verifier.util.KeyValueLog;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class KeyValueLogTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        KeyValueLogTest test = new KeyValueLogTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("KeyValueLogTest").toFile();
+            successful = testRecovery(directory);
+        } catch (Exception e) {
+            failureCause = "exception in KeyValueLogTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        if (directory != null) {
+            FileUtil.delete(directory);
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testRecovery(File directory) throws Exception {
+
+        // Start from a snapshot in the original text format, with a comment and a mixed-case key.
+        File snapshotFile = new File(directory, "persistent_data");
+        Files.write(snapshotFile.toPath(), Arrays.asList("# comment", "Alpha=1", "beta = 2 # note"));
+        Map<String, String> expected = new HashMap<>();
+        expected.put("alpha", "1");
+        expected.put("beta", "2");
+        boolean successful = mapMatches(new KeyValueLog(snapshotFile, 0L, 1024L * 1024L), expected, "snapshot");
+
+        // Puts written to the log are replayed over the snapshot.
+        KeyValueLog log = new KeyValueLog(snapshotFile, 0L, 1024L * 1024L);
+        log.put("beta", "3");
+        log.put("gamma", "line\nbreak");
+        expected.put("beta", "3");
+        expected.put("gamma", "line break");
+        successful = successful && mapMatches(new KeyValueLog(snapshotFile, 0L, 1024L * 1024L), expected, "replay");
+
+        // An incomplete line and a line with an incorrect checksum end the replay.
+        log = new KeyValueLog(snapshotFile, 0L, 1024L * 1024L);
+        log.put("delta", "4");
+        expected.put("delta", "4");
+        File logFile = new File(snapshotFile.getAbsolutePath() + "_log");
+        Files.write(logFile.toPath(), "epsilon=5 #0\nzeta=6 #".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        successful = successful && mapMatches(new KeyValueLog(snapshotFile, 0L, 1024L * 1024L), expected, "torn");
+
+        // Compaction leaves the values in the snapshot, which is readable as the original format.
+        log = new KeyValueLog(snapshotFile, 0L, 1L);
+        log.put("alpha", "7");
+        expected.put("alpha", "7");
+        successful = successful && logFile.length() == 0L &&
+                mapMatches(new KeyValueLog(snapshotFile, 0L, 1024L * 1024L), expected, "compacted");
+
+        return successful;
+    }
+
+    private boolean mapMatches(KeyValueLog log, Map<String, String> expected, String stage) {
+
+        boolean successful = log.getMap().equals(expected);
+        if (!successful) {
+            failureCause = "map after " + stage + " stage is " + log.getMap() + "; expected " + expected;
+        }
+
+        return successful;
+    }
+}
@@ -0,0 +1,101 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.metrics.Counter;
+import co.nyzo.verifier.metrics.Gauge;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        LatencyHistogramTest test = new LatencyHistogramTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testQuantiles() && testRender();
+        } catch (Exception e) {
+            failureCause = "exception in LatencyHistogramTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testQuantiles() {
+
+        // Record values spread over several orders of magnitude, and compare the quantiles of the histogram to the
+        // exact quantiles. The histogram reports the upper bound of a bucket, so its value is never below the exact
+        // value and never more than 1/16 above it.
+        LatencyHistogram histogram = MetricsRegistry.histogram("test_latency_histogram_seconds", "test");
+        Random random = new Random(11L);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20.0);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        boolean successful = histogram.getCount() == values.length &&
+                histogram.getMaximum() == values[values.length - 1];
+        double[] quantiles = { 0.0001, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0 };
+        for (int i = 0; i < quantiles.length && successful; i++) {
+            long exactValue = values[(int) Math.ceil(quantiles[i] * values.length) - 1];
+            long histogramValue = histogram.valueAtQuantile(quantiles[i]);
+            successful = histogramValue >= exactValue && histogramValue <= exactValue + exactValue / 16;
+            if (!successful) {
+                failureCause = "quantile " + quantiles[i] + " is " + histogramValue + "; exact value is " +
+                        exactValue;
+            }
+        }
+
+        return successful;
+    }
+
+    private boolean testRender() {
+
+        Counter counter = MetricsRegistry.counter("test_counter", "test", "type", "a\"b");
+        counter.add(3L);
+        MetricsRegistry.counter("test_counter", "test", "type", "a\"b").increment();
+        MetricsRegistry.counterFunction("test_counter_function_total", "test", new Gauge() {
+            @Override
+            public double getValue() {
+                return 7.0;
+            }
+        });
+
+        String text = MetricsRegistry.render();
+        boolean successful = text.contains("# TYPE test_counter counter\n") &&
+                text.contains("test_counter{type=\"a\\\"b\"} 4\n") &&
+                text.contains("# TYPE test_counter_function_total counter\n") &&
+                text.contains("test_counter_function_total 7\n") &&
+                text.contains("# TYPE test_latency_histogram_seconds summary\n") &&
+                text.contains("test_latency_histogram_seconds{quantile=\"0.5\"} ") &&
+                text.contains("test_latency_histogram_seconds_count 100000\n");
+        if (!successful) {
+            failureCause = "unexpected rendered metrics: " + text;
+        }
+
+        return successful;
+    }
+}
@@ -0,0 +1,103 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.NodeJoinResponseV2;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class NodeManagerTest implements NyzoTest {
+
+    private static final int numberOfNodes = 5;
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        NodeManagerTest test = new NodeManagerTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testCycleBeforeFirstUpdate();
+        } catch (Exception e) {
+            failureCause = "exception in NodeManagerTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testCycleBeforeFirstUpdate() {
+
+        // The cycle must be available before the first call to updateActiveVerifiersAndRemoveOldNodes(), as chain
+        // initialization happens before the main loop starts. This test never calls that method. Nodes are added
+        // before and after the cycle changes to the Genesis cycle, in which all verifiers are in the cycle.
+        boolean successful = BlockManager.getFrozenEdgeHeight() < 0;
+        if (!successful) {
+            failureCause = "frozen edge is already set";
+        }
+
+        Random random = new Random(28L);
+        int initialCycleSize = NodeManager.getCycle().size();
+        if (successful) {
+            for (int i = 0; i < numberOfNodes; i++) {
+                addNode(random, i);
+            }
+            successful = NodeManager.getCycle().size() == initialCycleSize;
+            if (!successful) {
+                failureCause = "out-of-cycle nodes were added to the cycle";
+            }
+        }
+
+        if (successful) {
+            byte[] seed = new byte[FieldByteSize.seed];
+            random.nextBytes(seed);
+            Block genesisBlock = new Block(0, 0L, new byte[FieldByteSize.hash], System.currentTimeMillis(),
+                    new ArrayList<>(), new byte[FieldByteSize.hash], seed);
+            BlockManager.setFrozenEdge(genesisBlock, null);
+            successful = BlockManager.inGenesisCycle() &&
+                    NodeManager.getCycle().size() == initialCycleSize + numberOfNodes &&
+                    NodeManager.randomCycleNode(null) != null;
+            if (!successful) {
+                failureCause = "cycle size after the cycle changed is " + NodeManager.getCycle().size() +
+                        "; expected " + (initialCycleSize + numberOfNodes);
+            }
+        }
+
+        if (successful) {
+            addNode(random, numberOfNodes);
+            successful = NodeManager.getCycle().size() == initialCycleSize + numberOfNodes + 1;
+            if (!successful) {
+                failureCause = "cycle size after adding an in-cycle node is " + NodeManager.getCycle().size() +
+                        "; expected " + (initialCycleSize + numberOfNodes + 1);
+            }
+        }
+
+        return successful;
+    }
+
+    private static void addNode(Random random, int index) {
+
+        byte[] identifier = new byte[FieldByteSize.identifier];
+        random.nextBytes(identifier);
+        byte[] ipAddress = { 8, 28, 0, (byte) (index + 1) };
+        NodeManager.updateNode(new Message(System.currentTimeMillis(), MessageType.NodeJoinResponseV2_44,
+                new NodeJoinResponseV2("test" + index, 9444, 9446), identifier, new byte[FieldByteSize.signature],
+                ipAddress));
+    }
+}
@@ -0,0 +1,179 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.relay.RelayEndpoint;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.web.Endpoint;
+import co.nyzo.verifier.web.EndpointRequest;
+import co.nyzo.verifier.web.EndpointResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RelayEndpointTest implements NyzoTest {
+
+    // This test runs a local HTTP server as a stand-in for an upstream endpoint. The server responds with chunked
+    // content, honors If-None-Match, and can be told to fail or to send more content than a relay endpoint accepts.
+
+    private static final int oversizedLength = 11 * 1024 * 1024;
+
+    private final AtomicReference<String> upstreamContent = new AtomicReference<>("first version");
+    private final AtomicInteger upstreamVersion = new AtomicInteger(1);
+    private final AtomicInteger numberOfConditionalRequests = new AtomicInteger(0);
+    private final AtomicReference<String> upstreamMode = new AtomicReference<>("normal");
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        RelayEndpointTest test = new RelayEndpointTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        HttpServer server = null;
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/data", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) {
+                    respond(exchange);
+                }
+            });
+            server.start();
+
+            successful = testRefresh("http://127.0.0.1:" + server.getAddress().getPort() + "/data");
+        } catch (Exception e) {
+            failureCause = "exception in RelayEndpointTest: " + PrintUtil.printException(e);
+            successful = false;
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    private boolean testRefresh(String url) {
+
+        RelayEndpoint endpoint = new RelayEndpoint(url, 1000L);
+        EndpointRequest request = new EndpointRequest(new Endpoint("/data"), new HashMap<>(), new HashMap<>(),
+                new byte[4]);
+        boolean successful = true;
+
+        // The first refresh reads the chunked content.
+        endpoint.refresh();
+        if (!contentMatches(endpoint.getResponse(request), "first version") || endpoint.getNumberOfRefreshes() != 1) {
+            failureCause = "first refresh did not produce the upstream content";
+            successful = false;
+        }
+
+        // The second refresh sends the entity tag, and the unchanged content is kept.
+        if (successful) {
+            endpoint.refresh();
+            if (numberOfConditionalRequests.get() != 1 || endpoint.getNumberOfNotModifiedRefreshes() != 1 ||
+                    !contentMatches(endpoint.getResponse(request), "first version")) {
+                failureCause = "conditional refresh was not handled as not modified";
+                successful = false;
+            }
+        }
+
+        // A change upstream is picked up by the next refresh.
+        if (successful) {
+            upstreamContent.set("second version");
+            upstreamVersion.incrementAndGet();
+            endpoint.refresh();
+            if (!contentMatches(endpoint.getResponse(request), "second version")) {
+                failureCause = "changed upstream content was not refreshed";
+                successful = false;
+            }
+        }
+
+        // Failed and oversized responses are counted, and the previous content is kept.
+        if (successful) {
+            upstreamMode.set("error");
+            endpoint.refresh();
+            upstreamMode.set("oversized");
+            endpoint.refresh();
+            if (endpoint.getNumberOfFailedRefreshes() != 2 || endpoint.getConsecutiveFailures() != 2 ||
+                    !contentMatches(endpoint.getResponse(request), "second version")) {
+                failureCause = "failed refreshes were not handled correctly: " +
+                        endpoint.getStatusString(System.currentTimeMillis());
+                successful = false;
+            }
+        }
+
+        // A successful refresh clears the consecutive failures and resets the staleness.
+        if (successful) {
+            upstreamMode.set("normal");
+            endpoint.refresh();
+            if (endpoint.getConsecutiveFailures() != 0 || endpoint.getStaleness(System.currentTimeMillis()) > 1000L) {
+                failureCause = "recovery was not reflected in the metrics: " +
+                        endpoint.getStatusString(System.currentTimeMillis());
+                successful = false;
+            }
+        }
+
+        return successful;
+    }
+
+    private static boolean contentMatches(EndpointResponse response, String content) {
+        return response != null && Arrays.equals(response.getContent(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void respond(HttpExchange exchange) {
+
+        try {
+            String entityTag = "\"version-" + upstreamVersion.get() + "\"";
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                numberOfConditionalRequests.incrementAndGet();
+            }
+
+            exchange.getResponseHeaders().set("ETag", entityTag);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            if (upstreamMode.get().equals("error")) {
+                exchange.sendResponseHeaders(500, -1);
+            } else if (entityTag.equals(ifNoneMatch) && upstreamMode.get().equals("normal")) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                // A length of zero selects chunked transfer encoding.
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream outputStream = exchange.getResponseBody();
+                if (upstreamMode.get().equals("oversized")) {
+                    byte[] block = new byte[64 * 1024];
+                    for (int i = 0; i < oversizedLength / block.length; i++) {
+                        outputStream.write(block);
+                    }
+                } else {
+                    outputStream.write(upstreamContent.get().getBytes(StandardCharsets.UTF_8));
+                }
+                outputStream.close();
+            }
+        } catch (Exception ignored) {
+            // The client closes the connection when it abandons an oversized response.
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+}
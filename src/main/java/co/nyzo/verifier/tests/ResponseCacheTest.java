@@ -0,0 +1,72 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.web.ResponseCache;
+
+public class ResponseCacheTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        ResponseCacheTest test = new ResponseCacheTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testAcceptsGzip();
+        } catch (Exception e) {
+            failureCause = "exception in ResponseCacheTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testAcceptsGzip() {
+
+        // Each header is paired with whether it accepts gzip. The coding names must match exactly, and a weight of
+        // zero refuses the coding.
+        Object[][] cases = {
+                { "gzip", true },
+                { "gzip, deflate, br", true },
+                { "deflate, GZIP;q=0.5", true },
+                { "x-gzip", true },
+                { "*", true },
+                { "", false },
+                { "identity", false },
+                { "gzip;q=0", false },
+                { "gzip; q=0.000, deflate", false },
+                { "deflate, gzip;q=0", false },
+                { "*, gzip;q=0", false },
+                { "*;q=0", false },
+                { "gzipped, nogzip", false },
+                { "deflate;x=gzip", false },
+        };
+
+        boolean successful = true;
+        for (int i = 0; i < cases.length && successful; i++) {
+            String header = (String) cases[i][0];
+            boolean expected = (Boolean) cases[i][1];
+            successful = ResponseCache.acceptsGzip(header) == expected;
+            if (!successful) {
+                failureCause = "acceptsGzip(\"" + header + "\") is " + !expected + "; expected " + expected;
+            }
+        }
+
+        return successful;
+    }
+}
@@ -14,7 +14,20 @@ public class TestUtil {
 
         NyzoTest[] tests = {
                 new NyzoStringTest(),
-                new ShortLongTest()
+                new ShortLongTest(),
+                new ExpiringAddressSetTest(),
+                new RelayEndpointTest(),
+                new JsonTest(),
+                new TransactionBatchTest(),
+                new BlockFileArchiverTest(),
+                new BlockFileReaderTest(),
+                new KeyValueLogTest(),
+                new BinaryRecordStoreTest(),
+                new LatencyHistogramTest(),
+                new NodeManagerTest(),
+                new HttpEngineTest(),
+                new ResponseCacheTest(),
+                new HttpDateTest()
         };
 
         boolean successful = true;
@@ -0,0 +1,109 @@
+package co.nyzo.verifier.tests;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.TransactionBatch;
+import co.nyzo.verifier.messages.TransactionBatchResponse;
+import co.nyzo.verifier.util.PrintUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TransactionBatchTest implements NyzoTest {
+
+    private String failureCause = null;
+
+    public static void main(String[] args) {
+
+        TransactionBatchTest test = new TransactionBatchTest();
+        boolean successful = test.run();
+
+        if (!successful) {
+            System.out.println(TestUtil.failureCause(test.getFailureCause()));
+        }
+    }
+
+    public boolean run() {
+
+        boolean successful;
+        try {
+            successful = testBatchSerialization() && testResponse();
+        } catch (Exception e) {
+            failureCause = "exception in TransactionBatchTest: " + PrintUtil.printException(e);
+            successful = false;
+        }
+
+        System.out.println(TestUtil.passFail(successful));
+
+        return successful;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    private boolean testBatchSerialization() {
+
+        List<Transaction> transactions = transactions(25);
+        byte[] bytes = new TransactionBatch(transactions).getBytes();
+        TransactionBatch batch = TransactionBatch.fromByteBuffer(ByteBuffer.wrap(bytes));
+
+        boolean successful = batch != null && batch.getTransactions().size() == transactions.size();
+        for (int i = 0; successful && i < transactions.size(); i++) {
+            successful = Arrays.equals(transactions.get(i).getBytes(), batch.getTransactions().get(i).getBytes());
+        }
+
+        // A truncated batch is rejected.
+        successful = successful && TransactionBatch.fromByteBuffer(ByteBuffer.wrap(Arrays.copyOf(bytes,
+                bytes.length - 1))) == null;
+
+        if (!successful) {
+            failureCause = "transaction batch did not survive serialization";
+        }
+
+        return successful;
+    }
+
+    private boolean testResponse() {
+
+        // The transactions have an incorrect signature, so all that are processed are rejected. Transactions past the
+        // limit of the batch are not processed.
+        List<Transaction> transactions = transactions(TransactionBatch.maximumNumberOfTransactions + 3);
+        TransactionBatchResponse response = new TransactionBatchResponse(new TransactionBatch(transactions));
+        TransactionBatchResponse readResponse =
+                TransactionBatchResponse.fromByteBuffer(ByteBuffer.wrap(response.getBytes()));
+
+        boolean successful = readResponse != null && Arrays.equals(response.getResults(), readResponse.getResults()) &&
+                response.getResults().length == transactions.size() &&
+                response.numberOfResults(TransactionBatchResponse.resultNotAccepted) ==
+                        TransactionBatch.maximumNumberOfTransactions &&
+                response.numberOfResults(TransactionBatchResponse.resultNotProcessed) == 3 &&
+                response.getResults()[transactions.size() - 1] == TransactionBatchResponse.resultNotProcessed;
+
+        // A batch that could not be read produces an empty response.
+        successful = successful && new TransactionBatchResponse((TransactionBatch) null).getResults().length == 0;
+
+        if (!successful) {
+            failureCause = "transaction batch response was not correct: " + response;
+        }
+
+        return successful;
+    }
+
+    private static List<Transaction> transactions(int numberOfTransactions) {
+
+        byte[] seed = KeyUtil.generateSeed();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < numberOfTransactions; i++) {
+            Transaction transaction = Transaction.standardTransaction(1000000L + i, 1L + i,
+                    new byte[FieldByteSize.identifier], 0L, new byte[FieldByteSize.hash], new byte[] { (byte) i },
+                    seed);
+            byte[] bytes = transaction.getBytes();
+            bytes[bytes.length - 1] ^= 1;
+            transactions.add(Transaction.fromByteBuffer(ByteBuffer.wrap(bytes)));
+        }
+
+        return transactions;
+    }
+}
@@ -0,0 +1,299 @@
+package co.nyzo.verifier.util;
+
+import co.nyzo.verifier.FieldByteSize;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class BinaryRecordStore {
+
+    // This class persists a map of binary records in two files: a snapshot of all records, and a journal of the
+    // changes since the snapshot. The owner of the store passes the complete current set of records to update(), and
+    // only the records that were added, changed, or removed since the previous update are queued. A background thread
+    // appends the queued changes to the journal and forces them to disk, so the caller never waits for the disk. When
+    // the journal grows larger than the snapshot, the snapshot is rewritten, and the journal is emptied.
+    //
+    // Snapshot: magic (4 bytes), record count (4 bytes), records, CRC32 of the preceding bytes (4 bytes)
+    // Journal entry: type (1 byte; 1=put, 0=remove), record, CRC32 of the preceding bytes of the entry (4 bytes)
+    // Record: key length (2 bytes), key, value length (2 bytes; omitted for removals), value
+    //
+    // The snapshot is memory-mapped on load. A snapshot with an incorrect checksum is discarded. The journal is
+    // replayed until the first incomplete entry or entry with an incorrect checksum, which is where a write was
+    // interrupted.
+    //
+    // The files are written by a SnapshotJournal, which also runs the flush thread.
+
+    private static final int snapshotMagic = 0x4e795253;  // "NyRS"
+    private static final byte entryTypeRemove = 0;
+    private static final byte entryTypePut = 1;
+    private static final long minimumCompactionBytes = 16L * 1024L;
+    private static final long flushIntervalMilliseconds = PreferencesUtil.getLong("record_store_flush_interval",
+            1000L);
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final SnapshotJournal journal;
+    private final boolean snapshotLoaded;
+
+    private final Map<ByteBuffer, byte[]> records = new HashMap<>();
+    private final Object dataLock = new Object();
+    private final Object fileLock = new Object();
+    private Map<ByteBuffer, byte[]> pendingChanges = new LinkedHashMap<>();
+    private long snapshotBytes = 0L;
+
+    private final AtomicLong numberOfChanges = new AtomicLong(0L);
+
+    public BinaryRecordStore(File snapshotFile) {
+
+        this.snapshotFile = snapshotFile;
+        this.journalFile = new File(snapshotFile.getAbsolutePath() + "_journal");
+        this.journal = new SnapshotJournal(snapshotFile, journalFile);
+        this.snapshotLoaded = load();
+    }
+
+    // Indicates whether either file was present on load. When neither was present, the owner may import its records
+    // from an older format.
+    public boolean isLoaded() {
+        return snapshotLoaded;
+    }
+
+    // Returns a copy of the current records.
+    public Map<ByteBuffer, byte[]> getRecords() {
+
+        synchronized (dataLock) {
+            return new HashMap<>(records);
+        }
+    }
+
+    // Replaces the records with the provided records, and queues the differences to be written.
+    public void update(Map<ByteBuffer, byte[]> currentRecords) {
+
+        int numberOfChangedRecords = 0;
+        synchronized (dataLock) {
+            for (ByteBuffer key : new ArrayList<>(records.keySet())) {
+                if (!currentRecords.containsKey(key)) {
+                    records.remove(key);
+                    pendingChanges.put(key, null);
+                    numberOfChangedRecords++;
+                }
+            }
+
+            for (Map.Entry<ByteBuffer, byte[]> entry : currentRecords.entrySet()) {
+                byte[] previousValue = records.put(entry.getKey(), entry.getValue());
+                if (previousValue == null || !Arrays.equals(previousValue, entry.getValue())) {
+                    pendingChanges.put(entry.getKey(), entry.getValue());
+                    numberOfChangedRecords++;
+                }
+            }
+        }
+
+        if (numberOfChangedRecords > 0) {
+            numberOfChanges.addAndGet(numberOfChangedRecords);
+            journal.startFlushThread(flushIntervalMilliseconds, new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    // Appends the queued changes to the journal and forces them to disk.
+    public void flush() {
+
+        synchronized (fileLock) {
+            Map<ByteBuffer, byte[]> changes;
+            synchronized (dataLock) {
+                changes = pendingChanges;
+                pendingChanges = new LinkedHashMap<>();
+            }
+
+            if (!changes.isEmpty()) {
+                int size = 0;
+                for (Map.Entry<ByteBuffer, byte[]> entry : changes.entrySet()) {
+                    size += entrySize(entry.getKey(), entry.getValue());
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                for (Map.Entry<ByteBuffer, byte[]> entry : changes.entrySet()) {
+                    int startPosition = buffer.position();
+                    buffer.put(entry.getValue() == null ? entryTypeRemove : entryTypePut);
+                    putRecord(buffer, entry.getKey(), entry.getValue());
+                    buffer.putInt(checksum(buffer.array(), startPosition, buffer.position() - startPosition));
+                }
+
+                if (!journal.append(buffer.array())) {
+                    requeue(changes);
+                }
+
+                if (journal.getJournalBytes() > Math.max(snapshotBytes, minimumCompactionBytes)) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    // Returns changes that could not be written to the queue, so the next flush retries them. A change queued for the
+    // same key since the changes were taken is newer, so it is kept.
+    private void requeue(Map<ByteBuffer, byte[]> changes) {
+
+        synchronized (dataLock) {
+            Map<ByteBuffer, byte[]> newerChanges = pendingChanges;
+            pendingChanges = new LinkedHashMap<>(changes);
+            pendingChanges.putAll(newerChanges);
+        }
+    }
+
+    // Rewrites the snapshot from the current records and empties the journal. Queued changes are already in the
+    // records, so they are included in the snapshot and removed from the queue.
+    public void compact() {
+
+        synchronized (fileLock) {
+            Map<ByteBuffer, byte[]> snapshotRecords;
+            Map<ByteBuffer, byte[]> changes;
+            synchronized (dataLock) {
+                snapshotRecords = new HashMap<>(records);
+                changes = pendingChanges;
+                pendingChanges = new LinkedHashMap<>();
+            }
+
+            int size = FieldByteSize.unnamedInteger * 3;
+            for (Map.Entry<ByteBuffer, byte[]> entry : snapshotRecords.entrySet()) {
+                size += entrySize(entry.getKey(), entry.getValue()) - FieldByteSize.unnamedInteger - 1;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(snapshotMagic);
+            buffer.putInt(snapshotRecords.size());
+            for (Map.Entry<ByteBuffer, byte[]> entry : snapshotRecords.entrySet()) {
+                putRecord(buffer, entry.getKey(), entry.getValue());
+            }
+            buffer.putInt(checksum(buffer.array(), 0, buffer.position()));
+
+            if (journal.writeSnapshot(buffer.array())) {
+                snapshotBytes = size;
+            } else {
+                requeue(changes);
+            }
+        }
+    }
+
+    private boolean load() {
+
+        boolean loaded = false;
+        if (snapshotFile.exists()) {
+            try (FileChannel channel = FileChannel.open(Paths.get(snapshotFile.getAbsolutePath()),
+                    StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                int checksumPosition = buffer.limit() - FieldByteSize.unnamedInteger;
+                ByteBuffer checkedBytes = buffer.duplicate();
+                checkedBytes.limit(checksumPosition);
+                CRC32 crc = new CRC32();
+                crc.update(checkedBytes);
+                if (buffer.getInt(0) == snapshotMagic && buffer.getInt(checksumPosition) == (int) crc.getValue()) {
+                    buffer.position(FieldByteSize.unnamedInteger);
+                    int numberOfRecords = buffer.getInt();
+                    for (int i = 0; i < numberOfRecords; i++) {
+                        ByteBuffer key = ByteBuffer.wrap(readField(buffer));
+                        records.put(key, readField(buffer));
+                    }
+                    snapshotBytes = buffer.limit();
+                    loaded = true;
+                } else {
+                    LogUtil.println("discarding " + snapshotFile + "; incorrect checksum");
+                }
+            } catch (Exception e) {
+                LogUtil.println("issue reading " + snapshotFile + ": " + PrintUtil.printException(e));
+                records.clear();
+            }
+        }
+
+        if (journalFile.exists() && journalFile.length() > 0) {
+            int numberOfEntries = 0;
+            try {
+                byte[] bytes = Files.readAllBytes(Paths.get(journalFile.getAbsolutePath()));
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                boolean valid = true;
+                while (valid && buffer.hasRemaining()) {
+                    int startPosition = buffer.position();
+                    try {
+                        byte type = buffer.get();
+                        ByteBuffer key = ByteBuffer.wrap(readField(buffer));
+                        byte[] value = type == entryTypePut ? readField(buffer) : null;
+                        int entryLength = buffer.position() - startPosition;
+                        valid = buffer.getInt() == checksum(bytes, startPosition, entryLength);
+                        if (valid) {
+                            if (value == null) {
+                                records.remove(key);
+                            } else {
+                                records.put(key, value);
+                            }
+                            numberOfEntries++;
+                        }
+                    } catch (Exception ignored) {
+                        valid = false;
+                    }
+                }
+                loaded = true;
+            } catch (Exception e) {
+                LogUtil.println("issue reading " + journalFile + ": " + PrintUtil.printException(e));
+            }
+
+            // Start from a compacted state, so an incomplete entry at the end of the journal is not followed by new
+            // entries.
+            LogUtil.println("replayed " + numberOfEntries + " entries from " + journalFile.getName());
+            compact();
+        }
+
+        return loaded;
+    }
+
+    private static byte[] readField(ByteBuffer buffer) {
+
+        byte[] field = new byte[buffer.getShort() & 0xffff];
+        buffer.get(field);
+        return field;
+    }
+
+    private static int entrySize(ByteBuffer key, byte[] value) {
+
+        // type, key length, key, value length, value, checksum
+        return 1 + FieldByteSize.unnamedShort + key.capacity() +
+                (value == null ? 0 : FieldByteSize.unnamedShort + value.length) + FieldByteSize.unnamedInteger;
+    }
+
+    private static void putRecord(ByteBuffer buffer, ByteBuffer key, byte[] value) {
+
+        buffer.putShort((short) key.capacity());
+        buffer.put(key.array());
+        if (value != null) {
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    public String getStatusString() {
+
+        int numberOfRecords;
+        synchronized (dataLock) {
+            numberOfRecords = records.size();
+        }
+
+        return "records: " + numberOfRecords + ", changes: " + numberOfChanges.get() + ", flushes: " +
+                journal.getNumberOfFlushes() + ", compactions: " + journal.getNumberOfCompactions() +
+                ", journal bytes: " + journal.getJournalBytes();
+    }
+}
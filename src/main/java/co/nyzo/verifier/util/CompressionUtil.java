@@ -0,0 +1,84 @@
+package co.nyzo.verifier.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CompressionUtil {
+
+    public static byte[] compress(byte[] bytes) {
+
+        return compress(bytes, null);
+    }
+
+    public static byte[] compress(byte[] bytes, byte[] dictionary) {
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int numberOfBytes = deflater.deflate(buffer);
+            outputStream.write(buffer, 0, numberOfBytes);
+        }
+        deflater.end();
+
+        return outputStream.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] bytes, int expectedLength) {
+
+        return decompress(bytes, expectedLength, null);
+    }
+
+    // The expected length is provided by the sender, and it is checked against the actual inflated length. Output is
+    // never allowed to grow past the expected length, so a small, malicious input cannot expand to exhaust memory. A
+    // null result indicates that the input was malformed or that its length did not match.
+    public static byte[] decompress(byte[] bytes, int expectedLength, byte[] dictionary) {
+
+        byte[] result = null;
+        if (expectedLength >= 0) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bytes);
+                byte[] output = new byte[expectedLength];
+                int totalBytesInflated = 0;
+                boolean failure = false;
+                while (!inflater.finished() && !failure) {
+                    int numberOfBytes = inflater.inflate(output, totalBytesInflated, output.length -
+                            totalBytesInflated);
+                    totalBytesInflated += numberOfBytes;
+                    if (numberOfBytes == 0) {
+                        if (inflater.needsDictionary() && dictionary != null) {
+                            inflater.setDictionary(dictionary);
+                        } else if (inflater.needsInput() || inflater.needsDictionary() ||
+                                totalBytesInflated == output.length) {
+                            // Either the input was truncated, or there is more output than the expected length.
+                            failure = true;
+                        }
+                    }
+                }
+
+                if (!failure && totalBytesInflated == expectedLength) {
+                    result = output;
+                }
+            } catch (DataFormatException ignored) {
+            } finally {
+                inflater.end();
+            }
+        }
+
+        return result;
+    }
+
+    public static double compressionRatio(byte[] uncompressed, byte[] compressed) {
+
+        return compressed.length == 0 ? 0.0 : uncompressed.length / (double) compressed.length;
+    }
+}
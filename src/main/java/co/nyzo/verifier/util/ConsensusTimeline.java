@@ -0,0 +1,298 @@
+package co.nyzo.verifier.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConsensusTimeline {
+
+    // This class keeps the timestamps of the consensus steps for recent heights, so the time spent on a slow height
+    // can be attributed to a step. Each height has a slot in a fixed-size ring, and a slot is reused when a newer
+    // height maps to it. Events for heights older than the height in a slot are discarded. For each event, the first
+    // timestamp, last timestamp, and count are kept. Recording is a short synchronized block on the slot, and the
+    // events occur a few times per second at most.
+    //
+    // Offsets are reported relative to the freezing of the previous height, which is when work on a height can
+    // start. Heights for which the previous height was not frozen locally (such as heights frozen while catching up)
+    // are not included in the percentiles.
+
+    public enum Event {
+        CandidateReceived("candidate received"),
+        BlockCreated("block created"),
+        BlockTransmitted("block transmitted"),
+        VoteCast("vote cast"),
+        VoteChanged("vote changed"),
+        ThresholdReached("75% counted"),
+        BalanceListDerived("balance list derived"),
+        FreezeDecided("freeze decided"),
+        Frozen("frozen"),
+        FileWritten("file written");
+
+        private final String description;
+
+        Event(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final Event[] events = Event.values();
+    private static final double[] percentiles = { 0.5, 0.9, 0.99 };
+
+    private static final int capacity = Math.max(10, PreferencesUtil.getInt("consensus_timeline_heights", 2000));
+    private static final HeightTimeline[] ring = createRing();
+    private static final AtomicLong newestHeight = new AtomicLong(-1L);
+
+    public static void record(long height, Event event) {
+
+        HeightTimeline timeline = slotForHeight(height);
+        if (timeline != null) {
+            timeline.record(height, event, System.currentTimeMillis());
+        }
+    }
+
+    // Records the completion of a balance-list derivation along with the time it took.
+    public static void recordBalanceListDerivation(long height, long nanoseconds) {
+
+        HeightTimeline timeline = slotForHeight(height);
+        if (timeline != null) {
+            synchronized (timeline) {
+                if (timeline.record(height, Event.BalanceListDerived, System.currentTimeMillis())) {
+                    timeline.balanceListNanoseconds += nanoseconds;
+                }
+            }
+        }
+    }
+
+    // Returns copies of the timelines of the specified number of heights, newest first. Heights with no events are
+    // omitted.
+    public static List<HeightTimeline> recentTimelines(int numberOfHeights) {
+
+        List<HeightTimeline> result = new ArrayList<>();
+        long newestHeight = ConsensusTimeline.newestHeight.get();
+        for (long height = newestHeight; height > newestHeight - Math.min(numberOfHeights, capacity) && height >= 0;
+             height--) {
+            HeightTimeline timeline = ring[(int) (height % capacity)];
+            synchronized (timeline) {
+                if (timeline.height == height) {
+                    result.add(timeline.copy());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // Produces a summary of the specified number of heights, followed by the timelines of the most recent heights.
+    // The lines are used by the debug message and the web view.
+    public static List<String> statusLines(int numberOfHeights, int numberOfRecentHeights) {
+
+        List<HeightTimeline> timelines = recentTimelines(numberOfHeights + 1);
+        List<String> lines = new ArrayList<>();
+        lines.add("consensus timeline, " + Math.max(0, timelines.size() - 1) + " heights, ms after previous height " +
+                "frozen");
+        for (Event event : events) {
+            long[] offsets = offsets(timelines, event);
+            StringBuilder line = new StringBuilder(event.getDescription()).append(":");
+            for (int i = 0; i < percentiles.length; i++) {
+                line.append(i == 0 ? " " : ", ").append(percentileLabel(percentiles[i])).append("=")
+                        .append(printOffset(percentile(offsets, percentiles[i])));
+            }
+            line.append(", max=").append(printOffset(percentile(offsets, 1.0))).append(", n=").append(offsets.length);
+            lines.add(line.toString());
+        }
+
+        long[] voteChanges = new long[timelines.size()];
+        long[] balanceListMilliseconds = new long[timelines.size()];
+        for (int i = 0; i < timelines.size(); i++) {
+            voteChanges[i] = timelines.get(i).getCount(Event.VoteChanged);
+            balanceListMilliseconds[i] = timelines.get(i).getBalanceListNanoseconds() / 1000000L;
+        }
+        Arrays.sort(voteChanges);
+        Arrays.sort(balanceListMilliseconds);
+        lines.add("vote changes per height: p50=" + printOffset(percentile(voteChanges, 0.5)) + ", max=" +
+                printOffset(percentile(voteChanges, 1.0)));
+        lines.add("balance-list derivation ms per height: p50=" +
+                printOffset(percentile(balanceListMilliseconds, 0.5)) + ", p99=" +
+                printOffset(percentile(balanceListMilliseconds, 0.99)) + ", max=" +
+                printOffset(percentile(balanceListMilliseconds, 1.0)));
+
+        for (int i = 0; i < timelines.size() && i < numberOfRecentHeights; i++) {
+            HeightTimeline timeline = timelines.get(i);
+            HeightTimeline previousTimeline = i + 1 < timelines.size() ? timelines.get(i + 1) : null;
+            StringBuilder line = new StringBuilder().append(timeline.getHeight()).append(":");
+            String separator = " ";
+            for (Event event : events) {
+                long offset = timeline.offset(previousTimeline, event);
+                if (offset != Long.MIN_VALUE) {
+                    line.append(separator).append(event.getDescription()).append("=").append(printOffset(offset));
+                    if (timeline.getCount(event) > 1) {
+                        line.append("(").append(timeline.getCount(event)).append(")");
+                    }
+                    separator = ", ";
+                }
+            }
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+
+    // Returns the sorted offsets of an event for all timelines in the list for which the previous height is also in
+    // the list. The list must be ordered newest first, as returned by recentTimelines().
+    public static long[] offsets(List<HeightTimeline> timelines, Event event) {
+
+        long[] offsets = new long[timelines.size()];
+        int numberOfOffsets = 0;
+        for (int i = 0; i < timelines.size() - 1; i++) {
+            long offset = timelines.get(i).offset(timelines.get(i + 1), event);
+            if (offset != Long.MIN_VALUE) {
+                offsets[numberOfOffsets++] = offset;
+            }
+        }
+        offsets = Arrays.copyOf(offsets, numberOfOffsets);
+        Arrays.sort(offsets);
+
+        return offsets;
+    }
+
+    // Returns the value at the specified percentile of a sorted array with the nearest-rank method, or Long.MIN_VALUE
+    // if the array is empty.
+    public static long percentile(long[] sortedValues, double percentile) {
+
+        long result = Long.MIN_VALUE;
+        if (sortedValues.length > 0) {
+            int rank = (int) Math.ceil(percentile * sortedValues.length);
+            result = sortedValues[Math.max(0, Math.min(sortedValues.length - 1, rank - 1))];
+        }
+
+        return result;
+    }
+
+    public static String percentileLabel(double percentile) {
+
+        return "p" + Math.round(percentile * 100.0);
+    }
+
+    public static String printOffset(long offset) {
+
+        return offset == Long.MIN_VALUE ? "-" : offset + "";
+    }
+
+    public static double[] getPercentiles() {
+        return Arrays.copyOf(percentiles, percentiles.length);
+    }
+
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    private static HeightTimeline slotForHeight(long height) {
+
+        HeightTimeline timeline = null;
+        if (height >= 0) {
+            long currentNewestHeight = newestHeight.get();
+            while (height > currentNewestHeight && !newestHeight.compareAndSet(currentNewestHeight, height)) {
+                currentNewestHeight = newestHeight.get();
+            }
+            timeline = ring[(int) (height % capacity)];
+        }
+
+        return timeline;
+    }
+
+    private static HeightTimeline[] createRing() {
+
+        HeightTimeline[] ring = new HeightTimeline[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new HeightTimeline();
+        }
+
+        return ring;
+    }
+
+    public static class HeightTimeline {
+
+        private long height = -1L;
+        private final long[] firstTimestamps = new long[events.length];
+        private final long[] lastTimestamps = new long[events.length];
+        private final int[] counts = new int[events.length];
+        private long balanceListNanoseconds = 0L;
+
+        private HeightTimeline() {
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public int getCount(Event event) {
+            return counts[event.ordinal()];
+        }
+
+        public long getBalanceListNanoseconds() {
+            return balanceListNanoseconds;
+        }
+
+        // Returns the first timestamp of the event, or the last timestamp for vote changes and balance-list
+        // derivations, as the last of these is the one that determines the progress of the height. Returns 0 if the
+        // event has not occurred.
+        public long getTimestamp(Event event) {
+            return event == Event.VoteChanged || event == Event.BalanceListDerived ? lastTimestamps[event.ordinal()] :
+                    firstTimestamps[event.ordinal()];
+        }
+
+        // Returns the time of the event relative to the freezing of the previous height, or Long.MIN_VALUE if either
+        // is not available.
+        public long offset(HeightTimeline previousTimeline, Event event) {
+
+            long offset = Long.MIN_VALUE;
+            if (previousTimeline != null && previousTimeline.height == height - 1 &&
+                    previousTimeline.getTimestamp(Event.Frozen) > 0 && getTimestamp(event) > 0) {
+                offset = getTimestamp(event) - previousTimeline.getTimestamp(Event.Frozen);
+            }
+
+            return offset;
+        }
+
+        private synchronized boolean record(long height, Event event, long timestamp) {
+
+            // Reset the slot for a newer height. Ignore events for older heights.
+            if (height > this.height) {
+                this.height = height;
+                Arrays.fill(firstTimestamps, 0L);
+                Arrays.fill(lastTimestamps, 0L);
+                Arrays.fill(counts, 0);
+                balanceListNanoseconds = 0L;
+            }
+
+            boolean recorded = height == this.height;
+            if (recorded) {
+                int index = event.ordinal();
+                if (counts[index] == 0) {
+                    firstTimestamps[index] = timestamp;
+                }
+                lastTimestamps[index] = timestamp;
+                counts[index]++;
+            }
+
+            return recorded;
+        }
+
+        private HeightTimeline copy() {
+
+            HeightTimeline copy = new HeightTimeline();
+            copy.height = height;
+            System.arraycopy(firstTimestamps, 0, copy.firstTimestamps, 0, events.length);
+            System.arraycopy(lastTimestamps, 0, copy.lastTimestamps, 0, events.length);
+            System.arraycopy(counts, 0, copy.counts, 0, events.length);
+            copy.balanceListNanoseconds = balanceListNanoseconds;
+
+            return copy;
+        }
+    }
+}
@@ -1,18 +1,16 @@
 package co.nyzo.verifier.util;
 
 import co.nyzo.verifier.*;
-import co.nyzo.verifier.client.ClientTransactionUtil;
 import co.nyzo.verifier.messages.BlockVote;
 
 import java.io.File;
 import java.nio.ByteBuffer;
-import java.nio.file.FileStore;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.BiFunction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class ConsensusTracker {
 
@@ -20,15 +18,52 @@ public class ConsensusTracker {
     // used on systems with large amounts of storage available, and it will automatically stop tracking when the usable
     // space on the drive falls below the specified threshold. Also, tracking is not performed for any run mode other
     // than Verifier.
+    //
+    // Registration is on the block and vote paths, so it only places the event in a fixed-size ring. A background
+    // thread takes events from the ring, encodes them in a compact binary form, and appends them to segment files. A
+    // new segment is started when the current segment reaches the size limit. If the writer falls behind and the ring
+    // is full, events are dropped and counted rather than slowing the caller. The timeline of each height can be
+    // rebuilt from the segments with ConsensusTrackerReaderScript.
+    //
+    // Segment: magic (4 bytes), records
+    // Record: type (1 byte), timestamp (8 bytes), height (8 bytes), type-specific fields
+    //   block: hash (32 bytes), verifier identifier (32 bytes), verifier transaction sender data (1-byte length, data)
+    //   vote: hash (32 bytes), sender identifier (32 bytes)
+    //   text: text (2-byte length, UTF-8 bytes)
 
     private static final File rootDirectory = new File(Verifier.dataRootDirectory, "consensus_tracker");
     private static boolean enableTracker = PreferencesUtil.getBoolean("enable_consensus_tracker", false);
     private static final long terminationStorageThreshold =
             PreferencesUtil.getLong("consensus_tracker_storage_threshold_bytes", 20_000_000_000L);  // 20 GB.
-    private static final int eventsPerFile = 10000;
+    private static final long maximumSegmentBytes = PreferencesUtil.getLong("consensus_tracker_segment_bytes",
+            64L * 1024L * 1024L);
+    private static final long storageCheckInterval = 60000L;
+
+    public static final String segmentFilePrefix = "consensus_";
+    public static final String segmentFileSuffix = ".nyzotrack";
+    private static final int segmentMagic = 0x4e79436e;  // "NyCn"
+
+    public static final byte recordTypeBlock = 1;
+    public static final byte recordTypeVote = 2;
+    public static final byte recordTypeText = 3;
+    private static final int maximumTextLength = 1000;
+    private static final int maximumRecordBytes = 1 + FieldByteSize.timestamp + FieldByteSize.blockHeight +
+            FieldByteSize.unnamedShort + maximumTextLength * 3;
+
+    // The ring capacity is a power of two, so the slot for a sequence is a mask of the sequence.
+    private static final int ringCapacity = Integer.highestOneBit(Math.max(1024,
+            PreferencesUtil.getInt("consensus_tracker_buffer_size", 65536)));
+    private static final AtomicReferenceArray<ConsensusEvent> ring = new AtomicReferenceArray<>(ringCapacity);
+    private static final AtomicLong writeSequence = new AtomicLong(0L);
+    private static final AtomicLong readSequence = new AtomicLong(0L);
+    private static boolean writerStarted = false;
+
+    private static final AtomicLong numberOfEvents = new AtomicLong(0L);
+    private static final AtomicLong numberOfDroppedEvents = new AtomicLong(0L);
+    private static final AtomicLong numberOfBytesWritten = new AtomicLong(0L);
+    private static final AtomicLong numberOfSegments = new AtomicLong(0L);
 
     private static long frozenEdge = -1L;
-    private static Map<Long, Set<ConsensusEvent>> events = new ConcurrentHashMap<>();
 
     public static void register(long height, Object object) {
         // Only register the event if the tracker is enabled, the run mode is verifier, the object is valid, and the
@@ -36,145 +71,221 @@ public class ConsensusTracker {
         if (enableTracker && RunMode.getRunMode() == RunMode.Verifier && object != null && height >= frozenEdge - 3 &&
                 height < frozenEdge + 5) {
 
-            // Register the event in the set for the appropriate height.
-            Set<ConsensusEvent> eventsForHeight = events.merge(height, new HashSet<>(),
-                    new BiFunction<Set<ConsensusEvent>, Set<ConsensusEvent>, Set<ConsensusEvent>>() {
-                        @Override
-                        public Set<ConsensusEvent> apply(Set<ConsensusEvent> consensusEvents1,
-                                                         Set<ConsensusEvent> consensusEvents2) {
-                            Set<ConsensusEvent> result;
-                            if (consensusEvents1 == null) {
-                                result = consensusEvents2;
-                            } else if (consensusEvents2 == null) {
-                                result = consensusEvents1;
-                            } else {
-                                result = consensusEvents1;
-                                consensusEvents1.addAll(consensusEvents2);
-                            }
-
-                            return result;
-                        }
-                    });
-            eventsForHeight.add(new ConsensusEvent(height, object));
+            // Claim a sequence and publish the event to its slot. If the ring is full, the event is dropped.
+            boolean claimed = false;
+            long sequence = 0L;
+            while (!claimed) {
+                sequence = writeSequence.get();
+                if (sequence - readSequence.get() >= ringCapacity) {
+                    break;
+                }
+                claimed = writeSequence.compareAndSet(sequence, sequence + 1L);
+            }
 
-            // If the events set for the height has gotten too large, perform maintenance.
-            if (eventsForHeight.size() > eventsPerFile) {
-                performMaintenance();
+            if (claimed) {
+                ring.set((int) (sequence & (ringCapacity - 1)), new ConsensusEvent(height, object));
+                numberOfEvents.incrementAndGet();
+                if (!writerStarted) {
+                    startWriter();
+                }
+            } else {
+                numberOfDroppedEvents.incrementAndGet();
             }
         }
     }
 
     public static void performMaintenance() {
-        if (enableTracker) {
-            // If the usable space has fallen below the termination threshold, disable tracking.
-            long usableSpace = getUsableSpace();
-            if (usableSpace < terminationStorageThreshold) {
-                LogUtil.println("disabling consensus tracker because usable space, " + usableSpace +
-                        " is less than threshold " + terminationStorageThreshold);
-                enableTracker = false;
-            }
 
-            // Update the frozen edge.
+        // Update the frozen edge, which limits the heights that are registered. The storage check is performed by the
+        // writer.
+        if (enableTracker) {
             frozenEdge = BlockManager.getFrozenEdgeHeight();
+        }
+    }
 
-            // Look through all heights in the map. If any are over the size threshold or below the height at which
-            // events are saved, remove them from the map and write them to file. Iterate over a new set of heights,
-            // because this loop modifies the map.
-            synchronized (ConsensusTracker.class) {
-                for (Long height : new HashSet<>(events.keySet())) {
-                    Set<ConsensusEvent> eventsForHeight = events.get(height);
-                    if (height < frozenEdge - 4 || eventsForHeight.size() > eventsPerFile) {
-                        events.remove(height);
-                        writeFile(height, eventsForHeight);
-                    }
+    private static synchronized void startWriter() {
+
+        if (!writerStarted) {
+            writerStarted = true;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWriter();
                 }
-            }
-        } else {
-            // Empty the set, in case there are any lingering items. If tracking has been disabled, no further files
-            // will be written, so there is no reason to continue keeping the events in memory.
-            events.clear();
+            }, "ConsensusTracker-writer");
+            thread.setDaemon(true);
+            thread.start();
         }
     }
 
-    private static void writeFile(long height, Set<ConsensusEvent> events) {
-
-        // Start a thread to write the file. We do not want the time used to write the file to prevent the verifier
-        // from continuing to the next block.
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
+    private static void runWriter() {
 
-                // Get the file path. The check of file existence is not truly concurrency-safe, but it is highly
-                // unlikely to fail in practice.
-                File file = null;
-                int fileIndex = 0;
-                while (file == null || file.exists()) {
-                    file = new File(rootDirectory, String.format("consensus_%08d_%04d", height, fileIndex++));
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        FileChannel channel = null;
+        long segmentBytes = 0L;
+        long lastStorageCheckTimestamp = 0L;
+        while (true) {
+            try {
+                // Take events from the ring until it is empty or the buffer is nearly full. A claimed slot that has
+                // not been published yet ends the batch.
+                buffer.clear();
+                long firstHeight = -1L;
+                boolean eventAvailable = true;
+                while (eventAvailable && buffer.remaining() >= maximumRecordBytes) {
+                    long sequence = readSequence.get();
+                    int index = (int) (sequence & (ringCapacity - 1));
+                    ConsensusEvent event = sequence < writeSequence.get() ? ring.get(index) : null;
+                    eventAvailable = event != null;
+                    if (eventAvailable) {
+                        ring.set(index, null);
+                        readSequence.set(sequence + 1L);
+                        if (enableTracker) {
+                            putEvent(buffer, event);
+                            if (firstHeight < 0) {
+                                firstHeight = event.getHeight();
+                            }
+                        }
+                    }
                 }
 
-                // Create the list and sort on timestamp.
-                List<ConsensusEvent> eventList = new ArrayList<>(events);
-                eventList.sort(new Comparator<ConsensusEvent>() {
-                    @Override
-                    public int compare(ConsensusEvent event1, ConsensusEvent event2) {
-                        return Long.compare(event1.getTimestamp(), event2.getTimestamp());
+                if (buffer.position() == 0) {
+                    ThreadUtil.sleep(50L);
+                } else {
+                    // If the usable space has fallen below the termination threshold, disable tracking.
+                    if (lastStorageCheckTimestamp < System.currentTimeMillis() - storageCheckInterval) {
+                        lastStorageCheckTimestamp = System.currentTimeMillis();
+                        long usableSpace = getUsableSpace();
+                        if (usableSpace < terminationStorageThreshold) {
+                            LogUtil.println("disabling consensus tracker because usable space, " + usableSpace +
+                                    " is less than threshold " + terminationStorageThreshold);
+                            enableTracker = false;
+                        }
                     }
-                });
-
-                // Determine the number of votes for each hash. If only one block received votes, the block votes will
-                // not be written separately to the file.
-                Map<ByteBuffer, Integer> blockVoteCounts = new HashMap<>();
-                for (ConsensusEvent event : eventList) {
-                    if (event.getData() instanceof BlockVote) {
-                        BlockVote blockVote = (BlockVote) event.getData();
-                        ByteBuffer hash = ByteBuffer.wrap(blockVote.getHash());
-                        blockVoteCounts.put(hash, blockVoteCounts.getOrDefault(hash, 0) + 1);
+
+                    // Start a new segment if there is no current segment or the current segment is full.
+                    if (enableTracker && (channel == null || segmentBytes + buffer.position() > maximumSegmentBytes)) {
+                        if (channel != null) {
+                            channel.close();
+                            channel = null;
+                        }
+                        File file = new File(rootDirectory, String.format("%s%08d_%d%s", segmentFilePrefix,
+                                firstHeight, System.currentTimeMillis(), segmentFileSuffix));
+                        rootDirectory.mkdirs();
+                        channel = FileChannel.open(Paths.get(file.getAbsolutePath()), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                        ByteBuffer header = ByteBuffer.allocate(FieldByteSize.unnamedInteger);
+                        header.putInt(segmentMagic);
+                        header.flip();
+                        channel.write(header);
+                        segmentBytes = FieldByteSize.unnamedInteger;
+                        numberOfSegments.incrementAndGet();
                     }
-                }
 
-                // Format the events for the file.
-                List<String> fileContents = new ArrayList<>();
-                for (ConsensusEvent event : eventList) {
-                    if (event.getData() instanceof BlockVote) {
-                        if (blockVoteCounts.size() > 1) {
-                            BlockVote blockVote = (BlockVote) event.getData();
-                            fileContents.add(PrintUtil.compactPrintTimestamp(event.getTimestamp()) + ":" + blockVote);
+                    if (enableTracker) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            segmentBytes += channel.write(buffer);
                         }
-                    } else if (event.getData() instanceof Block) {
+                        numberOfBytesWritten.addAndGet(buffer.limit());
+                    } else if (channel != null) {
+                        channel.close();
+                        channel = null;
+                    }
+                }
+            } catch (Exception e) {
+                LogUtil.println("exception in consensus tracker writer: " + PrintUtil.printException(e));
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (Exception ignored) { }
+                    channel = null;
+                }
+                ThreadUtil.sleep(1000L);
+            }
+        }
+    }
 
-                        Block block = (Block) event.getData();
-                        String blockLine = PrintUtil.compactPrintTimestamp(event.getTimestamp()) + ":" + block;
+    private static void putEvent(ByteBuffer buffer, ConsensusEvent event) {
 
-                        // If the verifier included a transaction in the block, add its sender data to the line.
-                        Transaction verifierTransaction = null;
-                        for (Transaction transaction : block.getTransactions()) {
-                            if (ByteUtil.arraysAreEqual(transaction.getSenderIdentifier(),
-                                    block.getVerifierIdentifier())) {
-                                verifierTransaction = transaction;
-                            }
-                        }
-                        if (verifierTransaction != null) {
-                            blockLine += ",transaction data=" +
-                                    ClientTransactionUtil.senderDataForDisplay(verifierTransaction.getSenderData());
-                        }
+        Object data = event.getData();
+        if (data instanceof Block) {
+            Block block = (Block) data;
+            putHeader(buffer, recordTypeBlock, event);
+            buffer.put(block.getHash());
+            buffer.put(block.getVerifierIdentifier());
 
-                        // Add the line to the list.
-                        fileContents.add(blockLine);
-                    } else {
-                        fileContents.add(PrintUtil.compactPrintTimestamp(event.getTimestamp()) + ":" + event.getData());
-                    }
+            // If the verifier included a transaction in the block, store its sender data.
+            byte[] senderData = new byte[0];
+            for (Transaction transaction : block.getTransactions()) {
+                if (ByteUtil.arraysAreEqual(transaction.getSenderIdentifier(), block.getVerifierIdentifier())) {
+                    senderData = transaction.getSenderData();
                 }
+            }
+            buffer.put((byte) senderData.length);
+            buffer.put(senderData);
+        } else if (data instanceof BlockVote) {
+            BlockVote vote = (BlockVote) data;
+            putHeader(buffer, recordTypeVote, event);
+            buffer.put(vote.getHash());
+            byte[] senderIdentifier = vote.getSenderIdentifier();
+            buffer.put(senderIdentifier == null ? new byte[FieldByteSize.identifier] : senderIdentifier);
+        } else {
+            String text = data.toString();
+            if (text.length() > maximumTextLength) {
+                text = text.substring(0, maximumTextLength);
+            }
+            byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+            putHeader(buffer, recordTypeText, event);
+            buffer.putShort((short) textBytes.length);
+            buffer.put(textBytes);
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte type, ConsensusEvent event) {
+
+        buffer.put(type);
+        buffer.putLong(event.getTimestamp());
+        buffer.putLong(event.getHeight());
+    }
+
+    // Reads the records of a segment file. A partial record at the end of the file, which is left when the writer is
+    // stopped during a write, is ignored.
+    public static List<TrackedRecord> readSegment(File file) {
 
-                // Add raw vote counts.
-                for (ByteBuffer hash : blockVoteCounts.keySet()) {
-                    fileContents.add("hash=" + PrintUtil.compactPrintByteArray(hash.array()) + ",count=" +
-                            blockVoteCounts.get(hash));
+        List<TrackedRecord> records = new ArrayList<>();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(file.getAbsolutePath())));
+            if (buffer.remaining() >= FieldByteSize.unnamedInteger && buffer.getInt() == segmentMagic) {
+                boolean complete = true;
+                while (complete && buffer.hasRemaining()) {
+                    try {
+                        records.add(TrackedRecord.fromByteBuffer(buffer));
+                    } catch (Exception ignored) {
+                        complete = false;
+                    }
                 }
+            }
+        } catch (Exception e) {
+            LogUtil.println("unable to read consensus tracker segment " + file + ": " + PrintUtil.printException(e));
+        }
 
-                // Write the file.
-                FileUtil.writeFile(Paths.get(file.getAbsolutePath()), fileContents);
+        return records;
+    }
+
+    public static List<File> segmentFiles() {
+
+        List<File> files = new ArrayList<>();
+        File[] directoryFiles = rootDirectory.listFiles();
+        if (directoryFiles != null) {
+            for (File file : directoryFiles) {
+                if (file.getName().startsWith(segmentFilePrefix) && file.getName().endsWith(segmentFileSuffix)) {
+                    files.add(file);
+                }
             }
-        }).start();
+        }
+        Collections.sort(files);
+
+        return files;
     }
 
     private static long getUsableSpace() {
@@ -192,4 +303,99 @@ public class ConsensusTracker {
 
         return freeSpace;
     }
+
+    public static long getNumberOfEvents() {
+        return numberOfEvents.get();
+    }
+
+    public static long getNumberOfDroppedEvents() {
+        return numberOfDroppedEvents.get();
+    }
+
+    public static String getStatusString() {
+
+        return "enabled: " + enableTracker + ", events: " + numberOfEvents.get() + ", dropped: " +
+                numberOfDroppedEvents.get() + ", queued: " + (writeSequence.get() - readSequence.get()) + "/" +
+                ringCapacity + ", bytes written: " + numberOfBytesWritten.get() + ", segments: " +
+                numberOfSegments.get();
+    }
+
+    public static class TrackedRecord {
+
+        private final byte type;
+        private final long timestamp;
+        private final long height;
+        private final byte[] hash;
+        private final byte[] identifier;
+        private final byte[] senderData;
+        private final String text;
+
+        private TrackedRecord(byte type, long timestamp, long height, byte[] hash, byte[] identifier,
+                              byte[] senderData, String text) {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.height = height;
+            this.hash = hash;
+            this.identifier = identifier;
+            this.senderData = senderData;
+            this.text = text;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getHeight() {
+            return height;
+        }
+
+        public byte[] getHash() {
+            return hash;
+        }
+
+        public byte[] getIdentifier() {
+            return identifier;
+        }
+
+        public byte[] getSenderData() {
+            return senderData;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        private static TrackedRecord fromByteBuffer(ByteBuffer buffer) {
+
+            byte type = buffer.get();
+            long timestamp = buffer.getLong();
+            long height = buffer.getLong();
+            byte[] hash = null;
+            byte[] identifier = null;
+            byte[] senderData = null;
+            String text = null;
+            if (type == recordTypeBlock || type == recordTypeVote) {
+                hash = new byte[FieldByteSize.hash];
+                buffer.get(hash);
+                identifier = new byte[FieldByteSize.identifier];
+                buffer.get(identifier);
+                if (type == recordTypeBlock) {
+                    senderData = new byte[buffer.get() & 0xff];
+                    buffer.get(senderData);
+                }
+            } else if (type == recordTypeText) {
+                byte[] textBytes = new byte[buffer.getShort() & 0xffff];
+                buffer.get(textBytes);
+                text = new String(textBytes, StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("unknown record type " + type);
+            }
+
+            return new TrackedRecord(type, timestamp, height, hash, identifier, senderData, text);
+        }
+    }
 }
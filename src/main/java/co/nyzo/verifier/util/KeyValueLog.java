@@ -0,0 +1,219 @@
+package co.nyzo.verifier.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+public class KeyValueLog {
+
+    // This class stores a small key/value map in two text files: a snapshot with one "key=value" line for each key,
+    // and a log of the changes since the snapshot. A put updates the map and queues a line for the log. The queued
+    // lines are appended and forced to disk together, at most once per flush interval, so many puts share a single
+    // write. When the log grows past the compaction threshold, the snapshot is rewritten from the map, and the log is
+    // emptied.
+    //
+    // Each log line is "key=value #checksum". The checksum is a comment in the snapshot format, so both files can be
+    // read as the original text format. On load, the log is replayed over the snapshot until the first line that is
+    // incomplete or has an incorrect checksum, which is where a write was interrupted.
+    //
+    // With a flush interval of zero, each put is written and forced before it returns. Otherwise, puts made within the
+    // interval before a crash of the process may be lost.
+    //
+    // The files are written by a SnapshotJournal, which also runs the flush thread.
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final SnapshotJournal journal;
+    private final long flushIntervalMilliseconds;
+    private final long compactionThresholdBytes;
+
+    private final Map<String, String> map = new ConcurrentHashMap<>();
+    private final Object dataLock = new Object();
+    private final Object fileLock = new Object();
+    private List<String> pendingLines = new ArrayList<>();
+
+    private final AtomicLong numberOfPuts = new AtomicLong(0L);
+
+    public KeyValueLog(File snapshotFile, long flushIntervalMilliseconds, long compactionThresholdBytes) {
+
+        this.snapshotFile = snapshotFile;
+        this.logFile = new File(snapshotFile.getAbsolutePath() + "_log");
+        this.journal = new SnapshotJournal(snapshotFile, logFile);
+        this.flushIntervalMilliseconds = Math.max(0L, flushIntervalMilliseconds);
+        this.compactionThresholdBytes = compactionThresholdBytes;
+
+        load();
+    }
+
+    public Map<String, String> getMap() {
+        return map;
+    }
+
+    public void put(String key, String value) {
+
+        // Line breaks would split the entry across lines, so they are replaced.
+        value = value.replace('\n', ' ').replace('\r', ' ');
+        synchronized (dataLock) {
+            map.put(key, value);
+            pendingLines.add(key + "=" + value);
+        }
+        numberOfPuts.incrementAndGet();
+
+        if (flushIntervalMilliseconds == 0L) {
+            flush();
+        } else {
+            journal.startFlushThread(flushIntervalMilliseconds, new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    public void clear() {
+
+        synchronized (fileLock) {
+            synchronized (dataLock) {
+                map.clear();
+                pendingLines = new ArrayList<>();
+            }
+            writeSnapshot(new ArrayList<String>());
+        }
+    }
+
+    // Writes the queued lines to the log and forces them to disk.
+    public void flush() {
+
+        synchronized (fileLock) {
+            List<String> lines;
+            synchronized (dataLock) {
+                lines = pendingLines;
+                pendingLines = new ArrayList<>();
+            }
+
+            if (!lines.isEmpty()) {
+                StringBuilder text = new StringBuilder();
+                for (String line : lines) {
+                    text.append(logLine(line)).append('\n');
+                }
+                journal.append(text.toString().getBytes(StandardCharsets.UTF_8));
+
+                if (journal.getJournalBytes() > compactionThresholdBytes) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    // Rewrites the snapshot from the map and empties the log. Lines queued after the map is copied are newer than the
+    // snapshot, so they remain queued for the emptied log.
+    public void compact() {
+
+        synchronized (fileLock) {
+            List<String> lines = new ArrayList<>();
+            synchronized (dataLock) {
+                for (Map.Entry<String, String> entry : map.entrySet()) {
+                    lines.add(entry.getKey() + "=" + entry.getValue());
+                }
+                pendingLines = new ArrayList<>();
+            }
+            writeSnapshot(lines);
+        }
+    }
+
+    private void writeSnapshot(List<String> lines) {
+
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        journal.writeSnapshot(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void load() {
+
+        if (snapshotFile.exists()) {
+            try {
+                for (String line : Files.readAllLines(Paths.get(snapshotFile.getAbsolutePath()))) {
+                    applyLine(line);
+                }
+            } catch (Exception e) {
+                System.out.println("issue getting file " + snapshotFile + ": " + PrintUtil.printException(e));
+            }
+        } else {
+            System.out.println("skipping loading of " + snapshotFile.getName() + "; file not present");
+        }
+
+        if (logFile.exists()) {
+            int numberOfLines = 0;
+            try {
+                String text = new String(Files.readAllBytes(Paths.get(logFile.getAbsolutePath())),
+                        StandardCharsets.UTF_8);
+                int lineStart = 0;
+                int lineEnd = text.indexOf('\n');
+                boolean valid = true;
+                while (valid && lineEnd >= 0) {
+                    String line = text.substring(lineStart, lineEnd);
+                    int checksumIndex = line.lastIndexOf(" #");
+                    valid = checksumIndex > 0 && logLine(line.substring(0, checksumIndex)).equals(line);
+                    if (valid) {
+                        applyLine(line);
+                        numberOfLines++;
+                    }
+                    lineStart = lineEnd + 1;
+                    lineEnd = text.indexOf('\n', lineStart);
+                }
+            } catch (Exception e) {
+                System.out.println("issue getting file " + logFile + ": " + PrintUtil.printException(e));
+            }
+
+            // Start from a compacted state, so an incomplete line at the end of the log is not followed by new lines.
+            if (numberOfLines > 0 || logFile.length() > 0) {
+                System.out.println("replayed " + numberOfLines + " lines from " + logFile.getName());
+                compact();
+            }
+        }
+    }
+
+    private void applyLine(String line) {
+
+        // This is the parsing of the original text format. Comments, including log checksums, are removed, and keys
+        // are converted to lowercase.
+        try {
+            line = line.trim();
+            int indexOfHash = line.indexOf("#");
+            if (indexOfHash >= 0) {
+                line = line.substring(0, indexOfHash).trim();
+            }
+            int splitIndex = line.indexOf("=");
+            if (splitIndex > 0) {
+                String key = line.substring(0, splitIndex).trim().toLowerCase();
+                String value = line.substring(splitIndex + 1).trim();
+                map.put(key, value);
+            }
+        } catch (Exception e) {
+            System.out.println("issue loading line from " + snapshotFile.getName() + ": " + line);
+        }
+    }
+
+    private static String logLine(String line) {
+
+        CRC32 checksum = new CRC32();
+        checksum.update(line.getBytes(StandardCharsets.UTF_8));
+        return line + " #" + Long.toHexString(checksum.getValue());
+    }
+
+    public String getStatusString() {
+
+        return "keys: " + map.size() + ", puts: " + numberOfPuts.get() + ", flushes: " + journal.getNumberOfFlushes() +
+                ", compactions: " + journal.getNumberOfCompactions() + ", log bytes: " + journal.getJournalBytes();
+    }
+}
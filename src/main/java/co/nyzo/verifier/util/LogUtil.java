@@ -2,29 +2,291 @@ package co.nyzo.verifier.util;
 
 import co.nyzo.verifier.RunMode;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 public class LogUtil {
 
+    // Log calls place an entry in a preallocated ring and return. A background thread formats the entries, prints
+    // them in batches, and keeps the most recent lines for status reporting. If the ring is full, the entry is dropped
+    // and counted, so a burst of logging never blocks the caller on output.
+    //
+    // Each entry has a level, and entries below the minimum level (preference log_level) are discarded before they
+    // reach the ring. Entries may also have a site, which is a name for the call site. Each site is limited to a
+    // number of lines per second (preference log_site_lines_per_second), and the number of suppressed lines is
+    // reported when the next second starts. Formatting of the arguments is deferred to the background thread, so
+    // arguments should not be modified after they are logged.
+    //
+    // The preferences used below load the Verifier class, which logs in its static block. The ring is assigned last,
+    // so a line logged while this class is being initialized is printed directly.
+
+    public enum Level {
+        Debug,
+        Info,
+        Warning,
+        Error
+    }
+
+    private static final Level minimumLevel = levelForName(PreferencesUtil.get("log_level"));
     private static final boolean logTimestamps = PreferencesUtil.getBoolean("log_timestamps", false);
+    private static final int linesPerSitePerSecond = PreferencesUtil.getInt("log_site_lines_per_second", 20);
+    private static final int ringCapacity = Integer.highestOneBit(Math.max(256,
+            PreferencesUtil.getInt("log_buffer_size", 8192)));
+    private static final int maximumLinesPerBatch = 1000;
 
-    // The "lines" field is initialized to null and assigned in the method below. If the field is statically initialized
-    // with an array object, this can cause an initialization race that can cause a null-pointer exception to be thrown
-    // when the array is accessed.
     private static final int numberOfLines = 100;
-    private static String[] lines = null;
+    private static final String[] lines = new String[numberOfLines];
     private static int lineIndex = 0;
 
+    private static final Map<String, SiteLimit> siteLimits = new ConcurrentHashMap<>();
+    private static final AtomicLong writeSequence = new AtomicLong(0L);
+    private static final AtomicLong readSequence = new AtomicLong(0L);
+    private static final AtomicLong numberOfLinesLogged = new AtomicLong(0L);
+    private static final AtomicLong numberOfLinesDropped = new AtomicLong(0L);
+    private static final AtomicLong numberOfLinesSuppressed = new AtomicLong(0L);
+    private static long numberOfDropsReported = 0L;
+
+    // A slot is published when its sequence is stored in the array, after the fields of its entry are written.
+    private static final AtomicLongArray publishedSequences = createPublishedSequences();
+    private static final Entry[] ring = createRing();
+
+    static {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    if (writeBatch() == 0) {
+                        ThreadUtil.sleep(10L);
+                    }
+                }
+            }
+        }, "LogUtil-writer");
+        thread.setDaemon(true);
+        thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }));
+    }
+
     public static void println(String line) {
+        log(Level.Info, null, line);
+    }
+
+    public static void log(Level level, String site, String format, Object... arguments) {
+
+        if (ring == null) {
+            // This class is being initialized. See above.
+            if (RunMode.getRunMode() != RunMode.Client) {
+                System.out.println(format);
+            }
+        } else if (level.ordinal() >= minimumLevel.ordinal() && (site == null || siteAllows(site))) {
+
+            // Claim a sequence. If the ring is full, the line is dropped.
+            boolean claimed = false;
+            long sequence = 0L;
+            while (!claimed) {
+                sequence = writeSequence.get();
+                if (sequence - readSequence.get() >= ringCapacity) {
+                    break;
+                }
+                claimed = writeSequence.compareAndSet(sequence, sequence + 1L);
+            }
+
+            if (claimed) {
+                int index = (int) (sequence & (ringCapacity - 1));
+                Entry entry = ring[index];
+                entry.timestamp = System.currentTimeMillis();
+                entry.level = level;
+                entry.format = format;
+                entry.arguments = arguments;
+                publishedSequences.set(index, sequence);
+                numberOfLinesLogged.incrementAndGet();
+            } else {
+                numberOfLinesDropped.incrementAndGet();
+            }
+        }
+    }
+
+    // Writes all lines that have been logged. This is used when the process exits.
+    public static void flush() {
+
+        while (writeBatch() > 0) { }
+    }
+
+    // Returns the most recent lines, oldest first.
+    public static List<String> tail() {
+
+        List<String> tail = new ArrayList<>();
+        synchronized (lines) {
+            for (int i = 0; i < numberOfLines; i++) {
+                String line = lines[(lineIndex + i) % numberOfLines];
+                if (line != null) {
+                    tail.add(line);
+                }
+            }
+        }
+
+        return tail;
+    }
+
+    public static String getStatusString() {
+
+        return "logged: " + numberOfLinesLogged.get() + ", dropped: " + numberOfLinesDropped.get() + ", suppressed: " +
+                numberOfLinesSuppressed.get() + ", queued: " + (writeSequence.get() - readSequence.get()) + "/" +
+                ringCapacity;
+    }
+
+    private static synchronized int writeBatch() {
+
+        // Take published entries in order until the ring is empty or the batch is full. A claimed slot that has not
+        // been published yet ends the batch.
+        StringBuilder output = new StringBuilder();
+        int numberOfEntries = 0;
+        boolean entryAvailable = true;
+        while (entryAvailable && numberOfEntries < maximumLinesPerBatch) {
+            long sequence = readSequence.get();
+            int index = (int) (sequence & (ringCapacity - 1));
+            entryAvailable = sequence < writeSequence.get() && publishedSequences.get(index) == sequence;
+            if (entryAvailable) {
+                Entry entry = ring[index];
+                long timestamp = entry.timestamp;
+                String line = format(entry);
+                entry.format = null;
+                entry.arguments = null;
+                readSequence.set(sequence + 1L);
+                numberOfEntries++;
+
+                appendLine(output, timestamp, line);
+            }
+        }
+
+        long numberOfDrops = numberOfLinesDropped.get();
+        if (numberOfDrops > numberOfDropsReported) {
+            appendLine(output, System.currentTimeMillis(), "[" + (numberOfDrops - numberOfDropsReported) +
+                    " log lines dropped]");
+            numberOfDropsReported = numberOfDrops;
+        }
+
+        if (output.length() > 0 && RunMode.getRunMode() != RunMode.Client) {
+            System.out.print(output);
+            System.out.flush();
+        }
+
+        return numberOfEntries;
+    }
+
+    private static void appendLine(StringBuilder output, long timestamp, String line) {
 
-        if (RunMode.getRunMode() != RunMode.Client) {
-            String timestamp = logTimestamps ? "[" + PrintUtil.printTimestamp(System.currentTimeMillis()) + "]: " : "";
-            System.out.println(timestamp + line);
+        if (logTimestamps) {
+            output.append("[").append(PrintUtil.printTimestamp(timestamp)).append("]: ");
         }
+        output.append(line).append('\n');
 
-        // See above for why assignment here is necessary.
-        if (lines == null) {
-            lines = new String[numberOfLines];
+        synchronized (lines) {
+            lines[lineIndex] = line;
+            lineIndex = (lineIndex + 1) % numberOfLines;
         }
-        lines[lineIndex] = line;
-        lineIndex = (lineIndex + 1) % numberOfLines;
+    }
+
+    private static String format(Entry entry) {
+
+        String line;
+        try {
+            line = entry.arguments == null || entry.arguments.length == 0 ? entry.format :
+                    String.format(entry.format, entry.arguments);
+        } catch (Exception e) {
+            line = entry.format + " [format exception: " + PrintUtil.printException(e) + "]";
+        }
+
+        if (entry.level == Level.Warning || entry.level == Level.Error) {
+            line = entry.level.name().toUpperCase() + ": " + line;
+        }
+
+        return line;
+    }
+
+    private static boolean siteAllows(String site) {
+
+        SiteLimit limit = siteLimits.get(site);
+        if (limit == null) {
+            siteLimits.putIfAbsent(site, new SiteLimit());
+            limit = siteLimits.get(site);
+        }
+
+        // When a new second starts, reset the count and report the lines that were suppressed in the previous
+        // second.
+        long second = System.currentTimeMillis() / 1000L;
+        long windowSecond = limit.windowSecond.get();
+        if (windowSecond != second && limit.windowSecond.compareAndSet(windowSecond, second)) {
+            limit.count.set(0);
+            long suppressed = limit.suppressed.getAndSet(0L);
+            if (suppressed > 0L) {
+                log(Level.Info, null, "[suppressed %d lines from %s]", suppressed, site);
+            }
+        }
+
+        boolean allowed = limit.count.incrementAndGet() <= linesPerSitePerSecond;
+        if (!allowed) {
+            limit.suppressed.incrementAndGet();
+            numberOfLinesSuppressed.incrementAndGet();
+        }
+
+        return allowed;
+    }
+
+    private static Level levelForName(String name) {
+
+        Level level = Level.Info;
+        for (Level value : Level.values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                level = value;
+            }
+        }
+
+        return level;
+    }
+
+    private static AtomicLongArray createPublishedSequences() {
+
+        AtomicLongArray sequences = new AtomicLongArray(ringCapacity);
+        for (int i = 0; i < ringCapacity; i++) {
+            sequences.set(i, -1L);
+        }
+
+        return sequences;
+    }
+
+    private static Entry[] createRing() {
+
+        Entry[] ring = new Entry[ringCapacity];
+        for (int i = 0; i < ringCapacity; i++) {
+            ring[i] = new Entry();
+        }
+
+        return ring;
+    }
+
+    private static class Entry {
+
+        private long timestamp;
+        private Level level;
+        private String format;
+        private Object[] arguments;
+    }
+
+    private static class SiteLimit {
+
+        private final AtomicLong windowSecond = new AtomicLong(0L);
+        private final AtomicInteger count = new AtomicInteger(0);
+        private final AtomicLong suppressed = new AtomicLong(0L);
     }
 }
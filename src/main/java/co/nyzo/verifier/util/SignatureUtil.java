@@ -2,6 +2,8 @@ package co.nyzo.verifier.util;
 
 import co.nyzo.verifier.ByteUtil;
 import co.nyzo.verifier.KeyUtil;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
 import net.i2p.crypto.eddsa.EdDSAEngine;
 import net.i2p.crypto.eddsa.EdDSASecurityProvider;
 import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
@@ -19,6 +21,9 @@ public class SignatureUtil {
 
     public static final EdDSAParameterSpec spec;
 
+    private static final LatencyHistogram verificationHistogram =
+            MetricsRegistry.histogram("nyzo_signature_verification_seconds", "time to verify a signature");
+
     static {
         Security.addProvider(new EdDSASecurityProvider());
         spec = EdDSANamedCurveTable.getByName("Ed25519");
@@ -57,6 +62,7 @@ public class SignatureUtil {
     public static boolean signatureIsValid(byte[] signatureBytes, byte[] signedBytes, byte[] publicIdentifier,
                                            int signedBytesStart, int signedBytesEnd) {
 
+        long startNanoseconds = System.nanoTime();
         boolean signatureIsValid;
 
         try {
@@ -86,6 +92,7 @@ public class SignatureUtil {
             signatureIsValid = false;
         }
 
+        verificationHistogram.recordSince(startNanoseconds);
         return signatureIsValid;
     }
 }
@@ -0,0 +1,182 @@
+package co.nyzo.verifier.util;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SnapshotJournal {
+
+    // This class manages the files of a store that is persisted as a snapshot and a journal of the changes since the
+    // snapshot. The owner formats the bytes and reads the files on load; this class appends to the journal, replaces
+    // the snapshot, and runs the background thread that flushes the owner's queued changes. KeyValueLog and
+    // BinaryRecordStore are both built on it.
+
+    private final File snapshotFile;
+    private final File journalFile;
+
+    private RandomAccessFile journalWriter = null;
+    private long journalBytes = 0L;
+    private long truncationLength = -1L;
+    private final AtomicBoolean flushThreadStarted = new AtomicBoolean(false);
+
+    private final AtomicLong numberOfFlushes = new AtomicLong(0L);
+    private final AtomicLong numberOfCompactions = new AtomicLong(0L);
+
+    public SnapshotJournal(File snapshotFile, File journalFile) {
+
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+    }
+
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    // Appends the bytes to the journal and forces them to disk. Returns false if the bytes could not be written, in
+    // which case the owner should queue the changes again.
+    public synchronized boolean append(byte[] bytes) {
+
+        // A failed write may leave part of the bytes in the journal. Replay stops at the first incomplete entry, so
+        // entries appended after that partial entry would be lost. The journal is truncated to its length before the
+        // failed write, and nothing is appended until the truncation succeeds.
+        boolean successful = false;
+        try {
+            if (truncationLength >= 0L) {
+                truncate(truncationLength);
+                truncationLength = -1L;
+            }
+            if (journalWriter == null) {
+                journalWriter = new RandomAccessFile(journalFile, "rw");
+                journalWriter.seek(journalWriter.length());
+            }
+            long startLength = journalWriter.getFilePointer();
+            try {
+                journalWriter.write(bytes);
+                journalWriter.getChannel().force(false);
+            } catch (Exception e) {
+                truncationLength = startLength;
+                throw e;
+            }
+            journalBytes += bytes.length;
+            numberOfFlushes.incrementAndGet();
+            successful = true;
+        } catch (Exception e) {
+            LogUtil.println("unable to append to " + journalFile + ": " + PrintUtil.printException(e));
+            closeJournalWriter();
+            if (truncationLength >= 0L) {
+                try {
+                    truncate(truncationLength);
+                    truncationLength = -1L;
+                } catch (Exception truncationException) {
+                    LogUtil.println("unable to truncate " + journalFile + ": " +
+                            PrintUtil.printException(truncationException));
+                }
+            }
+        }
+
+        return successful;
+    }
+
+    private void truncate(long length) throws Exception {
+
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            if (file.length() > length) {
+                file.setLength(length);
+                file.getChannel().force(true);
+            }
+        }
+    }
+
+    // Replaces the snapshot with the bytes and empties the journal. Returns false if the snapshot could not be
+    // written.
+    public synchronized boolean writeSnapshot(byte[] bytes) {
+
+        // The snapshot is forced to disk before it replaces the previous snapshot, and the journal is emptied only
+        // after the snapshot is in place. If the process stops between the two, the journal is replayed over a
+        // snapshot that already contains it, which produces the same data.
+        boolean successful = false;
+        Path temporaryPath = Paths.get(snapshotFile.getAbsolutePath() + "_temp");
+        try {
+            Files.deleteIfExists(temporaryPath);
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryPath, Paths.get(snapshotFile.getAbsolutePath()), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+
+            closeJournalWriter();
+            journalWriter = new RandomAccessFile(journalFile, "rw");
+            journalWriter.setLength(0L);
+            journalWriter.getChannel().force(true);
+            journalBytes = 0L;
+            truncationLength = -1L;
+            numberOfCompactions.incrementAndGet();
+            successful = true;
+        } catch (Exception e) {
+            LogUtil.println("unable to write " + snapshotFile + ": " + PrintUtil.printException(e));
+        }
+
+        return successful;
+    }
+
+    public synchronized long getJournalBytes() {
+        return journalBytes;
+    }
+
+    public long getNumberOfFlushes() {
+        return numberOfFlushes.get();
+    }
+
+    public long getNumberOfCompactions() {
+        return numberOfCompactions.get();
+    }
+
+    // Starts a thread that calls the flush task once per interval. Only the first call starts a thread.
+    public void startFlushThread(final long intervalMilliseconds, final Runnable flushTask) {
+
+        // The flush thread is a daemon, so it does not keep scripts running, and a shutdown hook writes the changes
+        // that are queued when the process exits.
+        if (flushThreadStarted.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        ThreadUtil.sleep(intervalMilliseconds);
+                        try {
+                            flushTask.run();
+                        } catch (Exception e) {
+                            LogUtil.println("exception flushing " + journalFile + ": " + PrintUtil.printException(e));
+                        }
+                    }
+                }
+            }, "SnapshotJournal-" + snapshotFile.getName());
+            thread.setDaemon(true);
+            thread.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(flushTask));
+        }
+    }
+
+    private void closeJournalWriter() {
+
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (Exception ignored) { }
+            journalWriter = null;
+        }
+    }
+}
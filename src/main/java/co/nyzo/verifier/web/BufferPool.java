@@ -0,0 +1,44 @@
+package co.nyzo.verifier.web;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool {
+
+    // This is a pool of fixed-size byte arrays for rendering and sending responses. Arrays are returned to the pool
+    // after they have been written, so steady-state rendering does not allocate new output buffers. The pool is
+    // bounded; arrays released to a full pool are left for garbage collection.
+
+    public static final int bufferSize = 16384;
+    private static final int maximumPoolSize = 256;
+
+    private static final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger poolSize = new AtomicInteger(0);
+
+    public static byte[] acquire() {
+
+        byte[] buffer = pool.poll();
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+        } else {
+            poolSize.decrementAndGet();
+        }
+
+        return buffer;
+    }
+
+    public static void release(byte[] buffer) {
+
+        // Only arrays of the pool size are kept. The size is reserved before the array is offered, and the reservation
+        // is returned if the pool is full.
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+
+        if (poolSize.incrementAndGet() <= maximumPoolSize) {
+            pool.offer(buffer);
+        } else {
+            poolSize.decrementAndGet();
+        }
+    }
+}
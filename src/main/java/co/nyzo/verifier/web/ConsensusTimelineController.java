@@ -0,0 +1,93 @@
+package co.nyzo.verifier.web;
+
+import co.nyzo.verifier.util.ConsensusTimeline;
+import co.nyzo.verifier.web.elements.*;
+
+import java.util.List;
+
+public class ConsensusTimelineController {
+
+    // This page shows the percentiles of the consensus timeline over the last N heights (query parameter "heights",
+    // default 100) and the timelines of the most recent heights. All times are milliseconds after the previous height
+    // was frozen.
+
+    public static final Endpoint pageEndpoint = new Endpoint("/timeline");
+
+    private static final int defaultNumberOfHeights = 100;
+    private static final int numberOfRecentHeights = 20;
+
+    public static EndpointResponse page(EndpointRequest request) {
+
+        int numberOfHeights = defaultNumberOfHeights;
+        try {
+            numberOfHeights = Integer.parseInt(request.getQueryParameters().getOrDefault("heights",
+                    defaultNumberOfHeights + ""));
+        } catch (Exception ignored) { }
+        numberOfHeights = Math.max(1, Math.min(ConsensusTimeline.getCapacity() - 1, numberOfHeights));
+
+        // Make the HTML page.
+        Html html = (Html) new Html().attr("lang", "en");
+        html.add(new Head().addStandardMetadata());
+        Body body = (Body) html.add(new Body().attr("style", "font-family: sans-serif; text-align: center"));
+        body.add(new Style("table { margin: 1rem auto; border-collapse: collapse; } " +
+                "td, th { padding: 0.2rem 0.6rem; text-align: right; border-bottom: 1px solid #ddd; } " +
+                "td:first-child, th:first-child { text-align: left; }"));
+
+        List<ConsensusTimeline.HeightTimeline> timelines = ConsensusTimeline.recentTimelines(numberOfHeights + 1);
+        body.add(new H3("Consensus timeline, last " + Math.max(0, timelines.size() - 1) + " heights"));
+        body.add(new P("milliseconds after the previous height was frozen"));
+        body.add(percentileTable(timelines));
+        body.add(recentHeightTable(timelines));
+
+        return new EndpointResponse(html);
+    }
+
+    private static HtmlElement percentileTable(List<ConsensusTimeline.HeightTimeline> timelines) {
+
+        double[] percentiles = ConsensusTimeline.getPercentiles();
+        StringBuilder table = new StringBuilder("<table><tr><th>step</th>");
+        for (double percentile : percentiles) {
+            table.append("<th>").append(ConsensusTimeline.percentileLabel(percentile)).append("</th>");
+        }
+        table.append("<th>max</th><th>heights</th></tr>");
+
+        for (ConsensusTimeline.Event event : ConsensusTimeline.Event.values()) {
+            long[] offsets = ConsensusTimeline.offsets(timelines, event);
+            table.append("<tr><td>").append(event.getDescription()).append("</td>");
+            for (double percentile : percentiles) {
+                cell(table, ConsensusTimeline.percentile(offsets, percentile));
+            }
+            cell(table, ConsensusTimeline.percentile(offsets, 1.0));
+            table.append("<td>").append(offsets.length).append("</td></tr>");
+        }
+        table.append("</table>");
+
+        return new RawHtml(table.toString());
+    }
+
+    private static HtmlElement recentHeightTable(List<ConsensusTimeline.HeightTimeline> timelines) {
+
+        StringBuilder table = new StringBuilder("<table><tr><th>height</th>");
+        for (ConsensusTimeline.Event event : ConsensusTimeline.Event.values()) {
+            table.append("<th>").append(event.getDescription()).append("</th>");
+        }
+        table.append("<th>vote changes</th><th>balance-list ms</th></tr>");
+
+        for (int i = 0; i < timelines.size() - 1 && i < numberOfRecentHeights; i++) {
+            ConsensusTimeline.HeightTimeline timeline = timelines.get(i);
+            table.append("<tr><td>").append(timeline.getHeight()).append("</td>");
+            for (ConsensusTimeline.Event event : ConsensusTimeline.Event.values()) {
+                cell(table, timeline.offset(timelines.get(i + 1), event));
+            }
+            table.append("<td>").append(timeline.getCount(ConsensusTimeline.Event.VoteChanged)).append("</td>");
+            table.append("<td>").append(timeline.getBalanceListNanoseconds() / 1000000L).append("</td></tr>");
+        }
+        table.append("</table>");
+
+        return new RawHtml(table.toString());
+    }
+
+    private static void cell(StringBuilder table, long offset) {
+        table.append("<td>").append(ConsensusTimeline.printOffset(offset)).append("</td>");
+    }
+}
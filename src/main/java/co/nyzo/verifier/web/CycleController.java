@@ -5,7 +5,6 @@ import co.nyzo.verifier.BlockManager;
 import co.nyzo.verifier.web.elements.*;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -33,7 +32,7 @@ public class CycleController {
         // Add the Ajax update for the cycle div to the head of the document.
         head.add(cycleDiv.ajaxUpdate(updateEndpoint.getPath(), 5000));
 
-        return new EndpointResponse(html.renderByteArray());
+        return new EndpointResponse(html);
     }
 
     private static HtmlElement divContent() {
@@ -78,6 +77,6 @@ public class CycleController {
 
     public static EndpointResponse update(EndpointRequest request) {
 
-        return new EndpointResponse(divContent().render().getBytes(StandardCharsets.UTF_8));
+        return new EndpointResponse(divContent());
     }
 }
@@ -1,5 +1,6 @@
 package co.nyzo.verifier.web;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class EndpointRequest {
@@ -8,13 +9,20 @@ public class EndpointRequest {
     private Map<String, String> queryParameters;
     private Map<String, String> postParameters;
     private byte[] sourceIpAddress;
+    private Map<String, String> headers;  // keys are lowercase
 
     public EndpointRequest(Endpoint endpoint, Map<String, String> queryParameters, Map<String, String> postParameters,
                            byte[] sourceIpAddress) {
+        this(endpoint, queryParameters, postParameters, sourceIpAddress, new HashMap<String, String>());
+    }
+
+    public EndpointRequest(Endpoint endpoint, Map<String, String> queryParameters, Map<String, String> postParameters,
+                           byte[] sourceIpAddress, Map<String, String> headers) {
         this.endpoint = endpoint;
         this.queryParameters = queryParameters;
         this.postParameters = postParameters;
         this.sourceIpAddress = sourceIpAddress;
+        this.headers = headers;
     }
 
     public Endpoint getEndpoint() {
@@ -32,4 +40,8 @@ public class EndpointRequest {
     public byte[] getSourceIpAddress() {
         return sourceIpAddress;
     }
+
+    public String getHeader(String name) {
+        return headers.getOrDefault(name.toLowerCase(), "");
+    }
 }
@@ -1,5 +1,13 @@
 package co.nyzo.verifier.web;
 
+import co.nyzo.verifier.web.elements.HtmlElement;
+import co.nyzo.verifier.web.elements.HtmlWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -20,6 +28,10 @@ public class EndpointResponse {
     public static final String contentTypeDefault = contentTypeHtml;
 
     private byte[] content;
+    private HtmlElement element;
+    private Path filePath;
+    private long fileOffset;
+    private long fileLength;
     private Map<String, String> headers = new HashMap<>();
     private HttpStatusCode statusCode;
 
@@ -37,10 +49,76 @@ public class EndpointResponse {
         this.statusCode = statusCode;
     }
 
+    // An HTML response is not rendered until it is needed. If it is sent without being stored, it can be streamed to
+    // the connection without ever being rendered to a single array.
+    public EndpointResponse(HtmlElement element) {
+        this.element = element;
+        headers.put("Content-type", contentTypeHtml);
+        this.statusCode = HttpStatusCode.Ok200;
+    }
+
+    // A file response is not read into memory. The web listener sends the region of the file directly to the
+    // connection when it can.
+    public EndpointResponse(Path filePath, long fileOffset, long fileLength, String contentType,
+                            HttpStatusCode statusCode) {
+        this.filePath = filePath;
+        this.fileOffset = fileOffset;
+        this.fileLength = fileLength;
+        headers.put("Content-type", contentType);
+        this.statusCode = statusCode;
+    }
+
     public byte[] getContent() {
+        if (content == null && element != null) {
+            content = HtmlWriter.renderByteArray(element);
+        } else if (content == null && filePath != null) {
+            content = readFileRegion();
+        }
         return content;
     }
 
+    public HtmlElement getElement() {
+        return element;
+    }
+
+    public boolean isStreamed() {
+        return content == null && element != null;
+    }
+
+    public boolean isFileRegion() {
+        return content == null && filePath != null;
+    }
+
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    public long getFileOffset() {
+        return fileOffset;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    private byte[] readFileRegion() {
+
+        byte[] result;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) fileLength);
+            while (buffer.hasRemaining() && channel.read(buffer, fileOffset + buffer.position()) > 0) { }
+            if (buffer.hasRemaining()) {
+                throw new IOException("file is shorter than expected");
+            }
+            result = buffer.array();
+        } catch (Exception e) {
+            result = new byte[0];
+            statusCode = HttpStatusCode.NotFound404;
+        }
+
+        return result;
+    }
+
     public Set<String> getHeaderNames() {
         return headers.keySet();
     }
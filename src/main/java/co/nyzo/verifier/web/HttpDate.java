@@ -0,0 +1,65 @@
+package co.nyzo.verifier.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+public class HttpDate {
+
+    // The Date header has a resolution of one second, so it is formatted at most once per second and shared by all
+    // responses in that second. The cached entry is immutable, so it can be replaced without synchronization.
+
+    private static CachedHeader cachedHeader = new CachedHeader(-1L, new byte[0]);
+
+    // This is the IMF-fixdate format preferred by RFC 7231. Unlike SimpleDateFormat, the formatter is thread-safe.
+    private static final DateTimeFormatter imfFixdateFormatter =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    public static byte[] headerBytes() {
+
+        long second = System.currentTimeMillis() / 1000L;
+        CachedHeader header = cachedHeader;
+        if (header.second != second) {
+            header = new CachedHeader(second, headerBytes(second));
+            cachedHeader = header;
+        }
+
+        return header.bytes;
+    }
+
+    // Returns the Date header line for the second. The day of the month is always two digits, as IMF-fixdate
+    // requires.
+    public static byte[] headerBytes(long second) {
+        return ("Date: " + format(second * 1000L) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static String format(long timestamp) {
+        return imfFixdateFormatter.format(Instant.ofEpochMilli(timestamp));
+    }
+
+    // Returns the timestamp for the date string, or -1 if the string cannot be parsed.
+    public static long parse(String date) {
+
+        long timestamp = -1L;
+        try {
+            timestamp = ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                    .toEpochMilli();
+        } catch (Exception ignored) { }
+
+        return timestamp;
+    }
+
+    private static class CachedHeader {
+
+        private final long second;
+        private final byte[] bytes;
+
+        private CachedHeader(long second, byte[] bytes) {
+            this.second = second;
+            this.bytes = bytes;
+        }
+    }
+}
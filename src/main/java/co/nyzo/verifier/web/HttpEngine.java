@@ -0,0 +1,579 @@
+package co.nyzo.verifier.web;
+
+import co.nyzo.verifier.util.LogUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+import co.nyzo.verifier.util.PrintUtil;
+import co.nyzo.verifier.util.UpdateUtil;
+import co.nyzo.verifier.web.elements.HtmlElement;
+import co.nyzo.verifier.web.elements.HtmlWriter;
+import co.nyzo.verifier.web.elements.OutputSink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HttpEngine {
+
+    // This is a non-blocking HTTP/1.1 engine. A single selector thread accepts connections and performs all reads and
+    // writes. When a complete request has been parsed, it is passed to a bounded pool of worker threads, which call
+    // the endpoint response providers. Each connection has at most one request in a worker at a time, and the next
+    // pipelined request is not parsed until the previous response has been written, so responses are always sent in
+    // request order.
+    //
+    // A streamed HTML response is rendered by the worker after its header has been passed to the selector thread.
+    // Each chunk is passed to the connection as soon as the writer fills a buffer, and the selector thread writes the
+    // chunks as the socket accepts them. The number of chunks waiting for a connection is bounded, so the worker waits
+    // for a slow client instead of holding the whole page in memory.
+
+    private static final int initialBufferSize = 4096;
+    private static final long selectTimeout = 250L;
+    private static final long maximumTransferLength = 1024L * 1024L;
+    private static final int maximumPendingChunks = 4;
+
+    private final int port;
+    private final long idleTimeout;
+    private final ThreadPoolExecutor workerPool;
+    private final ConcurrentLinkedQueue<Connection> completedConnections = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Connection> streamingConnections = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private long lastIdleCheckTimestamp = 0L;
+
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final AtomicLong numberOfRequests = new AtomicLong(0L);
+    private final AtomicLong numberOfRejectedRequests = new AtomicLong(0L);
+
+    public HttpEngine(int port, long idleTimeout) {
+
+        this.port = port;
+        this.idleTimeout = idleTimeout;
+
+        // When the pool and its queue are both full, requests are rejected with a 503 response instead of consuming
+        // more memory and threads.
+        int numberOfWorkers = PreferencesUtil.getInt("web_listener_worker_threads", 32);
+        int queueCapacity = PreferencesUtil.getInt("web_listener_worker_queue_capacity", 1000);
+        this.workerPool = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity));
+        this.workerPool.allowCoreThreadTimeOut(true);
+    }
+
+    public int start() throws IOException {
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!UpdateUtil.shouldTerminate() && !stopped.get()) {
+                    try {
+                        selectAndProcess(serverChannel);
+                    } catch (Exception e) {
+                        LogUtil.println("exception in HttpEngine loop: " + PrintUtil.printException(e));
+                    }
+                }
+
+                try {
+                    serverChannel.close();
+                    selector.close();
+                } catch (Exception ignored) { }
+                workerPool.shutdown();
+            }
+        }, "HttpEngine-selector").start();
+
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // Stops the selector thread and the workers without terminating the process.
+    public void stop() {
+        stopped.set(true);
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    public long getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    public long getNumberOfRejectedRequests() {
+        return numberOfRejectedRequests.get();
+    }
+
+    public int getActiveWorkerCount() {
+        return workerPool.getActiveCount();
+    }
+
+    private void selectAndProcess(ServerSocketChannel serverChannel) throws IOException {
+
+        selector.select(selectTimeout);
+
+        // Queue responses that the workers have finished.
+        Connection completed;
+        while ((completed = completedConnections.poll()) != null) {
+            completed.responseReady();
+        }
+
+        // Write the chunks of streamed responses that the workers have rendered.
+        Connection streaming;
+        while ((streaming = streamingConnections.poll()) != null) {
+            streaming.chunksReady();
+        }
+
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                accept(serverChannel);
+            } else {
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                } catch (Exception ignored) {
+                    connection.close();
+                }
+            }
+        }
+
+        // Close idle connections. A connection that is waiting for a worker or writing a response is not idle. This
+        // check is limited to once per select timeout, so its cost does not grow with the request rate.
+        long currentTimestamp = System.currentTimeMillis();
+        if (currentTimestamp - lastIdleCheckTimestamp >= selectTimeout) {
+            lastIdleCheckTimestamp = currentTimestamp;
+            long idleThreshold = currentTimestamp - idleTimeout;
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                if (key.attachment() instanceof Connection) {
+                    Connection connection = (Connection) key.attachment();
+                    if (connection.isIdle() && connection.lastActivityTimestamp < idleThreshold) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            byte[] ipAddress = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getAddress();
+            if (WebListener.admitConnection(ipAddress)) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Connection connection = new Connection(channel, ipAddress);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } else {
+                try {
+                    channel.socket().setSoLinger(true, 0);
+                    channel.close();
+                } catch (Exception ignored) { }
+            }
+        }
+    }
+
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final byte[] ipAddress;
+        private final HttpRequestParser parser = new HttpRequestParser();
+        private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(initialBufferSize);  // always in write mode
+        private boolean requestInProgress = false;
+        private boolean inputClosed = false;
+        private boolean closeAfterWrite = false;
+        private boolean closed = false;
+        private long lastActivityTimestamp = System.currentTimeMillis();
+
+        // These are set by the worker and read by the selector thread after the connection is taken from the
+        // completed queue. The queue provides the necessary memory visibility.
+        private WebListener.ResponseParts response;
+        private ChunkStream pendingStream;
+        private boolean keepAlive;
+
+        // This is the streamed content that follows the write queue, if any. Its chunks are moved to the write queue
+        // as they are rendered.
+        private ChunkStream stream;
+
+        // These are the pooled arrays used by the chunks in the write queue. They are released to the buffer pool when
+        // the write queue has been written or the connection is closed.
+        private List<byte[]> writingPooledArrays = new ArrayList<>();
+
+        // This is the file region that follows the write queue, if any. It is sent with FileChannel.transferTo(),
+        // so the file content is never copied into the heap.
+        private FileChannel fileChannel;
+        private long filePosition;
+        private long fileRemaining;
+
+        private Connection(SocketChannel channel, byte[] ipAddress) {
+            this.channel = channel;
+            this.ipAddress = ipAddress;
+        }
+
+        private boolean isIdle() {
+            return !requestInProgress && writeQueue.isEmpty() && fileChannel == null && stream == null;
+        }
+
+        private void read() throws IOException {
+
+            // Grow the buffer if it is full. The parser limits the size of a request, so the buffer never needs to be
+            // larger than the largest request plus the read size.
+            if (!readBuffer.hasRemaining()) {
+                if (readBuffer.capacity() >= HttpRequestParser.maximumRequestLength) {
+                    // Stop reading until the pending request has been processed.
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    return;
+                }
+                ByteBuffer largerBuffer = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2,
+                        HttpRequestParser.maximumRequestLength));
+                readBuffer.flip();
+                largerBuffer.put(readBuffer);
+                readBuffer = largerBuffer;
+            }
+
+            int bytesRead = channel.read(readBuffer);
+            if (bytesRead < 0) {
+                // The client has finished sending. Any requests already received are still answered.
+                inputClosed = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                if (isIdle()) {
+                    processNextRequest();
+                }
+            } else if (bytesRead > 0) {
+                lastActivityTimestamp = System.currentTimeMillis();
+                if (isIdle()) {
+                    processNextRequest();
+                }
+            }
+        }
+
+        private void processNextRequest() {
+
+            if (closed) {
+                return;
+            }
+
+            readBuffer.flip();
+            HttpRequest request = parser.parse(readBuffer);
+            readBuffer.compact();
+
+            if (request != null) {
+                requestInProgress = true;
+                numberOfRequests.incrementAndGet();
+                try {
+                    workerPool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            WebListener.ResponseParts response;
+                            try {
+                                response = WebListener.responseParts(request, ipAddress);
+                            } catch (Exception e) {
+                                LogUtil.println("exception in HttpEngine worker: " + PrintUtil.printException(e));
+                                response = WebListener.errorResponseParts(HttpStatusCode.ServiceUnavailable503);
+                            }
+                            ChunkStream stream = response.element == null ? null : new ChunkStream();
+                            Connection.this.response = response;
+                            Connection.this.pendingStream = stream;
+                            Connection.this.keepAlive = request.isKeepAlive();
+                            completedConnections.offer(Connection.this);
+                            selector.wakeup();
+
+                            if (stream != null) {
+                                renderStream(response.element, stream);
+                            }
+                        }
+                    });
+                } catch (Exception ignored) {
+                    // The worker pool is saturated.
+                    numberOfRejectedRequests.incrementAndGet();
+                    requestInProgress = false;
+                    queueResponse(WebListener.errorResponseParts(HttpStatusCode.ServiceUnavailable503), false);
+                }
+            } else if (parser.getErrorStatusCode() != null) {
+                queueResponse(WebListener.errorResponseParts(parser.getErrorStatusCode()), false);
+            } else if (inputClosed) {
+                // No complete request remains, and no more data will arrive.
+                close();
+            } else if ((key.interestOps() & SelectionKey.OP_READ) == 0) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        private void responseReady() {
+
+            // The fields are cleared before queueing, as queueing may start the worker for the next request.
+            WebListener.ResponseParts response = this.response;
+            ChunkStream stream = pendingStream;
+            this.response = null;
+            pendingStream = null;
+            requestInProgress = false;
+            if (closed) {
+                cancelStream(stream);
+            } else {
+                this.stream = stream;
+                queueResponse(response, keepAlive);
+            }
+        }
+
+        private void chunksReady() {
+
+            if (!closed && stream != null) {
+                try {
+                    write();
+                } catch (Exception ignored) {
+                    close();
+                }
+            }
+        }
+
+        private void queueResponse(WebListener.ResponseParts response, boolean keepAlive) {
+
+            for (ByteBuffer buffer : response.buffers) {
+                writeQueue.add(buffer);
+            }
+            if (!keepAlive) {
+                closeAfterWrite = true;
+            }
+
+            try {
+                if (response.filePath != null) {
+                    fileChannel = FileChannel.open(response.filePath, StandardOpenOption.READ);
+                    filePosition = response.fileOffset;
+                    fileRemaining = response.fileLength;
+                }
+                write();
+            } catch (Exception ignored) {
+                // The header has been queued, so the connection cannot continue without the content.
+                close();
+            }
+        }
+
+        private void write() throws IOException {
+
+            // Write until the socket is full or nothing more is ready. When the write queue is empty, all of its pooled
+            // arrays have been written, and the chunks that the worker has rendered since the last write are taken.
+            boolean tookChunks = true;
+            while (tookChunks) {
+                if (!writeQueue.isEmpty()) {
+                    channel.write(writeQueue.toArray(new ByteBuffer[writeQueue.size()]));
+                    while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+                        writeQueue.removeFirst();
+                    }
+                    lastActivityTimestamp = System.currentTimeMillis();
+                }
+
+                tookChunks = false;
+                if (writeQueue.isEmpty()) {
+                    releasePooledArrays(writingPooledArrays);
+                    tookChunks = takeChunks();
+                }
+            }
+
+            if (writeQueue.isEmpty() && fileChannel != null) {
+                transferFile();
+            }
+
+            if (writeQueue.isEmpty() && fileChannel == null && stream == null) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closeAfterWrite) {
+                    close();
+                } else if (!requestInProgress) {
+                    // Continue with the next pipelined request, if one has been received.
+                    processNextRequest();
+                }
+            } else if (writeQueue.isEmpty() && fileChannel == null) {
+                // The worker has not yet rendered the next chunk. It wakes the selector when the chunk is ready.
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private boolean takeChunks() throws IOException {
+
+            boolean tookChunks = false;
+            Chunk chunk;
+            while (stream != null && (chunk = stream.chunks.poll()) != null) {
+                writeQueue.addAll(Arrays.asList(chunk.buffers));
+                if (chunk.pooledArray != null) {
+                    writingPooledArrays.add(chunk.pooledArray);
+                }
+                if (chunk.last) {
+                    stream = null;
+                }
+                tookChunks = true;
+            }
+
+            // The header has been sent, so a failed rendering can only be reported by closing the connection. The
+            // failure is marked after the last chunk is offered, so all chunks rendered before the failure are sent.
+            if (!tookChunks && stream != null && stream.failed.get() && stream.chunks.isEmpty()) {
+                throw new IOException("streamed response failed");
+            }
+
+            return tookChunks;
+        }
+
+        // This is called on the worker thread.
+        private void renderStream(HtmlElement element, ChunkStream stream) {
+
+            HtmlWriter writer = new HtmlWriter(new OutputSink() {
+                @Override
+                public void write(byte[] array, int offset, int length, boolean pooled) throws IOException {
+                    offerChunk(stream, new Chunk(WebListener.chunkBuffers(array, offset, length),
+                            pooled ? array : null, false));
+                }
+            });
+
+            try {
+                element.render(writer);
+                writer.close();
+                offerChunk(stream, new Chunk(new ByteBuffer[] { WebListener.lastChunkBuffer() }, null, true));
+            } catch (Exception ignored) {
+                stream.failed.set(true);
+                streamingConnections.offer(this);
+                selector.wakeup();
+            }
+        }
+
+        // This is called on the worker thread. The selector thread does not close a connection while a response is
+        // being sent, so the wait for a slow client is limited by the idle timeout here.
+        private void offerChunk(ChunkStream stream, Chunk chunk) throws IOException {
+
+            boolean offered = false;
+            try {
+                offered = !stream.cancelled.get() && stream.chunks.offer(chunk, idleTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) { }
+
+            if (!offered) {
+                if (chunk.pooledArray != null) {
+                    BufferPool.release(chunk.pooledArray);
+                }
+                throw new IOException("chunk was not taken");
+            }
+
+            streamingConnections.offer(this);
+            selector.wakeup();
+        }
+
+        private void close() {
+
+            if (!closed) {
+                closed = true;
+                key.cancel();
+                try {
+                    channel.close();
+                } catch (Exception ignored) { }
+                WebListener.releaseConnection(ipAddress);
+                writeQueue.clear();
+                releasePooledArrays(writingPooledArrays);
+                cancelStream(stream);
+                stream = null;
+                closeFile();
+            }
+        }
+
+        private void transferFile() throws IOException {
+
+            // Transfer until the socket buffer is full or the region is complete. A transfer of zero bytes means the
+            // socket is not ready, unless the file has been truncated since the response was built.
+            long transferred;
+            do {
+                transferred = fileChannel.transferTo(filePosition, Math.min(fileRemaining, maximumTransferLength),
+                        channel);
+                filePosition += transferred;
+                fileRemaining -= transferred;
+            } while (transferred > 0 && fileRemaining > 0);
+
+            if (fileRemaining == 0) {
+                closeFile();
+            } else if (filePosition >= fileChannel.size()) {
+                throw new IOException("file is shorter than expected");
+            }
+            lastActivityTimestamp = System.currentTimeMillis();
+        }
+
+        private void closeFile() {
+
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                } catch (Exception ignored) { }
+                fileChannel = null;
+            }
+        }
+    }
+
+    private static void cancelStream(ChunkStream stream) {
+
+        // A chunk offered by the worker after the queue is drained is left for garbage collection, as the pool does not
+        // require arrays to be returned.
+        if (stream != null) {
+            stream.cancelled.set(true);
+            Chunk chunk;
+            while ((chunk = stream.chunks.poll()) != null) {
+                if (chunk.pooledArray != null) {
+                    BufferPool.release(chunk.pooledArray);
+                }
+            }
+        }
+    }
+
+    private static void releasePooledArrays(List<byte[]> pooledArrays) {
+
+        for (byte[] array : pooledArrays) {
+            BufferPool.release(array);
+        }
+        pooledArrays.clear();
+    }
+
+    private static class ChunkStream {
+
+        private final ArrayBlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(maximumPendingChunks);
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+    }
+
+    private static class Chunk {
+
+        private final ByteBuffer[] buffers;
+        private final byte[] pooledArray;
+        private final boolean last;
+
+        private Chunk(ByteBuffer[] buffers, byte[] pooledArray, boolean last) {
+            this.buffers = buffers;
+            this.pooledArray = pooledArray;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package co.nyzo.verifier.web;
+
+import java.util.Map;
+
+public class HttpRequest {
+
+    private HttpMethod method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;  // keys are lowercase
+    private byte[] body;
+
+    public HttpRequest(HttpMethod method, String target, String version, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isHttp10() {
+        return version.equals("HTTP/1.0");
+    }
+
+    public boolean isKeepAlive() {
+
+        // HTTP/1.1 connections are persistent unless the client asks to close. HTTP/1.0 connections are persistent only
+        // if the client asks to keep them alive.
+        String connection = headers.getOrDefault("connection", "").toLowerCase();
+        return isHttp10() ? connection.contains("keep-alive") : !connection.contains("close");
+    }
+}
@@ -0,0 +1,129 @@
+package co.nyzo.verifier.web;
+
+import co.nyzo.verifier.util.PreferencesUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HttpRequestParser {
+
+    // This parser works directly on bytes, so it can be used with any amount of buffered data. A request is only
+    // consumed from the buffer when it is complete, and any bytes after it are left for the next request. This is what
+    // allows pipelined requests on a persistent connection.
+
+    public static final int maximumHeaderLength = 16384;
+    public static final int maximumBodyLength = PreferencesUtil.getInt("web_maximum_body_length", 1024 * 1024);
+    public static final int maximumRequestLength = maximumHeaderLength + maximumBodyLength;
+
+    private HttpStatusCode errorStatusCode = null;
+
+    // Returns the error status if the data cannot be parsed as a request, or null if no error has occurred. After an
+    // error, the connection should be closed, as the boundary of the next request is unknown.
+    public HttpStatusCode getErrorStatusCode() {
+        return errorStatusCode;
+    }
+
+    // The buffer must be in read mode. If a complete request is available, it is consumed from the buffer and
+    // returned. Otherwise, null is returned, and only empty lines preceding the request are consumed.
+    public HttpRequest parse(ByteBuffer buffer) {
+
+        HttpRequest request = null;
+        if (errorStatusCode == null) {
+
+            // Skip empty lines before the request line, as recommended by RFC 7230.
+            int start = buffer.position();
+            int limit = buffer.limit();
+            while (start < limit && (buffer.get(start) == '\r' || buffer.get(start) == '\n')) {
+                start++;
+            }
+
+            // Find the end of the header section, which is marked by an empty line. Both CRLF and bare LF line endings
+            // are accepted.
+            int headerEnd = -1;
+            int bodyStart = -1;
+            int lineStart = start;
+            for (int i = start; i < limit && headerEnd < 0; i++) {
+                if (buffer.get(i) == '\n') {
+                    int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                    if (lineEnd == lineStart) {
+                        headerEnd = lineStart;
+                        bodyStart = i + 1;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            if (headerEnd < 0) {
+                if (limit - start > maximumHeaderLength) {
+                    errorStatusCode = HttpStatusCode.BadRequest400;
+                } else {
+                    // Consume the empty lines so they are not scanned again.
+                    buffer.position(start);
+                }
+            } else if (headerEnd - start > maximumHeaderLength) {
+                errorStatusCode = HttpStatusCode.BadRequest400;
+            } else {
+                request = parseRequest(buffer, start, headerEnd, bodyStart);
+            }
+        }
+
+        return request;
+    }
+
+    private HttpRequest parseRequest(ByteBuffer buffer, int start, int headerEnd, int bodyStart) {
+
+        // The header section is ASCII, and ISO-8859-1 maps each byte to one character.
+        byte[] headerBytes = new byte[headerEnd - start];
+        for (int i = 0; i < headerBytes.length; i++) {
+            headerBytes[i] = buffer.get(start + i);
+        }
+        String[] lines = new String(headerBytes, StandardCharsets.ISO_8859_1).split("\r?\n");
+
+        HttpRequest request = null;
+        String[] requestLine = lines[0].trim().split("\\s+");
+        if (requestLine.length < 2) {
+            errorStatusCode = HttpStatusCode.BadRequest400;
+        } else {
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colonIndex = lines[i].indexOf(':');
+                if (colonIndex > 0) {
+                    headers.put(lines[i].substring(0, colonIndex).trim().toLowerCase(),
+                            lines[i].substring(colonIndex + 1).trim());
+                }
+            }
+
+            // Chunked request bodies are not supported. Without a content length, the body is assumed to be empty.
+            int contentLength = 0;
+            if (headers.containsKey("transfer-encoding")) {
+                errorStatusCode = HttpStatusCode.BadRequest400;
+            } else if (headers.containsKey("content-length")) {
+                try {
+                    contentLength = Integer.parseInt(headers.get("content-length"));
+                } catch (Exception ignored) {
+                    contentLength = -1;
+                }
+
+                if (contentLength < 0) {
+                    errorStatusCode = HttpStatusCode.BadRequest400;
+                } else if (contentLength > maximumBodyLength) {
+                    errorStatusCode = HttpStatusCode.PayloadTooLarge413;
+                }
+            }
+
+            if (errorStatusCode == null && buffer.limit() - bodyStart >= contentLength) {
+                byte[] body = new byte[contentLength];
+                buffer.position(bodyStart);
+                buffer.get(body);
+
+                String version = requestLine.length > 2 ? requestLine[2].toUpperCase() : "HTTP/1.0";
+                request = new HttpRequest(HttpMethod.forString(requestLine[0]), requestLine[1], version, headers,
+                        body);
+            }
+        }
+
+        return request;
+    }
+}
@@ -5,8 +5,14 @@ public enum HttpStatusCode {
     // This enumeration provides only a small subset of status codes that the WebListener currently uses.
 
     Ok200(200, "OK"),
+    PartialContent206(206, "Partial Content"),
+    NotModified304(304, "Not Modified"),
+    BadRequest400(400, "Bad Request"),
     PaymentRequired402(402, "Payment Required"),
-    NotFound404(404, "Not Found");
+    NotFound404(404, "Not Found"),
+    PayloadTooLarge413(413, "Payload Too Large"),
+    RangeNotSatisfiable416(416, "Range Not Satisfiable"),
+    ServiceUnavailable503(503, "Service Unavailable");
 
     private int code;
     private String label;
@@ -0,0 +1,237 @@
+package co.nyzo.verifier.web;
+
+import co.nyzo.verifier.*;
+import co.nyzo.verifier.messages.StatusResponse;
+import co.nyzo.verifier.metrics.Gauge;
+import co.nyzo.verifier.metrics.MetricsRegistry;
+import co.nyzo.verifier.relay.RelayEndpoint;
+import co.nyzo.verifier.relay.RelayEndpointManager;
+import co.nyzo.verifier.util.ConsensusTracker;
+
+import java.nio.charset.StandardCharsets;
+
+public class MetricsController {
+
+    // This controller provides all registered metrics in the Prometheus text format. The values that are kept in
+    // static fields of other classes are registered here as gauges and counter functions, so they are read only when
+    // the metrics are requested. Verifier-specific classes are only registered in the verifier run mode, because
+    // reading them would initialize them in other run modes.
+
+    public static final Endpoint endpoint = new Endpoint("/metrics");
+
+    private static boolean registeredGauges = false;
+
+    public static EndpointResponse page(EndpointRequest request) {
+
+        registerGauges();
+        return new EndpointResponse(MetricsRegistry.render().getBytes(StandardCharsets.UTF_8),
+                EndpointResponse.contentTypeText);
+    }
+
+    private static synchronized void registerGauges() {
+
+        if (registeredGauges) {
+            return;
+        }
+        registeredGauges = true;
+
+        MetricsRegistry.gauge("nyzo_jvm_memory_used_bytes", "heap memory in use", new Gauge() {
+            @Override
+            public double getValue() {
+                return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_jvm_threads", "live threads", new Gauge() {
+            @Override
+            public double getValue() {
+                return Thread.activeCount();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_web_connections_accepted_total", "web connections accepted", new Gauge() {
+            @Override
+            public double getValue() {
+                return WebListener.getNumberOfMessagesAccepted();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_web_connections_rejected_total", "web connections rejected", new Gauge() {
+            @Override
+            public double getValue() {
+                return WebListener.getNumberOfMessagesRejected();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_web_connections_active", "web connections open", new Gauge() {
+            @Override
+            public double getValue() {
+                return WebListener.getActiveConnections();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_web_cache_hits_total", "web responses served from the cache",
+                new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return ResponseCache.getNumberOfHits();
+                    }
+                });
+        MetricsRegistry.counterFunction("nyzo_web_cache_misses_total", "cacheable web responses that were rendered",
+                new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return ResponseCache.getNumberOfMisses();
+                    }
+                });
+        MetricsRegistry.counterFunction("nyzo_web_cache_not_modified_total", "web responses answered from the cache " +
+                "with 304 Not Modified", new Gauge() {
+            @Override
+            public double getValue() {
+                return ResponseCache.getNumberOfNotModifiedResponses();
+            }
+        });
+
+        if (RunMode.getRunMode() == RunMode.Verifier) {
+            registerVerifierGauges();
+        } else if (RunMode.getRunMode() == RunMode.RelayServer) {
+            registerRelayGauges();
+        }
+    }
+
+    private static void registerRelayGauges() {
+
+        // The relay endpoints are registered when the endpoint map is built, before the web listener is started, so
+        // all of them are present when the gauges are registered.
+        MetricsRegistry.gauge("nyzo_relay_maximum_staleness_seconds", "greatest staleness of the relay endpoints",
+                new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return RelayEndpointManager.getMaximumStaleness() / 1000.0;
+                    }
+                });
+        for (RelayEndpoint endpoint : RelayEndpointManager.getEndpoints()) {
+            String source = endpoint.getSourceEndpoint();
+            MetricsRegistry.gauge("nyzo_relay_endpoint_staleness_seconds", "time since the relay endpoint was last " +
+                    "confirmed current", "endpoint", source, new Gauge() {
+                @Override
+                public double getValue() {
+                    return RelayEndpointManager.getStaleness(endpoint, System.currentTimeMillis()) / 1000.0;
+                }
+            });
+            MetricsRegistry.counterFunction("nyzo_relay_endpoint_refreshes_total", "relay endpoint refreshes",
+                    "endpoint", source, new Gauge() {
+                        @Override
+                        public double getValue() {
+                            return endpoint.getNumberOfRefreshes();
+                        }
+                    });
+            MetricsRegistry.counterFunction("nyzo_relay_endpoint_not_modified_refreshes_total", "relay endpoint " +
+                    "refreshes for which the upstream content was not modified", "endpoint", source, new Gauge() {
+                @Override
+                public double getValue() {
+                    return endpoint.getNumberOfNotModifiedRefreshes();
+                }
+            });
+            MetricsRegistry.counterFunction("nyzo_relay_endpoint_failed_refreshes_total", "relay endpoint refreshes " +
+                    "that failed", "endpoint", source, new Gauge() {
+                @Override
+                public double getValue() {
+                    return endpoint.getNumberOfFailedRefreshes();
+                }
+            });
+        }
+    }
+
+    private static void registerVerifierGauges() {
+
+        MetricsRegistry.counterFunction("nyzo_mesh_messages_accepted_total", "mesh messages accepted", new Gauge() {
+            @Override
+            public double getValue() {
+                return MeshListener.getNumberOfMessagesAccepted();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_mesh_messages_rejected_total", "mesh messages rejected", new Gauge() {
+            @Override
+            public double getValue() {
+                return MeshListener.getNumberOfMessagesRejected();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_udp_pings_total", "UDP pings received", new Gauge() {
+            @Override
+            public double getValue() {
+                return StatusResponse.getPingCount();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_udp_rejections_total", "UDP messages rejected", new Gauge() {
+            @Override
+            public double getValue() {
+                return StatusResponse.getUdpRejectionCount();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_udp_discards_total", "UDP messages discarded", new Gauge() {
+            @Override
+            public double getValue() {
+                return StatusResponse.getUdpDiscardCount();
+            }
+        });
+        MetricsRegistry.counterFunction("nyzo_consensus_tracker_events_total", "consensus events tracked",
+                new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return ConsensusTracker.getNumberOfEvents();
+                    }
+                });
+        MetricsRegistry.counterFunction("nyzo_consensus_tracker_dropped_events_total",
+                "consensus events dropped because the tracker ring was full", new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return ConsensusTracker.getNumberOfDroppedEvents();
+                    }
+                });
+        MetricsRegistry.gauge("nyzo_memory_monitor_minimum_bytes", "minimum sampled heap memory", new Gauge() {
+            @Override
+            public double getValue() {
+                return MemoryMonitor.getMinimumMemory();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_memory_monitor_maximum_bytes", "maximum sampled heap memory", new Gauge() {
+            @Override
+            public double getValue() {
+                return MemoryMonitor.getMaximumMemory();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_newest_message_age_seconds", "age of the newest message received", new Gauge() {
+            @Override
+            public double getValue() {
+                return Verifier.newestTimestampAge(1) / 1000.0;
+            }
+        });
+        MetricsRegistry.gauge("nyzo_oldest_message_age_seconds", "age of the oldest of the last 10 messages received",
+                new Gauge() {
+                    @Override
+                    public double getValue() {
+                        return Verifier.oldestTimestampAge() / 1000.0;
+                    }
+                });
+        MetricsRegistry.gauge("nyzo_frozen_edge_height", "height of the frozen edge", new Gauge() {
+            @Override
+            public double getValue() {
+                return BlockManager.getFrozenEdgeHeight();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_mesh_nodes", "nodes in the mesh", new Gauge() {
+            @Override
+            public double getValue() {
+                return NodeManager.getNumberOfNodesInMap();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_transaction_pool_transactions", "transactions in the pool", new Gauge() {
+            @Override
+            public double getValue() {
+                return TransactionPool.transactionPoolSize();
+            }
+        });
+        MetricsRegistry.gauge("nyzo_transaction_pool_bytes", "estimated bytes of the transaction pool", new Gauge() {
+            @Override
+            public double getValue() {
+                return TransactionPool.numberOfBytes();
+            }
+        });
+    }
+}
@@ -0,0 +1,252 @@
+package co.nyzo.verifier.web;
+
+import co.nyzo.verifier.ByteUtil;
+import co.nyzo.verifier.HashUtil;
+import co.nyzo.verifier.util.PreferencesUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+public class ResponseCache {
+
+    // This cache holds rendered responses for endpoints that have a cache policy. Most pages change only when the
+    // frozen edge advances, so these can be rendered once and served many times. Each cached response has an ETag for
+    // conditional requests and, if it is large enough to benefit, a stored gzip variant.
+
+    private static final int maximumNumberOfEntries = PreferencesUtil.getInt("web_response_cache_entries", 500);
+    private static final int minimumCompressionLength = 256;
+    private static final int maximumCachedLength = 8 * 1024 * 1024;
+
+    private static final Map<Endpoint, CachePolicy> endpointToPolicyMap = new ConcurrentHashMap<>();
+    private static final Map<String, CachedResponse> keyToResponseMap = new LinkedHashMap<String, CachedResponse>(16,
+            0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > maximumNumberOfEntries;
+        }
+    };
+
+    // Incrementing this makes all responses invalidated on block freeze stale. The current value is read before a
+    // response is rendered, so a response rendered during a freeze is never stored as current.
+    private static final AtomicLong frozenEdgeGeneration = new AtomicLong(0L);
+
+    private static final AtomicLong numberOfHits = new AtomicLong(0L);
+    private static final AtomicLong numberOfMisses = new AtomicLong(0L);
+    private static final AtomicLong numberOfNotModifiedResponses = new AtomicLong(0L);
+
+    public static void setPolicy(Endpoint endpoint, long maximumAge, boolean invalidateOnFreeze) {
+        endpointToPolicyMap.put(endpoint, new CachePolicy(maximumAge, invalidateOnFreeze));
+    }
+
+    public static void frozenEdgeChanged() {
+        frozenEdgeGeneration.incrementAndGet();
+    }
+
+    public static void invalidate(Endpoint endpoint) {
+
+        String prefix = keyPrefix(endpoint);
+        synchronized (keyToResponseMap) {
+            Iterator<String> iterator = keyToResponseMap.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public static void invalidateAll() {
+
+        synchronized (keyToResponseMap) {
+            keyToResponseMap.clear();
+        }
+    }
+
+    public static long getNumberOfHits() {
+        return numberOfHits.get();
+    }
+
+    public static long getNumberOfMisses() {
+        return numberOfMisses.get();
+    }
+
+    public static long getNumberOfNotModifiedResponses() {
+        return numberOfNotModifiedResponses.get();
+    }
+
+    // Returns the response for the request, using the cache if the endpoint has a policy. The provider endpoint is the
+    // endpoint under which the provider was found, which may be the parent of the requested endpoint.
+    public static EndpointResponse getResponse(EndpointRequest request, Endpoint providerEndpoint,
+                                               EndpointResponseProvider provider) {
+
+        CachePolicy policy = endpointToPolicyMap.get(providerEndpoint);
+        EndpointResponse response;
+        if (policy == null || request.getEndpoint().getMethod() != HttpMethod.Get) {
+            response = provider.getResponse(request);
+        } else {
+            String key = key(request);
+            long generation = frozenEdgeGeneration.get();
+            long currentTimestamp = System.currentTimeMillis();
+
+            CachedResponse cachedResponse;
+            synchronized (keyToResponseMap) {
+                cachedResponse = keyToResponseMap.get(key);
+            }
+
+            if (cachedResponse != null && currentTimestamp - cachedResponse.timestamp < policy.maximumAge &&
+                    (!policy.invalidateOnFreeze || cachedResponse.generation == generation)) {
+                numberOfHits.incrementAndGet();
+                response = cachedResponse.responseFor(request);
+            } else {
+                // Only successful responses are stored. Others are returned as rendered. Streamed responses are also
+                // returned as rendered, as storing them would require rendering them to a single array.
+                numberOfMisses.incrementAndGet();
+                response = provider.getResponse(request);
+                if (response.getStatusCode() == HttpStatusCode.Ok200 && !response.isStreamed() &&
+                        response.getContent().length <= maximumCachedLength) {
+                    cachedResponse = new CachedResponse(response, generation, currentTimestamp);
+                    synchronized (keyToResponseMap) {
+                        keyToResponseMap.put(key, cachedResponse);
+                    }
+                    response = cachedResponse.responseFor(request);
+                }
+            }
+        }
+
+        return response;
+    }
+
+    private static String key(EndpointRequest request) {
+
+        // Query parameters are sorted so that equivalent queries share an entry.
+        return keyPrefix(request.getEndpoint()) + new TreeMap<>(request.getQueryParameters());
+    }
+
+    private static String keyPrefix(Endpoint endpoint) {
+        return endpoint.getMethod() + " " + endpoint.getPath() + "?";
+    }
+
+    private static boolean acceptsGzip(EndpointRequest request) {
+        return acceptsGzip(request.getHeader("accept-encoding"));
+    }
+
+    // The Accept-Encoding header is a comma-separated list of codings, each with an optional weight. A coding with a
+    // weight of zero is refused. An explicit gzip or x-gzip entry takes precedence over the * wildcard.
+    public static boolean acceptsGzip(String acceptEncoding) {
+
+        boolean gzipListed = false;
+        boolean gzipAccepted = false;
+        boolean wildcardAccepted = false;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(parameter.substring(2).trim()) > 0.0;
+                    } catch (NumberFormatException ignored) {
+                        accepted = false;
+                    }
+                }
+            }
+
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipListed = true;
+                gzipAccepted |= accepted;
+            } else if (coding.equals("*")) {
+                wildcardAccepted = accepted;
+            }
+        }
+
+        return gzipListed ? gzipAccepted : wildcardAccepted;
+    }
+
+    private static class CachePolicy {
+
+        private final long maximumAge;
+        private final boolean invalidateOnFreeze;
+
+        private CachePolicy(long maximumAge, boolean invalidateOnFreeze) {
+            this.maximumAge = maximumAge;
+            this.invalidateOnFreeze = invalidateOnFreeze;
+        }
+    }
+
+    private static class CachedResponse {
+
+        private final EndpointResponse response;
+        private final byte[] gzipContent;
+        private final String entityTag;
+        private final String gzipEntityTag;
+        private final long generation;
+        private final long timestamp;
+
+        private CachedResponse(EndpointResponse response, long generation, long timestamp) {
+
+            this.response = response;
+            this.generation = generation;
+            this.timestamp = timestamp;
+
+            byte[] content = response.getContent();
+            String hash = ByteUtil.arrayAsStringNoDashes(HashUtil.singleSHA256(content), 0, 12);
+            this.entityTag = "\"" + hash + "\"";
+            this.gzipEntityTag = "\"" + hash + "-gzip\"";
+
+            // Store the gzip variant only if it is smaller than the original.
+            byte[] gzipContent = null;
+            if (content.length >= minimumCompressionLength) {
+                try {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length / 2);
+                    GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+                    gzipStream.write(content);
+                    gzipStream.close();
+                    if (outputStream.size() < content.length) {
+                        gzipContent = outputStream.toByteArray();
+                    }
+                } catch (Exception ignored) { }
+            }
+            this.gzipContent = gzipContent;
+        }
+
+        private EndpointResponse responseFor(EndpointRequest request) {
+
+            boolean gzip = gzipContent != null && acceptsGzip(request);
+            String entityTag = gzip ? gzipEntityTag : this.entityTag;
+
+            // A client that has either variant does not need the content again.
+            String ifNoneMatch = request.getHeader("if-none-match");
+            boolean notModified = ifNoneMatch.contains(this.entityTag) ||
+                    (gzipContent != null && ifNoneMatch.contains(gzipEntityTag)) || ifNoneMatch.trim().equals("*");
+
+            EndpointResponse result;
+            if (notModified) {
+                numberOfNotModifiedResponses.incrementAndGet();
+                result = new EndpointResponse(new byte[0], response.getHeader("Content-type"),
+                        HttpStatusCode.NotModified304);
+            } else {
+                result = new EndpointResponse(gzip ? gzipContent : response.getContent(),
+                        response.getHeader("Content-type"), response.getStatusCode());
+                for (String name : response.getHeaderNames()) {
+                    result.setHeader(name, response.getHeader(name));
+                }
+                if (gzip) {
+                    result.setHeader("Content-Encoding", "gzip");
+                }
+            }
+            result.setHeader("ETag", entityTag);
+            if (gzipContent != null) {
+                result.setHeader("Vary", "Accept-Encoding");
+            }
+
+            return result;
+        }
+    }
+}
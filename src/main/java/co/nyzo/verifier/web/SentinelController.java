@@ -8,7 +8,6 @@ import co.nyzo.verifier.sentinel.ManagedVerifier;
 import co.nyzo.verifier.sentinel.Sentinel;
 import co.nyzo.verifier.web.elements.*;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 public class SentinelController {
@@ -32,11 +31,11 @@ public class SentinelController {
         // Add the Ajax update for the container div to the head of the document.
         head.add(container.ajaxUpdate(updateEndpoint.getPath(), 5000));
 
-        return new EndpointResponse(html.renderByteArray());
+        return new EndpointResponse(html);
     }
 
     public static EndpointResponse update(EndpointRequest request) {
-        return new EndpointResponse(divContent().render().getBytes(StandardCharsets.UTF_8));
+        return new EndpointResponse(divContent());
     }
 
     private static HtmlElement divContent() {
@@ -4,23 +4,30 @@ import co.nyzo.verifier.*;
 import co.nyzo.verifier.client.Client;
 import co.nyzo.verifier.client.ClientController;
 import co.nyzo.verifier.documentation.DocumentationController;
+import co.nyzo.verifier.metrics.LatencyHistogram;
+import co.nyzo.verifier.metrics.MetricsRegistry;
 import co.nyzo.verifier.relay.RelayController;
 import co.nyzo.verifier.util.*;
+import co.nyzo.verifier.web.elements.HtmlElement;
+import co.nyzo.verifier.web.elements.HtmlWriter;
+import co.nyzo.verifier.web.elements.OutputSink;
 
 import javax.net.ssl.*;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyStore;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,13 +48,21 @@ public class WebListener {
     private static final AtomicLong numberOfMessagesAccepted = new AtomicLong(0);
 
     private static final Map<ByteBuffer, Integer> connectionsPerIp = new ConcurrentHashMap<>();
-    private static final AtomicInteger activeReadThreads = new AtomicInteger(0);
+    private static final AtomicInteger activeConnections = new AtomicInteger(0);
+    private static final LatencyHistogram responseHistogram = MetricsRegistry.histogram("nyzo_web_response_seconds",
+            "time to produce a web response, including the response cache");
 
     private static final int maximumConcurrentConnectionsForIp =
             PreferencesUtil.getInt("web_maximum_concurrent_connections_per_ip", 40);
 
     private static final int connectionTimeout = PreferencesUtil.getInt(connectionTimeoutKey, 2000);
 
+    private static final byte[] chunkTerminatorBytes = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] lastChunkBytes = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // The non-blocking engine serves HTTP. HTTPS is still served with a thread per connection.
+    private static final boolean useNonBlockingEngine = PreferencesUtil.getBoolean("web_listener_non_blocking", true);
+
     private static final File temporaryForwardingWebDirectory = new File(Verifier.dataRootDirectory, "webTemp");
 
     private static final BiFunction<Integer, Integer, Integer> mergeFunction =
@@ -77,20 +92,26 @@ public class WebListener {
 
     private static void openHttpListener() {
         try {
-            ServerSocket serverSocket = new ServerSocket(getPort());
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    while (!UpdateUtil.shouldTerminate()) {
-                        try {
-                            Socket clientSocket = serverSocket.accept();
-                            processSocket(clientSocket);
-                        } catch (Exception ignored) { }
+            int port;
+            if (useNonBlockingEngine) {
+                port = new HttpEngine(getPort(), connectionTimeout).start();
+            } else {
+                ServerSocket serverSocket = new ServerSocket(getPort());
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (!UpdateUtil.shouldTerminate()) {
+                            try {
+                                Socket clientSocket = serverSocket.accept();
+                                processSocket(clientSocket);
+                            } catch (Exception ignored) { }
+                        }
                     }
-                }
-            }).start();
+                }).start();
+                port = serverSocket.getLocalPort();
+            }
 
-            LogUtil.println("opened HTTP listener on port " + serverSocket.getLocalPort());
+            LogUtil.println("opened HTTP listener on port " + port);
         } catch (Exception e) {
             LogUtil.println("exception starting HTTP web listener: " + PrintUtil.printException(e));
         }
@@ -143,12 +164,11 @@ public class WebListener {
         }
     }
 
-    private static void processSocket(Socket clientSocket) {
+    static boolean admitConnection(byte[] ipAddress) {
 
-        byte[] ipAddress = clientSocket.getInetAddress().getAddress();
+        boolean admitted = false;
         if (BlacklistManager.inBlacklist(ipAddress)) {
             numberOfMessagesRejected.incrementAndGet();
-            ConnectionManager.fastCloseSocket(clientSocket);
         } else {
             ByteBuffer ipBuffer = ByteBuffer.wrap(ipAddress);
             int connectionsForIp = connectionsPerIp.merge(ipBuffer, 1, mergeFunction);
@@ -158,143 +178,291 @@ public class WebListener {
                 LogUtil.println("blacklisting IP " + IpUtil.addressAsString(ipAddress) +
                         " due to too many concurrent connections");
 
-                // Decrement the counter, add the IP to the blacklist, and close the socket without responding.
+                // Decrement the counter and add the IP to the blacklist. The caller closes the connection without
+                // responding.
                 connectionsPerIp.merge(ipBuffer, -1, mergeFunction);
                 BlacklistManager.addToBlacklist(ipAddress);
-                ConnectionManager.fastCloseSocket(clientSocket);
-
             } else {
-
-                // Read the message and respond.
                 numberOfMessagesAccepted.incrementAndGet();
-                activeReadThreads.incrementAndGet();
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
+                activeConnections.incrementAndGet();
+                admitted = true;
+            }
+        }
 
-                        try {
-                            clientSocket.setSoTimeout(connectionTimeout);
-                            boolean socketAlive = true;
-                            while (socketAlive) {
-                                socketAlive = readMessageAndRespond(clientSocket);
-                            }
+        return admitted;
+    }
 
-                            ConnectionManager.slowCloseSocket(clientSocket);
-                        } catch (Exception ignored) { }
+    static void releaseConnection(byte[] ipAddress) {
 
-                        // Decrement the counter for this IP.
-                        connectionsPerIp.merge(ipBuffer, -1, mergeFunction);
+        // Decrement the counter for this IP.
+        connectionsPerIp.merge(ByteBuffer.wrap(ipAddress), -1, mergeFunction);
 
-                        if (activeReadThreads.decrementAndGet() == 0) {
+        if (activeConnections.decrementAndGet() == 0) {
 
-                            // When the number of active threads is zero, clear the map of
-                            // connections per IP to prevent accumulation of too many IP
-                            // addresses over time.
-                            connectionsPerIp.clear();
-                        }
-                    }
-                }, "WebListener-clientSocket").start();
-            }
+            // When the number of active connections is zero, clear the map of connections per IP to prevent
+            // accumulation of too many IP addresses over time.
+            connectionsPerIp.clear();
+        }
+    }
+
+    private static void processSocket(Socket clientSocket) {
+
+        byte[] ipAddress = clientSocket.getInetAddress().getAddress();
+        if (!admitConnection(ipAddress)) {
+            ConnectionManager.fastCloseSocket(clientSocket);
+        } else {
+
+            // Read the messages and respond.
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    try {
+                        clientSocket.setSoTimeout(connectionTimeout);
+                        readMessagesAndRespond(clientSocket, ipAddress);
+                        ConnectionManager.slowCloseSocket(clientSocket);
+                    } catch (Exception ignored) { }
+
+                    releaseConnection(ipAddress);
+                }
+            }, "WebListener-clientSocket").start();
         }
     }
 
-    private static boolean readMessageAndRespond(Socket clientSocket) {
+    private static void readMessagesAndRespond(Socket clientSocket, byte[] ipAddress) throws IOException {
+
+        // The buffer and parser persist for the life of the connection, so bytes of a following request that arrive
+        // with the current request are not lost.
+        InputStream inputStream = clientSocket.getInputStream();
+        OutputStream outputStream = clientSocket.getOutputStream();
+        HttpRequestParser parser = new HttpRequestParser();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        boolean socketAlive = true;
+        while (socketAlive) {
+            buffer.flip();
+            HttpRequest request = parser.parse(buffer);
+            buffer.compact();
+
+            if (request != null) {
+                writeResponse(outputStream, request, ipAddress);
+                socketAlive = request.isKeepAlive();
+            } else if (parser.getErrorStatusCode() != null) {
+                writeBuffers(outputStream, errorResponseParts(parser.getErrorStatusCode()).buffers);
+                socketAlive = false;
+            } else {
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer largerBuffer = ByteBuffer.allocate(Math.min(buffer.capacity() * 2,
+                            HttpRequestParser.maximumRequestLength));
+                    buffer.flip();
+                    largerBuffer.put(buffer);
+                    buffer = largerBuffer;
+                }
 
-        boolean socketAlive = false;
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            String[] requestParameters = reader.readLine().split("\\s+");
-            if (requestParameters.length >= 2) {
-                // Get the method, path, and query string.
-                HttpMethod method = HttpMethod.forString(requestParameters[0]);
-                String pathParameter = requestParameters[1];
-                int questionMarkIndex = pathParameter.indexOf('?');
-                String path;
-                String queryString;
-                if (questionMarkIndex >= 0) {
-                    path = pathParameter.substring(0, questionMarkIndex);
-                    queryString = pathParameter.substring(questionMarkIndex + 1);
+                int bytesRead = inputStream.read(buffer.array(), buffer.position(), buffer.remaining());
+                if (bytesRead < 0) {
+                    socketAlive = false;
                 } else {
-                    path = pathParameter;
-                    queryString = "";
+                    buffer.position(buffer.position() + bytesRead);
                 }
+            }
+        }
+    }
 
-                // Remove all double dots from the path to avoid attempts at escaping from the web directory.
-                path = path.replace("..", "");
-
-                // If POST, get the body.
-                String postBody = "";
-                if (method == HttpMethod.Post) {
-                    // Get the content length from the headers.
-                    String line;
-                    int contentLength = 0;
-                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
-                        if (line.toLowerCase().startsWith("content-length: ")) {
-                            try {
-                                contentLength = Integer.parseInt(line.substring("content-length: ".length()));
-                            } catch (Exception ignored) { }
+    private static void writeBuffers(OutputStream outputStream, ByteBuffer[] buffers) throws IOException {
+
+        for (ByteBuffer buffer : buffers) {
+            outputStream.write(buffer.array(), buffer.position(), buffer.remaining());
+        }
+        outputStream.flush();
+    }
+
+    private static void writeResponse(OutputStream outputStream, HttpRequest request, byte[] sourceIpAddress)
+            throws IOException {
+
+        // A streamed response is written to the socket as it is rendered. Each pooled buffer is released as soon as
+        // it has been written, so the memory used does not depend on the size of the page.
+        EndpointResponse response = endpointResponse(request, sourceIpAddress);
+        if (response.isStreamed() && !request.isHttp10()) {
+            outputStream.write(headerBytes(response, -1L, request.isKeepAlive(), false));
+            HtmlWriter writer = new HtmlWriter(new OutputSink() {
+                @Override
+                public void write(byte[] array, int offset, int length, boolean pooled) throws IOException {
+                    try {
+                        outputStream.write(chunkSizeBytes(length));
+                        outputStream.write(array, offset, length);
+                        outputStream.write(chunkTerminatorBytes);
+                    } finally {
+                        if (pooled) {
+                            BufferPool.release(array);
                         }
                     }
-
-                    // Read the body into a string.
-                    char[] buffer = new char[contentLength];
-                    reader.read(buffer);
-                    postBody = new String(buffer);
                 }
-
-                // Build the request object.
-                Endpoint endpoint = new Endpoint(path, method);
-                Map<String, String> queryParameters = mapForString(queryString);
-                Map<String, String> postParameters = mapForString(postBody);
-                byte[] sourceIpAddress = clientSocket.getInetAddress().getAddress();
-                EndpointRequest request = new EndpointRequest(endpoint, queryParameters, postParameters,
-                        sourceIpAddress);
-
-                // Get the response.
-                EndpointResponse response = getResponse(request);
-
-                // Get the output stream.
-                BufferedOutputStream outputStream = new BufferedOutputStream(clientSocket.getOutputStream());
-
-                // Write the status header.
-                Charset charset = StandardCharsets.US_ASCII;
-                outputStream.write(("HTTP/1.1 " + response.getStatusCode().getCode() + " " +
-                        response.getStatusCode().getLabel() + "\r\n").getBytes(charset));
-
-                // Write the date header.
-                String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
-                outputStream.write(("Date: " + date + "\r\n").getBytes(charset));
-
-                // Write the length header.
-                byte[] responseBytes = response.getContent();
-                int length = responseBytes.length;
-                outputStream.write(("Content-length: " + responseBytes.length + "\r\n").getBytes(charset));
-
-                // Write the headers contained in the response object.
-                for (String key : response.getHeaderNames()) {
-                    outputStream.write((key + ": " + response.getHeader(key) + "\r\n").getBytes(charset));
+            });
+            response.getElement().render(writer);
+            writer.close();
+            outputStream.write(lastChunkBytes);
+            outputStream.flush();
+        } else if (response.isFileRegion()) {
+            // A file region is copied to the socket through a pooled buffer. Zero-copy transfer is not possible for
+            // TLS connections, as the data must be encrypted.
+            outputStream.write(headerBytes(response, response.getFileLength(), request.isKeepAlive(),
+                    request.isHttp10()));
+            byte[] array = BufferPool.acquire();
+            try (FileChannel channel = FileChannel.open(response.getFilePath(), StandardOpenOption.READ)) {
+                long position = response.getFileOffset();
+                long remaining = response.getFileLength();
+                while (remaining > 0) {
+                    ByteBuffer buffer = ByteBuffer.wrap(array, 0, (int) Math.min(array.length, remaining));
+                    int bytesRead = channel.read(buffer, position);
+                    if (bytesRead <= 0) {
+                        throw new IOException("file is shorter than expected");
+                    }
+                    outputStream.write(array, 0, bytesRead);
+                    position += bytesRead;
+                    remaining -= bytesRead;
                 }
+            } finally {
+                BufferPool.release(array);
+            }
+            outputStream.flush();
+        } else {
+            writeBuffers(outputStream, responseParts(response, request.isKeepAlive(), request.isHttp10(),
+                    false).buffers);
+        }
+    }
+
+    static ResponseParts responseParts(HttpRequest request, byte[] sourceIpAddress) {
+
+        EndpointResponse response = endpointResponse(request, sourceIpAddress);
+
+        return responseParts(response, request.isKeepAlive(), request.isHttp10(), true);
+    }
+
+    private static EndpointResponse endpointResponse(HttpRequest request, byte[] sourceIpAddress) {
+
+        // Get the path and query string.
+        String target = request.getTarget();
+        int questionMarkIndex = target.indexOf('?');
+        String path;
+        String queryString;
+        if (questionMarkIndex >= 0) {
+            path = target.substring(0, questionMarkIndex);
+            queryString = target.substring(questionMarkIndex + 1);
+        } else {
+            path = target;
+            queryString = "";
+        }
+
+        // Remove all double dots from the path to avoid attempts at escaping from the web directory.
+        path = path.replace("..", "");
+
+        // Build the request object. The body is only used for POST requests.
+        HttpMethod method = request.getMethod();
+        String postBody = method == HttpMethod.Post ? new String(request.getBody(), StandardCharsets.UTF_8) : "";
+        Endpoint endpoint = new Endpoint(path, method);
+        Map<String, String> queryParameters = mapForString(queryString);
+        Map<String, String> postParameters = mapForString(postBody);
+        EndpointRequest endpointRequest = new EndpointRequest(endpoint, queryParameters, postParameters,
+                sourceIpAddress, request.getHeaders());
+
+        // Get the response.
+        return getResponse(endpointRequest);
+    }
+
+    static ResponseParts errorResponseParts(HttpStatusCode statusCode) {
 
-                outputStream.write(("\r\n").getBytes(charset));
-                outputStream.write(responseBytes);
-                outputStream.flush();
+        EndpointResponse response = new EndpointResponse(statusCode.getLabel().getBytes(StandardCharsets.UTF_8),
+                EndpointResponse.contentTypeText, statusCode);
+
+        return responseParts(response, false, false, false);
+    }
+
+    private static ResponseParts responseParts(EndpointResponse response, boolean keepAlive, boolean http10,
+                                               boolean allowStreaming) {
+
+        // Chunked transfer encoding is not available in HTTP/1.0, so streamed responses are rendered to a single array
+        // for those clients. Otherwise, only the header is produced here, and the engine renders the element to the
+        // connection in chunks. File regions have a known length, so they are sent without chunking.
+        ResponseParts parts;
+        if (response.isStreamed() && !http10 && allowStreaming) {
+            ByteBuffer header = ByteBuffer.wrap(headerBytes(response, -1L, keepAlive, false));
+            parts = new ResponseParts(new ByteBuffer[] { header }, response.getElement(), null, 0L, 0L);
+        } else if (response.isFileRegion() && allowStreaming) {
+            ByteBuffer header = ByteBuffer.wrap(headerBytes(response, response.getFileLength(), keepAlive, http10));
+            parts = new ResponseParts(new ByteBuffer[] { header }, null, response.getFilePath(),
+                    response.getFileOffset(), response.getFileLength());
+        } else {
+            byte[] content = response.getContent();
+            ByteBuffer header = ByteBuffer.wrap(headerBytes(response, content.length, keepAlive, http10));
+            parts = new ResponseParts(new ByteBuffer[] { header, ByteBuffer.wrap(content) }, null, null, 0L, 0L);
+        }
+
+        return parts;
+    }
+
+    // A content length of -1 indicates a chunked response.
+    private static byte[] headerBytes(EndpointResponse response, long contentLength, boolean keepAlive,
+                                      boolean http10) {
+
+        Charset charset = StandardCharsets.US_ASCII;
+        ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+        try {
+            // Write the status header and the date header.
+            header.write(("HTTP/1.1 " + response.getStatusCode().getCode() + " " +
+                    response.getStatusCode().getLabel() + "\r\n").getBytes(charset));
+            header.write(HttpDate.headerBytes());
+
+            // Write the length header.
+            if (contentLength < 0) {
+                header.write("Transfer-Encoding: chunked\r\n".getBytes(charset));
+            } else {
+                header.write(("Content-length: " + contentLength + "\r\n").getBytes(charset));
+            }
+
+            // Write the connection header. This is only necessary if the default behavior for the protocol version is
+            // not the desired behavior.
+            if (!keepAlive) {
+                header.write("Connection: close\r\n".getBytes(charset));
+            } else if (http10) {
+                header.write("Connection: keep-alive\r\n".getBytes(charset));
+            }
+
+            // Write the headers contained in the response object.
+            for (String key : response.getHeaderNames()) {
+                header.write((key + ": " + response.getHeader(key) + "\r\n").getBytes(charset));
             }
 
-            socketAlive = true;
+            header.write("\r\n".getBytes(charset));
         } catch (Exception ignored) { }
 
-        return socketAlive;
+        return header.toByteArray();
+    }
+
+    private static byte[] chunkSizeBytes(int length) {
+        return (Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static ByteBuffer[] chunkBuffers(byte[] array, int offset, int length) {
+        return new ByteBuffer[] { ByteBuffer.wrap(chunkSizeBytes(length)), ByteBuffer.wrap(array, offset, length),
+                ByteBuffer.wrap(chunkTerminatorBytes) };
+    }
+
+    static ByteBuffer lastChunkBuffer() {
+        return ByteBuffer.wrap(lastChunkBytes);
     }
 
     public static EndpointResponse getResponse(EndpointRequest request) {
 
+        long startNanoseconds = System.nanoTime();
+
         // Get the response provider from the map.
-        EndpointResponseProvider responseProvider = endpointMap.get(request.getEndpoint());
+        Endpoint providerEndpoint = request.getEndpoint();
+        EndpointResponseProvider responseProvider = endpointMap.get(providerEndpoint);
 
         // If the response provider is null, try to get a response provider for the parent endpoint.
         if (responseProvider == null) {
-            Endpoint parentEndpoint = request.getEndpoint().getParentEndpoint();
-            responseProvider = endpointMap.get(parentEndpoint);
+            providerEndpoint = request.getEndpoint().getParentEndpoint();
+            responseProvider = endpointMap.get(providerEndpoint);
         }
 
         // Render the response.
@@ -311,10 +479,11 @@ public class WebListener {
                         EndpointResponse.contentTypeText, HttpStatusCode.NotFound404);
             }
         } else {
-            response = responseProvider.getResponse(request);
+            response = ResponseCache.getResponse(request, providerEndpoint, responseProvider);
         }
 
         // Return the result.
+        responseHistogram.recordSince(startNanoseconds);
         return response;
     }
 
@@ -384,13 +553,56 @@ public class WebListener {
                 map.put(new Endpoint("/"), CycleController::page);  // will be removed in a later version
                 map.put(CycleController.pageEndpoint, CycleController::page);
                 map.put(CycleController.updateEndpoint, CycleController::update);
+                map.put(ConsensusTimelineController.pageEndpoint, ConsensusTimelineController::page);
+                break;
+        }
+
+        // Set the cache policies. Pages that depend on the frozen edge are invalidated when a block is frozen, and they
+        // are also limited to a short age, as some of their content (such as distance from the open edge) depends on
+        // time. Documentation pages are read from files that may be edited, so they are limited to a longer age. Client
+        // command endpoints are not cached, as they may have side effects. Pages that are streamed as they are
+        // rendered are not cached, as caching would require rendering them to a single array.
+        long shortAge = PreferencesUtil.getLong("web_response_cache_short_age", 1000L);
+        long longAge = PreferencesUtil.getLong("web_response_cache_long_age", 60000L);
+        switch (runMode) {
+            case DocumentationServer:
+                for (Endpoint endpoint : map.keySet()) {
+                    ResponseCache.setPolicy(endpoint, longAge, false);
+                }
+                break;
+            case Sentinel:
+                ResponseCache.setPolicy(SentinelController.updateEndpoint, shortAge, true);
+                break;
+            case Verifier:
+                ResponseCache.setPolicy(CycleController.updateEndpoint, shortAge, true);
                 break;
         }
 
+        // The metrics endpoint is available in all run modes. It is added after the cache policies are set, so it is
+        // never cached, and each scrape reads current values.
+        map.put(MetricsController.endpoint, MetricsController::page);
+
         // Assign the map to the static variable. Building and swapping results in an atomic update of the endpoints.
         endpointMap = map;
     }
 
+    // Adds an endpoint to the current map. This is for endpoints that are not part of the map for the run mode.
+    public static void addEndpoint(Endpoint endpoint, EndpointResponseProvider provider) {
+        endpointMap.put(endpoint, provider);
+    }
+
+    public static long getNumberOfMessagesAccepted() {
+        return numberOfMessagesAccepted.get();
+    }
+
+    public static long getNumberOfMessagesRejected() {
+        return numberOfMessagesRejected.get();
+    }
+
+    public static int getActiveConnections() {
+        return activeConnections.get();
+    }
+
     private static int getPort() {
 
         // To allow for more flexibility while retaining the same behavior as previous versions, 'web_port' is still
@@ -412,4 +624,25 @@ public class WebListener {
         int genericPort = PreferencesUtil.getInt("web_port_https", 443);
         return PreferencesUtil.getInt("web_port_https_" + runMode.getOverrideSuffix(), genericPort);
     }
+
+    static class ResponseParts {
+
+        // These are the parts of a response as it is sent to a connection. The buffers are written first, followed by
+        // the element rendered with chunked encoding or the file region, if either is present.
+
+        final ByteBuffer[] buffers;
+        final HtmlElement element;
+        final Path filePath;
+        final long fileOffset;
+        final long fileLength;
+
+        private ResponseParts(ByteBuffer[] buffers, HtmlElement element, Path filePath, long fileOffset,
+                              long fileLength) {
+            this.buffers = buffers;
+            this.element = element;
+            this.filePath = filePath;
+            this.fileOffset = fileOffset;
+            this.fileLength = fileLength;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package co.nyzo.verifier.web.elements;
 
+import java.io.IOException;
+
 public class Html extends HtmlTag {
 
     private static final String docType = ("<!doctype html>");
@@ -9,6 +11,12 @@ public class Html extends HtmlTag {
         return docType + super.render();
     }
 
+    @Override
+    public void render(HtmlWriter writer) throws IOException {
+        writer.append(docType);
+        super.render(writer);
+    }
+
     @Override
     public String getName() {
         return "html";
@@ -1,6 +1,10 @@
 package co.nyzo.verifier.web.elements;
 
+import java.io.IOException;
+
 public interface HtmlElement {
 
     String render();
+
+    void render(HtmlWriter writer) throws IOException;
 }
@@ -1,5 +1,6 @@
 package co.nyzo.verifier.web.elements;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,4 +22,11 @@ public class HtmlElementList implements HtmlElement {
 
         return result.toString();
     }
+
+    @Override
+    public void render(HtmlWriter writer) throws IOException {
+        for (HtmlElement element : elements) {
+            element.render(writer);
+        }
+    }
 }
@@ -2,7 +2,7 @@ package co.nyzo.verifier.web.elements;
 
 import co.nyzo.verifier.web.WebUtil;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.*;
 
 public abstract class HtmlTag implements HtmlElement {
@@ -56,9 +56,24 @@ public abstract class HtmlTag implements HtmlElement {
         return result.toString();
     }
 
+    @Override
+    public void render(HtmlWriter writer) throws IOException {
+        writer.append("<").append(getName());
+        for (String name : attributes.keySet()) {
+            writer.append(" ").append(name).append("=\"").append(attributes.get(name)).append("\"");
+        }
+        writer.append(">");
+        for (HtmlElement element : elements) {
+            element.render(writer);
+        }
+        if (includeClosingTag) {
+            writer.append("</").append(getName()).append(">");
+        }
+    }
+
     public byte[] renderByteArray() {
 
-        return render().getBytes(StandardCharsets.UTF_8);
+        return HtmlWriter.renderByteArray(this);
     }
 
     public Script ajaxUpdate(String endpoint, long refreshInterval) {
@@ -0,0 +1,116 @@
+package co.nyzo.verifier.web.elements;
+
+import co.nyzo.verifier.web.BufferPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HtmlWriter {
+
+    // This writer encodes text as UTF-8 directly into pooled buffers. Each buffer is passed to the sink as soon as it
+    // is full, so a page can be sent while it is still being rendered, and the full page never needs to exist as a
+    // single string or array.
+
+    private final OutputSink sink;
+    private byte[] buffer = BufferPool.acquire();
+    private int position = 0;
+    private long length = 0L;
+
+    public HtmlWriter(OutputSink sink) {
+        this.sink = sink;
+    }
+
+    public long getLength() {
+        return length + position;
+    }
+
+    public HtmlWriter append(String string) throws IOException {
+
+        int stringLength = string.length();
+        for (int i = 0; i < stringLength; i++) {
+
+            // Ensure room for the longest encoding of a character.
+            if (buffer.length - position < 4) {
+                flushBuffer();
+            }
+
+            char character = string.charAt(i);
+            if (character < 0x80) {
+                buffer[position++] = (byte) character;
+            } else if (character < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (character >> 6));
+                buffer[position++] = (byte) (0x80 | (character & 0x3f));
+            } else if (Character.isHighSurrogate(character) && i + 1 < stringLength &&
+                    Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(character, string.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(character)) {
+                // An unpaired surrogate is replaced with a question mark, as String.getBytes() does.
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (character >> 12));
+                buffer[position++] = (byte) (0x80 | ((character >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (character & 0x3f));
+            }
+        }
+
+        return this;
+    }
+
+    // Passes the remaining content to the sink. The writer must not be used after this call.
+    public void close() throws IOException {
+
+        if (position > 0) {
+            flushBuffer();
+        }
+        BufferPool.release(buffer);
+        buffer = null;
+    }
+
+    private void flushBuffer() throws IOException {
+
+        byte[] fullBuffer = buffer;
+        int fullLength = position;
+        buffer = BufferPool.acquire();
+        position = 0;
+        length += fullLength;
+        sink.write(fullBuffer, 0, fullLength, true);
+    }
+
+    public static byte[] renderByteArray(HtmlElement element) {
+
+        // Collect the pooled buffers, and then copy them to a single array of the exact size.
+        List<byte[]> buffers = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        HtmlWriter writer = new HtmlWriter(new OutputSink() {
+            @Override
+            public void write(byte[] array, int offset, int length, boolean pooled) {
+                buffers.add(array);
+                lengths.add(length);
+            }
+        });
+
+        byte[] result;
+        try {
+            element.render(writer);
+            writer.close();
+
+            result = new byte[(int) writer.getLength()];
+            int position = 0;
+            for (int i = 0; i < buffers.size(); i++) {
+                System.arraycopy(buffers.get(i), 0, result, position, lengths.get(i));
+                position += lengths.get(i);
+                BufferPool.release(buffers.get(i));
+            }
+        } catch (IOException e) {
+            // The sink does not throw, so this is not expected.
+            result = new byte[0];
+        }
+
+        return result;
+    }
+}
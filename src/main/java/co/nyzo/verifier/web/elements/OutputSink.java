@@ -0,0 +1,10 @@
+package co.nyzo.verifier.web.elements;
+
+import java.io.IOException;
+
+public interface OutputSink {
+
+    // The sink takes ownership of the array; the writer does not modify it after this call. If the array is pooled,
+    // the sink should release it to the buffer pool when it is no longer needed.
+    void write(byte[] array, int offset, int length, boolean pooled) throws IOException;
+}
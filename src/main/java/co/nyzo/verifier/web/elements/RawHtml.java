@@ -1,5 +1,7 @@
 package co.nyzo.verifier.web.elements;
 
+import java.io.IOException;
+
 public class RawHtml implements HtmlElement {
 
     private String content;
@@ -12,4 +14,9 @@ public class RawHtml implements HtmlElement {
     public String render() {
         return content;
     }
+
+    @Override
+    public void render(HtmlWriter writer) throws IOException {
+        writer.append(content);
+    }
 }